@@ -3,6 +3,8 @@ package com.github.anrimian.musicplayer.di.app;
 
 import com.github.anrimian.filesync.SyncInteractor;
 import com.github.anrimian.musicplayer.data.controllers.music.equalizer.EqualizerController;
+import com.github.anrimian.musicplayer.data.database.profiler.QueryProfiler;
+import com.github.anrimian.musicplayer.data.database.writes.DbWriteCoordinator;
 import com.github.anrimian.musicplayer.data.storage.files.StorageFilesDataSource;
 import com.github.anrimian.musicplayer.data.storage.providers.albums.StorageAlbumsProvider;
 import com.github.anrimian.musicplayer.data.storage.source.ContentSourceHelper;
@@ -128,6 +130,8 @@ public interface AppComponent {
     FileLog fileLog();
     AppLogger appLogger();
     StorageFilesDataSource storageFilesDataSource();
+    DbWriteCoordinator dbWriteCoordinator();
+    QueryProfiler queryProfiler();
 
     ThemeController themeController();
     LocaleController localeController();
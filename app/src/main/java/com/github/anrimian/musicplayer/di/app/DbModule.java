@@ -1,14 +1,18 @@
 package com.github.anrimian.musicplayer.di.app;
 
+import static com.github.anrimian.musicplayer.di.app.SchedulerModule.DB_SCHEDULER;
+
 import android.content.Context;
 
 import com.github.anrimian.musicplayer.data.database.ConfigsDatabase;
 import com.github.anrimian.musicplayer.data.database.DatabaseManager;
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryStatsChecker;
 import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDao;
 import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao;
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDao;
@@ -16,16 +20,22 @@ import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDaoWrapp
 import com.github.anrimian.musicplayer.data.database.dao.genre.GenreDao;
 import com.github.anrimian.musicplayer.data.database.dao.genre.GenresDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.ignoredfolders.IgnoredFoldersDao;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDao;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.play_list.PlayListDao;
 import com.github.anrimian.musicplayer.data.database.dao.play_list.PlayListsDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.play_queue.PlayQueueDao;
 import com.github.anrimian.musicplayer.data.database.dao.play_queue.PlayQueueDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.profiler.QueryProfiler;
+import com.github.anrimian.musicplayer.data.database.writes.DbWriteCoordinator;
 
 import javax.annotation.Nonnull;
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import dagger.Module;
 import dagger.Provides;
+import io.reactivex.rxjava3.core.Scheduler;
 
 /**
  * Created on 20.11.2017.
@@ -44,8 +54,15 @@ public class DbModule {
     @Provides
     @Nonnull
     @Singleton
-    LibraryDatabase provideAppDatabase(DatabaseManager databaseManager) {
-        return databaseManager.getLibraryDatabase();
+    QueryProfiler provideQueryProfiler() {
+        return new QueryProfiler();
+    }
+
+    @Provides
+    @Nonnull
+    @Singleton
+    LibraryDatabase provideAppDatabase(DatabaseManager databaseManager, QueryProfiler queryProfiler) {
+        return databaseManager.getLibraryDatabase(queryProfiler);
     }
 
     @Provides
@@ -65,8 +82,25 @@ public class DbModule {
     @Provides
     @Nonnull
     @Singleton
-    PlayQueueDaoWrapper playQueueDaoWrapper(LibraryDatabase libraryDatabase, PlayQueueDao playQueueDao) {
-        return new PlayQueueDaoWrapper(libraryDatabase, playQueueDao);
+    PlayQueueDaoWrapper playQueueDaoWrapper(LibraryDatabase libraryDatabase,
+                                            PlayQueueDao playQueueDao,
+                                            CompositionChangesBus compositionChangesBus) {
+        return new PlayQueueDaoWrapper(libraryDatabase, playQueueDao, compositionChangesBus);
+    }
+
+    @Provides
+    @Nonnull
+    @Singleton
+    DbWriteCoordinator dbWriteCoordinator(LibraryDatabase libraryDatabase,
+                                          @Named(DB_SCHEDULER) Scheduler scheduler) {
+        return new DbWriteCoordinator(libraryDatabase, scheduler);
+    }
+
+    @Provides
+    @Nonnull
+    @Singleton
+    CompositionChangesBus compositionChangesBus(LibraryDatabase libraryDatabase) {
+        return new CompositionChangesBus(libraryDatabase);
     }
 
     @Provides
@@ -96,8 +130,13 @@ public class DbModule {
     AlbumsDaoWrapper albumsDaoWrapper(LibraryDatabase libraryDatabase,
                                       AlbumsDao albumsDao,
                                       ArtistsDao artistsDao,
-                                      ArtistsDaoWrapper artistsDaoWrapper) {
-        return new AlbumsDaoWrapper(libraryDatabase, albumsDao, artistsDao, artistsDaoWrapper);
+                                      ArtistsDaoWrapper artistsDaoWrapper,
+                                      CompositionChangesBus compositionChangesBus) {
+        return new AlbumsDaoWrapper(libraryDatabase,
+                albumsDao,
+                artistsDao,
+                artistsDaoWrapper,
+                compositionChangesBus);
     }
 
     @Provides
@@ -105,8 +144,9 @@ public class DbModule {
     @Singleton
     ArtistsDaoWrapper artistsDaoWrapper(LibraryDatabase libraryDatabase,
                                         ArtistsDao artistsDao,
-                                        AlbumsDao albumsDao) {
-        return new ArtistsDaoWrapper(libraryDatabase, artistsDao, albumsDao);
+                                        AlbumsDao albumsDao,
+                                        CompositionChangesBus compositionChangesBus) {
+        return new ArtistsDaoWrapper(libraryDatabase, artistsDao, albumsDao, compositionChangesBus);
     }
 
     @Provides
@@ -114,8 +154,9 @@ public class DbModule {
     @Singleton
     GenresDaoWrapper genresDaoWrapper(LibraryDatabase libraryDatabase,
                                       GenreDao genreDao,
-                                      CompositionsDao compositionsDao) {
-        return new GenresDaoWrapper(libraryDatabase, genreDao, compositionsDao);
+                                      CompositionsDao compositionsDao,
+                                      CompositionChangesBus compositionChangesBus) {
+        return new GenresDaoWrapper(libraryDatabase, genreDao, compositionsDao, compositionChangesBus);
     }
 
     @Provides
@@ -126,13 +167,17 @@ public class DbModule {
                                                   CompositionsDao compositionsDao,
                                                   AlbumsDao albumsDao,
                                                   GenreDao genreDao,
-                                                  FoldersDao foldersDao) {
+                                                  FoldersDao foldersDao,
+                                                  OrphansDaoWrapper orphansDaoWrapper,
+                                                  CompositionChangesBus compositionChangesBus) {
         return new CompositionsDaoWrapper(libraryDatabase,
                 artistsDao,
                 compositionsDao,
                 albumsDao,
                 genreDao,
-                foldersDao);
+                foldersDao,
+                orphansDaoWrapper,
+                compositionChangesBus);
     }
 
     @Provides
@@ -147,8 +192,32 @@ public class DbModule {
     @Singleton
     FoldersDaoWrapper foldersDaoWrapper(LibraryDatabase libraryDatabase,
                                         FoldersDao foldersDao,
-                                        CompositionsDaoWrapper compositionsDao) {
-        return new FoldersDaoWrapper(libraryDatabase, foldersDao, compositionsDao);
+                                        CompositionsDaoWrapper compositionsDao,
+                                        OrphansDaoWrapper orphansDaoWrapper) {
+        return new FoldersDaoWrapper(libraryDatabase, foldersDao, compositionsDao, orphansDaoWrapper);
+    }
+
+    @Provides
+    @Nonnull
+    @Singleton
+    OrphansDao orphansDao(LibraryDatabase libraryDatabase) {
+        return libraryDatabase.orphansDao();
+    }
+
+    @Provides
+    @Nonnull
+    @Singleton
+    OrphansDaoWrapper orphansDaoWrapper(LibraryDatabase libraryDatabase,
+                                        OrphansDao orphansDao,
+                                        FoldersDao foldersDao) {
+        return new OrphansDaoWrapper(libraryDatabase, orphansDao, foldersDao);
+    }
+
+    @Provides
+    @Nonnull
+    @Singleton
+    LibraryStatsChecker libraryStatsChecker(LibraryDatabase libraryDatabase) {
+        return new LibraryStatsChecker(libraryDatabase);
     }
 
     @Provides
@@ -163,8 +232,12 @@ public class DbModule {
     @Singleton
     PlayListsDaoWrapper playListsDaoWrapper(PlayListDao playListDao,
                                             CompositionsDao compositionsDao,
-                                            LibraryDatabase libraryDatabase) {
-        return new PlayListsDaoWrapper(playListDao, compositionsDao, libraryDatabase);
+                                            LibraryDatabase libraryDatabase,
+                                            CompositionChangesBus compositionChangesBus) {
+        return new PlayListsDaoWrapper(playListDao,
+                compositionsDao,
+                libraryDatabase,
+                compositionChangesBus);
     }
 
     @Provides
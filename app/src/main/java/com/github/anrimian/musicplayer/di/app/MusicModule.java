@@ -20,15 +20,18 @@ import com.github.anrimian.musicplayer.data.controllers.music.players.utils.ExoP
 import com.github.anrimian.musicplayer.data.controllers.music.players.utils.MediaPlayerDataSourceBuilder;
 import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.genre.GenresDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.ignoredfolders.IgnoredFoldersDao;
 import com.github.anrimian.musicplayer.data.database.dao.play_queue.PlayQueueDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.writes.DbWriteCoordinator;
 import com.github.anrimian.musicplayer.data.repositories.equalizer.EqualizerRepositoryImpl;
 import com.github.anrimian.musicplayer.data.repositories.equalizer.EqualizerStateRepository;
 import com.github.anrimian.musicplayer.data.repositories.library.LibraryRepositoryImpl;
 import com.github.anrimian.musicplayer.data.repositories.play_queue.PlayQueueRepositoryImpl;
+import com.github.anrimian.musicplayer.data.repositories.scanner.folders.IgnoredFoldersIndex;
 import com.github.anrimian.musicplayer.data.storage.files.StorageFilesDataSource;
 import com.github.anrimian.musicplayer.domain.controllers.MusicPlayerController;
 import com.github.anrimian.musicplayer.domain.controllers.SystemMusicController;
@@ -134,6 +137,7 @@ public class MusicModule {
                                                     PlayQueueRepository playQueueRepository,
                                                     LibraryRepository musicProviderRepository,
                                                     UiStateRepository uiStateRepository,
+                                                    MediaScannerRepository mediaScannerRepository,
                                                     SystemServiceController systemServiceController,
                                                     Analytics analytics) {
         return new LibraryPlayerInteractor(playerCoordinatorInteractor,
@@ -142,6 +146,7 @@ public class MusicModule {
                 playQueueRepository,
                 musicProviderRepository,
                 uiStateRepository,
+                mediaScannerRepository,
                 systemServiceController,
                 analytics);
     }
@@ -152,10 +157,14 @@ public class MusicModule {
     PlayQueueRepository playQueueRepository(PlayQueueDaoWrapper playQueueDao,
                                             SettingsRepository settingsPreferences,
                                             UiStateRepository uiStateRepository,
+                                            DbWriteCoordinator writeCoordinator,
+                                            CompositionChangesBus compositionChangesBus,
                                             @Named(DB_SCHEDULER) Scheduler dbScheduler) {
         return new PlayQueueRepositoryImpl(playQueueDao,
                 settingsPreferences,
                 uiStateRepository,
+                writeCoordinator,
+                compositionChangesBus,
                 dbScheduler);
     }
 
@@ -193,6 +202,7 @@ public class MusicModule {
                                               GenresDaoWrapper genresDao,
                                               FoldersDaoWrapper foldersDao,
                                               IgnoredFoldersDao ignoredFoldersDao,
+                                              IgnoredFoldersIndex ignoredFoldersIndex,
                                               SettingsRepository settingsPreferences,
                                               MediaScannerRepository mediaScannerRepository,
                                               @Named(IO_SCHEDULER) Scheduler scheduler) {
@@ -204,6 +214,7 @@ public class MusicModule {
                 genresDao,
                 foldersDao,
                 ignoredFoldersDao,
+                ignoredFoldersIndex,
                 settingsPreferences,
                 mediaScannerRepository,
                 scheduler);
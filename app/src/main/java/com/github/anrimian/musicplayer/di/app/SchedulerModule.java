@@ -27,6 +27,10 @@ public class SchedulerModule {
     //+play queue skipTo
     public static final String DB_SCHEDULER = "db_scheduler";
     public static final String SLOW_BG_SCHEDULER = "slow_bg_scheduler";
+    public static final String TAG_READ_SCHEDULER = "tag_read_scheduler";
+
+    //file reading is mostly io bound, but jaudiotagger also takes cpu and memory for each file
+    public static final int TAG_READ_PARALLELISM = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
 
     @Provides
     @NonNull
@@ -67,4 +71,14 @@ public class SchedulerModule {
     Scheduler provideSlowBgScheduler() {
         return Schedulers.from(Executors.newSingleThreadExecutor());
     }
+
+    @Provides
+    @NonNull
+    @Named(TAG_READ_SCHEDULER)
+    @Singleton
+    Scheduler provideTagReadScheduler() {
+        //interruptible, to cancel reads of stopped scan. Blocked file io ignores interrupt,
+        //so reads of stuck storage keep their workers and scanner stops the pass instead
+        return Schedulers.from(Executors.newFixedThreadPool(TAG_READ_PARALLELISM), true);
+    }
 }
@@ -3,6 +3,8 @@ package com.github.anrimian.musicplayer.di.app;
 import static com.github.anrimian.musicplayer.di.app.SchedulerModule.DB_SCHEDULER;
 import static com.github.anrimian.musicplayer.di.app.SchedulerModule.IO_SCHEDULER;
 import static com.github.anrimian.musicplayer.di.app.SchedulerModule.SLOW_BG_SCHEDULER;
+import static com.github.anrimian.musicplayer.di.app.SchedulerModule.TAG_READ_PARALLELISM;
+import static com.github.anrimian.musicplayer.di.app.SchedulerModule.TAG_READ_SCHEDULER;
 
 import android.content.Context;
 import android.os.Build;
@@ -10,21 +12,29 @@ import android.os.Environment;
 
 import com.github.anrimian.filesync.SyncInteractor;
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
-import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDao;
+import com.github.anrimian.musicplayer.data.database.LibraryStatsChecker;
 import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDaoWrapper;
-import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao;
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.StorageCompositionsBulkWriter;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.StorageCompositionsInserter;
 import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.genre.GenresDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.ignoredfolders.IgnoredFoldersDao;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.play_list.PlayListsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.writes.DbWriteCoordinator;
 import com.github.anrimian.musicplayer.data.repositories.library.edit.EditorRepositoryImpl;
 import com.github.anrimian.musicplayer.data.repositories.scanner.MediaScannerRepositoryImpl;
 import com.github.anrimian.musicplayer.data.repositories.scanner.StorageCompositionAnalyzer;
+import com.github.anrimian.musicplayer.data.repositories.scanner.files.FileScanCheckpointPreferences;
+import com.github.anrimian.musicplayer.data.repositories.scanner.files.FileScanJournal;
 import com.github.anrimian.musicplayer.data.repositories.scanner.files.FileScanner;
+import com.github.anrimian.musicplayer.data.repositories.scanner.folders.IgnoredFoldersIndex;
+import com.github.anrimian.musicplayer.data.repositories.scanner.storage.compositions.MediaStoreDeltaScanner;
+import com.github.anrimian.musicplayer.data.repositories.scanner.storage.compositions.MediaStoreScanState;
 import com.github.anrimian.musicplayer.data.repositories.scanner.storage.playlists.PlaylistFilesStorage;
 import com.github.anrimian.musicplayer.data.repositories.scanner.storage.playlists.StoragePlaylistsAnalyzer;
 import com.github.anrimian.musicplayer.data.storage.files.StorageFilesDataSource;
@@ -38,6 +48,7 @@ import com.github.anrimian.musicplayer.data.storage.source.CompositionSourceEdit
 import com.github.anrimian.musicplayer.data.storage.source.ContentSourceHelper;
 import com.github.anrimian.musicplayer.data.storage.source.FileSourceProvider;
 import com.github.anrimian.musicplayer.data.storage.source.StorageSourceRepositoryImpl;
+import com.github.anrimian.musicplayer.data.storage.source.tags.LightweightTagReader;
 import com.github.anrimian.musicplayer.domain.interactors.analytics.Analytics;
 import com.github.anrimian.musicplayer.domain.interactors.editor.EditorInteractor;
 import com.github.anrimian.musicplayer.domain.interactors.player.CompositionSourceInteractor;
@@ -95,8 +106,19 @@ public class StorageModule {
     @Singleton
     CompositionSourceEditor compositionSourceEditor(StorageMusicProvider musicProvider,
                                                     FileSourceProvider fileSourceProvider,
-                                                    ContentSourceHelper contentSourceHelper) {
-        return new CompositionSourceEditor(musicProvider, fileSourceProvider, contentSourceHelper);
+                                                    ContentSourceHelper contentSourceHelper,
+                                                    LightweightTagReader lightweightTagReader) {
+        return new CompositionSourceEditor(musicProvider,
+                fileSourceProvider,
+                contentSourceHelper,
+                lightweightTagReader);
+    }
+
+    @Provides
+    @Nonnull
+    @Singleton
+    LightweightTagReader lightweightTagReader() {
+        return new LightweightTagReader();
     }
 
     @Provides
@@ -160,17 +182,31 @@ public class StorageModule {
     @Nonnull
     @Singleton
     FileScanner fileScanner(CompositionsDaoWrapper compositionsDao,
+                            DbWriteCoordinator writeCoordinator,
                             CompositionSourceEditor compositionSourceEditor,
                             StateRepository stateRepository,
                             StorageSourceRepository storageSourceRepository,
                             Analytics analytics,
-                            @Named(SLOW_BG_SCHEDULER) Scheduler scheduler) {
+                            FileScanJournal fileScanJournal,
+                            @Named(SLOW_BG_SCHEDULER) Scheduler scheduler,
+                            @Named(TAG_READ_SCHEDULER) Scheduler readScheduler) {
         return new FileScanner(compositionsDao,
+                writeCoordinator,
                 compositionSourceEditor,
                 stateRepository,
                 storageSourceRepository,
                 analytics,
-                scheduler);
+                fileScanJournal,
+                scheduler,
+                readScheduler,
+                TAG_READ_PARALLELISM);
+    }
+
+    @Provides
+    @Nonnull
+    @Singleton
+    FileScanJournal fileScanJournal(Context context) {
+        return new FileScanJournal(new FileScanCheckpointPreferences(context));
     }
 
     @Provides
@@ -178,37 +214,61 @@ public class StorageModule {
     @Singleton
     MediaScannerRepository mediaScannerRepository(StorageMusicProvider musicProvider,
                                                   StoragePlayListsProvider playListsProvider,
-                                                  CompositionsDaoWrapper compositionsDao,
                                                   StateRepository stateRepository,
                                                   SettingsRepository settingsRepository,
-                                                  StorageCompositionAnalyzer compositionAnalyzer,
+                                                  MediaStoreDeltaScanner deltaScanner,
                                                   StoragePlaylistsAnalyzer storagePlaylistAnalyzer,
                                                   FileScanner fileScanner,
+                                                  LibraryStatsChecker statsChecker,
                                                   LoggerRepository loggerRepository,
                                                   Analytics analytics,
                                                   @Named(IO_SCHEDULER) Scheduler scheduler) {
         return new MediaScannerRepositoryImpl(musicProvider,
                 playListsProvider,
-                compositionsDao,
                 stateRepository,
                 settingsRepository,
-                compositionAnalyzer,
+                deltaScanner,
                 storagePlaylistAnalyzer,
                 fileScanner,
+                statsChecker,
                 loggerRepository,
                 analytics,
                 scheduler);
     }
 
+    @Provides
+    @Nonnull
+    @Singleton
+    MediaStoreDeltaScanner mediaStoreDeltaScanner(StorageMusicProvider musicProvider,
+                                                  CompositionsDaoWrapper compositionsDao,
+                                                  StorageCompositionAnalyzer compositionAnalyzer,
+                                                  MediaStoreScanState scanState) {
+        return new MediaStoreDeltaScanner(musicProvider, compositionsDao, compositionAnalyzer, scanState);
+    }
+
+    @Provides
+    @Nonnull
+    @Singleton
+    MediaStoreScanState mediaStoreScanState(Context context) {
+        return new MediaStoreScanState(context);
+    }
+
+    @Provides
+    @Nonnull
+    @Singleton
+    IgnoredFoldersIndex ignoredFoldersIndex(IgnoredFoldersDao ignoredFoldersDao) {
+        return new IgnoredFoldersIndex(ignoredFoldersDao);
+    }
+
     @Provides
     @Nonnull
     StorageCompositionAnalyzer compositionAnalyzer(CompositionsDaoWrapper compositionsDao,
-                                                   IgnoredFoldersDao ignoredFoldersDao,
+                                                   IgnoredFoldersIndex ignoredFoldersIndex,
                                                    StateRepository stateRepository,
                                                    StorageCompositionsInserter compositionsInserter) {
         return new StorageCompositionAnalyzer(
                 compositionsDao,
-                ignoredFoldersDao,
+                ignoredFoldersIndex,
                 stateRepository,
                 compositionsInserter,
                 Environment.getExternalStorageDirectory().getAbsolutePath()
@@ -236,18 +296,27 @@ public class StorageModule {
                                                      CompositionsDao compositionsDao,
                                                      CompositionsDaoWrapper compositionsDaoWrapper,
                                                      FoldersDaoWrapper foldersDao,
-                                                     ArtistsDao artistsDao,
                                                      ArtistsDaoWrapper artistsDaoWrapper,
-                                                     AlbumsDao albumsDao,
-                                                     AlbumsDaoWrapper albumsDaoWrapper) {
+                                                     AlbumsDaoWrapper albumsDaoWrapper,
+                                                     OrphansDaoWrapper orphansDaoWrapper,
+                                                     StorageCompositionsBulkWriter bulkWriter,
+                                                     CompositionChangesBus compositionChangesBus) {
         return new StorageCompositionsInserter(libraryDatabase,
                 compositionsDao,
                 compositionsDaoWrapper,
                 foldersDao,
-                artistsDao,
                 artistsDaoWrapper,
-                albumsDao,
-                albumsDaoWrapper);
+                albumsDaoWrapper,
+                orphansDaoWrapper,
+                bulkWriter,
+                compositionChangesBus);
+    }
+
+    @Provides
+    @Nonnull
+    StorageCompositionsBulkWriter compositionsBulkWriter(LibraryDatabase libraryDatabase,
+                                                         FoldersDaoWrapper foldersDao) {
+        return new StorageCompositionsBulkWriter(libraryDatabase, foldersDao);
     }
 
     @Provides
@@ -24,7 +24,9 @@ import com.github.anrimian.musicplayer.domain.models.composition.content.Unsuppo
 import com.github.anrimian.musicplayer.domain.models.composition.source.CompositionSource
 import com.github.anrimian.musicplayer.domain.models.composition.source.LibraryCompositionSource
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueEvent
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueChange
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueList
 import com.github.anrimian.musicplayer.domain.models.player.PlayerState
 import com.github.anrimian.musicplayer.domain.models.player.modes.RepeatMode
 import com.github.anrimian.musicplayer.domain.models.player.service.MusicNotificationSetting
@@ -61,9 +63,12 @@ import com.github.anrimian.musicplayer.ui.utils.getParcelable
 import com.github.anrimian.musicplayer.ui.utils.pIntentFlag
 import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.core.Scheduler
+import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.disposables.CompositeDisposable
 import io.reactivex.rxjava3.disposables.Disposable
 import java.util.concurrent.TimeUnit
+import kotlin.math.max
+import kotlin.math.min
 
 class MediaSessionHandler(
     private val context: Context,
@@ -285,7 +290,7 @@ class MediaSessionHandler(
 
     private fun subscribeOnPlayQueue() {
         mediaSessionDisposable.add(Observable.combineLatest(
-            libraryPlayerInteractor.getPlayQueueObservable().toObservable(),
+            getSessionQueueObservable(),
             playerInteractor.getCurrentSourceObservable()
                 .map { source -> source.value is LibraryCompositionSource }
                 .distinctUntilChanged(),
@@ -299,11 +304,51 @@ class MediaSessionHandler(
         mediaSession?.setQueue(playQueue)
     }
 
+    //session queue contains only window of items around current item
+    private fun getSessionQueueObservable(): Observable<List<MediaSessionCompat.QueueItem>> {
+        return Observable.defer {
+            val sessionQueue = PlayQueueList(this::toSessionQueueItem)
+            var currentPosition = 0
+            Observable.merge<Any>(
+                libraryPlayerInteractor.getPlayQueueChangesObservable(),
+                libraryPlayerInteractor.getCurrentItemPositionObservable().toObservable()
+            ).observeOn(ioScheduler)
+                .concatMapSingle { event ->
+                    when (event) {
+                        is PlayQueueChange -> sessionQueue.apply(event)
+                        is Int -> currentPosition = event
+                    }
+                    getSessionQueueWindow(sessionQueue, currentPosition)
+                }
+                .distinctUntilChanged()
+        }
+    }
+
+    private fun getSessionQueueWindow(
+        sessionQueue: PlayQueueList<MediaSessionCompat.QueueItem>,
+        position: Int,
+    ): Single<List<MediaSessionCompat.QueueItem>> {
+        val from = max(0, position - SESSION_QUEUE_WINDOW_SIZE / 2)
+        val to = min(sessionQueue.getSize(), from + SESSION_QUEUE_WINDOW_SIZE)
+        val itemIds = sessionQueue.getMissingItemIds(from, to)
+        val version = sessionQueue.getItemsVersion()
+        val itemsSingle = if (itemIds.isEmpty()) {
+            Single.just(emptyList<PlayQueueItem>())
+        } else {
+            libraryPlayerInteractor.getPlayQueueItems(itemIds)
+        }
+        return itemsSingle.map { items ->
+            sessionQueue.setItems(items, version)
+            sessionQueue.retainItems(from, to)
+            (from until to).mapNotNull(sessionQueue::getItem)
+        }
+    }
+
     private fun toSessionQueueItems(
-        playQueue: List<PlayQueueItem>,
+        playQueue: List<MediaSessionCompat.QueueItem>,
         isLibrarySource: Boolean,
     ): List<MediaSessionCompat.QueueItem> {
-        return if (isLibrarySource) playQueue.map(this::toSessionQueueItem) else emptyList()
+        return if (isLibrarySource) playQueue else emptyList()
     }
 
     private fun toSessionQueueItem(item: PlayQueueItem): MediaSessionCompat.QueueItem {
@@ -610,6 +655,8 @@ class MediaSessionHandler(
         const val REWIND_ACTION_ID = "rewind_action_id"
 
         const val PLAY_EVENT_LOCK_WINDOW_MILLIS = 15L
+
+        const val SESSION_QUEUE_WINDOW_SIZE = 100
     }
 
 }
\ No newline at end of file
@@ -25,6 +25,7 @@ import com.github.anrimian.musicplayer.ui.notifications.NotificationsDisplayer
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers
 import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.disposables.CompositeDisposable
+import java.util.concurrent.TimeUnit
 
 /**
  * Created on 03.11.2017.
@@ -84,6 +85,11 @@ class MusicService : Service() {
         super.onDestroy()
         Components.getAppComponent().mediaSessionHandler().dispatchServiceDestroyed()
         serviceDisposable.dispose()
+        //playback is over, write pending track position before process can be stopped.
+        //Wait on db scheduler, service is not kept alive after destroy to complete it async
+        Components.getAppComponent().dbWriteCoordinator()
+            .flush()
+            .blockingAwait(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
     }
 
     fun startForeground() {
@@ -274,5 +280,7 @@ class MusicService : Service() {
         const val REQUEST_CODE = "request_code"
         const val START_FOREGROUND_SIGNAL = "start_foreground_signal"
         const val PLAY_DELAY_MILLIS = "play_delay"
+
+        private const val FLUSH_TIMEOUT_MILLIS = 2000L
     }
 }
\ No newline at end of file
@@ -7,6 +7,8 @@ import android.view.ViewGroup
 import android.widget.Toast
 import androidx.fragment.app.Fragment
 import com.github.anrimian.musicplayer.R
+import com.github.anrimian.musicplayer.data.database.profiler.QueryProfiler
+import com.github.anrimian.musicplayer.data.database.writes.DbWriteCoordinator
 import com.github.anrimian.musicplayer.databinding.FragmentAboutBinding
 import com.github.anrimian.musicplayer.di.Components
 import com.github.anrimian.musicplayer.ui.common.toolbar.AdvancedToolbar
@@ -22,6 +24,8 @@ class AboutAppFragment : Fragment(),
     private lateinit var binding: FragmentAboutBinding
     
     private lateinit var fileLog: FileLog
+    private lateinit var queryProfiler: QueryProfiler
+    private lateinit var dbWriteCoordinator: DbWriteCoordinator
     
     override fun onCreateView(
         inflater: LayoutInflater,
@@ -39,22 +43,18 @@ class AboutAppFragment : Fragment(),
 
         val appComponent = Components.getAppComponent()
         fileLog = appComponent.fileLog()
+        queryProfiler = appComponent.queryProfiler()
+        dbWriteCoordinator = appComponent.dbWriteCoordinator()
         val appLogger = appComponent.appLogger()
         val loggerRepository = appComponent.loggerRepository()
 
-        val isLogExists = fileLog.isFileExists
-        setLogActionsVisibility(isLogExists)
-        if (isLogExists) {
-            binding.tvLogInfo.text = getString(
-                R.string.log_info_text,
-                fileLog.fileSize / 1024
-            )
-        }
+        showLogInfo()
         appComponent.aboutTextBinder().bind(this, binding.tvAbout)
 
         binding.btnDelete.setOnClickListener { deleteLogFile() }
         binding.btnView.setOnClickListener { appLogger.startViewLogScreen(requireActivity()) }
         binding.btnSend.setOnClickListener { appLogger.startSendLogScreen(requireActivity()) }
+        binding.btnWriteDbReport.setOnClickListener { writeDatabaseReport() }
 
         binding.cbShowReportDialogOnStart.isChecked = loggerRepository.isReportDialogOnStartEnabled()
         ViewUtils.onCheckChanged(binding.cbShowReportDialogOnStart, loggerRepository::showReportDialogOnStart)
@@ -80,6 +80,24 @@ class AboutAppFragment : Fragment(),
         Toast.makeText(requireContext(), R.string.log_file_deleted, Toast.LENGTH_SHORT).show()
     }
 
+    private fun writeDatabaseReport() {
+        fileLog.writeMessage(queryProfiler.getReport())
+        fileLog.writeMessage(dbWriteCoordinator.getReport())
+        showLogInfo()
+        Toast.makeText(requireContext(), R.string.database_report_written, Toast.LENGTH_SHORT).show()
+    }
+
+    private fun showLogInfo() {
+        val isLogExists = fileLog.isFileExists
+        setLogActionsVisibility(isLogExists)
+        if (isLogExists) {
+            binding.tvLogInfo.text = getString(
+                R.string.log_info_text,
+                fileLog.fileSize / 1024
+            )
+        }
+    }
+
     private fun setLogActionsVisibility(isLogExists: Boolean) {
         val logActionsVisibility = if (isLogExists) View.VISIBLE else View.GONE
         binding.logActionsContainer.visibility = logActionsVisibility
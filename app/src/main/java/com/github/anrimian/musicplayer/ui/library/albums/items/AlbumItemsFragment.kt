@@ -106,6 +106,7 @@ class AlbumItemsFragment : BaseLibraryCompositionsFragment(), AlbumItemsView,
 
         layoutManager = LinearLayoutManager(context)
         binding.recyclerView.layoutManager = layoutManager
+        attachVisibleItemsListener(binding.recyclerView, layoutManager)
         val callback = ShortSwipeCallback(requireContext(),
             R.drawable.ic_play_next,
             R.string.play_next,
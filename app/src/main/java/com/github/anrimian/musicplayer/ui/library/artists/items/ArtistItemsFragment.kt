@@ -128,6 +128,7 @@ class ArtistItemsFragment : BaseLibraryCompositionsFragment(), ArtistItemsView,
         binding.recyclerView.adapter = ConcatAdapter(albumsHeaderWrapper, adapter)
         layoutManager = LinearLayoutManager(context)
         binding.recyclerView.layoutManager = layoutManager
+        attachVisibleItemsListener(binding.recyclerView, layoutManager) { albumsHeaderWrapper.itemCount }
         val callback = ShortSwipeCallback(
             requireContext(),
             R.drawable.ic_play_next,
@@ -3,6 +3,8 @@ package com.github.anrimian.musicplayer.ui.library.common.compositions
 import android.view.MenuItem
 import android.view.View
 import androidx.annotation.MenuRes
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
 import com.github.anrimian.musicplayer.R
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
 import com.github.anrimian.musicplayer.ui.common.dialogs.composition.showCompositionPopupMenu
@@ -15,6 +17,29 @@ abstract class BaseLibraryCompositionsFragment : BaseLibraryFragment() {
     
     abstract override fun getLibraryPresenter(): BaseLibraryCompositionsPresenter<*, *>
 
+    /**
+     * Reports compositions on screen to presenter when scroll stops
+     * @param headerItemsCount count of adapter items before compositions
+     */
+    protected fun attachVisibleItemsListener(
+        recyclerView: RecyclerView,
+        layoutManager: LinearLayoutManager,
+        headerItemsCount: () -> Int = { 0 }
+    ) {
+        recyclerView.addOnScrollListener(object : RecyclerView.OnScrollListener() {
+            override fun onScrollStateChanged(recyclerView: RecyclerView, newState: Int) {
+                super.onScrollStateChanged(recyclerView, newState)
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    val offset = headerItemsCount()
+                    getLibraryPresenter().onVisibleItemsChanged(
+                        layoutManager.findFirstVisibleItemPosition() - offset,
+                        layoutManager.findLastVisibleItemPosition() - offset
+                    )
+                }
+            }
+        })
+    }
+
     protected fun onActionModeItemClicked(menuItem: MenuItem) {
         when (menuItem.itemId) {
             R.id.menu_play -> getLibraryPresenter().onPlayAllSelectedClicked()
@@ -21,6 +21,8 @@ import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.core.Scheduler
 import io.reactivex.rxjava3.disposables.Disposable
 import java.util.LinkedList
+import kotlin.math.max
+import kotlin.math.min
 
 abstract class BaseLibraryCompositionsPresenter<C : Composition, V : BaseLibraryCompositionsView<C>>(
     private val displaySettingsInteractor: DisplaySettingsInteractor,
@@ -60,6 +62,15 @@ abstract class BaseLibraryCompositionsPresenter<C : Composition, V : BaseLibrary
         saveListPosition(listPosition)
     }
 
+    //read actual tags and covers of compositions on screen first
+    fun onVisibleItemsChanged(firstPosition: Int, lastPosition: Int) {
+        val from = max(0, firstPosition)
+        val to = min(compositions.size, lastPosition + 1)
+        if (from < to) {
+            playerInteractor.setVisibleItemsScanPriority(compositions.subList(from, to).map(Composition::id))
+        }
+    }
+
     fun onTryAgainLoadCompositionsClicked() {
         subscribeOnCompositions()
     }
@@ -298,6 +309,8 @@ abstract class BaseLibraryCompositionsPresenter<C : Composition, V : BaseLibrary
                 if (listPosition != null) {
                     viewState.restoreListPosition(listPosition)
                 }
+                val firstPosition = listPosition?.position ?: 0
+                onVisibleItemsChanged(firstPosition, firstPosition + FIRST_SCREEN_ITEMS_COUNT)
             }
 
             if (RxUtils.isInactive(currentCompositionDisposable)) {
@@ -325,4 +338,8 @@ abstract class BaseLibraryCompositionsPresenter<C : Composition, V : BaseLibrary
     protected abstract fun getSavedListPosition(): ListPosition?
     protected abstract fun saveListPosition(listPosition: ListPosition)
 
+    private companion object {
+        const val FIRST_SCREEN_ITEMS_COUNT = 15
+    }
+
 }
\ No newline at end of file
@@ -82,6 +82,7 @@ class LibraryCompositionsFragment : BaseLibraryCompositionsFragment(), LibraryCo
 
         layoutManager = LinearLayoutManager(context)
         binding.rvCompositions.layoutManager = layoutManager
+        attachVisibleItemsListener(binding.rvCompositions, layoutManager)
         RecyclerViewUtils.attachFastScroller(binding.rvCompositions, true)
         adapter = CompositionsAdapter(
             this,
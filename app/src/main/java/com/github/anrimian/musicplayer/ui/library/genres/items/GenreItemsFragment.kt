@@ -102,6 +102,7 @@ class GenreItemsFragment : BaseLibraryCompositionsFragment(), GenreItemsView,
         binding.recyclerView.adapter = adapter
         layoutManager = LinearLayoutManager(context)
         binding.recyclerView.layoutManager = layoutManager
+        attachVisibleItemsListener(binding.recyclerView, layoutManager)
 
         val callback = ShortSwipeCallback(requireContext(),
             R.drawable.ic_play_next,
@@ -17,7 +17,9 @@ import com.github.anrimian.musicplayer.databinding.FragmentPlayQueueBinding
 import com.github.anrimian.musicplayer.di.Components
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
 import com.github.anrimian.musicplayer.domain.models.composition.DeletedComposition
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueChange
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueList
 import com.github.anrimian.musicplayer.ui.common.dialogs.composition.showCompositionPopupMenu
 import com.github.anrimian.musicplayer.ui.common.dialogs.shareComposition
 import com.github.anrimian.musicplayer.ui.common.dialogs.showConfirmDeleteDialog
@@ -106,10 +108,10 @@ class PlayQueueFragment: BaseLibraryFragment(), PlayQueueView {
         binding.rvPlayQueue.layoutManager = playQueueLayoutManager
         playQueueAdapter = PlayQueueAdapter(
             this,
-            binding.rvPlayQueue,
             presenter::onQueueItemClicked,
             this::onPlayItemMenuClicked,
-            presenter::onQueueItemIconClicked
+            presenter::onQueueItemIconClicked,
+            presenter::onItemRequested
         )
 
         binding.rvPlayQueue.adapter = playQueueAdapter
@@ -230,13 +232,20 @@ class PlayQueueFragment: BaseLibraryFragment(), PlayQueueView {
         binding.progressStateView.showMessage(errorCommand.message, true)
     }
 
-    override fun updatePlayQueue(items: List<PlayQueueItem>?) {
-        playQueueAdapter.submitList(items)
+    override fun showPlayQueue(playQueue: PlayQueueList<PlayQueueItem>) {
+        playQueueAdapter.setPlayQueue(playQueue)
+    }
+
+    override fun notifyPlayQueueChanged(change: PlayQueueChange) {
+        playQueueAdapter.notifyPlayQueueChanged(change)
+    }
+
+    override fun notifyItemsChanged(position: Int, count: Int) {
+        playQueueAdapter.notifyItemRangeChanged(position, count)
     }
 
     override fun scrollQueueToPosition(position: Int, isSmoothScrollAllowed: Boolean) {
-        //hypothetically mis scroll still can happen when we get 2 fast list updates with scroll
-        playQueueAdapter.runSafeAction { scrollToPosition(position, isSmoothScrollAllowed) }
+        scrollToPosition(position, isSmoothScrollAllowed)
     }
 
     override fun showFilesSyncState(states: Map<Long, FileSyncState>) {
@@ -1,28 +1,31 @@
 package com.github.anrimian.musicplayer.ui.player_screen.queue
 
 import com.github.anrimian.filesync.SyncInteractor
+import com.github.anrimian.musicplayer.data.models.exceptions.TooManyPlayListItemsException
 import com.github.anrimian.musicplayer.data.utils.rx.retryWithDelay
 import com.github.anrimian.musicplayer.domain.Constants.NO_POSITION
+import com.github.anrimian.musicplayer.domain.Constants.PLAY_LIST_MAX_ITEMS_COUNT
 import com.github.anrimian.musicplayer.domain.interactors.player.LibraryPlayerInteractor
 import com.github.anrimian.musicplayer.domain.interactors.player.PlayerScreenInteractor
 import com.github.anrimian.musicplayer.domain.interactors.playlists.PlayListsInteractor
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueChange
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueData
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueEvent
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueList
 import com.github.anrimian.musicplayer.domain.models.playlist.PlayList
 import com.github.anrimian.musicplayer.domain.models.sync.FileKey
-import com.github.anrimian.musicplayer.domain.utils.ListUtils
 import com.github.anrimian.musicplayer.domain.utils.rx.RxUtils
 import com.github.anrimian.musicplayer.ui.common.error.parser.ErrorParser
 import com.github.anrimian.musicplayer.ui.library.common.library.BaseLibraryPresenter
-import com.github.anrimian.musicplayer.ui.utils.views.recycler_view.ListDragFilter
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Scheduler
 import io.reactivex.rxjava3.disposables.Disposable
-import java.util.Collections
 import java.util.LinkedList
 import java.util.concurrent.TimeUnit
+import kotlin.math.max
+import kotlin.math.min
 
 class PlayQueuePresenter(
     private val playerInteractor: LibraryPlayerInteractor,
@@ -38,13 +41,15 @@ class PlayQueuePresenter(
     errorParser
 ) {
 
-    private val listDragFilter = ListDragFilter()
-
     private var currentQueueData: PlayQueueData? = null
     private var playQueueDisposable: Disposable? = null
     private var positionDisposable: Disposable? = null
+    private var itemsDisposable: Disposable? = null
 
-    private var playQueue: List<PlayQueueItem> = ArrayList()
+    //queue built from received changes, items are read only around shown position
+    private val playQueue = PlayQueueList<PlayQueueItem> { item -> item }
+    private var itemsWindowPosition = 0
+    private var lastItemsRequest: ItemsRequest? = null
     private var currentItem: PlayQueueItem? = null
     private var currentPosition = NO_POSITION
 
@@ -108,7 +113,13 @@ class PlayQueuePresenter(
     }
 
     fun onItemSwipedToDelete(position: Int) {
-        deletePlayQueueItem(playQueue[position])
+        val item = playQueue.getItem(position) ?: return
+        deletePlayQueueItem(item)
+    }
+
+    fun onItemRequested(position: Int) {
+        itemsWindowPosition = position
+        loadItems()
     }
 
     fun onItemMoved(from: Int, to: Int) {
@@ -148,8 +159,14 @@ class PlayQueuePresenter(
     }
 
     fun onPlayListForAddingCreated(playList: PlayList) {
-        val compositionsToAdd = ArrayList(playQueue)
-        performAddToPlaylist(compositionsToAdd, playList) {}
+        if (playQueue.getSize() > PLAY_LIST_MAX_ITEMS_COUNT) {
+            onDefaultError(TooManyPlayListItemsException())
+            return
+        }
+        val itemIds = playQueue.getItemIds()
+        val compositionsFetcher = playerInteractor.getPlayQueueItems(itemIds)
+            .map { items -> toQueueOrder(itemIds, items) }
+        performAddToPlaylist(compositionsFetcher, playList) {}
     }
 
     fun onClearPlayQueueClicked() {
@@ -162,18 +179,23 @@ class PlayQueuePresenter(
     }
 
     private fun swapItems(from: Int, to: Int) {
-        if (!ListUtils.isIndexInRange(playQueue, from) || !ListUtils.isIndexInRange(playQueue, to)) {
+        if (from !in 0 until playQueue.getSize() || to !in 0 until playQueue.getSize()) {
             return
         }
-        val fromItem = playQueue[from]
-        val toItem = playQueue[to]
-        Collections.swap(playQueue, from, to)
+        val fromItem = playQueue.getItem(from) ?: return
+        val toItem = playQueue.getItem(to) ?: return
+        //swap of adjacent items is received as move of upper item down
+        playQueue.moveLocally(min(from, to), max(from, to))
         viewState.notifyItemMoved(from, to)
 
-        listDragFilter.increaseEventsToSkip()
         playerInteractor.swapItems(fromItem, toItem).justSubscribe(this::onDefaultError)
     }
 
+    private fun toQueueOrder(itemIds: LongArray, items: List<PlayQueueItem>): List<Composition> {
+        val itemsMap = items.associateBy(PlayQueueItem::itemId)
+        return itemIds.mapNotNull(itemsMap::get)
+    }
+
     private fun deletePreparedCompositions(compositionsToDelete: List<Composition>) {
         lastDeleteAction = playerInteractor.deleteCompositions(compositionsToDelete)
             .observeOn(uiScheduler)
@@ -217,10 +239,6 @@ class PlayQueuePresenter(
 
     private fun onQueueDataReceived(data: PlayQueueData) {
         if (currentQueueData != data) {
-            //fast clear list to prevent list update calculation for new queues
-            if (currentQueueData != null) {
-                viewState.updatePlayQueue(null)
-            }
             currentQueueData = data
             subscribeOnPlayQueue()
         }
@@ -229,18 +247,69 @@ class PlayQueuePresenter(
     private fun subscribeOnPlayQueue() {
         RxUtils.dispose(positionDisposable, presenterDisposable)
         RxUtils.dispose(playQueueDisposable, presenterDisposable)
-        playQueueDisposable = playerInteractor.getPlayQueueObservable()
+        RxUtils.dispose(itemsDisposable, presenterDisposable)
+        playQueue.clear()
+        lastItemsRequest = null
+        viewState.showPlayQueue(playQueue)
+        playQueueDisposable = playerInteractor.getPlayQueueChangesObservable()
             .observeOn(uiScheduler)
-            .filter(listDragFilter::filterListEmitting)
-            .subscribe(this::onPlayQueueReceived, this::onPlayQueueReceivingError)
+            .subscribe(this::onPlayQueueChangeReceived, this::onPlayQueueReceivingError)
         presenterDisposable.add(playQueueDisposable!!)
     }
 
-    private fun onPlayQueueReceived(list: List<PlayQueueItem>) {
-        playQueue = list
-        viewState.updatePlayQueue(list)
-        viewState.showList(list.size)
+    private fun onPlayQueueChangeReceived(change: PlayQueueChange) {
+        val isChanged = try {
+            playQueue.apply(change)
+        } catch (e: IllegalStateException) {
+            //queue was changed before moved items were confirmed, start from actual snapshot
+            subscribeOnPlayQueue()
+            return
+        }
+        if (!isChanged) {
+            return
+        }
+        viewState.notifyPlayQueueChanged(change)
+        viewState.showList(playQueue.getSize())
         subscribeOnCurrentPosition()
+        loadItems()
+    }
+
+    //items are read only for window around shown position, other items are placeholders
+    private fun loadItems() {
+        if (RxUtils.isActive(itemsDisposable)) {
+            return
+        }
+        val from = max(0, itemsWindowPosition - ITEMS_WINDOW_SIZE / 2)
+        val to = min(playQueue.getSize(), from + ITEMS_WINDOW_SIZE)
+        //items which are not in database anymore are not requested again until queue changes
+        val request = ItemsRequest(from, to, playQueue.getSequence())
+        if (request == lastItemsRequest) {
+            return
+        }
+        lastItemsRequest = request
+        val itemIds = playQueue.getMissingItemIds(from, to)
+        if (itemIds.isEmpty()) {
+            return
+        }
+        val version = playQueue.getItemsVersion()
+        itemsDisposable = playerInteractor.getPlayQueueItems(itemIds)
+            .observeOn(uiScheduler)
+            .subscribe({ items -> onItemsReceived(items, version) }, this::onPlayQueueReceivingError)
+        presenterDisposable.add(itemsDisposable!!)
+    }
+
+    private fun onItemsReceived(items: List<PlayQueueItem>, version: Int) {
+        if (playQueue.setItems(items, version)) {
+            //positions could be shifted while items were read, so actual window is shown again
+            val from = max(0, itemsWindowPosition - ITEMS_WINDOW_SIZE / 2)
+            val to = min(playQueue.getSize(), from + ITEMS_WINDOW_SIZE)
+            playQueue.retainItems(from - ITEMS_WINDOW_SIZE, to + ITEMS_WINDOW_SIZE)
+            viewState.notifyItemsChanged(from, to - from)
+            boostScanOfNearestItems(currentPosition)
+        } else {
+            lastItemsRequest = null
+        }
+        loadItems()
     }
 
     private fun onPlayQueueReceivingError(throwable: Throwable) {
@@ -266,7 +335,23 @@ class PlayQueuePresenter(
         val firstReceive = currentPosition == NO_POSITION
         if (!isDragging && currentPosition != position) {
             currentPosition = position
+            itemsWindowPosition = position
             viewState.scrollQueueToPosition(position, !firstReceive)
+            boostScanOfNearestItems(position)
+            loadItems()
+        }
+    }
+
+    //read actual tags and covers of current and upcoming items first
+    private fun boostScanOfNearestItems(position: Int) {
+        if (position !in 0 until playQueue.getSize()) {
+            return
+        }
+        val from = max(0, position - SCAN_PRIORITY_ITEMS_BEFORE)
+        val to = min(playQueue.getSize(), position + SCAN_PRIORITY_ITEMS_AFTER + 1)
+        val compositionIds = (from until to).mapNotNull { i -> playQueue.getItem(i)?.id }
+        if (compositionIds.isNotEmpty()) {
+            playerScreenInteractor.setPlayQueueScanPriority(compositionIds)
         }
     }
 
@@ -283,4 +368,12 @@ class PlayQueuePresenter(
         }
     }
 
-}
\ No newline at end of file
+    private data class ItemsRequest(val from: Int, val to: Int, val sequence: Long)
+
+    private companion object {
+        const val SCAN_PRIORITY_ITEMS_BEFORE = 2
+        const val SCAN_PRIORITY_ITEMS_AFTER = 10
+        const val ITEMS_WINDOW_SIZE = 200
+    }
+
+}
@@ -3,7 +3,9 @@ package com.github.anrimian.musicplayer.ui.player_screen.queue
 import com.github.anrimian.filesync.models.state.file.FileSyncState
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
 import com.github.anrimian.musicplayer.domain.models.composition.DeletedComposition
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueChange
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueList
 import com.github.anrimian.musicplayer.ui.common.error.ErrorCommand
 import com.github.anrimian.musicplayer.ui.library.common.library.BaseLibraryView
 import com.github.anrimian.musicplayer.ui.utils.moxy.SingleOneExecution
@@ -49,7 +51,13 @@ interface PlayQueueView : BaseLibraryView {
     fun showListError(errorCommand: ErrorCommand)
 
     @AddToEndSingle
-    fun updatePlayQueue(items: List<PlayQueueItem>?)
+    fun showPlayQueue(playQueue: PlayQueueList<PlayQueueItem>)
+
+    @Skip
+    fun notifyPlayQueueChanged(change: PlayQueueChange)
+
+    @Skip
+    fun notifyItemsChanged(position: Int, count: Int)
 
     @SingleOneExecution
     fun scrollQueueToPosition(position: Int, isSmoothScrollAllowed: Boolean)
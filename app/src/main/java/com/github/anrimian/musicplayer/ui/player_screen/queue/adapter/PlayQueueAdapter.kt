@@ -3,38 +3,48 @@ package com.github.anrimian.musicplayer.ui.player_screen.queue.adapter
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
+import androidx.lifecycle.DefaultLifecycleObserver
 import androidx.lifecycle.LifecycleOwner
 import androidx.recyclerview.widget.RecyclerView
 import com.github.anrimian.filesync.models.state.file.FileSyncState
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueChange
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
-import com.github.anrimian.musicplayer.domain.models.utils.PlayQueueItemHelper
-import com.github.anrimian.musicplayer.ui.utils.views.recycler_view.diff_utils.SimpleDiffItemCallback
-import com.github.anrimian.musicplayer.ui.utils.views.recycler_view.mvp.MvpDiffAdapter
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueList
 
 /**
  * Created on 31.10.2017.
+ *
+ * Shows [PlayQueueList] of presenter, list changes are notified with the same patches which
+ * were applied to it, so no diff of lists is calculated. Items which are not read yet are shown
+ * as placeholders and requested with [onItemRequestedListener].
  */
 class PlayQueueAdapter(
     lifecycleOwner: LifecycleOwner,
-    recyclerView: RecyclerView,
     private val onCompositionClickListener: (Int, PlayQueueItem) -> Unit,
     private val menuClickListener: (View, PlayQueueItem) -> Unit,
-    private val iconClickListener: (Int, PlayQueueItem) -> Unit
-) : MvpDiffAdapter<PlayQueueItem, PlayQueueViewHolder>(
-    lifecycleOwner,
-    recyclerView,
-    SimpleDiffItemCallback(PlayQueueItemHelper::areSourcesTheSame, PlayQueueItemHelper::getChangePayload),
-    detectMoves = false//performance optimization, seems queue diff can have too many moves
-) {
+    private val iconClickListener: (Int, PlayQueueItem) -> Unit,
+    private val onItemRequestedListener: (Int) -> Unit
+) : RecyclerView.Adapter<PlayQueueViewHolder>() {
 
-    private var isListAccessible = true
-    private var listDelayedAction: (() -> Unit)? = null
+    private val viewHolders = HashSet<PlayQueueViewHolder>()
+
+    private var playQueue: PlayQueueList<PlayQueueItem>? = null
 
     private var currentItem: PlayQueueItem? = null
     private var play = false
     private var isCoversEnabled = false
     private var syncStates = emptyMap<Long, FileSyncState>()
 
+    init {
+        lifecycleOwner.lifecycle.addObserver(object : DefaultLifecycleObserver {
+            override fun onDestroy(owner: LifecycleOwner) {
+                viewHolders.forEach(PlayQueueViewHolder::release)
+            }
+        })
+    }
+
+    override fun getItemCount() = playQueue?.getSize() ?: 0
+
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): PlayQueueViewHolder {
         return PlayQueueViewHolder(
             LayoutInflater.from(parent.context),
@@ -46,9 +56,17 @@ class PlayQueueAdapter(
     }
 
     override fun onBindViewHolder(holder: PlayQueueViewHolder, position: Int) {
-        super.onBindViewHolder(holder, position)
+        if (viewHolders.contains(holder)) {
+            holder.release()
+        }
+        viewHolders.add(holder)
 
-        val item = getItem(position)
+        val item = playQueue!!.getItem(position)
+        if (item == null) {
+            holder.bindPlaceholder()
+            onItemRequestedListener(position)
+            return
+        }
         holder.bind(item, isCoversEnabled)
 
         val isCurrentItem = item == currentItem
@@ -57,46 +75,31 @@ class PlayQueueAdapter(
         holder.setFileSyncStates(syncStates)
     }
 
-    override fun onBindViewHolder(
-        holder: PlayQueueViewHolder,
-        position: Int,
-        payloads: List<Any>
-    ) {
-        if (payloads.isEmpty()) {
-            onBindViewHolder(holder, position)
-        } else {
-            holder.update(getItem(position), payloads)
-        }
+    override fun onViewRecycled(holder: PlayQueueViewHolder) {
+        super.onViewRecycled(holder)
+        viewHolders.remove(holder)
+        holder.release()
     }
 
-    override fun submitList(list: List<PlayQueueItem>?) {
-        isListAccessible = false
-        super.submitList(list) {
-            listDelayedAction?.invoke()
-            listDelayedAction = null
-            isListAccessible = true
-        }
+    fun setPlayQueue(playQueue: PlayQueueList<PlayQueueItem>?) {
+        this.playQueue = playQueue
+        notifyDataSetChanged()
     }
 
-    /**
-     * When submitList() is in progress, scrolling to position is bugged.
-     * It doesn't scroll and then RecyclerView wrongly thinks that we're on the target position.
-     * So we delay possible action when submitList() is running.
-     * Helpful only for single submitList() call case.
-     *  + can be solved by using call counter(activeSubmitsCount) instead of boolean flag.
-     *  + reproduce problem and implement
-     */
-    fun runSafeAction(action: () -> Unit) {
-        if (isListAccessible) {
-            action.invoke()
-        } else {
-            this.listDelayedAction = action
+    fun notifyPlayQueueChanged(change: PlayQueueChange) {
+        when (change) {
+            is PlayQueueChange.Snapshot -> notifyDataSetChanged()
+            is PlayQueueChange.Insert -> notifyItemRangeInserted(change.position, change.itemIds.size)
+            is PlayQueueChange.Remove -> notifyItemRangeRemoved(change.position, change.count)
+            is PlayQueueChange.Move -> notifyItemMoved(change.from, change.to)
+            //updated items are shown when they are read again
+            is PlayQueueChange.Update -> {}
         }
     }
 
     fun onCurrentItemChanged(currentItem: PlayQueueItem) {
         this.currentItem = currentItem
-        forEachHolder { holder ->
+        viewHolders.forEach { holder ->
             val isCurrentItem = holder.getPlayQueueItem() == currentItem
             holder.showAsCurrentItem(isCurrentItem)
             holder.showAsPlaying(isCurrentItem && play, true)
@@ -105,7 +108,7 @@ class PlayQueueAdapter(
 
     fun showPlaying(play: Boolean) {
         this.play = play
-        forEachHolder { holder ->
+        viewHolders.forEach { holder ->
             val isCurrentItem = holder.getPlayQueueItem() == currentItem
             holder.showAsPlaying(isCurrentItem && play, true)
         }
@@ -113,15 +116,15 @@ class PlayQueueAdapter(
 
     fun setCoversEnabled(isCoversEnabled: Boolean) {
         this.isCoversEnabled = isCoversEnabled
-        forEachHolder { holder ->
+        viewHolders.forEach { holder ->
             holder.setCoversVisible(isCoversEnabled)
         }
     }
 
     fun showFileSyncStates(states: Map<Long, FileSyncState>) {
         this.syncStates = states
-        forEachHolder { holder ->
+        viewHolders.forEach { holder ->
             holder.setFileSyncStates(syncStates)
         }
     }
-}
\ No newline at end of file
+}
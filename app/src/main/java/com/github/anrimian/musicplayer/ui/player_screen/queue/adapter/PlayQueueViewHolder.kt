@@ -26,16 +26,19 @@ class PlayQueueViewHolder(
 
     private val compositionItemWrapper: CompositionItemWrapper<Composition>
 
-    private lateinit var playQueueItem: PlayQueueItem
+    //null while item is not read yet
+    private var playQueueItem: PlayQueueItem? = null
 
     init {
         val btnActionsMenu = itemView.findViewById<View>(R.id.btnActionsMenu)
         compositionItemWrapper = CompositionItemWrapper(
             itemView,
-            { iconClickListener(bindingAdapterPosition, playQueueItem) }
-        ) { onCompositionClickListener(bindingAdapterPosition, playQueueItem) }
+            { playQueueItem?.let { item -> iconClickListener(bindingAdapterPosition, item) } }
+        ) { playQueueItem?.let { item -> onCompositionClickListener(bindingAdapterPosition, item) } }
 
-        btnActionsMenu.setOnClickListener { v -> menuClickListener(v, playQueueItem) }
+        btnActionsMenu.setOnClickListener { v ->
+            playQueueItem?.let { item -> menuClickListener(v, item) }
+        }
     }
 
     override fun release() {
@@ -52,12 +55,13 @@ class PlayQueueViewHolder(
 
     fun bind(item: PlayQueueItem, showCovers: Boolean) {
         playQueueItem = item
+        itemView.visibility = View.VISIBLE
         compositionItemWrapper.bind(item, showCovers)
     }
 
-    fun update(item: PlayQueueItem, payloads: List<*>) {
-        playQueueItem = item
-        compositionItemWrapper.update(item, payloads)
+    fun bindPlaceholder() {
+        playQueueItem = null
+        itemView.visibility = View.INVISIBLE
     }
 
     fun setCoversVisible(visible: Boolean) {
@@ -73,7 +77,8 @@ class PlayQueueViewHolder(
     }
 
     fun setFileSyncStates(fileSyncStates: Map<Long, FileSyncState>) {
-        compositionItemWrapper.showFileSyncState(fileSyncStates[playQueueItem.id])
+        val item = playQueueItem ?: return
+        compositionItemWrapper.showFileSyncState(fileSyncStates[item.id])
     }
 
     fun getPlayQueueItem() = playQueueItem
@@ -0,0 +1,97 @@
+package com.github.anrimian.musicplayer.data.database;
+
+import static com.github.anrimian.musicplayer.data.utils.TestDataProvider.composition;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
+import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDao;
+import com.github.anrimian.musicplayer.data.database.dao.genre.GenreDao;
+import com.github.anrimian.musicplayer.data.database.dao.play_list.PlayListDao;
+import com.github.anrimian.musicplayer.data.database.entities.folder.FolderEntity;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+public class LibraryStatsCheckerTest {
+
+    private LibraryDatabase db;
+    private CompositionsDao compositionsDao;
+    private FoldersDao foldersDao;
+    private GenreDao genreDao;
+    private PlayListDao playListDao;
+
+    private LibraryStatsChecker statsChecker;
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
+        compositionsDao = db.compositionsDao();
+        foldersDao = db.foldersDao();
+        genreDao = db.genreDao();
+        playListDao = db.playListDao();
+
+        statsChecker = new LibraryStatsChecker(db);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void triggersKeepStatsConsistent() {
+        long artistId = db.artistsDao().insertArtist("artist");
+        long secondArtistId = db.artistsDao().insertArtist("artist 2");
+        long albumId = db.albumsDao().insertAlbum(artistId, "album");
+        long rootFolderId = foldersDao.insertFolder(new FolderEntity(null, "music"));
+        long folderId = foldersDao.insertFolder(new FolderEntity(rootFolderId, "rock"));
+        long otherFolderId = foldersDao.insertFolder(new FolderEntity(null, "other"));
+        long genreId = genreDao.insertGenre("genre");
+        long playListId = playListDao.insertPlayList(null, "play list", new Date(), new Date());
+
+        long firstId = compositionsDao.insert(composition(artistId, albumId, "first", folderId));
+        long secondId = compositionsDao.insert(composition(artistId, null, "second", rootFolderId));
+        genreDao.insertGenreEntry(firstId, genreId);
+        genreDao.insertGenreEntry(secondId, genreId);
+        playListDao.insertPlayListEntry(null, firstId, playListId, 0);
+        playListDao.insertPlayListEntry(null, firstId, playListId, 1);
+        playListDao.insertPlayListEntry(null, secondId, playListId, 2);
+        assertEquals(0, statsChecker.countInconsistentRows());
+
+        compositionsDao.updateDuration(firstId, 500);
+        compositionsDao.updateArtist(secondId, secondArtistId);
+        compositionsDao.updateFolderId(secondId, folderId);
+        db.albumsDao().setAuthorId(albumId, secondArtistId);
+        foldersDao.updateParentId(folderId, otherFolderId);
+        genreDao.removeGenreEntry(secondId, genreId);
+        assertEquals(0, statsChecker.countInconsistentRows());
+
+        compositionsDao.delete(firstId);
+        assertEquals(0, statsChecker.countInconsistentRows());
+    }
+
+    @Test
+    public void checkerRepairsWrongStats() {
+        long artistId = db.artistsDao().insertArtist("artist");
+        compositionsDao.insert(composition(artistId, null, "first"));
+        db.getOpenHelper()
+                .getWritableDatabase()
+                .execSQL("UPDATE artists SET compositionsCount = 10, albumsCount = 10");
+
+        assertTrue(statsChecker.checkAndRepair() > 0);
+        assertEquals(0, statsChecker.countInconsistentRows());
+    }
+
+}
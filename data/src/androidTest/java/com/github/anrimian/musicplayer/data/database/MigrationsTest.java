@@ -30,6 +30,194 @@ public class MigrationsTest {
                     LibraryDatabase.class.getCanonicalName()
     );
 
+    @Test
+    public void testMigrationFrom22To23() throws Exception {
+        testHelper.createDatabase(TEST_DB_NAME, 22).close();
+
+        SupportSQLiteDatabase db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                23,
+                false,
+                Migrations.MIGRATION_22_23);
+        try (Cursor c = db.query("SELECT shuffleSeed FROM play_queue_state WHERE id = 0")) {
+            c.moveToFirst();
+            assertEquals(0L, c.getLong(0));
+        }
+    }
+
+    @Test
+    public void testMigrationFrom21To22() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 21);
+        db.execSQL("INSERT INTO artists (id, name) VALUES (1, 'artist')");
+        db.execSQL("INSERT INTO artists (id, name) VALUES (2, 'empty artist')");
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (1, NULL, 'music')");
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (2, 1, 'rock')");
+        db.execSQL("INSERT INTO folder_tree (ancestorId, descendantId, depth) VALUES (1, 1, 0), (2, 2, 0), (1, 2, 1)");
+        db.execSQL("INSERT INTO compositions (id, artistId, folderId, fileName, duration, size, " +
+                "lastScanDate, coverModifyTime, initialSource) " +
+                "VALUES (1, 1, 2, 'a.mp3', 0, 0, 0, 0, 0)");
+        db.close();
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                22,
+                false,
+                Migrations.MIGRATION_21_22);
+        try (Cursor c = db.query("SELECT count() FROM orphan_candidates")) {
+            c.moveToFirst();
+            assertEquals(4, c.getInt(0));
+        }
+
+        //triggers record candidates after migration
+        db.execSQL("DELETE FROM orphan_candidates");
+        db.execSQL("DELETE FROM compositions WHERE id = 1");
+        try (Cursor c = db.query("SELECT type, id FROM orphan_candidates ORDER BY type")) {
+            c.moveToFirst();
+            assertEquals(1, c.getInt(0));
+            assertEquals(1, c.getLong(1));
+            c.moveToNext();
+            assertEquals(4, c.getInt(0));
+            assertEquals(2, c.getLong(1));
+        }
+    }
+
+    @Test
+    public void testMigrationFrom20To21() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 20);
+        db.execSQL("INSERT INTO artists (id, name) VALUES (1, 'artist')");
+        db.execSQL("INSERT INTO albums (id, artistId, name) VALUES (1, 1, 'album')");
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (1, NULL, 'music')");
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (2, 1, 'rock')");
+        db.execSQL("INSERT INTO folder_tree (ancestorId, descendantId, depth) VALUES (1, 1, 0), (2, 2, 0), (1, 2, 1)");
+        db.execSQL("INSERT INTO compositions (id, artistId, albumId, folderId, fileName, duration, size, " +
+                "lastScanDate, coverModifyTime, initialSource) " +
+                "VALUES (1, 1, 1, 1, 'a.mp3', 100, 1000, 0, 0, 0)");
+        db.execSQL("INSERT INTO compositions (id, artistId, albumId, folderId, fileName, duration, size, " +
+                "lastScanDate, coverModifyTime, initialSource) " +
+                "VALUES (2, 1, NULL, 2, 'b.mp3', 200, 2000, 0, 0, 0)");
+        db.close();
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                21,
+                false,
+                Migrations.MIGRATION_20_21);
+        try (Cursor c = db.query("SELECT compositionsCount, albumsCount, totalDuration, totalSize FROM artists")) {
+            c.moveToFirst();
+            assertEquals(2, c.getInt(0));
+            assertEquals(1, c.getInt(1));
+            assertEquals(300, c.getLong(2));
+            assertEquals(3000, c.getLong(3));
+        }
+        try (Cursor c = db.query("SELECT compositionsCount, totalDuration FROM folders ORDER BY id")) {
+            c.moveToFirst();
+            assertEquals(2, c.getInt(0));
+            assertEquals(300, c.getLong(1));
+            c.moveToNext();
+            assertEquals(1, c.getInt(0));
+            assertEquals(200, c.getLong(1));
+        }
+
+        //triggers keep stats after migration
+        db.execSQL("DELETE FROM compositions WHERE id = 2");
+        try (Cursor c = db.query("SELECT compositionsCount, totalDuration FROM folders WHERE id = 1")) {
+            c.moveToFirst();
+            assertEquals(1, c.getInt(0));
+            assertEquals(100, c.getLong(1));
+        }
+    }
+
+    @Test
+    public void testMigrationFrom19To20() throws Exception {
+        testHelper.createDatabase(TEST_DB_NAME, 19);
+        testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                20,
+                false,
+                Migrations.MIGRATION_19_20);
+    }
+
+    @Test
+    public void testMigrationFrom18To19() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 18);
+        db.execSQL("INSERT INTO artists (id, name) VALUES (1, 'artist')");
+        db.execSQL("INSERT INTO compositions (id, artistId, title, fileName, duration, size, " +
+                "lastScanDate, coverModifyTime, initialSource) " +
+                "VALUES (1, 1, '', 'b.mp3', 0, 0, 0, 0, 0)");
+        db.execSQL("INSERT INTO compositions (id, artistId, title, fileName, duration, size, " +
+                "lastScanDate, coverModifyTime, initialSource) " +
+                "VALUES (2, NULL, 'a title', 'c.mp3', 0, 0, 0, 0, 0)");
+        db.close();
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                19,
+                false,
+                Migrations.MIGRATION_18_19);
+        try (Cursor c = db.query("SELECT artistName, sortTitle FROM compositions ORDER BY sortTitle")) {
+            c.moveToFirst();
+            assertEquals("a title", c.getString(1));
+            c.moveToNext();
+            assertEquals("artist", c.getString(0));
+            assertEquals("b.mp3", c.getString(1));
+        }
+
+        //triggers keep projection after migration
+        db.execSQL("UPDATE artists SET name = 'renamed' WHERE id = 1");
+        try (Cursor c = db.query("SELECT artistName FROM compositions WHERE id = 1")) {
+            c.moveToFirst();
+            assertEquals("renamed", c.getString(0));
+        }
+    }
+
+    @Test
+    public void testMigrationFrom17To18() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 17);
+        db.execSQL("INSERT INTO artists (id, name) VALUES (1, 'Beyoncé')");
+        db.execSQL("INSERT INTO compositions (id, artistId, title, fileName, duration, size, " +
+                "lastScanDate, coverModifyTime, initialSource) " +
+                "VALUES (1, 1, 'Halo', 'halo.mp3', 0, 0, 0, 0, 0)");
+        db.close();
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                18,
+                false,
+                Migrations.MIGRATION_17_18);
+        try (Cursor c = db.query("SELECT docid FROM compositions_search WHERE compositions_search MATCH '\"beyonce*\"'")) {
+            assertEquals(1, c.getCount());
+        }
+
+        //triggers keep search index after migration
+        db.execSQL("UPDATE compositions SET title = 'Crazy in love' WHERE id = 1");
+        try (Cursor c = db.query("SELECT docid FROM compositions_search WHERE compositions_search MATCH '\"crazy*\"'")) {
+            assertEquals(1, c.getCount());
+        }
+    }
+
+    @Test
+    public void testMigrationFrom16To17() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 16);
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (1, NULL, 'music')");
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (2, 1, 'rock')");
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (3, 2, 'live')");
+        db.close();
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                17,
+                false,
+                Migrations.MIGRATION_16_17);
+        try (Cursor c = db.query("SELECT path FROM folders WHERE id = 3")) {
+            c.moveToFirst();
+            assertEquals("music/rock/live", c.getString(0));
+        }
+        try (Cursor c = db.query("SELECT count() FROM folder_tree WHERE descendantId = 3")) {
+            c.moveToFirst();
+            assertEquals(3, c.getInt(0));
+        }
+
+        //triggers keep paths after migration
+        db.execSQL("UPDATE folders SET name = 'pop' WHERE id = 2");
+        try (Cursor c = db.query("SELECT path FROM folders WHERE id = 3")) {
+            c.moveToFirst();
+            assertEquals("music/pop/live", c.getString(0));
+        }
+    }
+
     @Test
     public void testMigrationFrom15To16() throws Exception {
         testHelper.createDatabase(TEST_DB_NAME, 15);
@@ -0,0 +1,203 @@
+package com.github.anrimian.musicplayer.data.database.dao.compositions;
+
+import static com.github.anrimian.musicplayer.data.utils.TestDataProvider.composition;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper;
+import com.github.anrimian.musicplayer.domain.models.composition.Composition;
+import com.github.anrimian.musicplayer.domain.models.composition.FullComposition;
+import com.github.anrimian.musicplayer.domain.models.order.Order;
+import com.github.anrimian.musicplayer.domain.models.order.OrderType;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import io.reactivex.rxjava3.observers.TestObserver;
+
+public class CompositionChangesBusTest {
+
+    private static final String TAG = "CompositionChangesBusTest";
+
+    private static final int SCANNED_COMPOSITIONS_COUNT = 100;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private LibraryDatabase db;
+    private CompositionsDao compositionsDao;
+    private CompositionChangesBus changesBus;
+
+    private CompositionsDaoWrapper daoWrapper;
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
+        compositionsDao = db.compositionsDao();
+        changesBus = new CompositionChangesBus(db);
+
+        daoWrapper = new CompositionsDaoWrapper(db,
+                db.artistsDao(),
+                compositionsDao,
+                db.albumsDao(),
+                db.genreDao(),
+                db.foldersDao(),
+                new OrphansDaoWrapper(db, db.orphansDao(), db.foldersDao()),
+                changesBus);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void scanTimeUpdatesDoNotRequeryList() {
+        long[] ids = new long[SCANNED_COMPOSITIONS_COUNT];
+        for (int i = 0; i < SCANNED_COMPOSITIONS_COUNT; i++) {
+            ids[i] = compositionsDao.insert(composition(null, null, "title " + i));
+        }
+        TestObserver<List<Composition>> listObserver = daoWrapper.getAllObservable(
+                new Order(OrderType.NAME, false),
+                false,
+                null
+        ).test();
+        listObserver.awaitCount(1);
+        TestObserver<List<CompositionChange>> changesObserver = changesBus.getChangesObservable().test();
+        awaitPreviousWritesPublished(changesObserver, ids[0]);
+        TestObserver<Object> requeryObserver = changesBus.getChangesObservable(CompositionColumns.LIST_COLUMNS).test();
+
+        for (long id : ids) {
+            FullComposition composition = compositionsDao.getFullComposition(id);
+            daoWrapper.applyFileScanResult(composition, null);
+        }
+        daoWrapper.updateTitle(ids[0], "new title");
+
+        awaitChange(changesObserver, CompositionColumns.TITLE);
+        int requeryCount = requeryObserver.values().size();
+        Log.d(TAG, "scan of " + SCANNED_COMPOSITIONS_COUNT + " compositions, "
+                + "published batches: " + changesObserver.values().size()
+                + ", list requeries: " + requeryCount);
+        //only title update
+        assertEquals(1, requeryCount);
+    }
+
+    @Test
+    public void unrecordedWriteRequeriesList() {
+        compositionsDao.insert(composition(null, null, "title"));
+        TestObserver<List<Composition>> listObserver = daoWrapper.getAllObservable(
+                new Order(OrderType.NAME, false),
+                false,
+                null
+        ).test();
+        listObserver.awaitCount(1);
+
+        db.getOpenHelper().getWritableDatabase().execSQL("UPDATE compositions SET title = 'raw title'");
+
+        listObserver.awaitCount(2);
+        List<Composition> list = listObserver.values().get(listObserver.values().size() - 1);
+        assertEquals("raw title", list.get(0).getTitle());
+    }
+
+    @Test
+    public void unrecordedWriteWithRecordedChangeIsPublishedAsUnknown() {
+        long id = compositionsDao.insert(composition(null, null, "title"));
+        long otherId = compositionsDao.insert(composition(null, null, "other title"));
+        TestObserver<List<CompositionChange>> changesObserver = changesBus.getChangesObservable().test();
+        TestObserver<Object> requeryObserver = changesBus.getChangesObservable(CompositionColumns.LIST_COLUMNS).test();
+
+        db.runInTransaction(() -> {
+            daoWrapper.applyFileScanResult(compositionsDao.getFullComposition(id), null);
+            db.getOpenHelper().getWritableDatabase().execSQL(
+                    "UPDATE compositions SET title = 'raw title' WHERE id = " + otherId);
+        });
+
+        requeryObserver.awaitCount(1);
+        assertTrue(countUnknownChanges(changesObserver) > 0);
+    }
+
+    @Test
+    public void compositionObservableIgnoresOtherRows() {
+        long id = compositionsDao.insert(composition(null, null, "title"));
+        long otherId = compositionsDao.insert(composition(null, null, "other title"));
+        TestObserver<List<CompositionChange>> changesObserver = changesBus.getChangesObservable().test();
+        TestObserver<Object> requeryObserver = changesBus.getChangesObservable(id, CompositionColumns.LIST_COLUMNS).test();
+
+        daoWrapper.updateTitle(otherId, "new other title");
+        awaitChange(changesObserver, CompositionColumns.TITLE);
+
+        //only unknown changes from unrecorded inserts can reach this row
+        assertEquals(countUnknownChanges(changesObserver), requeryObserver.values().size());
+    }
+
+    //bus starts to listen invalidation tracker asynchronously, so marker write is repeated until
+    //it is published. Inserts of test data are published before marker or together with it
+    private void awaitPreviousWritesPublished(TestObserver<List<CompositionChange>> observer,
+                                              long id) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        int markersCount = 0;
+        while (countColumnChanges(observer, CompositionColumns.DATE_MODIFIED) < markersCount
+                || markersCount == 0) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("marker write is not published");
+            }
+            if (countColumnChanges(observer, CompositionColumns.DATE_MODIFIED) == 0) {
+                daoWrapper.updateModifyTime(id, new Date());
+                markersCount++;
+            }
+            SystemClock.sleep(50);
+        }
+    }
+
+    private static void awaitChange(TestObserver<List<CompositionChange>> observer, String column) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!containsColumnChange(observer, column)) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("change of " + column + " is not published");
+            }
+            SystemClock.sleep(10);
+        }
+    }
+
+    private static boolean containsColumnChange(TestObserver<List<CompositionChange>> observer,
+                                                String column) {
+        return countColumnChanges(observer, column) > 0;
+    }
+
+    private static int countColumnChanges(TestObserver<List<CompositionChange>> observer,
+                                          String column) {
+        int count = 0;
+        for (List<CompositionChange> changes : observer.values()) {
+            for (CompositionChange change : changes) {
+                if (change.getColumns() != null && change.getColumns().contains(column)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int countUnknownChanges(TestObserver<List<CompositionChange>> observer) {
+        int count = 0;
+        for (List<CompositionChange> changes : observer.values()) {
+            if (changes.contains(CompositionChange.UNKNOWN)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -12,9 +12,12 @@ import androidx.room.Room;
 import androidx.test.platform.app.InstrumentationRegistry;
 
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
 import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDao;
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity;
+import com.github.anrimian.musicplayer.domain.models.composition.FullComposition;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -32,7 +35,9 @@ public class CompositionsDaoWrapperTest {
     @BeforeEach
     public void setUp() {
         Context context = InstrumentationRegistry.getInstrumentation().getContext();
-        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class).build();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
         compositionsDao = db.compositionsDao();
         artistsDao = db.artistsDao();
         albumsDao = db.albumsDao();
@@ -42,7 +47,9 @@ public class CompositionsDaoWrapperTest {
                 compositionsDao,
                 albumsDao,
                 db.genreDao(),
-                db.foldersDao());
+                db.foldersDao(),
+                new OrphansDaoWrapper(db, db.orphansDao(), db.foldersDao()),
+                new CompositionChangesBus(db));
     }
 
     @AfterEach
@@ -101,6 +108,21 @@ public class CompositionsDaoWrapperTest {
         assertEquals(secondArtistId, compositionsDao.getArtistId(compositionId));
     }
 
+    @Test
+    public void projectionFollowsArtistAndAlbumChanges() {
+        long artistId = artistsDao.insertArtist( "test artist");
+        long albumId = albumsDao.insertAlbum(artistId, "test album");
+        long compositionId = compositionsDao.insert(composition(artistId, albumId, "test title"));
+
+        artistsDao.updateArtistName("renamed artist", artistId);
+        daoWrapper.updateAlbum(compositionId, "test album2");
+
+        FullComposition composition = compositionsDao.getFullComposition(compositionId);
+        assertEquals("renamed artist", composition.getArtist());
+        assertEquals("test album2", composition.getAlbum());
+        assertEquals("renamed artist", composition.getAlbumArtist());
+    }
+
     @Test
     public void updateAlbumArtistWithSingleAlbum() {
         long artistId = artistsDao.insertArtist( "test artist");
@@ -0,0 +1,129 @@
+package com.github.anrimian.musicplayer.data.database.dao.compositions;
+
+import static com.github.anrimian.musicplayer.data.utils.TestDataProvider.composition;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils;
+import com.github.anrimian.musicplayer.domain.models.order.Order;
+import com.github.anrimian.musicplayer.domain.models.order.OrderType;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares LIKE scan with full text search index on large library
+ */
+public class LibrarySearchBenchmarkTest {
+
+    private static final String TAG = "SearchBenchmark";
+
+    private static final int COMPOSITIONS_COUNT = 100_000;
+    private static final int ARTISTS_COUNT = 1_000;
+
+    //search query used before full text index
+    private static final String LIKE_SEARCH_QUERY = "SELECT id FROM compositions " +
+            "WHERE (? IS NULL OR " +
+            "CASE WHEN title IS NULL OR title = '' THEN fileName ELSE title END LIKE ? " +
+            "OR (artistId NOTNULL AND (SELECT name FROM artists WHERE id = artistId) LIKE ?))";
+
+    private static final String FTS_SEARCH_QUERY = "SELECT id FROM compositions WHERE" +
+            CompositionsDao.getSearchQuery();
+
+    private LibraryDatabase db;
+    private CompositionsDaoWrapper compositionsDaoWrapper;
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
+        compositionsDaoWrapper = new CompositionsDaoWrapper(db,
+                db.artistsDao(),
+                db.compositionsDao(),
+                db.albumsDao(),
+                db.genreDao(),
+                db.foldersDao(),
+                new OrphansDaoWrapper(db, db.orphansDao(), db.foldersDao()),
+                new CompositionChangesBus(db));
+
+        long startTime = System.currentTimeMillis();
+        db.runInTransaction(() -> {
+            long[] artistIds = new long[ARTISTS_COUNT];
+            for (int i = 0; i < ARTISTS_COUNT; i++) {
+                artistIds[i] = db.artistsDao().insertArtist("artist " + i);
+            }
+            for (int i = 0; i < COMPOSITIONS_COUNT; i++) {
+                db.compositionsDao().insert(composition(artistIds[i % ARTISTS_COUNT], null, "title " + i));
+            }
+        });
+        Log.d(TAG, "library created: " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void searchByTitle() {
+        compareSearch("title 9999");
+    }
+
+    @Test
+    public void searchByArtist() {
+        compareSearch("artist 999");
+    }
+
+    @Test
+    public void searchThroughObservable() {
+        long startTime = System.currentTimeMillis();
+        int count = compositionsDaoWrapper.getAllObservable(new Order(OrderType.NAME, false), false, "artist 5")
+                .blockingFirst()
+                .size();
+        long time = System.currentTimeMillis() - startTime;
+        Log.d(TAG, count + " compositions found through observable: " + time + "ms");
+    }
+
+    private void compareSearch(String searchText) {
+        long likeStartTime = System.currentTimeMillis();
+        int likeCount = countRows(LIKE_SEARCH_QUERY, DatabaseUtils.getSearchArgs(searchText, 3));
+        long likeTime = System.currentTimeMillis() - likeStartTime;
+
+        long ftsStartTime = System.currentTimeMillis();
+        int ftsCount = countRows(FTS_SEARCH_QUERY, DatabaseUtils.getFtsSearchArgs(searchText, 2));
+        long ftsTime = System.currentTimeMillis() - ftsStartTime;
+
+        Log.d(TAG, "search '" + searchText + "' in " + COMPOSITIONS_COUNT
+                + " compositions, like: " + likeTime + "ms (" + likeCount + " rows)"
+                + ", fts: " + ftsTime + "ms (" + ftsCount + " rows)");
+
+        //index matches words by prefix, so it never finds less than substring scan for whole words
+        assertTrue(ftsCount >= likeCount);
+    }
+
+    private int countRows(String query, Object[] args) {
+        SupportSQLiteDatabase sqlDb = db.getOpenHelper().getWritableDatabase();
+        try (Cursor c = sqlDb.query(query, args)) {
+            int count = 0;
+            while (c.moveToNext()) {
+                c.getLong(0);
+                count++;
+            }
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.github.anrimian.musicplayer.data.database.dao.compositions;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.collection.LongSparseArray;
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
+import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper;
+import com.github.anrimian.musicplayer.data.models.changes.Change;
+import com.github.anrimian.musicplayer.data.storage.providers.albums.StorageAlbum;
+import com.github.anrimian.musicplayer.data.storage.providers.music.StorageComposition;
+import com.github.anrimian.musicplayer.data.storage.providers.music.StorageFullComposition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compares row-by-row insertion with set-based bulk path on the first scan of library,
+ * measures throughput of mass update
+ */
+public class StorageCompositionsInserterBenchmarkTest {
+
+    private static final String TAG = "InserterBenchmark";
+
+    @Test
+    public void insert1kCompositions() {
+        compareInserters(1_000);
+    }
+
+    @Test
+    public void insert10kCompositions() {
+        compareInserters(10_000);
+    }
+
+    @Test
+    public void insert100kCompositions() {
+        compareInserters(100_000);
+    }
+
+    @Test
+    public void update10kCompositions() {
+        int count = 10_000;
+        LibraryDatabase db = createDatabase();
+        try {
+            StorageCompositionsInserter inserter = createInserter(db, 0);
+            inserter.applyChanges(generateCompositions(count), Collections.emptyList(), Collections.emptyList());
+
+            //retag all compositions: new album artist, title and modify date
+            List<Change<StorageComposition, StorageFullComposition>> changes = new ArrayList<>(count);
+            LongSparseArray<StorageComposition> storedCompositions = new LongSparseArray<>(count);
+            for (StorageComposition composition: db.compositionsDao().selectStorageCompositionsPage(0, count)) {
+                storedCompositions.put(composition.getStorageId(), composition);
+            }
+            for (StorageFullComposition composition: generateCompositions(count)) {
+                StorageAlbum album = composition.getStorageAlbum();
+                StorageFullComposition newComposition = new StorageFullComposition(composition.getArtist(),
+                        composition.getTitle() + " (remastered)",
+                        composition.getFileName(),
+                        composition.getRelativePath(),
+                        composition.getDuration(),
+                        composition.getSize(),
+                        composition.getStorageId(),
+                        composition.getDateAdded(),
+                        new Date(),
+                        album == null? null : new StorageAlbum(album.getId(), album.getAlbum(), "box set artist"));
+                changes.add(new Change<>(storedCompositions.get(composition.getStorageId()), newComposition));
+            }
+
+            long startTime = System.currentTimeMillis();
+            inserter.applyChanges(Collections.emptyList(), Collections.emptyList(), changes);
+            long time = System.currentTimeMillis() - startTime;
+            Log.d(TAG, count + " compositions updated: " + time + "ms, " + (count * 1000L / Math.max(time, 1)) + " rows/s");
+
+            assertEquals(count, db.compositionsDao().getCompositionsCount());
+        } finally {
+            db.close();
+        }
+    }
+
+    private void compareInserters(int count) {
+        List<StorageFullComposition> compositions = generateCompositions(count);
+
+        LibraryDatabase rowByRowDb = createDatabase();
+        LibraryDatabase bulkDb = createDatabase();
+        try {
+            long rowByRowTime = measureInsert(rowByRowDb, compositions, Integer.MAX_VALUE);
+            long bulkTime = measureInsert(bulkDb, compositions, 0);
+            Log.d(TAG, count + " compositions, row-by-row: " + rowByRowTime + "ms, bulk: " + bulkTime + "ms");
+
+            assertEquals(
+                    rowByRowDb.compositionsDao().getCompositionsCount(),
+                    bulkDb.compositionsDao().getCompositionsCount()
+            );
+            assertArrayEquals(sorted(rowByRowDb.artistsDao().getAuthorNames()),
+                    sorted(bulkDb.artistsDao().getAuthorNames()));
+            assertArrayEquals(rowByRowDb.compositionsDao().selectStorageIds(),
+                    bulkDb.compositionsDao().selectStorageIds());
+        } finally {
+            rowByRowDb.close();
+            bulkDb.close();
+        }
+    }
+
+    private long measureInsert(LibraryDatabase db,
+                               List<StorageFullComposition> compositions,
+                               int bulkInsertMinCount) {
+        StorageCompositionsInserter inserter = createInserter(db, bulkInsertMinCount);
+        long startTime = System.currentTimeMillis();
+        inserter.applyChanges(compositions, Collections.emptyList(), Collections.emptyList());
+        return System.currentTimeMillis() - startTime;
+    }
+
+    private LibraryDatabase createDatabase() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        return Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
+    }
+
+    private StorageCompositionsInserter createInserter(LibraryDatabase db, int bulkInsertMinCount) {
+        OrphansDaoWrapper orphansDaoWrapper = new OrphansDaoWrapper(db, db.orphansDao(), db.foldersDao());
+        CompositionChangesBus compositionChangesBus = new CompositionChangesBus(db);
+        CompositionsDaoWrapper compositionsDaoWrapper = new CompositionsDaoWrapper(db,
+                db.artistsDao(),
+                db.compositionsDao(),
+                db.albumsDao(),
+                db.genreDao(),
+                db.foldersDao(),
+                orphansDaoWrapper,
+                compositionChangesBus);
+        FoldersDaoWrapper foldersDaoWrapper = new FoldersDaoWrapper(db,
+                db.foldersDao(),
+                compositionsDaoWrapper,
+                orphansDaoWrapper);
+        ArtistsDaoWrapper artistsDaoWrapper = new ArtistsDaoWrapper(db,
+                db.artistsDao(),
+                db.albumsDao(),
+                compositionChangesBus);
+        AlbumsDaoWrapper albumsDaoWrapper = new AlbumsDaoWrapper(db,
+                db.albumsDao(),
+                db.artistsDao(),
+                artistsDaoWrapper,
+                compositionChangesBus);
+        return new StorageCompositionsInserter(db,
+                db.compositionsDao(),
+                compositionsDaoWrapper,
+                foldersDaoWrapper,
+                artistsDaoWrapper,
+                albumsDaoWrapper,
+                orphansDaoWrapper,
+                new StorageCompositionsBulkWriter(db, foldersDaoWrapper),
+                compositionChangesBus,
+                bulkInsertMinCount);
+    }
+
+    private static List<StorageFullComposition> generateCompositions(int count) {
+        List<StorageFullComposition> compositions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String artist = i % 7 == 0? null : "artist " + (i % 500);
+            StorageAlbum album = i % 5 == 0? null : new StorageAlbum(i, "album " + (i % 2000), artist);
+            compositions.add(new StorageFullComposition(artist,
+                    "title " + i,
+                    "file " + i + ".mp3",
+                    "music/folder " + (i % 300) + "/sub " + (i % 3),
+                    i % 11 == 0? 0 : 1000L + i,
+                    1000L,
+                    i + 1,
+                    new Date(i),
+                    new Date(i),
+                    album));
+        }
+        return compositions;
+    }
+
+    private static String[] sorted(String[] array) {
+        Arrays.sort(array);
+        return array;
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.anrimian.musicplayer.data.database.dao.compositions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper;
+import com.github.anrimian.musicplayer.data.storage.providers.music.StorageComposition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+
+/**
+ * Compares offset pagination with keyset pagination on full read of compositions table
+ */
+public class StorageCompositionsPagingBenchmarkTest {
+
+    private static final String TAG = "PagingBenchmark";
+
+    private static final int PAGE_SIZE = 1000;
+
+    //pagination used before keyset iterator
+    private static final String OFFSET_PAGE_QUERY = CompositionsDao.STORAGE_COMPOSITION_QUERY +
+            "WHERE storageId NOTNULL " +
+            "LIMIT ? " +
+            "OFFSET ?";
+
+    @Test
+    public void read100kCompositions() {
+        comparePagination(100_000);
+    }
+
+    @Test
+    public void read500kCompositions() {
+        comparePagination(500_000);
+    }
+
+    private void comparePagination(int count) {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        LibraryDatabase db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
+        try {
+            SupportSQLiteDatabase sqlDb = db.getOpenHelper().getWritableDatabase();
+            sqlDb.execSQL("WITH RECURSIVE numbers(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM numbers WHERE i < " + count + ") " +
+                    "INSERT INTO compositions (storageId, title, fileName, duration, size, " +
+                    "dateAdded, dateModified, lastScanDate, coverModifyTime, initialSource) " +
+                    "SELECT i, 'title ' || i, 'file ' || i || '.mp3', 1000, 1000, 0, 0, 0, 0, 0 FROM numbers");
+
+            long startTime = System.currentTimeMillis();
+            int offsetCount = 0;
+            int pageCount;
+            do {
+                pageCount = 0;
+                try (Cursor c = sqlDb.query(OFFSET_PAGE_QUERY, new Object[] { PAGE_SIZE, offsetCount })) {
+                    while (c.moveToNext()) {
+                        pageCount++;
+                    }
+                }
+                offsetCount += pageCount;
+            } while (pageCount == PAGE_SIZE);
+            long offsetTime = System.currentTimeMillis() - startTime;
+
+            CompositionsDaoWrapper compositionsDaoWrapper = new CompositionsDaoWrapper(db,
+                    db.artistsDao(),
+                    db.compositionsDao(),
+                    db.albumsDao(),
+                    db.genreDao(),
+                    db.foldersDao(),
+                    new OrphansDaoWrapper(db, db.orphansDao(), db.foldersDao()),
+                    new CompositionChangesBus(db));
+            startTime = System.currentTimeMillis();
+            int keysetCount = 0;
+            Iterator<StorageComposition> iterator = compositionsDaoWrapper.iterateStorageCompositions();
+            while (iterator.hasNext()) {
+                iterator.next();
+                keysetCount++;
+            }
+            long keysetTime = System.currentTimeMillis() - startTime;
+
+            Log.d(TAG, count + " compositions read, offset: " + offsetTime + "ms, keyset: " + keysetTime + "ms");
+
+            assertEquals(count, offsetCount);
+            assertEquals(count, keysetCount);
+        } finally {
+            db.close();
+        }
+    }
+
+}
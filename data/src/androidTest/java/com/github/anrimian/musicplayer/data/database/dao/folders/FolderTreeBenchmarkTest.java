@@ -0,0 +1,171 @@
+package com.github.anrimian.musicplayer.data.database.dao.folders;
+
+import static com.github.anrimian.musicplayer.data.utils.TestDataProvider.composition;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares recursive path queries with materialized paths and closure table on deep library
+ */
+public class FolderTreeBenchmarkTest {
+
+    private static final String TAG = "FolderTreeBenchmark";
+
+    private static final int FOLDERS_COUNT = 2_000;
+    private static final int COMPOSITIONS_COUNT = 20_000;
+
+    //path query used before materialized paths
+    private static final String RECURSIVE_PARENT_PATH_QUERY = "(" +
+            "WITH RECURSIVE path(level, name, parentId) AS (" +
+            "   SELECT 0, name, parentId FROM folders WHERE id = compositions.folderId " +
+            "   UNION ALL " +
+            "   SELECT path.level + 1, folders.name, folders.parentId " +
+            "   FROM folders JOIN path ON folders.id = path.parentId" +
+            "), " +
+            "path_from_root AS (SELECT name FROM path ORDER BY level DESC) " +
+            "SELECT IFNULL(group_concat(name, '/'), '') FROM path_from_root" +
+            ")";
+
+    private LibraryDatabase db;
+    private FoldersDaoWrapper foldersDaoWrapper;
+    private CompositionsDaoWrapper compositionsDaoWrapper;
+
+    private final Map<String, Long> foldersCache = new HashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
+        compositionsDaoWrapper = new CompositionsDaoWrapper(db,
+                db.artistsDao(),
+                db.compositionsDao(),
+                db.albumsDao(),
+                db.genreDao(),
+                db.foldersDao(),
+                new OrphansDaoWrapper(db, db.orphansDao(), db.foldersDao()),
+                new CompositionChangesBus(db));
+        foldersDaoWrapper = new FoldersDaoWrapper(db,
+                db.foldersDao(),
+                compositionsDaoWrapper,
+                new OrphansDaoWrapper(db, db.orphansDao(), db.foldersDao()));
+
+        long startTime = System.currentTimeMillis();
+        db.runInTransaction(() -> {
+            for (int i = 0; i < COMPOSITIONS_COUNT; i++) {
+                Long folderId = foldersDaoWrapper.getOrCreateFolder(getFolderPath(i % FOLDERS_COUNT), foldersCache);
+                db.compositionsDao().insert(composition(null, null, "title " + i, folderId));
+            }
+        });
+        Log.d(TAG, "library created: " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void selectCompositionsParentPaths() {
+        String recursiveQuery = "SELECT " + RECURSIVE_PARENT_PATH_QUERY + " FROM compositions";
+        String materializedQuery = "SELECT " + CompositionsDao.PARENT_PATH_QUERY + " FROM compositions";
+
+        long recursiveTime = measureQuery(recursiveQuery);
+        long materializedTime = measureQuery(materializedQuery);
+        Log.d(TAG, COMPOSITIONS_COUNT + " parent paths, recursive: " + recursiveTime + "ms, materialized: " + materializedTime + "ms");
+
+        SupportSQLiteDatabase sqlDb = db.getOpenHelper().getWritableDatabase();
+        try (Cursor recursive = sqlDb.query(recursiveQuery + " ORDER BY id");
+             Cursor materialized = sqlDb.query(materializedQuery + " ORDER BY id")) {
+            while (recursive.moveToNext()) {
+                materialized.moveToNext();
+                assertEquals(recursive.getString(0), materialized.getString(0));
+            }
+        }
+    }
+
+    @Test
+    public void findFolderIds() {
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < FOLDERS_COUNT; i++) {
+            String path = getFolderPath(i);
+            assertEquals(foldersCache.get(path), compositionsDaoWrapper.findFolderId(path));
+        }
+        long time = System.currentTimeMillis() - startTime;
+        Log.d(TAG, FOLDERS_COUNT + " folders found by path: " + time + "ms");
+    }
+
+    @Test
+    public void selectAllCompositionsInFolder() {
+        long folderId = foldersCache.get("music");
+
+        long startTime = System.currentTimeMillis();
+        int count = compositionsDaoWrapper.getAllCompositionsInFolder(folderId).size();
+        long time = System.currentTimeMillis() - startTime;
+        Log.d(TAG, count + " compositions selected from folder tree: " + time + "ms");
+
+        assertEquals(COMPOSITIONS_COUNT, count);
+    }
+
+    @Test
+    public void renameAndMoveFolder() {
+        long musicFolderId = foldersCache.get("music");
+        long folderId = foldersCache.get("music/1");
+
+        long startTime = System.currentTimeMillis();
+        foldersDaoWrapper.changeFolderName(musicFolderId, "audio");
+        long renameTime = System.currentTimeMillis() - startTime;
+        assertEquals("audio/1", foldersDaoWrapper.getFullFolderPath(folderId));
+
+        long newParentId = foldersDaoWrapper.createFolder(null, "moved");
+        startTime = System.currentTimeMillis();
+        db.foldersDao().updateParentId(folderId, newParentId);
+        long moveTime = System.currentTimeMillis() - startTime;
+        assertEquals("moved/1", foldersDaoWrapper.getFullFolderPath(folderId));
+
+        Log.d(TAG, "rename root folder: " + renameTime + "ms, move subtree: " + moveTime + "ms");
+    }
+
+    private long measureQuery(String query) {
+        SupportSQLiteDatabase sqlDb = db.getOpenHelper().getWritableDatabase();
+        long startTime = System.currentTimeMillis();
+        try (Cursor c = sqlDb.query(query)) {
+            while (c.moveToNext()) {
+                c.getString(0);
+            }
+        }
+        return System.currentTimeMillis() - startTime;
+    }
+
+    //all folders are under one root, each next level splits folders by ten
+    private static String getFolderPath(int index) {
+        StringBuilder sb = new StringBuilder("music");
+        for (int i = index; i > 0; i /= 10) {
+            sb.append('/').append(i % 10);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.github.anrimian.musicplayer.data.database.dao.orphans;
+
+import static com.github.anrimian.musicplayer.data.utils.TestDataProvider.composition;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
+import com.github.anrimian.musicplayer.data.database.entities.folder.FolderEntity;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares full table empty entity sweeps with candidate based cleanup on large library
+ */
+public class OrphansCleanupBenchmarkTest {
+
+    private static final String TAG = "OrphansCleanupBenchmark";
+
+    private static final int COMPOSITIONS_COUNT = 50_000;
+    private static final int ARTISTS_COUNT = 5_000;
+    private static final int FOLDERS_DEPTH = 5;
+
+    //cleanup queries used before orphan candidates
+    private static final String DELETE_EMPTY_ALBUMS_QUERY = "DELETE FROM albums " +
+            "WHERE (SELECT count() FROM compositions WHERE albumId = albums.id) = 0";
+    private static final String DELETE_EMPTY_ARTISTS_QUERY = "DELETE FROM artists " +
+            "WHERE (SELECT count() FROM compositions WHERE artistId = artists.id) = 0 " +
+            "AND (SELECT count() FROM albums WHERE artistId = artists.id) = 0";
+    private static final String DELETE_EMPTY_GENRES_QUERY = "DELETE FROM genres " +
+            "WHERE (SELECT count() FROM genre_entries WHERE genreId = genres.id) = 0";
+    private static final String DELETE_EMPTY_FOLDERS_QUERY = "WITH parentIds AS (SELECT parentId FROM folders)" +
+            "DELETE FROM folders " +
+            "WHERE (SELECT count() FROM parentIds WHERE parentIds.parentId = folders.id) = 0 " +
+            "AND (SELECT count() FROM compositions WHERE folderId = folders.id) = 0";
+
+    private LibraryDatabase db;
+    private OrphansDaoWrapper orphansDaoWrapper;
+
+    private long nextArtistId = 1;
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
+        orphansDaoWrapper = new OrphansDaoWrapper(db, db.orphansDao(), db.foldersDao());
+
+        long startTime = System.currentTimeMillis();
+        db.runInTransaction(() -> {
+            long rootFolderId = db.foldersDao().insertFolder(new FolderEntity(null, "music"));
+            long genreId = db.genreDao().insertGenre("genre");
+            for (int i = 0; i < COMPOSITIONS_COUNT; i++) {
+                //every artist owns ten compositions in own album and own folder chain
+                int artistIndex = i % ARTISTS_COUNT;
+                long artistId;
+                long albumId;
+                long folderId;
+                if (i < ARTISTS_COUNT) {
+                    artistId = db.artistsDao().insertArtist("artist " + artistIndex);
+                    albumId = db.albumsDao().insertAlbum(artistId, "album " + artistIndex);
+                    folderId = rootFolderId;
+                    for (int level = 0; level < FOLDERS_DEPTH; level++) {
+                        folderId = db.foldersDao().insertFolder(new FolderEntity(folderId, artistIndex + "_" + level));
+                    }
+                } else {
+                    artistId = db.artistsDao().findArtistIdByName("artist " + artistIndex);
+                    albumId = db.albumsDao().findAlbum(artistId, "album " + artistIndex);
+                    folderId = db.compositionsDao().getFolderId(artistIndex + 1);
+                }
+                long compositionId = db.compositionsDao().insert(composition(artistId, albumId, "title " + i, folderId));
+                db.genreDao().insertGenreEntry(compositionId, genreId);
+            }
+            db.orphansDao().clearOrphanCandidates();
+        });
+        Log.d(TAG, "library created: " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void cleanupTenArtists() {
+        compareCleanup(10);
+    }
+
+    @Test
+    public void cleanupHundredArtists() {
+        compareCleanup(100);
+    }
+
+    @Test
+    public void cleanupThousandArtists() {
+        compareCleanup(1000);
+    }
+
+    //removes all compositions of given count of artists before each cleanup
+    private void compareCleanup(int artistsCount) {
+        int foldersCount = count("folders");
+
+        deleteArtistsCompositions(artistsCount);
+        long startTime = System.currentTimeMillis();
+        orphansDaoWrapper.deleteOrphans();
+        long incrementalTime = System.currentTimeMillis() - startTime;
+        assertEquals(ARTISTS_COUNT - artistsCount, count("artists"));
+        assertEquals(foldersCount - artistsCount * FOLDERS_DEPTH, count("folders"));
+
+        deleteArtistsCompositions(artistsCount);
+        startTime = System.currentTimeMillis();
+        db.runInTransaction(this::runFullSweep);
+        long sweepTime = System.currentTimeMillis() - startTime;
+        db.orphansDao().clearOrphanCandidates();
+        assertEquals(ARTISTS_COUNT - artistsCount * 2, count("artists"));
+        assertEquals(foldersCount - artistsCount * 2 * FOLDERS_DEPTH, count("folders"));
+
+        Log.d(TAG, artistsCount + " artists removed, incremental cleanup: " + incrementalTime
+                + "ms, full sweep: " + sweepTime + "ms");
+    }
+
+    private void runFullSweep() {
+        SupportSQLiteDatabase sqlDb = db.getOpenHelper().getWritableDatabase();
+        sqlDb.execSQL(DELETE_EMPTY_ALBUMS_QUERY);
+        sqlDb.execSQL(DELETE_EMPTY_ARTISTS_QUERY);
+        sqlDb.execSQL(DELETE_EMPTY_GENRES_QUERY);
+        int deletedRows;
+        do {
+            deletedRows = sqlDb.compileStatement(DELETE_EMPTY_FOLDERS_QUERY).executeUpdateDelete();
+        } while (deletedRows != 0);
+    }
+
+    private void deleteArtistsCompositions(int artistsCount) {
+        db.runInTransaction(() -> {
+            for (int i = 0; i < artistsCount; i++) {
+                db.getOpenHelper()
+                        .getWritableDatabase()
+                        .execSQL("DELETE FROM compositions WHERE artistId = ?", new Object[] { nextArtistId++ });
+            }
+        });
+    }
+
+    private int count(String table) {
+        SupportSQLiteDatabase sqlDb = db.getOpenHelper().getWritableDatabase();
+        try (Cursor c = sqlDb.query("SELECT count() FROM " + table)) {
+            c.moveToFirst();
+            return c.getInt(0);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.github.anrimian.musicplayer.data.database.dao.orphans;
+
+import static com.github.anrimian.musicplayer.data.utils.TestDataProvider.composition;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
+import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDao;
+import com.github.anrimian.musicplayer.data.database.entities.folder.FolderEntity;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class OrphansDaoWrapperTest {
+
+    private static final int FOLDERS_DEPTH = 100;
+
+    private LibraryDatabase db;
+    private CompositionsDao compositionsDao;
+    private FoldersDao foldersDao;
+
+    private OrphansDaoWrapper orphansDaoWrapper;
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
+        compositionsDao = db.compositionsDao();
+        foldersDao = db.foldersDao();
+
+        orphansDaoWrapper = new OrphansDaoWrapper(db, db.orphansDao(), foldersDao);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void deleteDeepFolderChain() {
+        long[] folderIds = createFolderChain(null, FOLDERS_DEPTH);
+        long compositionId = compositionsDao.insert(composition(null, null, "title", folderIds[FOLDERS_DEPTH - 1]));
+
+        compositionsDao.delete(compositionId);
+        orphansDaoWrapper.deleteOrphans();
+
+        for (long folderId: folderIds) {
+            assertNull(foldersDao.getFullFolderPath(folderId));
+        }
+    }
+
+    @Test
+    public void keepSharedFolders() {
+        long[] folderIds = createFolderChain(null, FOLDERS_DEPTH);
+        long[] branchIds = createFolderChain(folderIds[FOLDERS_DEPTH / 2], 10);
+        long compositionId = compositionsDao.insert(composition(null, null, "title", folderIds[FOLDERS_DEPTH - 1]));
+        compositionsDao.insert(composition(null, null, "title 2", branchIds[9]));
+
+        compositionsDao.delete(compositionId);
+        orphansDaoWrapper.deleteOrphans();
+
+        for (int i = 0; i <= FOLDERS_DEPTH / 2; i++) {
+            assertNotNull(foldersDao.getFullFolderPath(folderIds[i]));
+        }
+        for (int i = FOLDERS_DEPTH / 2 + 1; i < FOLDERS_DEPTH; i++) {
+            assertNull(foldersDao.getFullFolderPath(folderIds[i]));
+        }
+        for (long branchId: branchIds) {
+            assertNotNull(foldersDao.getFullFolderPath(branchId));
+        }
+    }
+
+    @Test
+    public void deleteMovedOutFolders() {
+        long[] folderIds = createFolderChain(null, 10);
+        long targetFolderId = foldersDao.insertFolder(new FolderEntity(null, "target"));
+        long compositionId = compositionsDao.insert(composition(null, null, "title", folderIds[9]));
+
+        compositionsDao.updateFolderId(compositionId, targetFolderId);
+        orphansDaoWrapper.deleteOrphans();
+
+        for (long folderId: folderIds) {
+            assertNull(foldersDao.getFullFolderPath(folderId));
+        }
+        assertNotNull(foldersDao.getFullFolderPath(targetFolderId));
+    }
+
+    @Test
+    public void deleteOrphanArtistAlbumAndGenre() {
+        long artistId = db.artistsDao().insertArtist("artist");
+        long albumArtistId = db.artistsDao().insertArtist("album artist");
+        long albumId = db.albumsDao().insertAlbum(albumArtistId, "album");
+        long genreId = db.genreDao().insertGenre("genre");
+        long compositionId = compositionsDao.insert(composition(artistId, albumId, "title"));
+        db.genreDao().insertGenreEntry(compositionId, genreId);
+
+        long otherArtistId = db.artistsDao().insertArtist("other artist");
+        long otherCompositionId = compositionsDao.insert(composition(otherArtistId, null, "title 2"));
+        db.genreDao().insertGenreEntry(otherCompositionId, db.genreDao().insertGenre("other genre"));
+
+        compositionsDao.delete(compositionId);
+        orphansDaoWrapper.deleteOrphans();
+
+        assertNull(db.artistsDao().findArtistIdByName("artist"));
+        assertNull(db.artistsDao().findArtistIdByName("album artist"));
+        assertNull(db.albumsDao().getAlbumEntity(albumId));
+        assertNull(db.genreDao().findGenre("genre"));
+
+        assertEquals(otherArtistId, db.artistsDao().findArtistIdByName("other artist"));
+        assertNotNull(db.genreDao().findGenre("other genre"));
+    }
+
+    @Test
+    public void keepUsedArtistOfDeletedAlbum() {
+        long artistId = db.artistsDao().insertArtist("artist");
+        long albumId = db.albumsDao().insertAlbum(artistId, "album");
+        long compositionId = compositionsDao.insert(composition(null, albumId, "title"));
+        compositionsDao.insert(composition(artistId, null, "title 2"));
+
+        compositionsDao.delete(compositionId);
+        orphansDaoWrapper.deleteOrphans();
+
+        assertNull(db.albumsDao().getAlbumEntity(albumId));
+        assertEquals(artistId, db.artistsDao().findArtistIdByName("artist"));
+    }
+
+    private long[] createFolderChain(Long parentId, int depth) {
+        long[] folderIds = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            parentId = foldersDao.insertFolder(new FolderEntity(parentId, "folder " + i));
+            folderIds[i] = parentId;
+        }
+        return folderIds;
+    }
+
+}
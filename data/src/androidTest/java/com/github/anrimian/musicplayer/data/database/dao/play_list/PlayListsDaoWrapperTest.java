@@ -10,6 +10,8 @@ import androidx.room.Room;
 import androidx.test.platform.app.InstrumentationRegistry;
 
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
 import com.github.anrimian.musicplayer.data.database.entities.playlist.PlayListEntryEntity;
 import com.github.anrimian.musicplayer.data.storage.providers.playlists.StoragePlayList;
@@ -33,11 +35,16 @@ public class PlayListsDaoWrapperTest {
     @BeforeEach
     public void setUp() {
         Context context = InstrumentationRegistry.getInstrumentation().getContext();
-        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class).build();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
         compositionsDao = db.compositionsDao();
         playListDao = db.playListDao();
 
-        daoWrapper = new PlayListsDaoWrapper(playListDao, compositionsDao, db);
+        daoWrapper = new PlayListsDaoWrapper(playListDao,
+                compositionsDao,
+                db,
+                new CompositionChangesBus(db));
     }
 
     @AfterEach
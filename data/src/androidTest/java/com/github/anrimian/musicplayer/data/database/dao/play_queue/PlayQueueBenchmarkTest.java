@@ -0,0 +1,183 @@
+package com.github.anrimian.musicplayer.data.database.dao.play_queue;
+
+import static com.github.anrimian.musicplayer.data.utils.TestDataProvider.composition;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus;
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity;
+import com.github.anrimian.musicplayer.data.repositories.play_queue.PlayQueueIndex;
+import com.github.anrimian.musicplayer.data.repositories.play_queue.ShufflePermutation;
+import com.github.anrimian.musicplayer.domain.Constants;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures "play next" insertion, item moves and new shuffle on large play queues,
+ * insert and load of queue of max size and heap retained by loaded queue.
+ * Heap is measured by used memory after gc, so value is approximate.
+ */
+public class PlayQueueBenchmarkTest {
+
+    private static final String TAG = "PlayQueueBenchmark";
+
+    private static final int OPERATIONS_COUNT = 100;
+
+    private LibraryDatabase db;
+    private PlayQueueDao playQueueDao;
+    private PlayQueueDaoWrapper playQueueDaoWrapper;
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
+        playQueueDao = db.playQueueDao();
+        playQueueDaoWrapper = new PlayQueueDaoWrapper(db, playQueueDao, new CompositionChangesBus(db));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void thousandItemsQueue() {
+        measureQueue(1_000);
+    }
+
+    @Test
+    public void thirtyThousandItemsQueue() {
+        measureQueue(30_000);
+    }
+
+    @Test
+    public void hundredThousandItemsQueue() {
+        measureQueue(100_000);
+    }
+
+    @Test
+    public void maxSizeQueueInsertAndLoad() {
+        int queueSize = Constants.PLAY_QUEUE_MAX_ITEMS_COUNT;
+        List<Long> compositionIds = insertCompositions(queueSize);
+        PlayQueueIndex playQueueIndex = new PlayQueueIndex();
+
+        //each write is committed in its own transaction, as parts of new queue are
+        long startTime = System.nanoTime();
+        playQueueIndex.setQueue(compositionIds, Constants.NO_POSITION, true, 0);
+        List<PlayQueueWrite> writes = playQueueIndex.drainWrites();
+        for (PlayQueueWrite write : writes) {
+            playQueueDaoWrapper.applyWrites(Collections.singletonList(write));
+        }
+        long insertTime = System.nanoTime() - startTime;
+        assertEquals(queueSize, playQueueDao.getPlayQueueSize());
+
+        long usedMemory = getUsedMemoryAfterGc();
+        startTime = System.nanoTime();
+        PlayQueueIndex loadedIndex = new PlayQueueIndex();
+        loadedIndex.load(playQueueDaoWrapper.getPlayQueue(),
+                playQueueDaoWrapper.getCorruptedCompositionIds(),
+                playQueueDaoWrapper.getLastItemId(),
+                playQueueDaoWrapper.getShuffleSeed(),
+                loadedIndex.getLoadVersion());
+        long loadTime = System.nanoTime() - startTime;
+        //both orders with their maps of positions
+        long retainedBytes = getUsedMemoryAfterGc() - usedMemory;
+
+        assertEquals(queueSize, loadedIndex.getSize());
+        assertArrayEquals(playQueueIndex.getItemIds(false), loadedIndex.getItemIds(false));
+        assertArrayEquals(playQueueIndex.getItemIds(true), loadedIndex.getItemIds(true));
+
+        Log.d(TAG, "queue size: " + queueSize
+                + ", insert: " + insertTime / 1_000_000 + "ms in " + writes.size() + " writes"
+                + ", load: " + loadTime / 1_000_000 + "ms"
+                + ", retained heap: " + retainedBytes / 1024 + "KB");
+    }
+
+    private void measureQueue(int queueSize) {
+        List<Long> compositionIds = insertCompositions(queueSize);
+        PlayQueueIndex playQueueIndex = new PlayQueueIndex();
+        long currentItemId = playQueueIndex.setQueue(compositionIds, queueSize / 2, false, 0);
+        playQueueDaoWrapper.applyWrites(playQueueIndex.drainWrites());
+
+        //repeated insertions at the same place exhaust the gap and trigger rebalancing
+        List<Long> insertedIds = new ArrayList<>();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < OPERATIONS_COUNT; i++) {
+            long compositionId = compositionIds.get(i);
+            insertedIds.add(playQueueIndex.addAfter(
+                    Collections.singletonList(compositionId),
+                    currentItemId
+            ));
+            playQueueDaoWrapper.applyWrites(playQueueIndex.drainWrites());
+        }
+        long insertTime = System.nanoTime() - startTime;
+
+        //last inserted item follows current item, previous ones follow it in reversed order
+        long itemId = currentItemId;
+        for (int i = OPERATIONS_COUNT - 1; i >= 0; i--) {
+            itemId = playQueueDao.getNextQueueItemId(itemId);
+            assertEquals(insertedIds.get(i), itemId);
+        }
+
+        List<PlayQueueEntity> items = playQueueDao.getPlayQueue();
+        startTime = System.nanoTime();
+        for (int i = 0; i < OPERATIONS_COUNT; i++) {
+            PlayQueueEntity first = items.get(i);
+            PlayQueueEntity second = items.get(items.size() - 1 - i);
+            playQueueIndex.swapItems(first.getId(), second.getId(), false);
+            playQueueDaoWrapper.applyWrites(playQueueIndex.drainWrites());
+        }
+        long moveTime = System.nanoTime() - startTime;
+        assertEquals(queueSize + OPERATIONS_COUNT, playQueueDao.getPlayQueueSize());
+        assertEquals(items.get(items.size() - 1).getId(), playQueueDao.getFirstItem());
+
+        //new shuffle keeps stored shuffled positions, only current item is moved
+        startTime = System.nanoTime();
+        playQueueIndex.reshuffle(currentItemId, ShufflePermutation.newSeed(new Random(0)));
+        playQueueDaoWrapper.applyWrites(playQueueIndex.drainWrites());
+        long shuffleTime = System.nanoTime() - startTime;
+        assertEquals(0, playQueueIndex.getIndex(currentItemId, true));
+
+        Log.d(TAG, "queue size: " + queueSize
+                + ", insert next: " + insertTime / OPERATIONS_COUNT / 1000 + "us"
+                + ", move: " + moveTime / OPERATIONS_COUNT / 1000 + "us"
+                + ", shuffle: " + shuffleTime / 1000 + "us");
+    }
+
+    private long getUsedMemoryAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+            SystemClock.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private List<Long> insertCompositions(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        db.runInTransaction(() -> {
+            for (int i = 0; i < count; i++) {
+                ids.add(db.compositionsDao().insert(composition(null, null, "title " + i)));
+            }
+        });
+        return ids;
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.anrimian.musicplayer.data.database.dao.play_queue;
+
+import static com.github.anrimian.musicplayer.data.utils.TestDataProvider.composition;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus;
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity;
+import com.github.anrimian.musicplayer.data.repositories.play_queue.PlayQueueIndex;
+import com.github.anrimian.musicplayer.data.repositories.play_queue.ShufflePermutation;
+import com.github.anrimian.musicplayer.domain.Constants;
+import com.github.anrimian.musicplayer.domain.models.composition.CorruptionType;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Applies random operations to in-memory play queue, persists its writes and compares
+ * it with queries of play queue dao. Shuffled order is not compared, it exists only in memory.
+ */
+public class PlayQueueIndexDaoTest {
+
+    private static final int COMPOSITIONS_COUNT = 20;
+    private static final int OPERATIONS_COUNT = 300;
+    private static final long MISSING_ITEM_ID = -1;
+
+    private final Random random = new Random(0);
+    private final List<Long> compositionIds = new ArrayList<>();
+
+    private LibraryDatabase db;
+    private PlayQueueDao playQueueDao;
+    private PlayQueueDaoWrapper playQueueDaoWrapper;
+
+    private PlayQueueIndex playQueueIndex;
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
+        playQueueDao = db.playQueueDao();
+        playQueueDaoWrapper = new PlayQueueDaoWrapper(db, playQueueDao, new CompositionChangesBus(db));
+
+        for (int i = 0; i < COMPOSITIONS_COUNT; i++) {
+            long id = db.compositionsDao().insert(composition(null, null, "title " + i));
+            if (i % 5 == 0) {
+                db.compositionsDao().setCorruptionType(CorruptionType.UNSUPPORTED, id);
+            }
+            compositionIds.add(id);
+        }
+        playQueueIndex = loadIndex();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void randomOperationsMatchDaoQueries() {
+        for (int i = 0; i < OPERATIONS_COUNT; i++) {
+            applyRandomOperation();
+            persistWrites();
+            assertSameState();
+        }
+    }
+
+    @Test
+    public void loadedQueueRestoresPersistedState() {
+        for (int i = 0; i < OPERATIONS_COUNT; i++) {
+            applyRandomOperation();
+            persistWrites();
+        }
+        List<String> entities = toStrings(playQueueIndex.getEntities());
+        List<Long> shuffledItemIds = getShuffledItemIds(playQueueIndex);
+
+        //process is restarted, only persisted state is left
+        playQueueIndex = loadIndex();
+
+        assertEquals(entities, toStrings(playQueueIndex.getEntities()));
+        assertEquals(shuffledItemIds, getShuffledItemIds(playQueueIndex));
+        assertSameState();
+    }
+
+    @Test
+    public void deletedCompositionIsRemovedAfterLoad() {
+        playQueueIndex.setQueue(compositionIds, Constants.NO_POSITION, false, 0);
+        persistWrites();
+
+        db.compositionsDao().delete(compositionIds.get(1));
+        playQueueIndex.invalidate();
+        playQueueIndex = loadIndex();
+
+        assertEquals(COMPOSITIONS_COUNT - 1, playQueueIndex.getSize());
+        assertSameState();
+    }
+
+    private void applyRandomOperation() {
+        List<PlayQueueEntity> items = playQueueDao.getPlayQueue();
+        switch (random.nextInt(10)) {
+            case 0: {
+                List<Long> ids = randomCompositionIds(1 + random.nextInt(COMPOSITIONS_COUNT));
+                playQueueIndex.setQueue(ids, Constants.NO_POSITION, random.nextBoolean(), random.nextLong());
+                break;
+            }
+            case 1:
+            case 2:
+            case 3: {
+                playQueueIndex.addAfter(randomCompositionIds(1 + random.nextInt(3)), randomItemId(items));
+                break;
+            }
+            case 4: {
+                playQueueIndex.addToEnd(randomCompositionIds(1 + random.nextInt(3)));
+                break;
+            }
+            case 5: {
+                playQueueIndex.removeItem(randomItemId(items));
+                break;
+            }
+            case 6: {
+                playQueueIndex.restoreDeletedItem();
+                break;
+            }
+            case 7: {
+                playQueueIndex.swapItems(randomItemId(items), randomItemId(items), random.nextBoolean());
+                break;
+            }
+            case 8: {
+                playQueueIndex.reshuffle(randomItemId(items), ShufflePermutation.newSeed(random));
+                break;
+            }
+            default: {
+                if (items.size() > 200) {
+                    playQueueIndex.clear();
+                }
+            }
+        }
+    }
+
+    private void assertSameState() {
+        List<PlayQueueEntity> items = playQueueDao.getPlayQueue();
+        assertEquals(toStrings(items), toStrings(playQueueIndex.getEntities()));
+
+        List<Long> itemIds = new ArrayList<>();
+        for (PlayQueueEntity item : items) {
+            itemIds.add(item.getId());
+        }
+        itemIds.add(MISSING_ITEM_ID);
+        for (long itemId : itemIds) {
+            Long nextId = playQueueDao.getNextQueueItemId(itemId);
+            assertEquals(
+                    nextId == null ? playQueueDao.getFirstItem() : nextId,
+                    orZero(playQueueIndex.getNextItemId(itemId, false))
+            );
+            Long previousId = playQueueDao.getPreviousQueueItemId(itemId);
+            assertEquals(
+                    previousId == null ? playQueueDao.getLastItem() : previousId,
+                    orZero(playQueueIndex.getPreviousItemId(itemId, false))
+            );
+        }
+        for (int i = 0; i < items.size(); i++) {
+            PlayQueueEntity item = items.get(i);
+            assertEquals(i, playQueueIndex.getIndex(item.getId(), false));
+            assertEquals(
+                    playQueueDao.getItemIdAtPosition(item.getPosition() + 1),
+                    playQueueIndex.getItemAtPosition(item.getPosition() + 1, false)
+            );
+        }
+    }
+
+    private void persistWrites() {
+        playQueueDaoWrapper.applyWrites(playQueueIndex.drainWrites());
+    }
+
+    private PlayQueueIndex loadIndex() {
+        PlayQueueIndex index = new PlayQueueIndex();
+        index.load(playQueueDaoWrapper.getPlayQueue(),
+                playQueueDaoWrapper.getCorruptedCompositionIds(),
+                playQueueDaoWrapper.getLastItemId(),
+                playQueueDaoWrapper.getShuffleSeed(),
+                index.getLoadVersion());
+        return index;
+    }
+
+    private static List<Long> getShuffledItemIds(PlayQueueIndex index) {
+        List<Long> itemIds = new ArrayList<>();
+        Long itemId = index.getItemAtPosition(0, true);
+        while (itemId != null && itemIds.size() < index.getSize()) {
+            itemIds.add(itemId);
+            itemId = index.getNextItemId(itemId, true);
+        }
+        return itemIds;
+    }
+
+    private long randomItemId(List<PlayQueueEntity> items) {
+        if (items.isEmpty() || random.nextInt(20) == 0) {
+            return MISSING_ITEM_ID;
+        }
+        //insertions around the same items exhaust gaps between positions
+        int bound = random.nextInt(10) < 7 ? Math.min(3, items.size()) : items.size();
+        return items.get(random.nextInt(bound)).getId();
+    }
+
+    private List<Long> randomCompositionIds(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(compositionIds.get(random.nextInt(COMPOSITIONS_COUNT)));
+        }
+        return ids;
+    }
+
+    private static long orZero(Long id) {
+        return id == null ? 0 : id;
+    }
+
+    private static List<String> toStrings(List<PlayQueueEntity> entities) {
+        List<String> result = new ArrayList<>(entities.size());
+        for (PlayQueueEntity entity : entities) {
+            result.add(entity.toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.anrimian.musicplayer.data.database.profiler;
+
+import static com.github.anrimian.musicplayer.data.utils.TestDataProvider.composition;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.LibraryDatabaseCallback;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+public class ProfilingOpenHelperFactoryTest {
+
+    private final QueryProfiler queryProfiler = new QueryProfiler(0);
+
+    private LibraryDatabase db;
+    private CompositionsDao compositionsDao;
+    private CompositionsDaoWrapper compositionsDaoWrapper;
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class)
+                .openHelperFactory(new ProfilingOpenHelperFactory(
+                        new FrameworkSQLiteOpenHelperFactory(),
+                        queryProfiler
+                ))
+                .addCallback(new LibraryDatabaseCallback())
+                .build();
+        compositionsDao = db.compositionsDao();
+        compositionsDaoWrapper = new CompositionsDaoWrapper(db,
+                db.artistsDao(),
+                compositionsDao,
+                db.albumsDao(),
+                db.genreDao(),
+                db.foldersDao(),
+                new OrphansDaoWrapper(db, db.orphansDao(), db.foldersDao()),
+                new CompositionChangesBus(db));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void daoQueriesAreProfiled() {
+        long id = compositionsDao.insert(composition(null, null, "secret title"));
+        queryProfiler.reset();
+
+        compositionsDaoWrapper.getFullComposition(id);
+        compositionsDaoWrapper.getFullComposition(id + 1);
+
+        QueryProfiler.QueryStats stats = getStats("FROM compositions");
+        assertEquals(2, stats.getCount());
+        assertEquals(1, stats.getRowsCount());
+        assertEquals("CompositionsDaoWrapper.getFullComposition", stats.getCaller());
+
+        //zero threshold makes each query slow
+        assertEquals(2, queryProfiler.getSlowQueries().size());
+        assertEquals(1, queryProfiler.getSlowQueries().get(0).getArgsCount());
+        assertFalse(queryProfiler.getReport().contains("secret"));
+    }
+
+    @Test
+    public void tracedQueryReportsMethodWhichBuiltIt() {
+        TracedQuery query = buildArtistsQuery();
+        queryProfiler.reset();
+
+        //executed in other thread like room observable query
+        Single.fromCallable(() -> {
+            try (Cursor cursor = db.query(query)) {
+                return cursor.getCount();
+            }
+        }).subscribeOn(Schedulers.io())
+                .blockingGet();
+
+        assertEquals("ProfilingOpenHelperFactoryTest.buildArtistsQuery",
+                getStats("FROM artists").getCaller());
+    }
+
+    private TracedQuery buildArtistsQuery() {
+        return new TracedQuery(new SimpleSQLiteQuery("SELECT id FROM artists"));
+    }
+
+    private QueryProfiler.QueryStats getStats(String sqlPart) {
+        for (QueryProfiler.QueryStats stats: queryProfiler.getStats()) {
+            if (stats.getShape().contains(sqlPart)) {
+                return stats;
+            }
+        }
+        throw new AssertionError("query is not profiled: " + sqlPart);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.anrimian.musicplayer.data.database;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.github.anrimian.musicplayer.domain.Constants;
+
+/**
+ * Keeps display-ready artist, album and genre names and name sort key in compositions table
+ * in sync with library tables, so list queries don't resolve them per row.
+ */
+class CompositionProjectionTriggers {
+
+    private static final String UPDATE_PROJECTION = "UPDATE compositions SET " +
+            "artistName = (SELECT name FROM artists WHERE id = compositions.artistId), " +
+            "albumName = (SELECT name FROM albums WHERE id = compositions.albumId), " +
+            "albumArtistName = (SELECT name FROM artists WHERE id = (SELECT artistId FROM albums WHERE id = compositions.albumId)), " +
+            "genreNames = (SELECT group_concat(name, '" + Constants.GENRE_DIVIDER + "') FROM ( " +
+            "   SELECT name" +
+            "   FROM genres " +
+            "   JOIN genre_entries AS entries ON entries.compositionId = compositions.id" +
+            "   WHERE id = entries.genreId " +
+            "   ORDER BY entries.position" +
+            ")), " +
+            "sortTitle = CASE WHEN title IS NULL OR title = '' THEN fileName ELSE title END ";
+
+    static void fillProjection(SupportSQLiteDatabase db) {
+        db.execSQL(UPDATE_PROJECTION);
+    }
+
+    static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_projection_after_insert` " +
+                "AFTER INSERT ON `compositions` " +
+                "BEGIN " +
+                UPDATE_PROJECTION + "WHERE id = NEW.id; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_projection_after_update` " +
+                "AFTER UPDATE OF title, fileName, artistId, albumId ON `compositions` " +
+                "BEGIN " +
+                UPDATE_PROJECTION + "WHERE id = NEW.id; " +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `artists_projection_after_update` " +
+                "AFTER UPDATE OF name ON `artists` " +
+                "BEGIN " +
+                UPDATE_PROJECTION + "WHERE artistId = NEW.id " +
+                "   OR albumId IN (SELECT id FROM albums WHERE artistId = NEW.id); " +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `albums_projection_after_update` " +
+                "AFTER UPDATE OF name, artistId ON `albums` " +
+                "BEGIN " +
+                UPDATE_PROJECTION + "WHERE albumId = NEW.id; " +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genres_projection_after_update` " +
+                "AFTER UPDATE OF name ON `genres` " +
+                "BEGIN " +
+                UPDATE_PROJECTION + "WHERE id IN (SELECT compositionId FROM genre_entries WHERE genreId = NEW.id); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genre_entries_projection_after_insert` " +
+                "AFTER INSERT ON `genre_entries` " +
+                "BEGIN " +
+                UPDATE_PROJECTION + "WHERE id = NEW.compositionId; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genre_entries_projection_after_update` " +
+                "AFTER UPDATE OF genreId, position ON `genre_entries` " +
+                "BEGIN " +
+                UPDATE_PROJECTION + "WHERE id = NEW.compositionId; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genre_entries_projection_after_delete` " +
+                "AFTER DELETE ON `genre_entries` " +
+                "BEGIN " +
+                UPDATE_PROJECTION + "WHERE id = OLD.compositionId; " +
+                "END");
+    }
+
+}
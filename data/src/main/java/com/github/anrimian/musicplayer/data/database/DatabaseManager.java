@@ -3,6 +3,10 @@ package com.github.anrimian.musicplayer.data.database;
 import android.content.Context;
 
 import androidx.room.Room;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import com.github.anrimian.musicplayer.data.database.profiler.ProfilingOpenHelperFactory;
+import com.github.anrimian.musicplayer.data.database.profiler.QueryProfiler;
 
 /**
  * Created on 18.11.2017.
@@ -19,7 +23,7 @@ public class DatabaseManager {
         this.context = context;
     }
 
-    public LibraryDatabase getLibraryDatabase() {
+    public LibraryDatabase getLibraryDatabase(QueryProfiler queryProfiler) {
         return Room.databaseBuilder(context, LibraryDatabase.class, LIBRARY_DATABASE_NAME)
                 .addMigrations(Migrations.getMigration1_2(context),
                         Migrations.MIGRATION_2_3,
@@ -35,7 +39,19 @@ public class DatabaseManager {
                         Migrations.MIGRATION_12_13,
                         Migrations.getMigration13_14(context),
                         Migrations.MIGRATION_14_15,
-                        Migrations.getMigration15_16(context))
+                        Migrations.getMigration15_16(context),
+                        Migrations.MIGRATION_16_17,
+                        Migrations.MIGRATION_17_18,
+                        Migrations.MIGRATION_18_19,
+                        Migrations.MIGRATION_19_20,
+                        Migrations.MIGRATION_20_21,
+                        Migrations.MIGRATION_21_22,
+                        Migrations.MIGRATION_22_23)
+                .openHelperFactory(new ProfilingOpenHelperFactory(
+                        new FrameworkSQLiteOpenHelperFactory(),
+                        queryProfiler
+                ))
+                .addCallback(new LibraryDatabaseCallback())
                 .build();
     }
 
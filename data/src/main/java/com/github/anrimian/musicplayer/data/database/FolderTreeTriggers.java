@@ -0,0 +1,52 @@
+package com.github.anrimian.musicplayer.data.database;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Keeps folder_tree closure table and materialized folder paths in sync with folders table.
+ * Triggers are not part of room schema, so they are created both in LibraryDatabaseCallback and
+ * in migration.
+ */
+class FolderTreeTriggers {
+
+    static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `folders_after_insert` " +
+                "AFTER INSERT ON `folders` " +
+                "BEGIN " +
+                "INSERT INTO folder_tree (ancestorId, descendantId, depth) " +
+                "   SELECT ancestorId, NEW.id, depth + 1 FROM folder_tree WHERE descendantId = NEW.parentId " +
+                "   UNION ALL " +
+                "   SELECT NEW.id, NEW.id, 0; " +
+                "UPDATE folders " +
+                "   SET path = IFNULL((SELECT path || '/' FROM folders WHERE id = NEW.parentId), '') || NEW.name " +
+                "   WHERE id = NEW.id; " +
+                "END");
+
+        //unlink subtree from old ancestors and link it to ancestors of new parent
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `folders_after_move` " +
+                "AFTER UPDATE OF parentId ON `folders` " +
+                "WHEN OLD.parentId IS NOT NEW.parentId " +
+                "BEGIN " +
+                "DELETE FROM folder_tree " +
+                "   WHERE descendantId IN (SELECT descendantId FROM folder_tree WHERE ancestorId = NEW.id) " +
+                "   AND ancestorId NOT IN (SELECT descendantId FROM folder_tree WHERE ancestorId = NEW.id); " +
+                "INSERT INTO folder_tree (ancestorId, descendantId, depth) " +
+                "   SELECT parents.ancestorId, children.descendantId, parents.depth + children.depth + 1 " +
+                "   FROM folder_tree AS parents, folder_tree AS children " +
+                "   WHERE parents.descendantId = NEW.parentId AND children.ancestorId = NEW.id; " +
+                "END");
+
+        //replace path prefix of folder and all its subfolders
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `folders_after_path_change` " +
+                "AFTER UPDATE OF name, parentId ON `folders` " +
+                "WHEN OLD.name IS NOT NEW.name OR OLD.parentId IS NOT NEW.parentId " +
+                "BEGIN " +
+                "UPDATE folders " +
+                "   SET path = IFNULL((SELECT path || '/' FROM folders WHERE id = NEW.parentId), '') " +
+                "       || NEW.name " +
+                "       || substr(path, length(OLD.path) + 1) " +
+                "   WHERE id IN (SELECT descendantId FROM folder_tree WHERE ancestorId = NEW.id); " +
+                "END");
+    }
+
+}
@@ -11,18 +11,27 @@ import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
 import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDao;
 import com.github.anrimian.musicplayer.data.database.dao.genre.GenreDao;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDao;
 import com.github.anrimian.musicplayer.data.database.dao.play_list.PlayListDao;
 import com.github.anrimian.musicplayer.data.database.dao.play_queue.PlayQueueDao;
 import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity;
 import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity;
 import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity;
 import com.github.anrimian.musicplayer.data.database.entities.folder.FolderEntity;
+import com.github.anrimian.musicplayer.data.database.entities.folder.FolderTreeEntity;
 import com.github.anrimian.musicplayer.data.database.entities.genres.GenreEntity;
 import com.github.anrimian.musicplayer.data.database.entities.genres.GenreEntryEntity;
+import com.github.anrimian.musicplayer.data.database.entities.orphans.OrphanCandidateEntity;
 import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity;
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueStateEntity;
 import com.github.anrimian.musicplayer.data.database.entities.play_queue.TrackPositionEntity;
 import com.github.anrimian.musicplayer.data.database.entities.playlist.PlayListEntity;
 import com.github.anrimian.musicplayer.data.database.entities.playlist.PlayListEntryEntity;
+import com.github.anrimian.musicplayer.data.database.entities.search.AlbumSearchEntity;
+import com.github.anrimian.musicplayer.data.database.entities.search.ArtistSearchEntity;
+import com.github.anrimian.musicplayer.data.database.entities.search.CompositionSearchEntity;
+import com.github.anrimian.musicplayer.data.database.entities.search.GenreSearchEntity;
+import com.github.anrimian.musicplayer.data.database.entities.search.PlayListSearchEntity;
 
 /**
  * Created on 18.11.2017.
@@ -38,8 +47,16 @@ import com.github.anrimian.musicplayer.data.database.entities.playlist.PlayListE
         GenreEntity.class,
         GenreEntryEntity.class,
         FolderEntity.class,
-        TrackPositionEntity.class
-}, version = 16)
+        TrackPositionEntity.class,
+        FolderTreeEntity.class,
+        CompositionSearchEntity.class,
+        ArtistSearchEntity.class,
+        AlbumSearchEntity.class,
+        GenreSearchEntity.class,
+        PlayListSearchEntity.class,
+        OrphanCandidateEntity.class,
+        PlayQueueStateEntity.class
+}, version = 23)
 @TypeConverters({
         DateConverter.class,
         EnumConverter.class
@@ -52,4 +69,5 @@ public abstract class LibraryDatabase extends RoomDatabase {
     public abstract AlbumsDao albumsDao();
     public abstract GenreDao genreDao();
     public abstract FoldersDao foldersDao();
+    public abstract OrphansDao orphansDao();
 }
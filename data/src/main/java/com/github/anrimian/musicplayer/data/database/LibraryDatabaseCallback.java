@@ -0,0 +1,21 @@
+package com.github.anrimian.musicplayer.data.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Creates triggers of library database, room doesn't create them from schema
+ */
+public class LibraryDatabaseCallback extends RoomDatabase.Callback {
+
+    @Override
+    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+        FolderTreeTriggers.createTriggers(db);
+        SearchIndexTriggers.createTriggers(db);
+        CompositionProjectionTriggers.createTriggers(db);
+        LibraryStatsTriggers.createTriggers(db);
+        OrphanCandidateTriggers.createTriggers(db);
+    }
+
+}
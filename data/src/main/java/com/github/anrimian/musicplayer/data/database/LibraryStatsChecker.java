@@ -0,0 +1,36 @@
+package com.github.anrimian.musicplayer.data.database;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Verifies compositions stats of artists, albums, genres, folders and play lists against values
+ * aggregated from compositions and recalculates them if triggers missed any change.
+ */
+public class LibraryStatsChecker {
+
+    private final LibraryDatabase libraryDatabase;
+
+    public LibraryStatsChecker(LibraryDatabase libraryDatabase) {
+        this.libraryDatabase = libraryDatabase;
+    }
+
+    /**
+     * @return count of rows with wrong stats found before repair
+     */
+    public int checkAndRepair() {
+        SupportSQLiteDatabase db = libraryDatabase.getOpenHelper().getWritableDatabase();
+        return libraryDatabase.runInTransaction(() -> {
+            int count = LibraryStatsTriggers.countInconsistentRows(db);
+            if (count > 0) {
+                LibraryStatsTriggers.recalculateStats(db);
+            }
+            return count;
+        });
+    }
+
+    public int countInconsistentRows() {
+        SupportSQLiteDatabase db = libraryDatabase.getOpenHelper().getReadableDatabase();
+        return LibraryStatsTriggers.countInconsistentRows(db);
+    }
+
+}
@@ -0,0 +1,250 @@
+package com.github.anrimian.musicplayer.data.database;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Keeps compositions count, total duration and total size of artists, albums, genres, folders
+ * and play lists in their own rows, so list queries don't aggregate compositions per row.
+ * Triggers apply deltas of changed rows, full recalculation is used by migration and
+ * {@link LibraryStatsChecker}.
+ */
+class LibraryStatsTriggers {
+
+    //play list can contain same composition few times
+    private static final String PLAY_LIST_ENTRIES_COUNT =
+            "(SELECT count() FROM play_lists_entries WHERE playListId = play_lists.id AND audioId = OLD.id)";
+
+    private static final TableStats[] TABLES_STATS = {
+            new TableStats("artists", "compositions WHERE artistId = artists.id")
+                    .add("albumsCount", "(SELECT count() FROM albums WHERE artistId = artists.id)"),
+            new TableStats("albums", "compositions WHERE albumId = albums.id"),
+            new TableStats("genres", "compositions " +
+                    "JOIN genre_entries ON genre_entries.compositionId = compositions.id " +
+                    "WHERE genreId = genres.id"),
+            //folder stats include compositions of all subfolders
+            new TableStats("folders", "compositions " +
+                    "WHERE folderId IN (SELECT descendantId FROM folder_tree WHERE ancestorId = folders.id)"),
+            new TableStats("play_lists", "play_lists_entries " +
+                    "JOIN compositions ON compositions.id = play_lists_entries.audioId " +
+                    "WHERE playListId = play_lists.id")
+    };
+
+    static void recalculateStats(SupportSQLiteDatabase db) {
+        for (TableStats tableStats: TABLES_STATS) {
+            db.execSQL(tableStats.getRecalculateQuery());
+        }
+    }
+
+    /**
+     * @return count of rows which stats differ from recalculated values
+     */
+    static int countInconsistentRows(SupportSQLiteDatabase db) {
+        int count = 0;
+        for (TableStats tableStats: TABLES_STATS) {
+            try (Cursor c = db.query(tableStats.getInconsistentRowsQuery())) {
+                if (c.moveToFirst()) {
+                    count += c.getInt(0);
+                }
+            }
+        }
+        return count;
+    }
+
+    static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_stats_after_insert` " +
+                "AFTER INSERT ON `compositions` " +
+                "BEGIN " +
+                addComposition("artists", "NEW", "id = NEW.artistId") +
+                addComposition("albums", "NEW", "id = NEW.albumId") +
+                addComposition("folders", "NEW", getAncestorFoldersCondition("NEW.folderId")) +
+                "END");
+        //genre and play list entries are deleted by cascade after composition and can't be joined
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_stats_before_delete` " +
+                "BEFORE DELETE ON `compositions` " +
+                "BEGIN " +
+                removeComposition("artists", "OLD", "id = OLD.artistId") +
+                removeComposition("albums", "OLD", "id = OLD.albumId") +
+                removeComposition("folders", "OLD", getAncestorFoldersCondition("OLD.folderId")) +
+                removeComposition("genres", "OLD", "id IN (SELECT genreId FROM genre_entries WHERE compositionId = OLD.id)") +
+                "UPDATE play_lists SET " +
+                "   compositionsCount = compositionsCount - " + PLAY_LIST_ENTRIES_COUNT + ", " +
+                "   totalDuration = totalDuration - OLD.duration * " + PLAY_LIST_ENTRIES_COUNT + ", " +
+                "   totalSize = totalSize - OLD.size * " + PLAY_LIST_ENTRIES_COUNT + " " +
+                "   WHERE id IN (SELECT playListId FROM play_lists_entries WHERE audioId = OLD.id); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_stats_after_update` " +
+                "AFTER UPDATE OF duration, size, artistId, albumId, folderId ON `compositions` " +
+                "WHEN OLD.duration != NEW.duration OR OLD.size != NEW.size " +
+                "   OR OLD.artistId IS NOT NEW.artistId " +
+                "   OR OLD.albumId IS NOT NEW.albumId " +
+                "   OR OLD.folderId IS NOT NEW.folderId " +
+                "BEGIN " +
+                removeComposition("artists", "OLD", "id = OLD.artistId") +
+                addComposition("artists", "NEW", "id = NEW.artistId") +
+                removeComposition("albums", "OLD", "id = OLD.albumId") +
+                addComposition("albums", "NEW", "id = NEW.albumId") +
+                removeComposition("folders", "OLD", getAncestorFoldersCondition("OLD.folderId")) +
+                addComposition("folders", "NEW", getAncestorFoldersCondition("NEW.folderId")) +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_stats_after_size_change` " +
+                "AFTER UPDATE OF duration, size ON `compositions` " +
+                "WHEN OLD.duration != NEW.duration OR OLD.size != NEW.size " +
+                "BEGIN " +
+                "UPDATE genres SET " +
+                "   totalDuration = totalDuration - OLD.duration + NEW.duration, " +
+                "   totalSize = totalSize - OLD.size + NEW.size " +
+                "   WHERE id IN (SELECT genreId FROM genre_entries WHERE compositionId = NEW.id); " +
+                "UPDATE play_lists SET " +
+                "   totalDuration = totalDuration + (NEW.duration - OLD.duration) * " + PLAY_LIST_ENTRIES_COUNT + ", " +
+                "   totalSize = totalSize + (NEW.size - OLD.size) * " + PLAY_LIST_ENTRIES_COUNT + " " +
+                "   WHERE id IN (SELECT playListId FROM play_lists_entries WHERE audioId = NEW.id); " +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `albums_stats_after_insert` " +
+                "AFTER INSERT ON `albums` " +
+                "BEGIN " +
+                "UPDATE artists SET albumsCount = albumsCount + 1 WHERE id = NEW.artistId; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `albums_stats_after_delete` " +
+                "AFTER DELETE ON `albums` " +
+                "BEGIN " +
+                "UPDATE artists SET albumsCount = albumsCount - 1 WHERE id = OLD.artistId; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `albums_stats_after_update` " +
+                "AFTER UPDATE OF artistId ON `albums` " +
+                "WHEN OLD.artistId IS NOT NEW.artistId " +
+                "BEGIN " +
+                "UPDATE artists SET albumsCount = albumsCount - 1 WHERE id = OLD.artistId; " +
+                "UPDATE artists SET albumsCount = albumsCount + 1 WHERE id = NEW.artistId; " +
+                "END");
+
+        //moved folder stats already contain its subfolders, ancestors of old and new parent are
+        //not changed by folder_tree update, so trigger order doesn't matter
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `folders_stats_after_move` " +
+                "AFTER UPDATE OF parentId ON `folders` " +
+                "WHEN OLD.parentId IS NOT NEW.parentId " +
+                "BEGIN " +
+                "UPDATE folders SET " +
+                "   compositionsCount = compositionsCount - NEW.compositionsCount, " +
+                "   totalDuration = totalDuration - NEW.totalDuration, " +
+                "   totalSize = totalSize - NEW.totalSize " +
+                "   WHERE " + getAncestorFoldersCondition("OLD.parentId") + "; " +
+                "UPDATE folders SET " +
+                "   compositionsCount = compositionsCount + NEW.compositionsCount, " +
+                "   totalDuration = totalDuration + NEW.totalDuration, " +
+                "   totalSize = totalSize + NEW.totalSize " +
+                "   WHERE " + getAncestorFoldersCondition("NEW.parentId") + "; " +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genre_entries_stats_after_insert` " +
+                "AFTER INSERT ON `genre_entries` " +
+                "BEGIN " +
+                addEntry("genres", "NEW.compositionId", "id = NEW.genreId") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genre_entries_stats_after_delete` " +
+                "AFTER DELETE ON `genre_entries` " +
+                "WHEN EXISTS(SELECT 1 FROM compositions WHERE id = OLD.compositionId) " +
+                "BEGIN " +
+                removeEntry("genres", "OLD.compositionId", "id = OLD.genreId") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genre_entries_stats_after_update` " +
+                "AFTER UPDATE OF genreId, compositionId ON `genre_entries` " +
+                "WHEN OLD.genreId != NEW.genreId OR OLD.compositionId != NEW.compositionId " +
+                "BEGIN " +
+                removeEntry("genres", "OLD.compositionId", "id = OLD.genreId") +
+                addEntry("genres", "NEW.compositionId", "id = NEW.genreId") +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `play_lists_entries_stats_after_insert` " +
+                "AFTER INSERT ON `play_lists_entries` " +
+                "BEGIN " +
+                addEntry("play_lists", "NEW.audioId", "id = NEW.playListId") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `play_lists_entries_stats_after_delete` " +
+                "AFTER DELETE ON `play_lists_entries` " +
+                "WHEN EXISTS(SELECT 1 FROM compositions WHERE id = OLD.audioId) " +
+                "BEGIN " +
+                removeEntry("play_lists", "OLD.audioId", "id = OLD.playListId") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `play_lists_entries_stats_after_update` " +
+                "AFTER UPDATE OF playListId, audioId ON `play_lists_entries` " +
+                "WHEN OLD.playListId != NEW.playListId OR OLD.audioId != NEW.audioId " +
+                "BEGIN " +
+                removeEntry("play_lists", "OLD.audioId", "id = OLD.playListId") +
+                addEntry("play_lists", "NEW.audioId", "id = NEW.playListId") +
+                "END");
+    }
+
+    private static String getAncestorFoldersCondition(String folderId) {
+        return "id IN (SELECT ancestorId FROM folder_tree WHERE descendantId = " + folderId + ")";
+    }
+
+    private static String addComposition(String table, String row, String condition) {
+        return changeStats(table, '+', row + ".duration", row + ".size", condition);
+    }
+
+    private static String removeComposition(String table, String row, String condition) {
+        return changeStats(table, '-', row + ".duration", row + ".size", condition);
+    }
+
+    private static String addEntry(String table, String compositionId, String condition) {
+        return changeStats(table, '+',
+                "(SELECT duration FROM compositions WHERE id = " + compositionId + ")",
+                "(SELECT size FROM compositions WHERE id = " + compositionId + ")",
+                condition);
+    }
+
+    private static String removeEntry(String table, String compositionId, String condition) {
+        return changeStats(table, '-',
+                "(SELECT duration FROM compositions WHERE id = " + compositionId + ")",
+                "(SELECT size FROM compositions WHERE id = " + compositionId + ")",
+                condition);
+    }
+
+    private static String changeStats(String table,
+                                      char sign,
+                                      String duration,
+                                      String size,
+                                      String condition) {
+        return "UPDATE " + table + " SET " +
+                "   compositionsCount = compositionsCount " + sign + " 1, " +
+                "   totalDuration = totalDuration " + sign + " " + duration + ", " +
+                "   totalSize = totalSize " + sign + " " + size + " " +
+                "   WHERE " + condition + "; ";
+    }
+
+    private static class TableStats {
+
+        private final String table;
+        private final StringBuilder setClause = new StringBuilder();
+        private final StringBuilder mismatchClause = new StringBuilder();
+
+        TableStats(String table, String compositionsSource) {
+            this.table = table;
+            add("compositionsCount", "(SELECT count() FROM " + compositionsSource + ")");
+            add("totalDuration", "(SELECT IFNULL(sum(duration), 0) FROM " + compositionsSource + ")");
+            add("totalSize", "(SELECT IFNULL(sum(size), 0) FROM " + compositionsSource + ")");
+        }
+
+        TableStats add(String column, String expression) {
+            if (setClause.length() > 0) {
+                setClause.append(", ");
+                mismatchClause.append(" OR ");
+            }
+            setClause.append(column).append(" = ").append(expression);
+            mismatchClause.append(column).append(" != ").append(expression);
+            return this;
+        }
+
+        String getRecalculateQuery() {
+            return "UPDATE " + table + " SET " + setClause;
+        }
+
+        String getInconsistentRowsQuery() {
+            return "SELECT count() FROM " + table + " WHERE " + mismatchClause;
+        }
+    }
+
+}
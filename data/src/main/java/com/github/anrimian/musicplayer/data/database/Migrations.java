@@ -16,6 +16,7 @@ import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.github.anrimian.musicplayer.data.database.converters.EnumConverter;
 import com.github.anrimian.musicplayer.data.database.dao.ignoredfolders.IgnoredFoldersDao;
+import com.github.anrimian.musicplayer.data.database.entities.orphans.OrphanCandidateEntity;
 import com.github.anrimian.musicplayer.data.database.mappers.CompositionCorruptionDetector;
 import com.github.anrimian.musicplayer.data.repositories.state.UiStateRepositoryImpl;
 import com.github.anrimian.musicplayer.data.storage.providers.albums.StorageAlbum;
@@ -35,6 +36,111 @@ import java.util.Map;
 @SuppressLint("RestrictedApi")
 class Migrations {
 
+    static Migration MIGRATION_22_23 = new Migration(22, 23) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `play_queue_state` (`id` INTEGER NOT NULL, `shuffleSeed` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+            database.execSQL("INSERT INTO play_queue_state (id, shuffleSeed) VALUES (0, 0)");
+        }
+    };
+
+    static Migration MIGRATION_21_22 = new Migration(21, 22) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `orphan_candidates` (`type` INTEGER NOT NULL, `id` INTEGER NOT NULL, PRIMARY KEY(`type`, `id`))");
+            //check whole library once on first cleanup, empty entities could be left by previous sweeps
+            database.execSQL("INSERT INTO orphan_candidates (type, id) SELECT " + OrphanCandidateEntity.ARTIST + ", id FROM artists");
+            database.execSQL("INSERT INTO orphan_candidates (type, id) SELECT " + OrphanCandidateEntity.ALBUM + ", id FROM albums");
+            database.execSQL("INSERT INTO orphan_candidates (type, id) SELECT " + OrphanCandidateEntity.GENRE + ", id FROM genres");
+            database.execSQL("INSERT INTO orphan_candidates (type, id) SELECT " + OrphanCandidateEntity.FOLDER + ", id FROM folders");
+
+            OrphanCandidateTriggers.createTriggers(database);
+        }
+    };
+
+    static Migration MIGRATION_20_21 = new Migration(20, 21) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            for (String table: new String[] { "artists", "albums", "genres", "folders", "play_lists" }) {
+                database.execSQL("ALTER TABLE " + table + " ADD COLUMN compositionsCount INTEGER NOT NULL DEFAULT 0");
+                database.execSQL("ALTER TABLE " + table + " ADD COLUMN totalDuration INTEGER NOT NULL DEFAULT 0");
+                database.execSQL("ALTER TABLE " + table + " ADD COLUMN totalSize INTEGER NOT NULL DEFAULT 0");
+            }
+            database.execSQL("ALTER TABLE artists ADD COLUMN albumsCount INTEGER NOT NULL DEFAULT 0");
+
+            LibraryStatsTriggers.recalculateStats(database);
+            LibraryStatsTriggers.createTriggers(database);
+        }
+    };
+
+    static Migration MIGRATION_19_20 = new Migration(19, 20) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_compositions_storageId` ON `compositions` (`storageId`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_compositions_fileName_folderId` ON `compositions` (`fileName`, `folderId`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_play_lists_storageId` ON `play_lists` (`storageId`)");
+        }
+    };
+
+    static Migration MIGRATION_18_19 = new Migration(18, 19) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE compositions ADD COLUMN artistName TEXT");
+            database.execSQL("ALTER TABLE compositions ADD COLUMN albumName TEXT");
+            database.execSQL("ALTER TABLE compositions ADD COLUMN albumArtistName TEXT");
+            database.execSQL("ALTER TABLE compositions ADD COLUMN genreNames TEXT");
+            database.execSQL("ALTER TABLE compositions ADD COLUMN sortTitle TEXT COLLATE NOCASE");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_compositions_sortTitle` ON `compositions` (`sortTitle`)");
+
+            CompositionProjectionTriggers.fillProjection(database);
+            CompositionProjectionTriggers.createTriggers(database);
+        }
+    };
+
+    static Migration MIGRATION_17_18 = new Migration(17, 18) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `compositions_search` USING FTS4(`title` TEXT, `fileName` TEXT, `artist` TEXT, `album` TEXT, `albumArtist` TEXT, `genres` TEXT, tokenize=unicode61)");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `artists_search` USING FTS4(`name` TEXT, tokenize=unicode61)");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `albums_search` USING FTS4(`name` TEXT, `artist` TEXT, tokenize=unicode61)");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `genres_search` USING FTS4(`name` TEXT, tokenize=unicode61)");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `play_lists_search` USING FTS4(`name` TEXT, tokenize=unicode61)");
+
+            SearchIndexTriggers.fillSearchTables(database);
+            SearchIndexTriggers.createTriggers(database);
+        }
+    };
+
+    static Migration MIGRATION_16_17 = new Migration(16, 17) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE folders ADD COLUMN `path` TEXT NOT NULL DEFAULT ''");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_folders_path` ON `folders` (`path`)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `folder_tree` (`ancestorId` INTEGER NOT NULL, `descendantId` INTEGER NOT NULL, `depth` INTEGER NOT NULL, PRIMARY KEY(`ancestorId`, `descendantId`), FOREIGN KEY(`ancestorId`) REFERENCES `folders`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE , FOREIGN KEY(`descendantId`) REFERENCES `folders`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_folder_tree_descendantId` ON `folder_tree` (`descendantId`)");
+
+            database.execSQL("WITH RECURSIVE tree(ancestorId, descendantId, depth) AS (" +
+                    "   SELECT id, id, 0 FROM folders " +
+                    "   UNION ALL " +
+                    "   SELECT tree.ancestorId, folders.id, tree.depth + 1 " +
+                    "   FROM folders " +
+                    "   JOIN tree ON folders.parentId = tree.descendantId" +
+                    ") " +
+                    "INSERT INTO folder_tree (ancestorId, descendantId, depth) " +
+                    "SELECT ancestorId, descendantId, depth FROM tree");
+            database.execSQL("WITH RECURSIVE paths(id, path) AS (" +
+                    "   SELECT id, name FROM folders WHERE parentId IS NULL " +
+                    "   UNION ALL " +
+                    "   SELECT folders.id, paths.path || '/' || folders.name " +
+                    "   FROM folders " +
+                    "   JOIN paths ON folders.parentId = paths.id" +
+                    ") " +
+                    "UPDATE folders SET path = IFNULL((SELECT path FROM paths WHERE paths.id = folders.id), name)");
+
+            FolderTreeTriggers.createTriggers(database);
+        }
+    };
+
     static Migration getMigration15_16(Context context) {
         return new Migration(15, 16) {
             @Override
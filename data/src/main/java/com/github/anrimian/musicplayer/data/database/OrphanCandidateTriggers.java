@@ -0,0 +1,73 @@
+package com.github.anrimian.musicplayer.data.database;
+
+import static com.github.anrimian.musicplayer.data.database.entities.orphans.OrphanCandidateEntity.ALBUM;
+import static com.github.anrimian.musicplayer.data.database.entities.orphans.OrphanCandidateEntity.ARTIST;
+import static com.github.anrimian.musicplayer.data.database.entities.orphans.OrphanCandidateEntity.FOLDER;
+import static com.github.anrimian.musicplayer.data.database.entities.orphans.OrphanCandidateEntity.GENRE;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Records artists, albums, genres and folders which lost a reference into orphan_candidates,
+ * so cleanup checks only them instead of whole tables.
+ */
+class OrphanCandidateTriggers {
+
+    static void createTriggers(SupportSQLiteDatabase db) {
+        //genres are recorded by cascade delete of genre entries
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_orphans_after_delete` " +
+                "AFTER DELETE ON `compositions` " +
+                "BEGIN " +
+                addCandidate(ARTIST, "OLD.artistId") +
+                addCandidate(ALBUM, "OLD.albumId") +
+                addCandidate(FOLDER, "OLD.folderId") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_orphans_after_update` " +
+                "AFTER UPDATE OF artistId, albumId, folderId ON `compositions` " +
+                "BEGIN " +
+                addChangedCandidate(ARTIST, "artistId") +
+                addChangedCandidate(ALBUM, "albumId") +
+                addChangedCandidate(FOLDER, "folderId") +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `albums_orphans_after_delete` " +
+                "AFTER DELETE ON `albums` " +
+                "BEGIN " +
+                addCandidate(ARTIST, "OLD.artistId") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `albums_orphans_after_update` " +
+                "AFTER UPDATE OF artistId ON `albums` " +
+                "BEGIN " +
+                addChangedCandidate(ARTIST, "artistId") +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genre_entries_orphans_after_delete` " +
+                "AFTER DELETE ON `genre_entries` " +
+                "BEGIN " +
+                addCandidate(GENRE, "OLD.genreId") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genre_entries_orphans_after_update` " +
+                "AFTER UPDATE OF genreId ON `genre_entries` " +
+                "BEGIN " +
+                addChangedCandidate(GENRE, "genreId") +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `folders_orphans_after_move` " +
+                "AFTER UPDATE OF parentId ON `folders` " +
+                "BEGIN " +
+                addChangedCandidate(FOLDER, "parentId") +
+                "END");
+    }
+
+    private static String addCandidate(int type, String id) {
+        return "INSERT OR IGNORE INTO orphan_candidates (type, id) " +
+                "SELECT " + type + ", " + id + " WHERE " + id + " IS NOT NULL; ";
+    }
+
+    private static String addChangedCandidate(int type, String column) {
+        return "INSERT OR IGNORE INTO orphan_candidates (type, id) " +
+                "SELECT " + type + ", OLD." + column + " " +
+                "WHERE OLD." + column + " IS NOT NULL AND OLD." + column + " IS NOT NEW." + column + "; ";
+    }
+
+}
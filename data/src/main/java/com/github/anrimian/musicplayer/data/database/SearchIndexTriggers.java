@@ -0,0 +1,138 @@
+package com.github.anrimian.musicplayer.data.database;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Keeps full text search tables in sync with library tables. Composition search row is
+ * rebuilt completely when composition or any of its artist, album or genres changes.
+ */
+class SearchIndexTriggers {
+
+    private static final String UPDATE_COMPOSITIONS_SEARCH = "INSERT OR REPLACE INTO compositions_search " +
+            "(rowid, title, fileName, artist, album, albumArtist, genres) " +
+            "SELECT " +
+            "id, " +
+            "title, " +
+            "fileName, " +
+            "(SELECT name FROM artists WHERE id = compositions.artistId), " +
+            "(SELECT name FROM albums WHERE id = compositions.albumId), " +
+            "(SELECT name FROM artists WHERE id = (SELECT artistId FROM albums WHERE id = compositions.albumId)), " +
+            "(SELECT group_concat(name, ' ') FROM genres WHERE id IN (SELECT genreId FROM genre_entries WHERE compositionId = compositions.id)) " +
+            "FROM compositions ";
+
+    private static final String UPDATE_ALBUMS_SEARCH = "INSERT OR REPLACE INTO albums_search " +
+            "(rowid, name, artist) " +
+            "SELECT id, name, (SELECT name FROM artists WHERE id = albums.artistId) " +
+            "FROM albums ";
+
+    static void fillSearchTables(SupportSQLiteDatabase db) {
+        db.execSQL(UPDATE_COMPOSITIONS_SEARCH);
+        db.execSQL(UPDATE_ALBUMS_SEARCH);
+        db.execSQL("INSERT INTO artists_search (rowid, name) SELECT id, name FROM artists");
+        db.execSQL("INSERT INTO genres_search (rowid, name) SELECT id, name FROM genres");
+        db.execSQL("INSERT INTO play_lists_search (rowid, name) SELECT id, name FROM play_lists");
+    }
+
+    static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_search_after_insert` " +
+                "AFTER INSERT ON `compositions` " +
+                "BEGIN " +
+                UPDATE_COMPOSITIONS_SEARCH + "WHERE id = NEW.id; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_search_after_update` " +
+                "AFTER UPDATE OF title, fileName, artistId, albumId ON `compositions` " +
+                "BEGIN " +
+                UPDATE_COMPOSITIONS_SEARCH + "WHERE id = NEW.id; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_search_after_delete` " +
+                "AFTER DELETE ON `compositions` " +
+                "BEGIN " +
+                "DELETE FROM compositions_search WHERE docid = OLD.id; " +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `artists_search_after_insert` " +
+                "AFTER INSERT ON `artists` " +
+                "BEGIN " +
+                "INSERT INTO artists_search (rowid, name) VALUES (NEW.id, NEW.name); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `artists_search_after_update` " +
+                "AFTER UPDATE OF name ON `artists` " +
+                "BEGIN " +
+                "UPDATE artists_search SET name = NEW.name WHERE docid = NEW.id; " +
+                UPDATE_ALBUMS_SEARCH + "WHERE artistId = NEW.id; " +
+                UPDATE_COMPOSITIONS_SEARCH + "WHERE artistId = NEW.id " +
+                "   OR albumId IN (SELECT id FROM albums WHERE artistId = NEW.id); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `artists_search_after_delete` " +
+                "AFTER DELETE ON `artists` " +
+                "BEGIN " +
+                "DELETE FROM artists_search WHERE docid = OLD.id; " +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `albums_search_after_insert` " +
+                "AFTER INSERT ON `albums` " +
+                "BEGIN " +
+                UPDATE_ALBUMS_SEARCH + "WHERE id = NEW.id; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `albums_search_after_update` " +
+                "AFTER UPDATE OF name, artistId ON `albums` " +
+                "BEGIN " +
+                UPDATE_ALBUMS_SEARCH + "WHERE id = NEW.id; " +
+                UPDATE_COMPOSITIONS_SEARCH + "WHERE albumId = NEW.id; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `albums_search_after_delete` " +
+                "AFTER DELETE ON `albums` " +
+                "BEGIN " +
+                "DELETE FROM albums_search WHERE docid = OLD.id; " +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genres_search_after_insert` " +
+                "AFTER INSERT ON `genres` " +
+                "BEGIN " +
+                "INSERT INTO genres_search (rowid, name) VALUES (NEW.id, NEW.name); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genres_search_after_update` " +
+                "AFTER UPDATE OF name ON `genres` " +
+                "BEGIN " +
+                "UPDATE genres_search SET name = NEW.name WHERE docid = NEW.id; " +
+                UPDATE_COMPOSITIONS_SEARCH + "WHERE id IN (SELECT compositionId FROM genre_entries WHERE genreId = NEW.id); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genres_search_after_delete` " +
+                "AFTER DELETE ON `genres` " +
+                "BEGIN " +
+                "DELETE FROM genres_search WHERE docid = OLD.id; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genre_entries_search_after_insert` " +
+                "AFTER INSERT ON `genre_entries` " +
+                "BEGIN " +
+                UPDATE_COMPOSITIONS_SEARCH + "WHERE id = NEW.compositionId; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genre_entries_search_after_update` " +
+                "AFTER UPDATE OF genreId ON `genre_entries` " +
+                "BEGIN " +
+                UPDATE_COMPOSITIONS_SEARCH + "WHERE id = NEW.compositionId; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `genre_entries_search_after_delete` " +
+                "AFTER DELETE ON `genre_entries` " +
+                "BEGIN " +
+                UPDATE_COMPOSITIONS_SEARCH + "WHERE id = OLD.compositionId; " +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `play_lists_search_after_insert` " +
+                "AFTER INSERT ON `play_lists` " +
+                "BEGIN " +
+                "INSERT INTO play_lists_search (rowid, name) VALUES (NEW.id, NEW.name); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `play_lists_search_after_update` " +
+                "AFTER UPDATE OF name ON `play_lists` " +
+                "BEGIN " +
+                "UPDATE play_lists_search SET name = NEW.name WHERE docid = NEW.id; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `play_lists_search_after_delete` " +
+                "AFTER DELETE ON `play_lists` " +
+                "BEGIN " +
+                "DELETE FROM play_lists_search WHERE docid = OLD.id; " +
+                "END");
+    }
+
+}
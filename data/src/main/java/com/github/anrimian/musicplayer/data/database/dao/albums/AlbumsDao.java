@@ -9,7 +9,6 @@ import androidx.sqlite.db.SupportSQLiteQuery;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
 import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity;
 import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity;
-import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity;
 import com.github.anrimian.musicplayer.domain.models.albums.Album;
 import com.github.anrimian.musicplayer.domain.models.albums.AlbumComposition;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
@@ -28,11 +27,11 @@ public interface AlbumsDao {
     @Query("INSERT OR REPLACE INTO albums (artistId, name) VALUES (:artistId, :name)")
     long insertAlbum(@Nullable Long artistId, String name);
 
-    @RawQuery(observedEntities = { ArtistEntity.class, CompositionEntity.class, AlbumEntity.class })
+    @RawQuery(observedEntities = { ArtistEntity.class, AlbumEntity.class })
     Observable<List<Album>> getAllObservable(SupportSQLiteQuery query);
 
-    @RawQuery(observedEntities = { ArtistEntity.class, CompositionEntity.class, AlbumEntity.class })
-    Observable<List<AlbumComposition>> getCompositionsInAlbumObservable(SimpleSQLiteQuery query);
+    @RawQuery
+    List<AlbumComposition> getAlbumCompositions(SimpleSQLiteQuery query);
 
     @RawQuery
     List<Composition> getCompositionsInAlbum(SimpleSQLiteQuery query);
@@ -44,7 +43,7 @@ public interface AlbumsDao {
     @Query("SELECT id as id," +
             "name as name, " +
             "(SELECT name FROM artists WHERE artists.id = albums.artistId) as artist, " +
-            "(SELECT count() FROM compositions WHERE albumId = albums.id) as compositionsCount " +
+            "compositionsCount as compositionsCount " +
             "FROM albums " +
             "WHERE albums.artistId = :artistId")
     Observable<List<Album>> getAllAlbumsForArtistObservable(long artistId);
@@ -52,7 +51,7 @@ public interface AlbumsDao {
     @Query("SELECT id as id," +
             "name as name, " +
             "(SELECT name FROM artists WHERE artists.id = albums.artistId) as artist, " +
-            "(SELECT count() FROM compositions WHERE albumId = albums.id) as compositionsCount " +
+            "compositionsCount as compositionsCount " +
             "FROM albums " +
             "WHERE id = :albumId LIMIT 1")
     Observable<List<Album>> getAlbumObservable(long albumId);
@@ -60,7 +59,7 @@ public interface AlbumsDao {
     @Query("SELECT id as id," +
             "name as name, " +
             "(SELECT name FROM artists WHERE artists.id = albums.artistId) as artist, " +
-            "(SELECT count() FROM compositions WHERE albumId = albums.id) as compositionsCount " +
+            "compositionsCount as compositionsCount " +
             "FROM albums " +
             "WHERE id = :albumId LIMIT 1")
     Album getAlbum(long albumId);
@@ -83,10 +82,6 @@ public interface AlbumsDao {
             "WHERE id = :id AND (SELECT count() FROM compositions WHERE albumId = albums.id) = 0")
     void deleteEmptyAlbum(long id);
 
-    @Query("DELETE FROM albums " +
-            "WHERE (SELECT count() FROM compositions WHERE albumId = albums.id) = 0")
-    void deleteEmptyAlbums();
-
     @Query("SELECT name FROM albums")
     String[] getAlbumNames();
 
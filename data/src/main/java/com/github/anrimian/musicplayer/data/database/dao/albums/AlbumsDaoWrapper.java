@@ -1,6 +1,7 @@
 package com.github.anrimian.musicplayer.data.database.dao.albums;
 
-import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getSearchArgs;
+import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getFtsSearchArgs;
+import static com.github.anrimian.musicplayer.domain.Constants.TRIGGER;
 
 import androidx.annotation.Nullable;
 import androidx.sqlite.db.SimpleSQLiteQuery;
@@ -8,6 +9,9 @@ import androidx.sqlite.db.SimpleSQLiteQuery;
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao;
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns;
+import com.github.anrimian.musicplayer.data.database.profiler.TracedQuery;
 import com.github.anrimian.musicplayer.domain.models.albums.Album;
 import com.github.anrimian.musicplayer.domain.models.albums.AlbumComposition;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
@@ -27,26 +31,29 @@ public class AlbumsDaoWrapper {
     private final AlbumsDao albumsDao;
     private final ArtistsDao artistsDao;
     private final ArtistsDaoWrapper artistsDaoWrapper;
+    private final CompositionChangesBus compositionChangesBus;
 
     public AlbumsDaoWrapper(LibraryDatabase libraryDatabase,
                             AlbumsDao albumsDao,
                             ArtistsDao artistsDao,
-                            ArtistsDaoWrapper artistsDaoWrapper) {
+                            ArtistsDaoWrapper artistsDaoWrapper,
+                            CompositionChangesBus compositionChangesBus) {
         this.libraryDatabase = libraryDatabase;
         this.albumsDao = albumsDao;
         this.artistsDao = artistsDao;
         this.artistsDaoWrapper = artistsDaoWrapper;
+        this.compositionChangesBus = compositionChangesBus;
     }
 
     public Observable<List<Album>> getAllObservable(Order order, String searchText) {
         String query = "SELECT id as id," +
                 "name as name, " +
                 "(SELECT name FROM artists WHERE artists.id = albums.artistId) as artist, " +
-                "(SELECT count() FROM compositions WHERE albumId = albums.id) as compositionsCount " +
+                "compositionsCount as compositionsCount " +
                 "FROM albums";
         query += getSearchQuery();
         query += getOrderQuery(order);
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query, getSearchArgs(searchText, 3));
+        TracedQuery sqlQuery = new TracedQuery(new SimpleSQLiteQuery(query, getFtsSearchArgs(searchText, 2)));
         return albumsDao.getAllObservable(sqlQuery);
     }
 
@@ -57,7 +64,9 @@ public class AlbumsDaoWrapper {
     public Observable<List<AlbumComposition>> getCompositionsInAlbumObservable(long albumId, boolean useFileName) {
         String query = AlbumsDao.getAlbumCompositionsQuery(useFileName);
         SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query, new Object[] { albumId } );
-        return albumsDao.getCompositionsInAlbumObservable(sqlQuery);
+        return compositionChangesBus.getChangesObservable(CompositionColumns.LIST_COLUMNS)
+                .startWithItem(TRIGGER)
+                .switchMap(o -> compositionChangesBus.runQuery(() -> albumsDao.getAlbumCompositions(sqlQuery)));
     }
 
     public List<Composition> getCompositionsInAlbum(long albumId, boolean useFileName) {
@@ -82,6 +91,9 @@ public class AlbumsDaoWrapper {
 
     public void updateAlbumName(String name, long id) {
         libraryDatabase.runInTransaction(() -> {
+            compositionChangesBus.recordUpdatedAll(CompositionColumns.ALBUM_ID,
+                    CompositionColumns.ALBUM_NAME,
+                    CompositionColumns.DATE_MODIFIED);
             albumsDao.updateAlbumCompositionsModifyTime(id, new Date());
 
             Long artistId = albumsDao.getArtistId(id);
@@ -97,6 +109,9 @@ public class AlbumsDaoWrapper {
 
     public void updateAlbumArtist(long albumId, String artistName) {
         libraryDatabase.runInTransaction(() -> {
+            compositionChangesBus.recordUpdatedAll(CompositionColumns.ALBUM_ID,
+                    CompositionColumns.ALBUM_ARTIST_NAME,
+                    CompositionColumns.DATE_MODIFIED);
             albumsDao.updateAlbumCompositionsModifyTime(albumId, new Date());
 
             Long artistId = artistsDao.findArtistIdByName(artistName);
@@ -165,7 +180,7 @@ public class AlbumsDaoWrapper {
     }
 
     private String getSearchQuery() {
-        return " WHERE (? IS NULL OR (name LIKE ? OR artist NOTNULL AND artist LIKE ?))";
+        return " WHERE (? IS NULL OR id IN (SELECT docid FROM albums_search WHERE albums_search MATCH ?))";
     }
 
 }
@@ -7,9 +7,7 @@ import androidx.sqlite.db.SimpleSQLiteQuery;
 import androidx.sqlite.db.SupportSQLiteQuery;
 
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
-import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity;
 import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity;
-import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity;
 import com.github.anrimian.musicplayer.domain.models.artist.Artist;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
 
@@ -22,20 +20,17 @@ import io.reactivex.rxjava3.core.Single;
 @Dao
 public interface ArtistsDao {
 
-    @RawQuery(observedEntities = { ArtistEntity.class, CompositionEntity.class })
+    @RawQuery(observedEntities = { ArtistEntity.class })
     Observable<List<Artist>> getAllObservable(SupportSQLiteQuery query);
 
     @Query("SELECT id as id," +
             "name as name, " +
-            "(SELECT count() FROM compositions WHERE artistId = artists.id) as compositionsCount, " +
-            "(SELECT count() FROM albums WHERE artistId = artists.id) as albumsCount " +
+            "compositionsCount as compositionsCount, " +
+            "albumsCount as albumsCount " +
             "FROM artists " +
             "WHERE id = :artistId LIMIT 1")
     Observable<List<Artist>> getArtistObservable(long artistId);
 
-    @RawQuery(observedEntities = { ArtistEntity.class, CompositionEntity.class, AlbumEntity.class })
-    Observable<List<Composition>> getCompositionsByArtistObservable(SimpleSQLiteQuery query);
-
     @RawQuery
     List<Composition> getCompositionsByArtist(SimpleSQLiteQuery query);
 
@@ -67,11 +62,6 @@ public interface ArtistsDao {
             "AND (SELECT count() FROM albums WHERE artistId = artists.id) = 0")
     void deleteEmptyArtist(long id);
 
-    @Query("DELETE FROM artists " +
-            "WHERE (SELECT count() FROM compositions WHERE artistId = artists.id) = 0 " +
-            "AND (SELECT count() FROM albums WHERE artistId = artists.id) = 0")
-    void deleteEmptyArtists();
-
     @Query("UPDATE artists SET name = :name WHERE id = :id")
     void updateArtistName(String name, long id);
 
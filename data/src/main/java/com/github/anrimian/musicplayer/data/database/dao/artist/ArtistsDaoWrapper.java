@@ -1,12 +1,16 @@
 package com.github.anrimian.musicplayer.data.database.dao.artist;
 
-import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getSearchArgs;
+import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getFtsSearchArgs;
 import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.toArgs;
+import static com.github.anrimian.musicplayer.domain.Constants.TRIGGER;
 
 import androidx.sqlite.db.SimpleSQLiteQuery;
 
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
 import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDao;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns;
+import com.github.anrimian.musicplayer.data.database.profiler.TracedQuery;
 import com.github.anrimian.musicplayer.domain.models.artist.Artist;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
 import com.github.anrimian.musicplayer.domain.models.order.Order;
@@ -25,29 +29,36 @@ public class ArtistsDaoWrapper {
     private final LibraryDatabase libraryDatabase;
     private final ArtistsDao artistsDao;
     private final AlbumsDao albumsDao;
+    private final CompositionChangesBus compositionChangesBus;
 
-    public ArtistsDaoWrapper(LibraryDatabase libraryDatabase, ArtistsDao artistsDao, AlbumsDao albumsDao) {
+    public ArtistsDaoWrapper(LibraryDatabase libraryDatabase,
+                             ArtistsDao artistsDao,
+                             AlbumsDao albumsDao,
+                             CompositionChangesBus compositionChangesBus) {
         this.libraryDatabase = libraryDatabase;
         this.artistsDao = artistsDao;
         this.albumsDao = albumsDao;
+        this.compositionChangesBus = compositionChangesBus;
     }
 
     public Observable<List<Artist>> getAllObservable(Order order, String searchText) {
         String query = "SELECT id as id," +
                 "name as name, " +
-                "(SELECT count() FROM compositions WHERE artistId = artists.id) as compositionsCount, " +
-                "(SELECT count() FROM albums WHERE artistId = artists.id) as albumsCount " +
+                "compositionsCount as compositionsCount, " +
+                "albumsCount as albumsCount " +
                 "FROM artists";
         query += getSearchQuery();
         query += getOrderQuery(order);
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query, getSearchArgs(searchText, 2));
+        TracedQuery sqlQuery = new TracedQuery(new SimpleSQLiteQuery(query, getFtsSearchArgs(searchText, 2)));
         return artistsDao.getAllObservable(sqlQuery);
     }
 
     public Observable<List<Composition>> getCompositionsByArtistObservable(long artistId, boolean useFileName) {
         String query = ArtistsDao.getCompositionsQuery(useFileName);
         SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query, new Object[] { artistId } );
-        return artistsDao.getCompositionsByArtistObservable(sqlQuery);
+        return compositionChangesBus.getChangesObservable(CompositionColumns.LIST_COLUMNS)
+                .startWithItem(TRIGGER)
+                .switchMap(o -> compositionChangesBus.runQuery(() -> artistsDao.getCompositionsByArtist(sqlQuery)));
     }
 
     /**
@@ -82,6 +93,12 @@ public class ArtistsDaoWrapper {
 
     public void updateArtistName(String name, long id) {
         libraryDatabase.runInTransaction(() -> {
+            compositionChangesBus.recordUpdatedAll(CompositionColumns.ARTIST_ID,
+                    CompositionColumns.ARTIST_NAME,
+                    CompositionColumns.ALBUM_ID,
+                    CompositionColumns.ALBUM_NAME,
+                    CompositionColumns.ALBUM_ARTIST_NAME,
+                    CompositionColumns.DATE_MODIFIED);
             artistsDao.updateArtistCompositionsModifyTime(id, new Date());
 
             Long existArtistId = artistsDao.findArtistIdByName(name);
@@ -142,7 +159,7 @@ public class ArtistsDaoWrapper {
     }
 
     private String getSearchQuery() {
-        return " WHERE (? IS NULL OR name LIKE ?)";
+        return " WHERE (? IS NULL OR id IN (SELECT docid FROM artists_search WHERE artists_search MATCH ?))";
     }
 
 }
@@ -0,0 +1,33 @@
+package com.github.anrimian.musicplayer.data.database.dao.compositions
+
+/**
+ * Row level change of compositions table.
+ * Null ids mean that any rows could be changed, null columns - that any columns could be changed.
+ */
+class CompositionChange(
+    val type: Type,
+    val ids: LongArray?,
+    val columns: Set<String>?,
+) {
+
+    fun affects(id: Long) = ids == null || ids.contains(id)
+
+    //inserted and deleted rows are relevant for every observer
+    fun affects(observedColumns: Set<String>): Boolean {
+        if (type != Type.UPDATE || columns == null) {
+            return true
+        }
+        return columns.any(observedColumns::contains)
+    }
+
+    enum class Type {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    companion object {
+        @JvmField
+        val UNKNOWN = CompositionChange(Type.UPDATE, null, null)
+    }
+}
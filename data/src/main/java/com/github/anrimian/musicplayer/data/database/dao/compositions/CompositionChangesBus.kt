@@ -0,0 +1,165 @@
+package com.github.anrimian.musicplayer.data.database.dao.compositions
+
+import androidx.room.rxjava3.RxRoom
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase
+import com.github.anrimian.musicplayer.domain.Constants.TRIGGER
+import io.reactivex.rxjava3.core.Completable
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.schedulers.Schedulers
+import io.reactivex.rxjava3.subjects.PublishSubject
+import java.util.concurrent.Callable
+
+/**
+ * Publishes row level changes of compositions table, so observers can skip queries when
+ * changed columns are not used by them.
+ *
+ * Writers record changes inside transaction of recorded write, so records and writes are always
+ * committed together. Recorded changes are published when room invalidation tracker reports change of compositions table, after commit.
+ * Ids of changed rows are collected by temp triggers of write connection, if any of them is not
+ * covered by recorded changes, unknown change of all rows is published too, so writes without
+ * records are not lost.
+ */
+class CompositionChangesBus(private val libraryDatabase: LibraryDatabase) {
+
+    private val changesSubject = PublishSubject.create<List<CompositionChange>>().toSerialized()
+
+    private val pendingChanges = ArrayList<CompositionChange>()
+
+    init {
+        Completable.fromAction(this::createChangedIdsTracker)
+            //skip initial emission
+            .andThen(RxRoom.createObservable(libraryDatabase, TABLE_NAME).skip(1))
+            .subscribeOn(Schedulers.io())
+            .subscribe { publishPendingChanges() }
+    }
+
+    fun recordInserted(vararg ids: Long) {
+        record(CompositionChange(CompositionChange.Type.INSERT, ids, null))
+    }
+
+    fun recordInsertedAll() {
+        record(CompositionChange(CompositionChange.Type.INSERT, null, null))
+    }
+
+    fun recordDeleted(vararg ids: Long) {
+        record(CompositionChange(CompositionChange.Type.DELETE, ids, null))
+    }
+
+    fun recordDeleted(ids: Array<Long>) {
+        recordDeleted(*ids.toLongArray())
+    }
+
+    fun recordDeletedAll() {
+        record(CompositionChange(CompositionChange.Type.DELETE, null, null))
+    }
+
+    fun recordUpdated(id: Long, vararg columns: String) {
+        recordUpdated(longArrayOf(id), *columns)
+    }
+
+    fun recordUpdated(ids: LongArray, vararg columns: String) {
+        record(CompositionChange(CompositionChange.Type.UPDATE, ids, columns.toSet()))
+    }
+
+    fun recordUpdatedAll(vararg columns: String) {
+        record(CompositionChange(CompositionChange.Type.UPDATE, null, columns.toSet()))
+    }
+
+    /**
+     * Emits changes committed together
+     */
+    fun getChangesObservable(): Observable<List<CompositionChange>> = changesSubject
+
+    /**
+     * Emits trigger when any row could change in observed columns
+     */
+    fun getChangesObservable(observedColumns: Set<String>): Observable<Any> {
+        return changesSubject
+            .filter { changes -> changes.any { change -> change.affects(observedColumns) } }
+            .map { TRIGGER }
+    }
+
+    /**
+     * Emits trigger when row with given id could change in observed columns
+     */
+    fun getChangesObservable(id: Long, observedColumns: Set<String>): Observable<Any> {
+        return changesSubject
+            .filter { changes ->
+                changes.any { change -> change.affects(id) && change.affects(observedColumns) }
+            }
+            .map { TRIGGER }
+    }
+
+    /**
+     * Runs query of observer which is re-queried by changes of this bus instead of observing
+     * compositions table by room
+     */
+    fun <T : Any> runQuery(query: Callable<T>): Observable<T> {
+        return Observable.fromCallable(query).subscribeOn(Schedulers.io())
+    }
+
+    private fun record(change: CompositionChange) {
+        synchronized(pendingChanges) {
+            pendingChanges.add(change)
+        }
+    }
+
+    private fun publishPendingChanges() {
+        val changes = ArrayList<CompositionChange>()
+        //write connection is held, so records and changed ids belong to the same commits
+        val hasUnrecordedWrites = libraryDatabase.runInTransaction(Callable {
+            synchronized(pendingChanges) {
+                changes.addAll(pendingChanges)
+                pendingChanges.clear()
+            }
+            takeUnrecordedWrites(changes)
+        })
+        if (hasUnrecordedWrites) {
+            changes.add(CompositionChange.UNKNOWN)
+        }
+        if (changes.isNotEmpty()) {
+            changesSubject.onNext(changes)
+        }
+    }
+
+    private fun takeUnrecordedWrites(changes: List<CompositionChange>): Boolean {
+        val db = libraryDatabase.openHelper.writableDatabase
+        try {
+            if (changes.any { change -> change.ids == null }) {
+                return false
+            }
+            val recordedIds = HashSet<Long>()
+            for (change in changes) {
+                recordedIds.addAll(change.ids!!.asList())
+            }
+            db.query("SELECT id FROM $CHANGED_IDS_TABLE").use { c ->
+                while (c.moveToNext()) {
+                    if (!recordedIds.contains(c.getLong(0))) {
+                        return true
+                    }
+                }
+            }
+            return false
+        } finally {
+            db.execSQL("DELETE FROM $CHANGED_IDS_TABLE")
+        }
+    }
+
+    //temp objects live only in write connection, like triggers of room invalidation tracker
+    private fun createChangedIdsTracker() {
+        val db = libraryDatabase.openHelper.writableDatabase
+        db.execSQL("CREATE TEMP TABLE IF NOT EXISTS $CHANGED_IDS_TABLE (id INTEGER PRIMARY KEY)")
+        for ((event, row) in arrayOf("INSERT" to "NEW", "UPDATE" to "NEW", "DELETE" to "OLD")) {
+            db.execSQL("CREATE TEMP TRIGGER IF NOT EXISTS `${CHANGED_IDS_TABLE}_after_${event.lowercase()}` " +
+                    "AFTER $event ON main.$TABLE_NAME " +
+                    "BEGIN " +
+                    "INSERT OR IGNORE INTO $CHANGED_IDS_TABLE VALUES ($row.id); " +
+                    "END")
+        }
+    }
+
+    private companion object {
+        const val TABLE_NAME = "compositions"
+        const val CHANGED_IDS_TABLE = "composition_changed_ids"
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.anrimian.musicplayer.data.database.dao.compositions
+
+object CompositionColumns {
+    const val ARTIST_ID = "artistId"
+    const val ALBUM_ID = "albumId"
+    const val FOLDER_ID = "folderId"
+    const val STORAGE_ID = "storageId"
+    const val TITLE = "title"
+    const val TRACK_NUMBER = "trackNumber"
+    const val DISC_NUMBER = "discNumber"
+    const val COMMENT = "comment"
+    const val LYRICS = "lyrics"
+    const val FILE_NAME = "fileName"
+    const val DURATION = "duration"
+    const val SIZE = "size"
+    const val DATE_MODIFIED = "dateModified"
+    const val LAST_SCAN_DATE = "lastScanDate"
+    const val COVER_MODIFY_TIME = "coverModifyTime"
+    const val CORRUPTION_TYPE = "corruptionType"
+    const val INITIAL_SOURCE = "initialSource"
+    const val ARTIST_NAME = "artistName"
+    const val ALBUM_NAME = "albumName"
+    const val ALBUM_ARTIST_NAME = "albumArtistName"
+    const val GENRE_NAMES = "genreNames"
+    const val SORT_TITLE = "sortTitle"
+
+    /**
+     * Columns which are shown, filtered or sorted by composition lists:
+     * library, folders, artists, albums, genres, play lists and play queue
+     */
+    @JvmField
+    val LIST_COLUMNS = setOf(
+        ARTIST_ID,
+        ALBUM_ID,
+        FOLDER_ID,
+        STORAGE_ID,
+        TITLE,
+        TRACK_NUMBER,
+        DISC_NUMBER,
+        COMMENT,
+        FILE_NAME,
+        DURATION,
+        SIZE,
+        DATE_MODIFIED,
+        COVER_MODIFY_TIME,
+        CORRUPTION_TYPE,
+        INITIAL_SOURCE,
+        ARTIST_NAME,
+        ALBUM_NAME,
+        SORT_TITLE,
+    )
+
+    /**
+     * Columns which are used by folder list items
+     */
+    @JvmField
+    val FOLDER_LIST_COLUMNS = setOf(
+        FOLDER_ID,
+        STORAGE_ID,
+        INITIAL_SOURCE,
+    )
+}
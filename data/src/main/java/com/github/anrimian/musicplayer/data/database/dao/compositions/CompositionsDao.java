@@ -11,13 +11,10 @@ import androidx.room.util.StringUtil;
 import androidx.sqlite.db.SimpleSQLiteQuery;
 import androidx.sqlite.db.SupportSQLiteQuery;
 
-import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity;
-import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity;
 import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity;
 import com.github.anrimian.musicplayer.data.models.composition.ExternalComposition;
 import com.github.anrimian.musicplayer.data.repositories.library.edit.models.CompositionMoveData;
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageComposition;
-import com.github.anrimian.musicplayer.domain.Constants;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
 import com.github.anrimian.musicplayer.domain.models.composition.CorruptionType;
 import com.github.anrimian.musicplayer.domain.models.composition.DeletedComposition;
@@ -33,18 +30,32 @@ import io.reactivex.rxjava3.core.Single;
 @Dao
 public interface CompositionsDao {
 
+    String PARENT_PATH_QUERY = "IFNULL((SELECT path FROM folders WHERE id = compositions.folderId), '')";
+
+    String STORAGE_COMPOSITION_QUERY = "SELECT " +
+            PARENT_PATH_QUERY + " AS parentPath, " +
+            "artistName as artist, " +
+            "title as title, " +
+            "albumName as album, " +
+            "albumArtistName as albumArtist, " +
+            "compositions.fileName as fileName, " +
+            "compositions.duration as duration, " +
+            "compositions.size as size, " +
+            "compositions.id as id, " +
+            "compositions.initialSource as initialSource, " +
+            "compositions.storageId as storageId, " +
+            "compositions.folderId as folderId, " +
+            "compositions.dateAdded as dateAdded, " +
+            "compositions.dateModified as dateModified, " +
+            "compositions.lastScanDate as lastScanDate " +
+            "FROM compositions ";
+
     @Query("SELECT " +
-            "(SELECT name FROM artists WHERE id = artistId) as artist, " +
+            "artistName as artist, " +
             "title as title, " +
-            "(SELECT name FROM albums WHERE id = albumId) as album, " +
-            "(SELECT name FROM artists WHERE id = (SELECT artistId FROM albums WHERE id = albumId)) as albumArtist, " +
-            "(SELECT group_concat(name, '" + Constants.GENRE_DIVIDER + "') FROM ( " +
-            "   SELECT name" +
-            "   FROM genres " +
-            "   JOIN genre_entries AS entries ON entries.compositionId = compositions.id" +
-            "   WHERE id = entries.genreId " +
-            "   ORDER BY entries.position" +
-            ")) AS genres, " +
+            "albumName as album, " +
+            "albumArtistName as albumArtist, " +
+            "genreNames AS genres, " +
             "trackNumber as trackNumber, " +
             "discNumber as discNumber, " +
             "comment as comment, " +
@@ -68,17 +79,11 @@ public interface CompositionsDao {
     Observable<String> getLyricsObservable(long id);
 
     @Query("SELECT " +
-            "(SELECT name FROM artists WHERE id = artistId) as artist, " +
+            "artistName as artist, " +
             "title as title, " +
-            "(SELECT name FROM albums WHERE id = albumId) as album, " +
-            "(SELECT name FROM artists WHERE id = (SELECT artistId FROM albums WHERE id = albumId)) as albumArtist, " +
-            "(SELECT group_concat(name, '" + Constants.GENRE_DIVIDER + "') FROM ( " +
-            "   SELECT name" +
-            "   FROM genres " +
-            "   JOIN genre_entries AS entries ON entries.compositionId = compositions.id" +
-            "   WHERE id = entries.genreId " +
-            "   ORDER BY entries.position" +
-            ")) AS genres, " +
+            "albumName as album, " +
+            "albumArtistName as albumArtist, " +
+            "genreNames AS genres, " +
             "trackNumber as trackNumber, " +
             "discNumber as discNumber, " +
             "comment as comment, " +
@@ -99,25 +104,7 @@ public interface CompositionsDao {
     FullComposition getFullComposition(long id);
 
     @Query("SELECT " +
-            "(WITH RECURSIVE path(level, name, parentId) AS (" +
-            "                SELECT 0, name, parentId " +
-            "                FROM folders " +
-            "                WHERE id = compositions.folderId " +
-            "                UNION ALL " +
-            "                SELECT path.level + 1, " +
-            "                       folders.name, " +
-            "                       folders.parentId " +
-            "                FROM folders " +
-            "                JOIN path ON folders.id = path.parentId " +
-            "            ), " +
-            "            path_from_root AS ( " +
-            "                SELECT name " +
-            "                FROM path " +
-            "                ORDER BY level DESC " +
-            "            ) " +
-            "            SELECT IFNULL(group_concat(name, '/'), '') " +
-            "            FROM path_from_root" +
-            ") AS parentPath, " +
+            PARENT_PATH_QUERY + " AS parentPath, " +
             "compositions.id AS id, " +
             "compositions.storageId AS storageId, " +
             "compositions.fileName AS fileName " +
@@ -125,58 +112,24 @@ public interface CompositionsDao {
             "WHERE id = :id")
     CompositionMoveData getCompositionMoveData(long id);
 
-    @RawQuery(observedEntities = { CompositionEntity.class, ArtistEntity.class, AlbumEntity.class })
-    Observable<List<Composition>> getCompositionsObservable(SupportSQLiteQuery query);
-
-    @RawQuery(observedEntities = { CompositionEntity.class, ArtistEntity.class, AlbumEntity.class })
-    Observable<List<Composition>> getCompositionsInFolderObservable(SupportSQLiteQuery query);
-
+    //observed lists are re-queried on changes of CompositionChangesBus
     @RawQuery
     List<Composition> executeQuery(SimpleSQLiteQuery sqlQuery);
 
     @RawQuery
     List<CompositionMoveData> executeQueryForMove(SimpleSQLiteQuery sqlQuery);
 
-    @Query("SELECT " +
-            "(" +
-            "WITH RECURSIVE path(level, name, parentId) AS (" +
-            "                SELECT 0, name, parentId " +
-            "                FROM folders " +
-            "                WHERE id = compositions.folderId " +
-            "                UNION ALL " +
-            "                SELECT path.level + 1, " +
-            "                       folders.name, " +
-            "                       folders.parentId " +
-            "                FROM folders " +
-            "                JOIN path ON folders.id = path.parentId " +
-            "            ), " +
-            "            path_from_root AS ( " +
-            "                SELECT name " +
-            "                FROM path " +
-            "                ORDER BY level DESC " +
-            "            ) " +
-            "            SELECT IFNULL(group_concat(name, '/'), '') " +
-            "            FROM path_from_root" +
-            ") AS parentPath, " +
-            "(SELECT name FROM artists WHERE id = artistId) as artist, " +
-            "title as title, " +
-            "(SELECT name FROM albums WHERE id = albumId) as album, " +
-            "(SELECT name FROM artists WHERE id = (SELECT artistId FROM albums WHERE id = albumId)) as albumArtist, " +
-            "compositions.fileName as fileName, " +
-            "compositions.duration as duration, " +
-            "compositions.size as size, " +
-            "compositions.id as id, " +
-            "compositions.initialSource as initialSource, " +
-            "compositions.storageId as storageId, " +
-            "compositions.folderId as folderId, " +
-            "compositions.dateAdded as dateAdded, " +
-            "compositions.dateModified as dateModified, " +
-            "compositions.lastScanDate as lastScanDate " +
-            "FROM compositions " +
-            "WHERE storageId NOTNULL " +
-            "LIMIT :pageSize " +
-            "OFFSET :pageIndex * :pageSize")
-    List<StorageComposition> selectAllAsStorageCompositions(int pageSize, int pageIndex);
+    @Query(STORAGE_COMPOSITION_QUERY +
+            "WHERE storageId NOTNULL AND id > :afterId " +
+            "ORDER BY id " +
+            "LIMIT :pageSize")
+    List<StorageComposition> selectStorageCompositionsPage(long afterId, int pageSize);
+
+    @Query(STORAGE_COMPOSITION_QUERY + "WHERE storageId IN (:storageIds)")
+    List<StorageComposition> selectAsStorageCompositions(long[] storageIds);
+
+    @Query("SELECT storageId FROM compositions WHERE storageId NOTNULL ORDER BY storageId")
+    long[] selectStorageIds();
 
     @Insert
     long insert(CompositionEntity entity);
@@ -198,6 +151,28 @@ public interface CompositionsDao {
                 Date dateModified,
                 long storageId);
 
+    @Query("UPDATE compositions SET " +
+            "artistId = :artistId, " +
+            "albumId = :albumId, " +
+            "folderId = :folderId, " +
+            "title = :title, " +
+            "fileName = :fileName, " +
+            "duration = :duration, " +
+            "size = :size, " +
+            "dateModified = :dateModified, " +
+            "storageId = :storageId " +
+            "WHERE id = :id")
+    void updateStorageComposition(long id,
+                                  Long artistId,
+                                  Long albumId,
+                                  Long folderId,
+                                  String title,
+                                  String fileName,
+                                  long duration,
+                                  long size,
+                                  Date dateModified,
+                                  long storageId);
+
     @Query("UPDATE compositions SET " +
             "title = :title, " +
             "duration = :duration, " +
@@ -294,18 +269,15 @@ public interface CompositionsDao {
     @Query("SELECT count() FROM compositions")
     long getCompositionsCount();
 
-    @Query("SELECT " +
-            "(SELECT name FROM artists WHERE id = artistId) as artist, " +
+    //each id list is bound once, room expands every occurrence of list argument to variables
+    @Query("WITH play_queue_ids AS (SELECT id FROM compositions WHERE id IN (:playQueueIds)), " +
+            "visible_ids AS (SELECT id FROM compositions WHERE id IN (:visibleIds)) " +
+            "SELECT " +
+            "artistName as artist, " +
             "title as title, " +
-            "(SELECT name FROM albums WHERE id = albumId) as album, " +
-            "(SELECT name FROM artists WHERE id = (SELECT artistId FROM albums WHERE id = albumId)) as albumArtist, " +
-            "(SELECT group_concat(name, '" + Constants.GENRE_DIVIDER + "') FROM ( " +
-            "   SELECT name" +
-            "   FROM genres " +
-            "   JOIN genre_entries AS entries ON entries.compositionId = compositions.id" +
-            "   WHERE id = entries.genreId " +
-            "   ORDER BY entries.position" +
-            ")) AS genres, " +
+            "albumName as album, " +
+            "albumArtistName as albumArtist, " +
+            "genreNames AS genres, " +
             "trackNumber as trackNumber, " +
             "discNumber as discNumber, " +
             "comment as comment, " +
@@ -321,66 +293,70 @@ public interface CompositionsDao {
             "corruptionType as corruptionType, " +
             "initialSource as initialSource " +
             "FROM compositions " +
-            "WHERE (lastScanDate < dateModified OR lastScanDate < :lastCompleteScanTime) " +
+            "WHERE (lastScanDate < dateModified OR lastScanDate < :generationStartTime) " +
             "AND storageId IS NOT NULL " +
-            "ORDER BY dateModified DESC " +
+            "AND (id > :cursor " +
+            "   OR id IN (SELECT id FROM play_queue_ids) " +
+            "   OR id IN (SELECT id FROM visible_ids)) " +
+            "AND id NOT IN (:excludedIds) " +
+            "ORDER BY id IN (SELECT id FROM play_queue_ids) DESC, " +
+            "id IN (SELECT id FROM visible_ids) DESC, " +
+            "id " +
             "LIMIT :filesCount")
-    Single<List<FullComposition>> selectNextCompositionsToScan(long lastCompleteScanTime, int filesCount);
+    Single<List<FullComposition>> selectNextCompositionsToScan(long generationStartTime,
+                                                               long cursor,
+                                                               int filesCount,
+                                                               long[] playQueueIds,
+                                                               long[] visibleIds,
+                                                               long[] excludedIds);
+
+    @Query("SELECT " +
+            "artistName as artist, " +
+            "title as title, " +
+            "albumName as album, " +
+            "albumArtistName as albumArtist, " +
+            "genreNames AS genres, " +
+            "trackNumber as trackNumber, " +
+            "discNumber as discNumber, " +
+            "comment as comment, " +
+            "lyrics as lyrics, " +
+            "fileName as fileName, " +
+            "duration as duration, " +
+            "size as size, " +
+            "id as id, " +
+            "storageId as storageId, " +
+            "dateAdded as dateAdded, " +
+            "dateModified as dateModified, " +
+            "coverModifyTime as coverModifyTime, " +
+            "corruptionType as corruptionType, " +
+            "initialSource as initialSource " +
+            "FROM compositions " +
+            "WHERE (lastScanDate < dateModified OR lastScanDate < :generationStartTime) " +
+            "AND storageId IS NOT NULL " +
+            "AND id IN (:ids)")
+    Single<List<FullComposition>> selectCompositionsToScan(long generationStartTime, long[] ids);
 
     @Query("UPDATE compositions SET lastScanDate = :time WHERE id = :id")
     void setCompositionLastFileScanTime(long id, Date time);
 
-    @Query("UPDATE compositions SET lastScanDate = 0")
-    void cleanLastFileScanTime();
-
     @Nullable
     @Query("SELECT folderId FROM compositions WHERE id = :id")
     Long getFolderId(long id);
 
-    @Query("WITH RECURSIVE allChildFolders(cfId, cfPId, name) AS (" +
-            "SELECT " +
-            "   folders.id as cfId, " +
-            "   folders.parentId as cfPId, " +
-            "   folders.name as name " +
-            "   FROM folders " +
-            "   WHERE parentId = :parentFolderId OR (parentId IS NULL AND :parentFolderId IS NULL)" +
-            "UNION " +
-            "SELECT" +
-            "   folders.id as cfId, " +
-            "   folders.parentId as cfPId, " +
-            "   folders.name as name " +
+    //parent path is relative to parent folder
+    @Query("SELECT " +
+            "IFNULL((" +
+            "   SELECT CASE WHEN id = :parentFolderId THEN '' " +
+            "   ELSE substr(path, IFNULL((SELECT length(path) + 2 FROM folders WHERE id = :parentFolderId), 1)) END " +
             "   FROM folders " +
-            "   INNER JOIN allChildFolders ON parentId = allChildFolders.cfId" +
-            "), " +
-            "entries(genreId, position) AS (SELECT genreId, position FROM genre_entries) " +
-            "SELECT " +
-            "(WITH RECURSIVE path(level, name, parentId) AS (" +
-            "   SELECT 0, name, cfPId " +
-            "   FROM allChildFolders " +
-            "   WHERE cfId = compositions.folderId " +
-            "   UNION ALL " +
-            "   SELECT path.level + 1, allChildFolders.name, allChildFolders.cfPId " +
-            "   FROM allChildFolders " +
-            "   JOIN path ON allChildFolders.cfId = path.parentId " +
-            "), " +
-            "path_from_root AS ( " +
-            "   SELECT name FROM path ORDER BY level DESC " +
-            ") " +
-            "   SELECT IFNULL(group_concat(name, '/'), '') " +
-            "   FROM path_from_root" +
-            ") AS parentPath, " +
+            "   WHERE id = compositions.folderId" +
+            "), '') AS parentPath, " +
             "fileName as fileName, " +
             "title as title, " +
-            "(SELECT name FROM artists WHERE id = artistId) as artist, " +
-            "(SELECT name FROM albums WHERE id = albumId) as album, " +
-            "(SELECT name FROM artists WHERE id = (SELECT artistId FROM albums WHERE id = albumId)) as albumArtist, " +
-            "(SELECT group_concat(name, '" + Constants.GENRE_DIVIDER + "') FROM ( " +
-            "   SELECT name" +
-            "   FROM genres " +
-            "   JOIN genre_entries AS entries ON entries.compositionId = compositions.id" +
-            "   WHERE id = entries.genreId " +
-            "   ORDER BY entries.position" +
-            ")) AS genres, " +
+            "artistName as artist, " +
+            "albumName as album, " +
+            "albumArtistName as albumArtist, " +
+            "genreNames AS genres, " +
             "trackNumber as trackNumber, " +
             "discNumber as discNumber, " +
             "comment as comment, " +
@@ -392,8 +368,8 @@ public interface CompositionsDao {
             "coverModifyTime as coverModifyTime, " +
             "storageId IS NOT NULL AS isFileExists " +
             "FROM compositions " +
-            "WHERE folderId IN (SELECT cfId FROM allChildFolders)" +
-            "   OR (folderId = :parentFolderId OR (folderId IS NULL AND :parentFolderId IS NULL))")
+            "WHERE :parentFolderId IS NULL " +
+            "   OR folderId IN (SELECT descendantId FROM folder_tree WHERE ancestorId = :parentFolderId)")
     List<ExternalComposition> getAllAsExternalCompositions(Long parentFolderId);
 
     @Query("SELECT id FROM compositions WHERE fileName = :fileName ")
@@ -405,24 +381,9 @@ public interface CompositionsDao {
             "WHERE fileName = :fileName AND (folderId = :folderId OR (folderId IS NULL AND :folderId IS NULL))")
     Long findCompositionByFileName(String fileName, Long folderId);
 
-    @Query("WITH RECURSIVE path(level, name, parentId) AS (" +
-            "    SELECT 0, name, parentId" +
-            "    FROM folders" +
-            "    WHERE id = (SELECT folderId FROM compositions WHERE id = :id)" +
-            "    UNION ALL" +
-            "    SELECT path.level + 1," +
-            "           folders.name," +
-            "           folders.parentId" +
-            "    FROM folders" +
-            "    JOIN path ON folders.id = path.parentId" +
-            ")," +
-            "path_from_root AS (" +
-            "    SELECT name" +
-            "    FROM path" +
-            "    ORDER BY level DESC" +
-            ")" +
-            "SELECT IFNULL(group_concat(name, '/'), '')" +
-            "FROM path_from_root")
+    @Query("SELECT IFNULL(" +
+            "(SELECT path FROM folders WHERE id = (SELECT folderId FROM compositions WHERE id = :id))" +
+            ", '')")
     String getCompositionParentPath(long id);
 
     @Nullable
@@ -453,25 +414,7 @@ public interface CompositionsDao {
     static StringBuilder getMoveCompositionQuery() {
         return new StringBuilder(
                 "SELECT " +
-                        "(WITH RECURSIVE path(level, name, parentId) AS (" +
-                        "                SELECT 0, name, parentId " +
-                        "                FROM folders " +
-                        "                WHERE id = compositions.folderId " +
-                        "                UNION ALL " +
-                        "                SELECT path.level + 1, " +
-                        "                       folders.name, " +
-                        "                       folders.parentId " +
-                        "                FROM folders " +
-                        "                JOIN path ON folders.id = path.parentId " +
-                        "            ), " +
-                        "            path_from_root AS ( " +
-                        "                SELECT name " +
-                        "                FROM path " +
-                        "                ORDER BY level DESC " +
-                        "            ) " +
-                        "            SELECT IFNULL(group_concat(name, '/'), '') " +
-                        "            FROM path_from_root" +
-                        ") AS parentPath, " +
+                        PARENT_PATH_QUERY + " AS parentPath, " +
                 "compositions.id AS id, " +
                 "compositions.storageId AS storageId, " +
                 "compositions.fileName AS fileName " +
@@ -481,9 +424,9 @@ public interface CompositionsDao {
     static String getCompositionSelectionQuery(boolean useFileName) {
         return "compositions.id AS id, " +
                 "compositions.storageId AS storageId, " +
-                "(SELECT name FROM artists WHERE id = artistId) as artist, " +
-                "(SELECT name FROM albums WHERE id = albumId) as album, " +
-                "(" + (useFileName? "fileName": "CASE WHEN title IS NULL OR title = '' THEN fileName ELSE title END") + ") as title, " +
+                "compositions.artistName as artist, " +
+                "compositions.albumName as album, " +
+                (useFileName? "compositions.fileName": "compositions.sortTitle") + " as title, " +
                 "compositions.duration AS duration, " +
                 "compositions.size AS size, " +
                 "compositions.comment AS comment, " +
@@ -495,49 +438,29 @@ public interface CompositionsDao {
                 "compositions.corruptionType AS corruptionType ";
     }
 
-    static StringBuilder getSearchWhereQuery(boolean useFileName) {
-        StringBuilder sb = new StringBuilder(" WHERE (? IS NULL OR ");
-        sb.append(useFileName? "fileName": "CASE WHEN title IS NULL OR title = '' THEN fileName ELSE title END");
-        sb.append(" LIKE ? OR (artist NOTNULL AND artist LIKE ?))");
-        return sb;
+    static String getSearchWhereQuery() {
+        return " WHERE" + getSearchQuery();
     }
 
-    static StringBuilder getSearchQuery(boolean useFileName) {
-        StringBuilder sb = new StringBuilder(" (? IS NULL OR ");
-        sb.append(useFileName? "fileName": "CASE WHEN title IS NULL OR title = '' THEN fileName ELSE title END");
-        sb.append(" LIKE ? OR (artist NOTNULL AND artist LIKE ?))");
-        return sb;
+    /**
+     * Takes two arguments: match expression for null check and for search index
+     */
+    static String getSearchQuery() {
+        return " (? IS NULL OR compositions.id IN (" +
+                "SELECT docid FROM compositions_search WHERE compositions_search MATCH ?" +
+                ")) ";
     }
 
     @SuppressLint("RestrictedApi")
     static StringBuilder getDeletedCompositionQuery(boolean useFileName, int compositionsCount) {
         StringBuilder sb = new StringBuilder(
                 "SELECT " +
-                        "(" +
-                        "WITH RECURSIVE path(level, name, parentId) AS (" +
-                        "                SELECT 0, name, parentId " +
-                        "                FROM folders " +
-                        "                WHERE id = compositions.folderId " +
-                        "                UNION ALL " +
-                        "                SELECT path.level + 1, " +
-                        "                       folders.name, " +
-                        "                       folders.parentId " +
-                        "                FROM folders " +
-                        "                JOIN path ON folders.id = path.parentId " +
-                        "            ), " +
-                        "            path_from_root AS ( " +
-                        "                SELECT name " +
-                        "                FROM path " +
-                        "                ORDER BY level DESC " +
-                        "            ) " +
-                        "            SELECT IFNULL(group_concat(name, '/'), '') " +
-                        "            FROM path_from_root" +
-                        ") AS parentPath, " +
+                        PARENT_PATH_QUERY + " AS parentPath, " +
                         "fileName as fileName, " +
                         "compositions.storageId as storageId, "
         );
         sb.append("(");
-        sb.append(useFileName ? "fileName" : "CASE WHEN title IS NULL OR title = '' THEN fileName ELSE title END");
+        sb.append(useFileName ? "fileName" : "sortTitle");
         sb.append(") as title ");
         sb.append("FROM compositions WHERE id IN(");
         StringUtil.appendPlaceholders(sb, compositionsCount);
@@ -1,7 +1,30 @@
 package com.github.anrimian.musicplayer.data.database.dao.compositions;
 
 import static android.text.TextUtils.isEmpty;
-import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getSearchArgs;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.ALBUM_ARTIST_NAME;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.ALBUM_ID;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.ALBUM_NAME;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.ARTIST_ID;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.ARTIST_NAME;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.COMMENT;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.CORRUPTION_TYPE;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.COVER_MODIFY_TIME;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.DATE_MODIFIED;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.DISC_NUMBER;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.DURATION;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.FILE_NAME;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.FOLDER_ID;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.GENRE_NAMES;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.INITIAL_SOURCE;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.LAST_SCAN_DATE;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.LIST_COLUMNS;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.LYRICS;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.SIZE;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.SORT_TITLE;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.STORAGE_ID;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.TITLE;
+import static com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns.TRACK_NUMBER;
+import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getFtsSearchArgs;
 import static com.github.anrimian.musicplayer.domain.Constants.TRIGGER;
 
 import androidx.collection.LongSparseArray;
@@ -12,13 +35,14 @@ import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDao;
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao;
 import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDao;
 import com.github.anrimian.musicplayer.data.database.dao.genre.GenreDao;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity;
+import com.github.anrimian.musicplayer.data.database.utils.KeysetPageIterator;
 import com.github.anrimian.musicplayer.data.models.composition.ExternalComposition;
 import com.github.anrimian.musicplayer.data.models.exceptions.CompositionNotFoundException;
 import com.github.anrimian.musicplayer.data.repositories.library.edit.models.CompositionMoveData;
 import com.github.anrimian.musicplayer.data.repositories.scanner.storage.playlists.m3uparser.PlayListEntry;
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageComposition;
-import com.github.anrimian.musicplayer.data.utils.collections.AndroidCollectionUtils;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
 import com.github.anrimian.musicplayer.domain.models.composition.CorruptionType;
 import com.github.anrimian.musicplayer.domain.models.composition.DeletedComposition;
@@ -39,7 +63,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -50,12 +76,16 @@ import io.reactivex.rxjava3.subjects.BehaviorSubject;
 
 public class CompositionsDaoWrapper {
 
+    private static final int STORAGE_COMPOSITIONS_PAGE_SIZE = 1000;
+
     private final LibraryDatabase libraryDatabase;
     private final CompositionsDao compositionsDao;
     private final ArtistsDao artistsDao;
     private final AlbumsDao albumsDao;
     private final GenreDao genreDao;
     private final FoldersDao foldersDao;
+    private final OrphansDaoWrapper orphansDaoWrapper;
+    private final CompositionChangesBus changesBus;
 
     private final BehaviorSubject<Object> updateSubject = BehaviorSubject.createDefault(TRIGGER);
 
@@ -64,13 +94,17 @@ public class CompositionsDaoWrapper {
                                   CompositionsDao compositionsDao,
                                   AlbumsDao albumsDao,
                                   GenreDao genreDao,
-                                  FoldersDao foldersDao) {
+                                  FoldersDao foldersDao,
+                                  OrphansDaoWrapper orphansDaoWrapper,
+                                  CompositionChangesBus changesBus) {
         this.libraryDatabase = libraryDatabase;
         this.artistsDao = artistsDao;
         this.compositionsDao = compositionsDao;
         this.albumsDao = albumsDao;
         this.genreDao = genreDao;
         this.foldersDao = foldersDao;
+        this.orphansDaoWrapper = orphansDaoWrapper;
+        this.changesBus = changesBus;
     }
 
     public Observable<Composition> getCompositionObservable(long id, boolean useFileName) {
@@ -78,7 +112,9 @@ public class CompositionsDaoWrapper {
         query.append(" WHERE id = ? LIMIT 1");
         SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query.toString(),
                 new String[]{ String.valueOf(id) });
-        return compositionsDao.getCompositionsObservable(sqlQuery)
+        return changesBus.getChangesObservable(id, LIST_COLUMNS)
+                .startWithItem(TRIGGER)
+                .switchMap(o -> changesBus.runQuery(() -> compositionsDao.executeQuery(sqlQuery)))
                 .takeWhile(list -> !list.isEmpty())
                 .map(list -> list.get(0));
     }
@@ -109,22 +145,30 @@ public class CompositionsDaoWrapper {
                                                           boolean useFileName,
                                                           @Nullable String searchText) {
         StringBuilder query = CompositionsDao.getCompositionQuery(useFileName);
-        query.append(CompositionsDao.getSearchWhereQuery(useFileName));
+        query.append(CompositionsDao.getSearchWhereQuery());
         query.append(getOrderQuery(order));
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query.toString(), getSearchArgs(searchText, 3));
-        return updateSubject.switchMap(o -> compositionsDao.getCompositionsObservable(sqlQuery));
+        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query.toString(), getFtsSearchArgs(searchText, 2));
+        return Observable.merge(updateSubject, changesBus.getChangesObservable(LIST_COLUMNS))
+                .switchMap(o -> changesBus.runQuery(() -> compositionsDao.executeQuery(sqlQuery)));
     }
 
     public void launchManualUpdate() {
         updateSubject.onNext(TRIGGER);
     }
 
+    /**
+     * Emits trigger when compositions could change in observed columns
+     */
+    public Observable<Object> getCompositionChangesObservable(Set<String> observedColumns) {
+        return changesBus.getChangesObservable(observedColumns);
+    }
+
     public Observable<List<Composition>> getCompositionsInFolderObservable(Long folderId,
                                                                            Order order,
                                                                            boolean useFileName,
                                                                            @Nullable String searchText) {
         StringBuilder query = CompositionsDao.getCompositionQuery(useFileName);
-        query.append(CompositionsDao.getSearchWhereQuery(useFileName));
+        query.append(CompositionsDao.getSearchWhereQuery());
         query.append(" AND (? IS NOT NULL OR ");
         query.append("(folderId = ");
         query.append(folderId);
@@ -132,27 +176,23 @@ public class CompositionsDaoWrapper {
         query.append(folderId);
         query.append(" IS NULL)))");
         query.append(getOrderQuery(order));
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query.toString(), getSearchArgs(searchText, 4));
-        return compositionsDao.getCompositionsInFolderObservable(sqlQuery);
+        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query.toString(), getFtsSearchArgs(searchText, 3));
+        return changesBus.getChangesObservable(LIST_COLUMNS)
+                .startWithItem(TRIGGER)
+                .switchMap(o -> changesBus.runQuery(() -> compositionsDao.executeQuery(sqlQuery)));
     }
 
     public List<Composition> getAllCompositionsInFolder(Long parentFolderId, boolean useFileName) {
-        String query = FoldersDao.getRecursiveFolderQuery(parentFolderId);
-        query += CompositionsDao.getCompositionQuery(useFileName);
-        query += " WHERE folderId IN (SELECT childFolderId FROM allChildFolders) ";
-        query += "OR folderId = ";
-        query += parentFolderId;
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query);
+        StringBuilder query = CompositionsDao.getCompositionQuery(useFileName);
+        query.append(getFolderTreeWhereQuery(parentFolderId));
+        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query.toString());
         return compositionsDao.executeQuery(sqlQuery);
     }
 
     public List<CompositionMoveData> getAllCompositionsInFolder(Long parentFolderId) {
-        String query = FoldersDao.getRecursiveFolderQuery(parentFolderId);
-        query += CompositionsDao.getMoveCompositionQuery();
-        query += " WHERE folderId IN (SELECT childFolderId FROM allChildFolders) ";
-        query += "OR folderId = ";
-        query += parentFolderId;
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query);
+        StringBuilder query = CompositionsDao.getMoveCompositionQuery();
+        query.append(getFolderTreeWhereQuery(parentFolderId));
+        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query.toString());
         return compositionsDao.executeQueryForMove(sqlQuery);
     }
 
@@ -168,22 +208,36 @@ public class CompositionsDaoWrapper {
         return compositionsDao.executeQuery(sqlQuery);
     }
 
-    public LongSparseArray<StorageComposition> selectAllAsStorageCompositions() {
-        LongSparseArray<StorageComposition> result = new LongSparseArray<>();
-        final int pageSize = 1000;
-        int index = 0;
-        LongSparseArray<StorageComposition> pageResult;
-        do {
-            pageResult = AndroidCollectionUtils.mapToSparseArray(
-                    compositionsDao.selectAllAsStorageCompositions(pageSize, index),
-                    StorageComposition::getStorageId
+    /**
+     * Streams all compositions with storage id ordered by id, keeps in memory only one page
+     */
+    public Iterator<StorageComposition> iterateStorageCompositions() {
+        return new KeysetPageIterator<>(compositionsDao::selectStorageCompositionsPage,
+                StorageComposition::getId,
+                STORAGE_COMPOSITIONS_PAGE_SIZE);
+    }
+
+    public LongSparseArray<StorageComposition> selectAsStorageCompositions(long[] storageIds) {
+        LongSparseArray<StorageComposition> result = new LongSparseArray<>(storageIds.length);
+        //sqlite variables limit
+        final int chunkSize = 500;
+        for (int start = 0; start < storageIds.length; start += chunkSize) {
+            long[] chunk = Arrays.copyOfRange(
+                    storageIds,
+                    start,
+                    Math.min(start + chunkSize, storageIds.length)
             );
-            result.putAll(pageResult);
-            index++;
-        } while (pageResult.size() == pageSize);
+            for (StorageComposition composition: compositionsDao.selectAsStorageCompositions(chunk)) {
+                result.put(composition.getStorageId(), composition);
+            }
+        }
         return result;
     }
 
+    public long[] selectStorageIds() {
+        return compositionsDao.selectStorageIds();
+    }
+
     public long getStorageId(long compositionId) {
         Long storageId = compositionsDao.getStorageId(compositionId);
         if (storageId == null) {
@@ -198,38 +252,46 @@ public class CompositionsDaoWrapper {
 
     public void delete(long id) {
         libraryDatabase.runInTransaction(() -> {
+            changesBus.recordDeleted(id);
             compositionsDao.delete(id);
-            albumsDao.deleteEmptyAlbums();
-            artistsDao.deleteEmptyArtists();
-            genreDao.deleteEmptyGenres();
-            foldersDao.deleteFoldersWithoutContainment();
+            orphansDaoWrapper.deleteOrphans();
         });
     }
 
     public void deleteAll(Long[] ids) {
         libraryDatabase.runInTransaction(() -> {
+            changesBus.recordDeleted(ids);
             compositionsDao.delete(ids);
-            albumsDao.deleteEmptyAlbums();
-            artistsDao.deleteEmptyArtists();
-            genreDao.deleteEmptyGenres();
-            foldersDao.deleteFoldersWithoutContainment();
+            orphansDaoWrapper.deleteOrphans();
         });
     }
 
     public void deleteCompositionsWithoutStorageId() {
-        compositionsDao.deleteCompositionsWithoutStorageId();
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordDeletedAll();
+            compositionsDao.deleteCompositionsWithoutStorageId();
+        });
     }
 
     public void updateFolderId(long id, Long folderId) {
-        compositionsDao.updateFolderId(id, folderId);
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, FOLDER_ID);
+            compositionsDao.updateFolderId(id, folderId);
+        });
     }
 
     public void replaceFolderId(long fromFolderId, Long folderId) {
-        compositionsDao.replaceFolderId(fromFolderId, folderId);
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdatedAll(FOLDER_ID);
+            compositionsDao.replaceFolderId(fromFolderId, folderId);
+        });
     }
 
     public void updateStorageId(long id, Long storageId) {
-        compositionsDao.updateStorageId(id, storageId);
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, STORAGE_ID);
+            compositionsDao.updateStorageId(id, storageId);
+        });
     }
 
     public void updateAlbum(long compositionId, @Nullable String albumName) {
@@ -254,6 +316,7 @@ public class CompositionsDaoWrapper {
 
             // set new albumId
             Long oldAlbumId = compositionsDao.getAlbumId(compositionId);
+            changesBus.recordUpdated(compositionId, ALBUM_ID, ALBUM_NAME, ALBUM_ARTIST_NAME, DATE_MODIFIED);
             compositionsDao.updateAlbum(compositionId, albumId);
             compositionsDao.setUpdateTime(compositionId, new Date());
 
@@ -274,6 +337,7 @@ public class CompositionsDaoWrapper {
             }
             // 3) set new artistId
             Long oldArtistId = compositionsDao.getArtistId(id);
+            changesBus.recordUpdated(id, ARTIST_ID, ARTIST_NAME, DATE_MODIFIED);
             compositionsDao.updateArtist(id, artistId);
             compositionsDao.setUpdateTime(id, new Date());
 
@@ -310,6 +374,7 @@ public class CompositionsDaoWrapper {
                 newAlbumId = albumsDao.insertAlbum(artistId, albumEntity.getName());
             }
             //set new album to composition
+            changesBus.recordUpdated(id, ALBUM_ID, ALBUM_NAME, ALBUM_ARTIST_NAME, DATE_MODIFIED);
             compositionsDao.setAlbumId(id, newAlbumId);
             compositionsDao.setUpdateTime(id, new Date());
 
@@ -325,18 +390,22 @@ public class CompositionsDaoWrapper {
     }
 
     public void setCompositionGenres(long compositionId, String[] genres) {
-        genreDao.removeCompositionGenres(compositionId);
-        for(String genre: genres) {
-            Long genreId = genreDao.findGenre(genre);
-            if (genreId == null) {
-                genreId = genreDao.insertGenre(genre);
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(compositionId, GENRE_NAMES);
+            genreDao.removeCompositionGenres(compositionId);
+            for(String genre: genres) {
+                Long genreId = genreDao.findGenre(genre);
+                if (genreId == null) {
+                    genreId = genreDao.insertGenre(genre);
+                }
+                genreDao.insertGenreEntry(compositionId, genreId);
             }
-            genreDao.insertGenreEntry(compositionId, genreId);
-        }
+        });
     }
 
     public void updateTitle(long id, String title) {
         libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, TITLE, SORT_TITLE, DATE_MODIFIED);
             compositionsDao.updateTitle(id, title);
             compositionsDao.setUpdateTime(id, new Date());
         });
@@ -344,6 +413,7 @@ public class CompositionsDaoWrapper {
 
     public void updateDuration(long id, long duration) {
         libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, DURATION, DATE_MODIFIED);
             compositionsDao.updateDuration(id, duration);
             compositionsDao.setUpdateTime(id, new Date());
         });
@@ -351,6 +421,7 @@ public class CompositionsDaoWrapper {
 
     public void updateTrackNumber(long id, Long trackNumber) {
         libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, TRACK_NUMBER, DATE_MODIFIED);
             compositionsDao.updateTrackNumber(id, trackNumber);
             compositionsDao.setUpdateTime(id, new Date());
         });
@@ -358,6 +429,7 @@ public class CompositionsDaoWrapper {
 
     public void updateDiscNumber(long id, Long discNumber) {
         libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, DISC_NUMBER, DATE_MODIFIED);
             compositionsDao.updateDiscNumber(id, discNumber);
             compositionsDao.setUpdateTime(id, new Date());
         });
@@ -365,6 +437,7 @@ public class CompositionsDaoWrapper {
 
     public void updateComment(long id, String text) {
         libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, COMMENT, DATE_MODIFIED);
             compositionsDao.updateComment(id, text);
             compositionsDao.setUpdateTime(id, new Date());
         });
@@ -372,6 +445,7 @@ public class CompositionsDaoWrapper {
 
     public void updateLyrics(long id, String text) {
         libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, LYRICS, DATE_MODIFIED);
             compositionsDao.updateLyrics(id, text);
             compositionsDao.setUpdateTime(id, new Date());
         });
@@ -379,56 +453,80 @@ public class CompositionsDaoWrapper {
 
     public void updateFileSize(long id, long fileSize) {
         libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, SIZE, DATE_MODIFIED);
             compositionsDao.updateFileSize(id, fileSize);
             compositionsDao.setUpdateTime(id, new Date());
         });
     }
 
     public void updateModifyTime(long id, Date date) {
-        compositionsDao.setUpdateTime(id, date);
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, DATE_MODIFIED);
+            compositionsDao.setUpdateTime(id, date);
+        });
     }
 
     public void updateCoverModifyTimeAndSize(long id, long size, Date date) {
-        compositionsDao.setCoverModifyTimeAndSize(id, size, date);
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, COVER_MODIFY_TIME, DATE_MODIFIED, SIZE);
+            compositionsDao.setCoverModifyTimeAndSize(id, size, date);
+        });
     }
 
     public void updateCoverModifyTime(long id, long time) {
-        compositionsDao.setCoverModifyTime(id, time);
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, COVER_MODIFY_TIME);
+            compositionsDao.setCoverModifyTime(id, time);
+        });
     }
 
     public void updateCompositionFileName(long id, String fileName) {
-        compositionsDao.updateCompositionFileName(id, fileName);
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, FILE_NAME, SORT_TITLE);
+            compositionsDao.updateCompositionFileName(id, fileName);
+        });
     }
 
     public void setCorruptionType(CorruptionType corruptionType, long id) {
-        compositionsDao.setCorruptionType(corruptionType, id);
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, CORRUPTION_TYPE);
+            compositionsDao.setCorruptionType(corruptionType, id);
+        });
     }
 
-    public Single<List<FullComposition>> selectNextCompositionsToScan(long lastCompleteScanTime,
-                                                                      int filesCount) {
-        return compositionsDao.selectNextCompositionsToScan(lastCompleteScanTime, filesCount);
+    public Single<List<FullComposition>> selectNextCompositionsToScan(long generationStartTime,
+                                                                      long cursor,
+                                                                      int filesCount,
+                                                                      long[] playQueueIds,
+                                                                      long[] visibleIds,
+                                                                      long[] excludedIds) {
+        return compositionsDao.selectNextCompositionsToScan(generationStartTime,
+                cursor,
+                filesCount,
+                playQueueIds,
+                visibleIds,
+                excludedIds);
     }
 
-    public void setCompositionLastFileScanTime(FullComposition composition, Date time) {
-        compositionsDao.setCompositionLastFileScanTime(composition.getId(), time);
+    public Single<List<FullComposition>> selectCompositionsToScan(long generationStartTime,
+                                                                  long[] ids) {
+        return compositionsDao.selectCompositionsToScan(generationStartTime, ids);
     }
 
-    public void cleanLastFileScanTime() {
-        compositionsDao.cleanLastFileScanTime();
+    public void setCompositionLastFileScanTime(FullComposition composition, Date time) {
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(composition.getId(), LAST_SCAN_DATE);
+            compositionsDao.setCompositionLastFileScanTime(composition.getId(), time);
+        });
     }
 
-    public void updateCompositionsByFileInfo(
-            List<kotlin.Pair<FullComposition, AudioFileInfo>> scannedCompositions,
-            List<FullComposition> allCompositions
-    ) {
+    //tags and scan time are written together, so file is never read twice after process death
+    public void applyFileScanResult(FullComposition composition, @Nullable AudioFileInfo fileInfo) {
         libraryDatabase.runInTransaction(() -> {
-            for (kotlin.Pair<FullComposition, AudioFileInfo> scannedComposition: scannedCompositions) {
-                updateCompositionByFileInfo(scannedComposition.getFirst(), scannedComposition.getSecond());
-            }
-            Date currentDate = new Date();
-            for (FullComposition composition: allCompositions) {
-                setCompositionLastFileScanTime(composition, currentDate);
+            if (fileInfo != null) {
+                updateCompositionByFileInfo(composition, fileInfo);
             }
+            setCompositionLastFileScanTime(composition, new Date());
         });
     }
 
@@ -441,6 +539,7 @@ public class CompositionsDaoWrapper {
 
             String tagTitle = tags.getTitle();
             if (!isEmpty(tagTitle) && !Objects.equals(composition.getTitle(), tagTitle)) {
+                changesBus.recordUpdated(id, TITLE, SORT_TITLE);
                 compositionsDao.updateTitle(id, tagTitle);
                 wasChanges = true;
             }
@@ -468,6 +567,7 @@ public class CompositionsDaoWrapper {
             long duration = composition.getDuration();
             if (duration == 0L && tagDuration != 0) {
                 long tagDurationMillis = tagDuration * 1000L;
+                changesBus.recordUpdated(id, DURATION, CORRUPTION_TYPE);
                 compositionsDao.updateDuration(id, tagDurationMillis);
                 if (compositionsDao.selectCorruptionType(id) == CorruptionType.UNKNOWN) {
                     compositionsDao.setCorruptionType(null, id);
@@ -477,24 +577,28 @@ public class CompositionsDaoWrapper {
 
             Long tagTrackNumber = tags.getTrackNumber();
             if (!Objects.equals(composition.getTrackNumber(), tagTrackNumber)) {
+                changesBus.recordUpdated(id, TRACK_NUMBER);
                 compositionsDao.updateTrackNumber(id, tagTrackNumber);
                 wasChanges = true;
             }
 
             Long tagDiscNumber = tags.getDiscNumber();
             if (!Objects.equals(composition.getDiscNumber(), tagDiscNumber)) {
+                changesBus.recordUpdated(id, DISC_NUMBER);
                 compositionsDao.updateDiscNumber(id, tagDiscNumber);
                 wasChanges = true;
             }
 
             String tagComment = tags.getComment();
             if (!isEmpty(tagComment) && !Objects.equals(composition.getComment(), tagComment)) {
+                changesBus.recordUpdated(id, COMMENT);
                 compositionsDao.updateComment(id, tagComment);
                 wasChanges = true;
             }
 
             String tagLyrics = tags.getLyrics();
             if (!isEmpty(tagLyrics) && !Objects.equals(composition.getLyrics(), tagLyrics)) {
+                changesBus.recordUpdated(id, LYRICS);
                 compositionsDao.updateLyrics(id, tagLyrics);
                 wasChanges = true;
             }
@@ -507,11 +611,13 @@ public class CompositionsDaoWrapper {
 
             long fileSize = fileInfo.getFileSize();
             if (composition.getSize() != fileSize) {
+                changesBus.recordUpdated(id, SIZE);
                 compositionsDao.updateFileSize(id, fileSize);
                 wasChanges = true;
             }
 
             if (wasChanges) {
+                changesBus.recordUpdated(id, DATE_MODIFIED);
                 compositionsDao.setUpdateTime(id, new Date());
             }
         });
@@ -575,7 +681,10 @@ public class CompositionsDaoWrapper {
     public void updateCompositionInitialSource(long id,
                                                InitialSource initialSource,
                                                InitialSource updateFrom) {
-        compositionsDao.updateCompositionInitialSource(id, initialSource, updateFrom);
+        libraryDatabase.runInTransaction(() -> {
+            changesBus.recordUpdated(id, INITIAL_SOURCE);
+            compositionsDao.updateCompositionInitialSource(id, initialSource, updateFrom);
+        });
     }
 
     public List<DeletedComposition> selectDeletedComposition(Long[] ids, boolean useFileName) {
@@ -622,36 +731,28 @@ public class CompositionsDaoWrapper {
 
     @Nullable
     public Long findFolderId(@Nullable String filePath) {
-        return findFolderId(filePath, null);
-    }
-
-    @Nullable
-    private Long findFolderId(@Nullable String filePath, @Nullable Long parentId) {
         if (TextUtils.isEmpty(filePath)) {
-            return parentId;
+            return null;
+        }
+        if (filePath.endsWith("/")) {
+            filePath = filePath.substring(0, filePath.length() - 1);
         }
+        return foldersDao.getFolderIdByPath(filePath);
+    }
 
-        Long folderId;
-        int delimiterIndex = filePath.indexOf('/');
-        if (delimiterIndex == -1) {
-            folderId = foldersDao.getFolderByName(parentId, filePath);
-        } else {
-            String folderName = filePath.substring(0, delimiterIndex);
-            Long parentFolderId = foldersDao.getFolderByName(parentId, folderName);
-            if (parentFolderId == null) {
-                return null;
-            }
-            String folderPath = filePath.substring(delimiterIndex + 1);
-            folderId = findFolderId(folderPath, parentFolderId);
+    //compositions of folder and all its subfolders, without folder - all compositions in folders
+    private String getFolderTreeWhereQuery(@Nullable Long folderId) {
+        if (folderId == null) {
+            return " WHERE folderId IS NOT NULL";
         }
-        return folderId;
+        return " WHERE folderId IN (" + FoldersDao.getFolderTreeQuery(String.valueOf(folderId)) + ")";
     }
 
     private String getOrderQuery(Order order) {
         StringBuilder orderQuery = new StringBuilder(" ORDER BY ");
         switch (order.getOrderType()) {
             case NAME: {
-                orderQuery.append("CASE WHEN title IS NULL OR title = '' THEN fileName ELSE title END");
+                orderQuery.append("sortTitle");
                 break;
             }
             case FILE_NAME: {
@@ -0,0 +1,166 @@
+package com.github.anrimian.musicplayer.data.database.dao.compositions
+
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteStatement
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase
+import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDaoWrapper
+import com.github.anrimian.musicplayer.data.database.mappers.CompositionCorruptionDetector
+import com.github.anrimian.musicplayer.data.storage.providers.music.StorageFullComposition
+import com.github.anrimian.musicplayer.domain.models.composition.CorruptionType
+import com.github.anrimian.musicplayer.domain.models.composition.InitialSource
+
+/**
+ * Inserts big amount of storage compositions with few set-based statements.
+ * Rows are staged in temporary table, then artists, albums and existing compositions
+ * are resolved for all rows at once.
+ * Folders are resolved per distinct path, their hierarchy can't be built with one statement.
+ *
+ * Must be called inside transaction.
+ */
+class StorageCompositionsBulkWriter(
+    private val libraryDatabase: LibraryDatabase,
+    private val foldersDaoWrapper: FoldersDaoWrapper,
+) {
+
+    fun insertCompositions(compositions: List<StorageFullComposition>) {
+        if (compositions.isEmpty()) {
+            return
+        }
+        val db = libraryDatabase.openHelper.writableDatabase
+        db.execSQL(CREATE_STAGING_TABLE)
+        db.execSQL("CREATE INDEX IF NOT EXISTS ${STAGING_TABLE}_existingId ON $STAGING_TABLE (existingId)")
+        try {
+            stageCompositions(db, compositions)
+            resolveArtists(db)
+            resolveAlbums(db)
+            relinkExistingCompositions(db)
+            db.execSQL(
+                "INSERT INTO compositions (" +
+                        "artistId, albumId, folderId, storageId, title, fileName, duration, size, " +
+                        "dateAdded, dateModified, lastScanDate, coverModifyTime, corruptionType, initialSource) " +
+                        "SELECT artistId, albumId, folderId, storageId, title, fileName, duration, size, " +
+                        "dateAdded, dateModified, 0, 0, corruptionType, ? " +
+                        "FROM $STAGING_TABLE " +
+                        "WHERE existingId IS NULL " +
+                        "ORDER BY rowid",
+                arrayOf<Any>(InitialSource.LOCAL.id)
+            )
+        } finally {
+            db.execSQL("DROP TABLE IF EXISTS $STAGING_TABLE")
+        }
+    }
+
+    private fun stageCompositions(
+        db: SupportSQLiteDatabase,
+        compositions: List<StorageFullComposition>
+    ) {
+        val foldersCache = HashMap<String, Long>()
+        val statement = db.compileStatement(
+            "INSERT INTO $STAGING_TABLE (" +
+                    "artist, albumName, albumArtist, folderId, title, fileName, duration, size, " +
+                    "storageId, dateAdded, dateModified, corruptionType) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+        )
+        statement.use { st ->
+            for (composition in compositions) {
+                val folderId = foldersDaoWrapper.getOrCreateFolder(composition.relativePath, foldersCache)
+                val storageAlbum = composition.storageAlbum
+                st.clearBindings()
+                st.bindNullableString(1, composition.artist)
+                st.bindNullableString(2, storageAlbum?.album)
+                st.bindNullableString(3, storageAlbum?.artist)
+                if (folderId == null) st.bindNull(4) else st.bindLong(4, folderId)
+                st.bindNullableString(5, composition.title)
+                st.bindString(6, composition.fileName)
+                st.bindLong(7, composition.duration)
+                st.bindLong(8, composition.size)
+                st.bindLong(9, composition.storageId)
+                st.bindLong(10, composition.dateAdded.time)
+                st.bindLong(11, composition.dateModified.time)
+                st.bindNullableString(12, CompositionCorruptionDetector.getCorruptionType(composition)?.name)
+                st.executeInsert()
+            }
+        }
+    }
+
+    private fun resolveArtists(db: SupportSQLiteDatabase) {
+        db.execSQL(
+            "INSERT OR IGNORE INTO artists (name) " +
+                    "SELECT artist FROM $STAGING_TABLE WHERE artist IS NOT NULL " +
+                    "UNION " +
+                    "SELECT albumArtist FROM $STAGING_TABLE WHERE albumArtist IS NOT NULL"
+        )
+        db.execSQL(
+            "UPDATE $STAGING_TABLE SET " +
+                    "artistId = (SELECT id FROM artists WHERE name = $STAGING_TABLE.artist), " +
+                    "albumArtistId = (SELECT id FROM artists WHERE name = $STAGING_TABLE.albumArtist)"
+        )
+    }
+
+    private fun resolveAlbums(db: SupportSQLiteDatabase) {
+        //unique index doesn't work for albums without artist(nulls are distinct), so check existence manually
+        db.execSQL(
+            "INSERT INTO albums (artistId, name) " +
+                    "SELECT DISTINCT albumArtistId, albumName FROM $STAGING_TABLE AS staging " +
+                    "WHERE albumName IS NOT NULL " +
+                    "AND NOT EXISTS(SELECT 1 FROM albums " +
+                    "WHERE albums.name = staging.albumName AND albums.artistId IS staging.albumArtistId)"
+        )
+        db.execSQL(
+            "UPDATE $STAGING_TABLE SET albumId = (" +
+                    "SELECT id FROM albums " +
+                    "WHERE albums.name = $STAGING_TABLE.albumName AND albums.artistId IS $STAGING_TABLE.albumArtistId" +
+                    ") WHERE albumName IS NOT NULL"
+        )
+    }
+
+    //if we have found composition without actual storage id - link it and just remove not_found mark
+    private fun relinkExistingCompositions(db: SupportSQLiteDatabase) {
+        db.execSQL(
+            "UPDATE $STAGING_TABLE SET existingId = (" +
+                    "SELECT id FROM compositions " +
+                    "WHERE compositions.fileName = $STAGING_TABLE.fileName " +
+                    "AND compositions.folderId IS $STAGING_TABLE.folderId " +
+                    "AND compositions.storageId IS NOT $STAGING_TABLE.storageId " +
+                    "LIMIT 1)"
+        )
+        db.execSQL(
+            "UPDATE compositions SET corruptionType = NULL " +
+                    "WHERE id IN (SELECT existingId FROM $STAGING_TABLE) " +
+                    "AND storageId IS NULL " +
+                    "AND corruptionType IN (?, ?)",
+            arrayOf<Any>(CorruptionType.NOT_FOUND.name, CorruptionType.SOURCE_NOT_FOUND.name)
+        )
+        db.execSQL(
+            "UPDATE compositions SET storageId = (" +
+                    "SELECT storageId FROM $STAGING_TABLE WHERE existingId = compositions.id" +
+                    ") WHERE id IN (SELECT existingId FROM $STAGING_TABLE)"
+        )
+    }
+
+    private fun SupportSQLiteStatement.bindNullableString(index: Int, value: String?) {
+        if (value == null) bindNull(index) else bindString(index, value)
+    }
+
+    private companion object {
+        const val STAGING_TABLE = "compositions_staging"
+
+        const val CREATE_STAGING_TABLE = "CREATE TEMP TABLE IF NOT EXISTS $STAGING_TABLE (" +
+                "artist TEXT, " +
+                "albumName TEXT, " +
+                "albumArtist TEXT, " +
+                "folderId INTEGER, " +
+                "title TEXT, " +
+                "fileName TEXT NOT NULL, " +
+                "duration INTEGER NOT NULL, " +
+                "size INTEGER NOT NULL, " +
+                "storageId INTEGER NOT NULL, " +
+                "dateAdded INTEGER, " +
+                "dateModified INTEGER, " +
+                "corruptionType TEXT, " +
+                "artistId INTEGER, " +
+                "albumArtistId INTEGER, " +
+                "albumId INTEGER, " +
+                "existingId INTEGER)"
+    }
+}
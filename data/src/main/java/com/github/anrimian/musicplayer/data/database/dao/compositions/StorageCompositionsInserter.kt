@@ -1,11 +1,10 @@
 package com.github.anrimian.musicplayer.data.database.dao.compositions
 
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase
-import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDao
 import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDaoWrapper
-import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDaoWrapper
 import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDaoWrapper
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper
 import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity
 import com.github.anrimian.musicplayer.data.database.mappers.CompositionMapper
 import com.github.anrimian.musicplayer.data.models.changes.Change
@@ -13,15 +12,17 @@ import com.github.anrimian.musicplayer.data.storage.providers.music.StorageCompo
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageFullComposition
 import com.github.anrimian.musicplayer.domain.models.composition.CorruptionType
 
-class StorageCompositionsInserter(
+class StorageCompositionsInserter @JvmOverloads constructor(
     private val libraryDatabase: LibraryDatabase,
     private val compositionsDao: CompositionsDao,
     private val compositionsDaoWrapper: CompositionsDaoWrapper,
     private val foldersDaoWrapper: FoldersDaoWrapper,
-    private val artistsDao: ArtistsDao,
     private val artistsDaoWrapper: ArtistsDaoWrapper,
-    private val albumsDao: AlbumsDao,
     private val albumsDaoWrapper: AlbumsDaoWrapper,
+    private val orphansDaoWrapper: OrphansDaoWrapper,
+    private val bulkWriter: StorageCompositionsBulkWriter,
+    private val compositionChangesBus: CompositionChangesBus,
+    private val bulkInsertMinCount: Int = BULK_INSERT_MIN_COUNT,
 ) {
 
     fun applyChanges(
@@ -46,17 +47,27 @@ class StorageCompositionsInserter(
         deletedCompositions: List<StorageComposition>,
         changedCompositions: List<Change<StorageComposition, StorageFullComposition>>
     ) {
-        insertCompositions(compositionsToAdd)
-        for (composition in deletedCompositions) {
-            compositionsDao.delete(composition.id)
+        if (compositionsToAdd.isNotEmpty()) {
+            //bulk path also restores storage ids of found compositions, record them as insert too
+            compositionChangesBus.recordInsertedAll()
         }
-        for (change in changedCompositions) {
-            handleCompositionUpdate(change)
+        if (compositionsToAdd.size >= bulkInsertMinCount) {
+            bulkWriter.insertCompositions(compositionsToAdd)
+        } else {
+            insertCompositions(compositionsToAdd)
+        }
+        deleteCompositions(deletedCompositions)
+        updateCompositions(changedCompositions)
+        orphansDaoWrapper.deleteOrphans()
+    }
+
+    private fun deleteCompositions(deletedCompositions: List<StorageComposition>) {
+        //sqlite variables limit
+        for (chunk in deletedCompositions.chunked(DELETE_CHUNK_SIZE)) {
+            val ids = LongArray(chunk.size) { i -> chunk[i].id }
+            compositionChangesBus.recordDeleted(*ids)
+            compositionsDao.delete(ids.toTypedArray())
         }
-        albumsDao.deleteEmptyAlbums()
-        artistsDao.deleteEmptyArtists()
-        foldersDaoWrapper.deleteEmptyFolders()
-//        genresDao.deleteEmptyGenres();//not working properly here. Or just not working. Check
     }
 
     private fun insertCompositions(compositionsToAdd: List<StorageFullComposition>) {
@@ -100,6 +111,11 @@ class StorageCompositionsInserter(
             val storageId = compositionsDao.selectStorageId(id)
             val actualStorageId = composition.storageId
             if (storageId != actualStorageId) {
+                compositionChangesBus.recordUpdated(
+                    id,
+                    CompositionColumns.STORAGE_ID,
+                    CompositionColumns.CORRUPTION_TYPE
+                )
                 compositionsDao.updateStorageId(id, actualStorageId)
                 if (storageId == 0L) {
                     val corruptionType = compositionsDao.selectCorruptionType(id)
@@ -113,35 +129,47 @@ class StorageCompositionsInserter(
         return CompositionMapper.toEntity(composition, artistId, albumId, folderId)
     }
 
-    private fun handleCompositionUpdate(change: Change<StorageComposition, StorageFullComposition>) {
-        val composition = change.obj
-        val oldComposition = change.old
-        val compositionId = oldComposition.id
-
-        var newAlbumName: String? = null
-        var newAlbumArtist: String? = null
-        val newAlbum = composition.storageAlbum
-        if (newAlbum != null) {
-            newAlbumName = newAlbum.album
-            newAlbumArtist = newAlbum.artist
-        }
-        if (newAlbumName != oldComposition.album) {
-            compositionsDaoWrapper.updateAlbum(compositionId, newAlbumName)
-        }
-        if (newAlbumArtist != oldComposition.albumArtist) {
-            compositionsDaoWrapper.updateAlbumArtist(compositionId, newAlbumArtist)
-        }
-        val newArtist = composition.artist
-        if (newArtist != oldComposition.artist) {
-            compositionsDaoWrapper.updateArtist(compositionId, newArtist)
+    private fun updateCompositions(
+        changedCompositions: List<Change<StorageComposition, StorageFullComposition>>
+    ) {
+        val artistsCache = HashMap<String, Long>()
+        val albumsCache = HashMap<String, Long>()
+        val foldersCache = HashMap<String, Long>()
+
+        for (change in changedCompositions) {
+            updateComposition(change, artistsCache, albumsCache, foldersCache)
         }
-        val relativePath = composition.relativePath
-        if (relativePath != oldComposition.parentPath) {
-            val folderId = foldersDaoWrapper.getOrCreateFolder(relativePath, HashMap())
-            compositionsDao.updateFolderId(compositionId, folderId)
+    }
+
+    //resolve whole new row and write it with one statement, empty entities are removed after all changes
+    private fun updateComposition(
+        change: Change<StorageComposition, StorageFullComposition>,
+        artistsCache: Map<String, Long>,
+        albumsCache: Map<String, Long>,
+        foldersCache: HashMap<String, Long>
+    ) {
+        val composition = change.obj
+        val artistId = artistsDaoWrapper.getOrInsertArtist(composition.artist, artistsCache)
+
+        var albumId: Long? = null
+        val storageAlbum = composition.storageAlbum
+        if (storageAlbum != null) {
+            albumId = albumsDaoWrapper.getOrInsertAlbum(
+                storageAlbum.album,
+                storageAlbum.artist,
+                artistsCache,
+                albumsCache
+            )
         }
 
-        compositionsDao.update(
+        val folderId = foldersDaoWrapper.getOrCreateFolder(composition.relativePath, foldersCache)
+
+        compositionChangesBus.recordUpdated(change.old.id, *STORAGE_UPDATE_COLUMNS)
+        compositionsDao.updateStorageComposition(
+            change.old.id,
+            artistId,
+            albumId,
+            folderId,
             composition.title,
             composition.fileName,
             composition.duration,
@@ -151,4 +179,26 @@ class StorageCompositionsInserter(
         )
     }
 
-}
\ No newline at end of file
+    private companion object {
+        //set-based path has fixed cost of staging table, it is not worth it for small deltas
+        const val BULK_INSERT_MIN_COUNT = 200
+        const val DELETE_CHUNK_SIZE = 500
+
+        //columns written by updateStorageComposition() and projected from its references
+        val STORAGE_UPDATE_COLUMNS = arrayOf(
+            CompositionColumns.ARTIST_ID,
+            CompositionColumns.ALBUM_ID,
+            CompositionColumns.FOLDER_ID,
+            CompositionColumns.TITLE,
+            CompositionColumns.FILE_NAME,
+            CompositionColumns.DURATION,
+            CompositionColumns.SIZE,
+            CompositionColumns.DATE_MODIFIED,
+            CompositionColumns.STORAGE_ID,
+            CompositionColumns.ARTIST_NAME,
+            CompositionColumns.ALBUM_NAME,
+            CompositionColumns.ALBUM_ARTIST_NAME,
+            CompositionColumns.SORT_TITLE,
+        )
+    }
+}
@@ -7,8 +7,8 @@ import androidx.room.Query;
 import androidx.room.RawQuery;
 import androidx.sqlite.db.SupportSQLiteQuery;
 
-import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity;
 import com.github.anrimian.musicplayer.data.database.entities.folder.FolderEntity;
+import com.github.anrimian.musicplayer.data.database.entities.folder.FolderTreeEntity;
 import com.github.anrimian.musicplayer.domain.models.folders.FolderFileSource;
 import com.github.anrimian.musicplayer.domain.models.folders.FolderInfo;
 
@@ -19,34 +19,18 @@ import io.reactivex.rxjava3.core.Observable;
 @Dao
 public interface FoldersDao {
 
-    @RawQuery(observedEntities = { CompositionEntity.class, FolderEntity.class })
+    @RawQuery(observedEntities = { FolderEntity.class, FolderTreeEntity.class })
     Observable<List<FolderFileSource>> getFoldersObservable(SupportSQLiteQuery query);
 
     @RawQuery
     List<Long> getFoldersIds(SupportSQLiteQuery query);
 
-    @Query("WITH RECURSIVE path(level, name, parentId) AS (" +
-            "    SELECT 0, name, parentId" +
-            "    FROM folders" +
-            "    WHERE id = :folderId" +
-            "    UNION ALL" +
-            "    SELECT path.level + 1," +
-            "           folders.name," +
-            "           folders.parentId" +
-            "    FROM folders" +
-            "    JOIN path ON folders.id = path.parentId" +
-            ")," +
-            "path_from_root AS (" +
-            "    SELECT name" +
-            "    FROM path" +
-            "    ORDER BY level DESC" +
-            ")" +
-            "SELECT " +
-            "(SELECT IFNULL(group_concat(name, '/'), '') FROM path_from_root) AS path," +
+    @Query("SELECT " +
+            "path AS path," +
             "id AS id," +
-            "(SELECT count() < 2 FROM path_from_root) AS isParentOfParentRoot " +
+            "parentId IS NULL AS isParentOfParentRoot " +
             "FROM folders " +
-            "WHERE id = :folderId OR (id IS NULL AND :folderId IS NULL) " +
+            "WHERE id = :folderId " +
             "LIMIT 1")
     Observable<List<FolderInfo>> getFolderObservable(Long folderId);
 
@@ -68,38 +52,10 @@ public interface FoldersDao {
     @Query("UPDATE folders SET parentId = :toFolderId WHERE parentId = :fromParentId")
     void replaceParentId(long fromParentId, Long toFolderId);
 
-    @Query("WITH RECURSIVE path(level, name, parentId) AS (" +
-            "    SELECT 0, name, parentId" +
-            "    FROM folders" +
-            "    WHERE id = :folderId" +
-            "    UNION ALL" +
-            "    SELECT path.level + 1," +
-            "           folders.name," +
-            "           folders.parentId" +
-            "    FROM folders" +
-            "    JOIN path ON folders.id = path.parentId" +
-            ")," +
-            "path_from_root AS (" +
-            "    SELECT name" +
-            "    FROM path" +
-            "    ORDER BY level DESC" +
-            ")" +
-            "SELECT IFNULL(group_concat(name, '/'), '')" +
-            "FROM path_from_root")
+    @Query("SELECT IFNULL((SELECT path FROM folders WHERE id = :folderId), '')")
     String getFullFolderPath(long folderId);
 
-    @Query("WITH RECURSIVE path(level, id, parentId) AS (" +
-            "    SELECT 0, id, parentId" +
-            "    FROM folders" +
-            "    WHERE id = :folderId OR (id IS NULL AND :folderId IS NULL)" +
-            "    UNION ALL" +
-            "    SELECT path.level + 1," +
-            "           folders.id," +
-            "           folders.parentId" +
-            "    FROM folders" +
-            "    JOIN path ON folders.id = path.parentId" +
-            ")" +
-            "SELECT id FROM path ORDER BY level DESC")
+    @Query("SELECT ancestorId FROM folder_tree WHERE descendantId = :folderId ORDER BY depth DESC")
     List<Long> getAllParentFoldersId(Long folderId);
 
     @Query("SELECT name " +
@@ -127,22 +83,15 @@ public interface FoldersDao {
             "LIMIT 1")
     Long getFolderByName(Long parentId, String name);
 
-    @Query("WITH parentIds AS (SELECT parentId FROM folders)" +
-            "DELETE FROM folders " +
-            "WHERE (SELECT count() FROM parentIds WHERE parentIds.parentId = folders.id) = 0 " +
-            "AND (SELECT count() FROM compositions WHERE folderId = folders.id) = 0")
-    int deleteFoldersWithoutContainment();
-
-    static String getRecursiveFolderQuery(Long parentFolderId) {
-        return getRecursiveFolderQuery(parentFolderId, false);
-    }
-    static String getRecursiveFolderQuery(Long parentFolderId, boolean selectAll) {
-        return "WITH RECURSIVE allChildFolders(childFolderId, rootFolderId) AS (" +
-                "SELECT id as childFolderId, id as rootFolderId FROM folders " +
-                    (!selectAll? "WHERE parentId = " + parentFolderId + " OR (parentId IS NULL AND " + parentFolderId + " IS NULL)": "") +
-                "UNION " +
-                "SELECT id as childFolderId, allChildFolders.rootFolderId as rootFolderId FROM folders INNER JOIN allChildFolders ON parentId = allChildFolders.childFolderId" +
-                ")";
+    @Nullable
+    @Query("SELECT id FROM folders WHERE path = :path LIMIT 1")
+    Long getFolderIdByPath(String path);
+
+    /**
+     * @return query of ids of folder and all its subfolders
+     */
+    static String getFolderTreeQuery(String folderId) {
+        return "SELECT descendantId FROM folder_tree WHERE ancestorId = " + folderId;
     }
 
 }
@@ -2,6 +2,7 @@ package com.github.anrimian.musicplayer.data.database.dao.folders;
 
 
 import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getSearchArgs;
+import static com.github.anrimian.musicplayer.domain.Constants.TRIGGER;
 import static com.github.anrimian.musicplayer.domain.utils.ListUtils.mapList;
 
 import androidx.annotation.NonNull;
@@ -9,8 +10,11 @@ import androidx.annotation.Nullable;
 import androidx.sqlite.db.SimpleSQLiteQuery;
 
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.orphans.OrphansDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.entities.folder.FolderEntity;
+import com.github.anrimian.musicplayer.data.database.profiler.TracedQuery;
 import com.github.anrimian.musicplayer.data.repositories.library.edit.models.CompositionMoveData;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
 import com.github.anrimian.musicplayer.domain.models.folders.CompositionFileSource;
@@ -19,7 +23,6 @@ import com.github.anrimian.musicplayer.domain.models.folders.FolderFileSource;
 import com.github.anrimian.musicplayer.domain.models.folders.FolderInfo;
 import com.github.anrimian.musicplayer.domain.models.order.Order;
 import com.github.anrimian.musicplayer.domain.utils.ListUtils;
-import com.github.anrimian.musicplayer.domain.utils.TextUtils;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -32,16 +35,22 @@ import io.reactivex.rxjava3.core.Single;
 
 public class FoldersDaoWrapper {
 
+    private static final String CHILD_COMPOSITIONS_SELECTION =
+            "folderId IN (" + FoldersDao.getFolderTreeQuery("folders.id") + ")";
+
     private final LibraryDatabase libraryDatabase;
     private final FoldersDao foldersDao;
     private final CompositionsDaoWrapper compositionsDao;
+    private final OrphansDaoWrapper orphansDaoWrapper;
 
     public FoldersDaoWrapper(LibraryDatabase libraryDatabase,
                              FoldersDao foldersDao,
-                             CompositionsDaoWrapper compositionsDao) {
+                             CompositionsDaoWrapper compositionsDao,
+                             OrphansDaoWrapper orphansDaoWrapper) {
         this.libraryDatabase = libraryDatabase;
         this.foldersDao = foldersDao;
         this.compositionsDao = compositionsDao;
+        this.orphansDaoWrapper = orphansDaoWrapper;
     }
 
     public Observable<List<FileSource>> getFilesObservable(Long parentFolderId,
@@ -93,8 +102,7 @@ public class FoldersDaoWrapper {
     public List<Composition> getAllCompositionsInFolder(Long parentFolderId, Order order, boolean useFileName) {
         List<Composition> result = new LinkedList<>();
 
-        String query = FoldersDao.getRecursiveFolderQuery(parentFolderId) +
-                "SELECT id " +
+        String query = "SELECT id " +
                 "FROM folders " +
                 "WHERE parentId = " + parentFolderId + " OR (parentId IS NULL AND " + parentFolderId + " IS NULL)";
         query += getOrderQuery(order);
@@ -168,7 +176,7 @@ public class FoldersDaoWrapper {
                     foldersDao.updateParentId(id, toFolderId);
                 }
             }
-            deleteEmptyFolders();
+            orphansDaoWrapper.deleteOrphans();
         });
     }
 
@@ -193,70 +201,47 @@ public class FoldersDaoWrapper {
         return foldersDao.isFolderWithNameExists(parentId, name);
     }
 
-    public void deleteEmptyFolders() {
-        int deletedRows;
-        do {
-            deletedRows = foldersDao.deleteFoldersWithoutContainment();
-        } while (deletedRows != 0);
-    }
-
     @Nullable
     public Long getOrCreateFolder(String filePath, Map<String, Long> folderCache) {
-        return getOrCreateFolder(filePath, filePath, null, folderCache);
-    }
-
-    @Nullable
-    private Long getOrCreateFolder(String fullPath,
-                                   String filePath,
-                                   @Nullable Long parentId,
-                                   Map<String, Long> folderCache) {
         if (filePath.isEmpty()) {
-            return parentId;
+            return null;
         }
 
-        Long cachedId = folderCache.get(fullPath);
-        if (cachedId != null) {
-            return cachedId;
+        Long folderId = folderCache.get(filePath);
+        if (folderId != null) {
+            return folderId;
         }
 
-        Long folderId;
-        int delimiterIndex = filePath.indexOf('/');
-        if (delimiterIndex == -1) {
-            folderId = getFolderId(filePath, parentId);
-        } else {
-            String folderName = filePath.substring(0, delimiterIndex);
-            long parentFolderId = getFolderId(folderName, parentId);
-            String folderPath = filePath.substring(delimiterIndex + 1);
-            folderId = getOrCreateFolder(fullPath, folderPath, parentFolderId, folderCache);
+        folderId = foldersDao.getFolderIdByPath(filePath);
+        if (folderId == null) {
+            //parent folders are resolved by their paths too, so they get into cache
+            int delimiterIndex = filePath.lastIndexOf('/');
+            Long parentId = null;
+            if (delimiterIndex != -1) {
+                parentId = getOrCreateFolder(filePath.substring(0, delimiterIndex), folderCache);
+            }
+            String folderName = filePath.substring(delimiterIndex + 1);
+            folderId = foldersDao.insertFolder(new FolderEntity(parentId, folderName));
         }
-        folderCache.put(fullPath, folderId);
+        folderCache.put(filePath, folderId);
         return folderId;
     }
 
-    private long getFolderId(String folderName, @Nullable Long parentId) {
-        Long folderId = foldersDao.getFolderByName(parentId, folderName);
-        if (folderId != null) {
-            return folderId;
-        }
-        return foldersDao.insertFolder(new FolderEntity(parentId, folderName));
-    }
-
     private Observable<List<FolderFileSource>> getFoldersObservable(Long parentFolderId,
                                                                     Order order,
                                                                     @Nullable String searchText) {
-        boolean selectAllFolders = !TextUtils.isEmpty(searchText);
-        String query = FoldersDao.getRecursiveFolderQuery(parentFolderId, selectAllFolders) +
-                ", childCompositions(storageId, initialSource) AS (SELECT storageId, initialSource FROM compositions WHERE folderId IN (SELECT childFolderId FROM allChildFolders WHERE rootFolderId = folders.id))" +
-                "SELECT id, name, " +
-                "(SELECT count() FROM childCompositions) as filesCount, " +
-                "(SELECT exists(SELECT 1 FROM childCompositions WHERE storageId IS NOT NULL AND initialSource = 1 LIMIT 1)) as hasAnyStorageFile " +
+        String query = "SELECT id, name, " +
+                "compositionsCount as filesCount, " +
+                "(SELECT exists(SELECT 1 FROM compositions WHERE " + CHILD_COMPOSITIONS_SELECTION + " AND storageId IS NOT NULL AND initialSource = 1 LIMIT 1)) as hasAnyStorageFile " +
                 "FROM folders " +
                 "WHERE (? IS NULL AND (parentId = " + parentFolderId + " OR (parentId IS NULL AND " + parentFolderId + " IS NULL)))";
 
         query += getSearchQuery();
         query += getOrderQuery(order);
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query, getSearchArgs(searchText, 3));
-        return foldersDao.getFoldersObservable(sqlQuery);
+        TracedQuery sqlQuery = new TracedQuery(new SimpleSQLiteQuery(query, getSearchArgs(searchText, 3)));
+        return compositionsDao.getCompositionChangesObservable(CompositionColumns.FOLDER_LIST_COLUMNS)
+                .startWithItem(TRIGGER)
+                .switchMap(o -> foldersDao.getFoldersObservable(sqlQuery));
     }
 
     private String getOrderQuery(Order order) {
@@ -268,15 +253,15 @@ public class FoldersDaoWrapper {
                 break;
             }
             case ADD_TIME: {
-                orderQuery.append("(SELECT max(dateAdded) FROM compositions WHERE folderId IN (SELECT childFolderId FROM allChildFolders WHERE rootFolderId = folders.id))");
+                orderQuery.append("(SELECT max(dateAdded) FROM compositions WHERE " + CHILD_COMPOSITIONS_SELECTION + ")");
                 break;
             }
             case DURATION: {
-                orderQuery.append("(SELECT sum(duration) FROM compositions WHERE folderId IN (SELECT childFolderId FROM allChildFolders WHERE rootFolderId = folders.id))");
+                orderQuery.append("totalDuration");
                 break;
             }
             case SIZE: {
-                orderQuery.append("(SELECT sum(size) FROM compositions WHERE folderId IN (SELECT childFolderId FROM allChildFolders WHERE rootFolderId = folders.id))");
+                orderQuery.append("totalSize");
                 break;
             }
             default: throw new IllegalStateException("unknown order type" + order);
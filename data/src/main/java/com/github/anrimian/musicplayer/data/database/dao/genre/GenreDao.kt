@@ -6,9 +6,6 @@ import androidx.room.RawQuery
 import androidx.sqlite.db.SimpleSQLiteQuery
 import androidx.sqlite.db.SupportSQLiteQuery
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao
-import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity
-import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity
-import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity
 import com.github.anrimian.musicplayer.data.database.entities.genres.GenreEntity
 import com.github.anrimian.musicplayer.data.database.entities.genres.GenreEntryEntity
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
@@ -58,11 +55,11 @@ interface GenreDao {
     """)
     fun moveGenres(compositionId: Long, fromPos: Int, toPos: Int)
 
-    @RawQuery(observedEntities = [GenreEntity::class, GenreEntryEntity::class, CompositionEntity::class])
+    @RawQuery(observedEntities = [GenreEntity::class, GenreEntryEntity::class])
     fun getAllObservable(query: SupportSQLiteQuery): Observable<List<Genre>>
 
-    @RawQuery(observedEntities = [ArtistEntity::class, CompositionEntity::class, AlbumEntity::class, GenreEntryEntity::class])
-    fun getCompositionsInGenreObservable(query: SimpleSQLiteQuery): Observable<List<Composition>>
+    @RawQuery(observedEntities = [GenreEntryEntity::class])
+    fun getCompositionsInGenreObservable(query: SupportSQLiteQuery): Observable<List<Composition>>
 
     @RawQuery
     fun getCompositionsInGenre(query: SimpleSQLiteQuery): List<Composition>
@@ -79,8 +76,8 @@ interface GenreDao {
         SELECT 
         id AS id,
         name AS name, 
-        (SELECT count() FROM genre_entries WHERE genreId = genres.id) AS compositionsCount, 
-        (SELECT sum(duration) FROM compositions WHERE compositions.id IN (SELECT compositionId FROM genre_entries WHERE genreId = genres.id)) AS totalDuration 
+        compositionsCount AS compositionsCount, 
+        totalDuration AS totalDuration 
         FROM genres 
         WHERE id = :genreId 
         LIMIT 1
@@ -106,12 +103,6 @@ interface GenreDao {
     """)
     fun deleteEmptyGenre(id: Long)
 
-    @Query("""
-        DELETE FROM genres 
-        WHERE (SELECT count() FROM genre_entries WHERE genreId = genres.id) = 0
-    """)
-    fun deleteEmptyGenres()
-
     @Query("DELETE FROM genre_entries WHERE compositionId = :compositionId AND genreId = :genreId")
     fun removeGenreEntry(compositionId: Long, genreId: Long)
 
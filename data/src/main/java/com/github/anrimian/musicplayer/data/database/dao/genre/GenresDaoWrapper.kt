@@ -2,9 +2,13 @@ package com.github.anrimian.musicplayer.data.database.dao.genre
 
 import androidx.sqlite.db.SimpleSQLiteQuery
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao
 import com.github.anrimian.musicplayer.data.database.dao.genre.GenreDao.Companion.getCompositionsQuery
+import com.github.anrimian.musicplayer.data.database.profiler.TracedQuery
 import com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils
+import com.github.anrimian.musicplayer.domain.Constants.TRIGGER
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
 import com.github.anrimian.musicplayer.domain.models.genres.Genre
 import com.github.anrimian.musicplayer.domain.models.order.Order
@@ -17,19 +21,20 @@ class GenresDaoWrapper(
     private val appDatabase: LibraryDatabase,
     private val genreDao: GenreDao,
     private val compositionsDao: CompositionsDao,
+    private val compositionChangesBus: CompositionChangesBus,
 ) {
 
     fun getAllObservable(order: Order, searchText: String?): Observable<List<Genre>> {
         var query = """
             SELECT id as id,
             name as name, 
-            (SELECT count() FROM genre_entries WHERE genreId = genres.id) as compositionsCount, 
-            (SELECT sum(duration) FROM compositions WHERE compositions.id IN (SELECT compositionId FROM genre_entries WHERE genreId = genres.id)) as totalDuration 
+            compositionsCount as compositionsCount, 
+            totalDuration as totalDuration 
             FROM genres
         """
         query += getSearchQuery()
         query += getOrderQuery(order)
-        val sqlQuery = SimpleSQLiteQuery(query, DatabaseUtils.getSearchArgs(searchText, 2))
+        val sqlQuery = TracedQuery(SimpleSQLiteQuery(query, DatabaseUtils.getFtsSearchArgs(searchText, 2)))
         return genreDao.getAllObservable(sqlQuery)
     }
 
@@ -44,8 +49,10 @@ class GenresDaoWrapper(
         useFileName: Boolean,
     ): Observable<List<Composition>> {
         val query = getCompositionsQuery(useFileName)
-        val sqlQuery = SimpleSQLiteQuery(query, arrayOf(genreId))
-        return genreDao.getCompositionsInGenreObservable(sqlQuery)
+        val sqlQuery = TracedQuery(SimpleSQLiteQuery(query, arrayOf(genreId)))
+        return compositionChangesBus.getChangesObservable(CompositionColumns.LIST_COLUMNS)
+            .startWithItem(TRIGGER)
+            .switchMap { genreDao.getCompositionsInGenreObservable(sqlQuery) }
     }
 
     fun getCompositionsInGenre(genreId: Long, useFileName: Boolean): List<Composition> {
@@ -64,6 +71,7 @@ class GenresDaoWrapper(
 
     fun moveGenres(compositionId: Long, fromPos: Int, toPos: Int) {
         appDatabase.runInTransaction {
+            recordGenresChanged(compositionId)
             genreDao.moveGenres(compositionId, fromPos, toPos)
             compositionsDao.setUpdateTime(compositionId, Date())
         }
@@ -72,6 +80,7 @@ class GenresDaoWrapper(
     @JvmOverloads
     fun addCompositionToGenre(compositionId: Long, genreName: String, position: Int? = null) {
         appDatabase.runInTransaction {
+            recordGenresChanged(compositionId)
             var genreId = genreDao.findGenre(genreName)
             if (genreId == null) {
                 genreId = genreDao.insertGenre(genreName)
@@ -86,6 +95,7 @@ class GenresDaoWrapper(
 
     fun removeCompositionFromGenre(compositionId: Long, genre: String): Int {
         return appDatabase.runInTransaction<Int> {
+            recordGenresChanged(compositionId)
             val genreId = genreDao.findGenre(genre) ?: throw IllegalStateException("genre not found")
             val position = genreDao.getGenrePosition(compositionId, genreId)
 
@@ -99,6 +109,7 @@ class GenresDaoWrapper(
 
     fun changeCompositionGenre(compositionId: Long, oldGenreName: String, newGenreName: String) {
         appDatabase.runInTransaction {
+            recordGenresChanged(compositionId)
             val oldGenreId = genreDao.findGenre(oldGenreName)
                 ?: throw IllegalStateException("old genre not found")
             val genreId = genreDao.findGenre(newGenreName)
@@ -117,6 +128,10 @@ class GenresDaoWrapper(
 
     fun updateGenreName(name: String, genreId: Long, compositionIds: List<Long>) {
         appDatabase.runInTransaction {
+            compositionChangesBus.recordUpdatedAll(
+                CompositionColumns.GENRE_NAMES,
+                CompositionColumns.DATE_MODIFIED
+            )
             genreDao.updateGenreCompositionsModifyTime(genreId, Date())
             val existsGenreId = genreDao.findGenre(name)
             if (existsGenreId == null) {
@@ -136,6 +151,14 @@ class GenresDaoWrapper(
         return genreDao.getGenreName(genreId)
     }
 
+    private fun recordGenresChanged(compositionId: Long) {
+        compositionChangesBus.recordUpdated(
+            compositionId,
+            CompositionColumns.GENRE_NAMES,
+            CompositionColumns.DATE_MODIFIED
+        )
+    }
+
     private fun getOrderQuery(order: Order): String {
         val orderQuery = StringBuilder(" ORDER BY ")
         when (order.orderType) {
@@ -148,5 +171,5 @@ class GenresDaoWrapper(
         return orderQuery.toString()
     }
 
-    private fun getSearchQuery() = " WHERE (? IS NULL OR name LIKE ?)"
+    private fun getSearchQuery() = " WHERE (? IS NULL OR id IN (SELECT docid FROM genres_search WHERE genres_search MATCH ?))"
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.github.anrimian.musicplayer.data.database.dao.orphans;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.github.anrimian.musicplayer.data.database.entities.orphans.OrphanCandidateEntity;
+
+import java.util.List;
+
+@Dao
+public interface OrphansDao {
+
+    @Query("DELETE FROM albums " +
+            "WHERE id IN (SELECT id FROM orphan_candidates WHERE type = " + OrphanCandidateEntity.ALBUM + ") " +
+            "AND NOT EXISTS(SELECT 1 FROM compositions WHERE albumId = albums.id)")
+    int deleteOrphanAlbums();
+
+    @Query("DELETE FROM artists " +
+            "WHERE id IN (SELECT id FROM orphan_candidates WHERE type = " + OrphanCandidateEntity.ARTIST + ") " +
+            "AND NOT EXISTS(SELECT 1 FROM compositions WHERE artistId = artists.id) " +
+            "AND NOT EXISTS(SELECT 1 FROM albums WHERE artistId = artists.id)")
+    int deleteOrphanArtists();
+
+    @Query("DELETE FROM genres " +
+            "WHERE id IN (SELECT id FROM orphan_candidates WHERE type = " + OrphanCandidateEntity.GENRE + ") " +
+            "AND NOT EXISTS(SELECT 1 FROM genre_entries WHERE genreId = genres.id)")
+    int deleteOrphanGenres();
+
+    @Query("SELECT id FROM orphan_candidates WHERE type = " + OrphanCandidateEntity.FOLDER)
+    List<Long> selectOrphanFolderCandidates();
+
+    @Query("DELETE FROM folders " +
+            "WHERE id = :folderId " +
+            "AND NOT EXISTS(SELECT 1 FROM compositions WHERE folderId = :folderId) " +
+            "AND NOT EXISTS(SELECT 1 FROM folders AS children WHERE children.parentId = :folderId)")
+    int deleteFolderIfEmpty(long folderId);
+
+    @Query("DELETE FROM orphan_candidates")
+    void clearOrphanCandidates();
+
+}
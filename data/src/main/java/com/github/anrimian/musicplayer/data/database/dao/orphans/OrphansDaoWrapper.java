@@ -0,0 +1,48 @@
+package com.github.anrimian.musicplayer.data.database.dao.orphans;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDao;
+
+/**
+ * Deletes artists, albums, genres and folders which became empty. Only candidates recorded by
+ * triggers since previous cleanup are checked, so cost depends on size of applied changes.
+ */
+public class OrphansDaoWrapper {
+
+    private final LibraryDatabase libraryDatabase;
+    private final OrphansDao orphansDao;
+    private final FoldersDao foldersDao;
+
+    public OrphansDaoWrapper(LibraryDatabase libraryDatabase,
+                             OrphansDao orphansDao,
+                             FoldersDao foldersDao) {
+        this.libraryDatabase = libraryDatabase;
+        this.orphansDao = orphansDao;
+        this.foldersDao = foldersDao;
+    }
+
+    public void deleteOrphans() {
+        libraryDatabase.runInTransaction(() -> {
+            //deleted albums add their artists to candidates
+            orphansDao.deleteOrphanAlbums();
+            orphansDao.deleteOrphanArtists();
+            orphansDao.deleteOrphanGenres();
+            for (Long folderId: orphansDao.selectOrphanFolderCandidates()) {
+                deleteEmptyFolders(folderId);
+            }
+            orphansDao.clearOrphanCandidates();
+        });
+    }
+
+    //go up while folders become empty
+    private void deleteEmptyFolders(Long folderId) {
+        while (folderId != null) {
+            Long parentId = foldersDao.getFolderParentId(folderId);
+            if (orphansDao.deleteFolderIfEmpty(folderId) == 0) {
+                return;
+            }
+            folderId = parentId;
+        }
+    }
+
+}
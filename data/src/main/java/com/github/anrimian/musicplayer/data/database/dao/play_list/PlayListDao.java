@@ -5,11 +5,9 @@ import androidx.room.Insert;
 import androidx.room.Query;
 import androidx.room.RawQuery;
 import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
-import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity;
-import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity;
-import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity;
 import com.github.anrimian.musicplayer.data.database.entities.playlist.PlayListEntryEntity;
 import com.github.anrimian.musicplayer.data.repositories.scanner.storage.playlists.m3uparser.PlayListEntry;
 import com.github.anrimian.musicplayer.data.storage.providers.playlists.AppPlayList;
@@ -40,21 +38,15 @@ public interface PlayListDao {
     @Query("UPDATE play_lists SET dateModified = :modifyTime WHERE id = :id")
     void updatePlayListModifyTime(long id, Date modifyTime);
 
-    @Query("WITH entries(playlistId, duration) AS ( " +
-            "   SELECT " +
-            "   playlistId AS playlistId, " +
-            "   (SELECT duration FROM compositions WHERE compositions.id = play_lists_entries.audioId) AS duration " +
-            "   FROM play_lists_entries" +
-            ")" +
-            "SELECT " +
+    @Query("SELECT " +
             "play_lists.id as id, " +
             "play_lists.name as name, " +
             "play_lists.dateAdded as dateAdded, " +
             "play_lists.dateModified as dateModified, " +
-            "(SELECT count() FROM entries WHERE playListId = play_lists.id) as compositionsCount, " +
-            "(SELECT sum(duration) FROM entries WHERE playlistId = play_lists.id) as totalDuration " +
+            "play_lists.compositionsCount as compositionsCount, " +
+            "play_lists.totalDuration as totalDuration " +
             "FROM play_lists " +
-            "WHERE (:searchQuery IS NULL OR name LIKE :searchQuery)" +
+            "WHERE (:searchQuery IS NULL OR id IN (SELECT docid FROM play_lists_search WHERE play_lists_search MATCH :searchQuery))" +
             "ORDER BY dateModified DESC")
     Observable<List<PlayList>> getPlayListsObservable(String searchQuery);
 
@@ -64,7 +56,7 @@ public interface PlayListDao {
             "play_lists.name as name, " +
             "play_lists.dateAdded as dateAdded, " +
             "play_lists.dateModified as dateModified, " +
-            "(SELECT count() FROM play_lists_entries WHERE playListId = play_lists.id) as compositionsCount " +
+            "play_lists.compositionsCount as compositionsCount " +
             "FROM play_lists")
     List<AppPlayList> getAllPlayLists();
 
@@ -74,7 +66,7 @@ public interface PlayListDao {
             "play_lists.name as name, " +
             "play_lists.dateAdded as dateAdded, " +
             "play_lists.dateModified as dateModified, " +
-            "(SELECT count() FROM play_lists_entries WHERE playListId = play_lists.id) as compositionsCount " +
+            "play_lists.compositionsCount as compositionsCount " +
             "FROM play_lists " +
             "WHERE id = :playlistId")
     AppPlayList getPlayList(long playlistId);
@@ -85,30 +77,24 @@ public interface PlayListDao {
             "play_lists.name as name, " +
             "play_lists.dateAdded as dateAdded, " +
             "play_lists.dateModified as dateModified, " +
-            "(SELECT count() FROM play_lists_entries WHERE playListId = play_lists.id) as compositionsCount " +
+            "play_lists.compositionsCount as compositionsCount " +
             "FROM play_lists")
     List<AppPlayList> getAllAsStoragePlayLists();
 
-    @Query("WITH entries(playlistId, duration) AS ( " +
-            "   SELECT " +
-            "   playlistId AS playlistId, " +
-            "   (SELECT duration FROM compositions WHERE compositions.id = play_lists_entries.audioId) AS duration " +
-            "   FROM play_lists_entries" +
-            ")" +
-            "SELECT " +
+    @Query("SELECT " +
             "play_lists.id as id, " +
             "play_lists.name as name, " +
             "play_lists.dateAdded as dateAdded, " +
             "play_lists.dateModified as dateModified, " +
-            "(SELECT count() FROM entries WHERE playListId = play_lists.id) as compositionsCount, " +
-            "(SELECT sum(duration) FROM entries WHERE playlistId = play_lists.id) as totalDuration " +
+            "play_lists.compositionsCount as compositionsCount, " +
+            "play_lists.totalDuration as totalDuration " +
             "FROM play_lists " +
             "WHERE play_lists.id = :id " +
             "LIMIT 1")
     Observable<List<PlayList>> getPlayListObservable(long id);
 
-    @RawQuery(observedEntities = { PlayListEntryEntity.class, ArtistEntity.class, CompositionEntity.class, AlbumEntity.class })
-    Observable<List<PlayListItem>> getPlayListItemsObservable(SimpleSQLiteQuery query);
+    @RawQuery(observedEntities = { PlayListEntryEntity.class })
+    Observable<List<PlayListItem>> getPlayListItemsObservable(SupportSQLiteQuery query);
 
     @Query("SELECT playlistId FROM play_lists_entries WHERE audioId = :compositionId")
     List<Long> getPlaylistsForComposition(long compositionId);
@@ -120,26 +106,8 @@ public interface PlayListDao {
     List<Composition> getCompositionsInPlaylist(SimpleSQLiteQuery query);
 
     @Query("SELECT " +
-            "(" +
-            "WITH RECURSIVE path(level, name, parentId) AS (" +
-            "                SELECT 0, name, parentId " +
-            "                FROM folders " +
-            "                WHERE id = compositions.folderId " +
-            "                UNION ALL " +
-            "                SELECT path.level + 1, " +
-            "                       folders.name, " +
-            "                       folders.parentId " +
-            "                FROM folders " +
-            "                JOIN path ON folders.id = path.parentId " +
-            "            ), " +
-            "            path_from_root AS ( " +
-            "                SELECT name " +
-            "                FROM path " +
-            "                ORDER BY level DESC " +
-            "            ) " +
-            "            SELECT ifnull(group_concat(name, '/') || '/' , '') " +
-            "            FROM path_from_root" +
-            ") || fileName AS filePath " +
+            "IFNULL((SELECT path || '/' FROM folders WHERE id = compositions.folderId), '') " +
+            "|| fileName AS filePath " +
             "FROM play_lists_entries " +
             "JOIN compositions ON play_lists_entries.audioId = compositions.id " +
             "WHERE play_lists_entries.playListId = :playListId " +
@@ -218,7 +186,7 @@ public interface PlayListDao {
                 "FROM play_lists_entries " +
                 "INNER JOIN compositions ON play_lists_entries.audioId = compositions.id " +
                 "WHERE play_lists_entries.playListId = ? AND " +
-                CompositionsDao.getSearchQuery(useFileName) +
+                CompositionsDao.getSearchQuery() +
                 "ORDER BY orderPosition";
     }
 
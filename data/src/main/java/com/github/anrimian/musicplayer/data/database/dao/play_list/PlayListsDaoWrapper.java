@@ -1,13 +1,17 @@
 package com.github.anrimian.musicplayer.data.database.dao.play_list;
 
-import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getSearchArg;
-import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getSearchArgs;
+import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getFtsMatchExpression;
+import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getFtsSearchArgs;
+import static com.github.anrimian.musicplayer.domain.Constants.TRIGGER;
 
 import androidx.sqlite.db.SimpleSQLiteQuery;
 
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
 import com.github.anrimian.musicplayer.data.database.entities.playlist.PlayListEntryEntity;
+import com.github.anrimian.musicplayer.data.database.profiler.TracedQuery;
 import com.github.anrimian.musicplayer.data.models.exceptions.DuplicatePlaylistEntriesException;
 import com.github.anrimian.musicplayer.data.models.exceptions.PlayListAlreadyExistsException;
 import com.github.anrimian.musicplayer.data.repositories.scanner.storage.playlists.m3uparser.PlayListEntry;
@@ -34,13 +38,16 @@ public class PlayListsDaoWrapper {
     private final PlayListDao playListDao;
     private final CompositionsDao compositionsDao;
     private final LibraryDatabase libraryDatabase;
+    private final CompositionChangesBus compositionChangesBus;
 
     public PlayListsDaoWrapper(PlayListDao playListDao,
                                CompositionsDao compositionsDao,
-                               LibraryDatabase libraryDatabase) {
+                               LibraryDatabase libraryDatabase,
+                               CompositionChangesBus compositionChangesBus) {
         this.playListDao = playListDao;
         this.compositionsDao = compositionsDao;
         this.libraryDatabase = libraryDatabase;
+        this.compositionChangesBus = compositionChangesBus;
     }
 
     public void insertStoragePlaylist(StoragePlayList playList, List<StoragePlayListItem> entries) {
@@ -120,7 +127,7 @@ public class PlayListsDaoWrapper {
     }
 
     public Observable<List<PlayList>> getPlayListsObservable(String searchQuery) {
-        return playListDao.getPlayListsObservable(getSearchArg(searchQuery));
+        return playListDao.getPlayListsObservable(getFtsMatchExpression(searchQuery));
     }
 
     public Observable<PlayList> getPlayListsObservable(long id) {
@@ -133,12 +140,14 @@ public class PlayListsDaoWrapper {
                                                                      boolean useFileName,
                                                                      @Nullable String searchText) {
         String query = PlayListDao.getPlaylistItemsQuery(useFileName);
-        Object[] args = new Object[4];
+        Object[] args = new Object[3];
         args[0] = playListId;
-        String[] searchArgs = getSearchArgs(searchText, 3);
-        System.arraycopy(searchArgs, 0, args, 1, 3);
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query, args);
-        return playListDao.getPlayListItemsObservable(sqlQuery);
+        String[] searchArgs = getFtsSearchArgs(searchText, 2);
+        System.arraycopy(searchArgs, 0, args, 1, 2);
+        TracedQuery sqlQuery = new TracedQuery(new SimpleSQLiteQuery(query, args));
+        return compositionChangesBus.getChangesObservable(CompositionColumns.LIST_COLUMNS)
+                .startWithItem(TRIGGER)
+                .switchMap(o -> playListDao.getPlayListItemsObservable(sqlQuery));
     }
 
     public Set<Long> getPlayListsForCompositions(List<Long> compositionIds) {
@@ -7,9 +7,6 @@ import androidx.room.RawQuery
 import androidx.room.Update
 import androidx.sqlite.db.SupportSQLiteQuery
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao
-import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity
-import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity
-import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity
 import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
 import io.reactivex.rxjava3.core.Observable
@@ -20,26 +17,16 @@ interface PlayQueueDao {
     @Query("SELECT * FROM play_queue ORDER BY position")
     fun getPlayQueue(): MutableList<PlayQueueEntity>
 
-    @RawQuery(observedEntities = [
-        PlayQueueEntity::class,
-        ArtistEntity::class,
-        CompositionEntity::class,
-        AlbumEntity::class
-    ])
-    fun getPlayQueueObservable(query: SupportSQLiteQuery): Observable<List<PlayQueueItem>>
+    @Query("SELECT * FROM play_queue WHERE id > :lastId ORDER BY id LIMIT :limit")
+    fun getPlayQueuePage(lastId: Long, limit: Int): List<PlayQueueEntity>
 
-    @Query("SELECT id FROM play_queue WHERE position >= :position LIMIT 1")
-    fun getItemIdAtPosition(position: Int): Long?
+    @RawQuery
+    fun getPlayQueueItems(query: SupportSQLiteQuery): List<PlayQueueItem>
 
-    @Query("SELECT id FROM play_queue WHERE shuffledPosition >= :position LIMIT 1")
-    fun getItemIdAtShuffledPosition(position: Int): Long?
+    @Query("SELECT id FROM play_queue WHERE position >= :position ORDER BY position LIMIT 1")
+    fun getItemIdAtPosition(position: Int): Long?
 
-    @RawQuery(observedEntities = [
-        PlayQueueEntity::class,
-        ArtistEntity::class,
-        CompositionEntity::class,
-        AlbumEntity::class
-    ])
+    @RawQuery(observedEntities = [PlayQueueEntity::class])
     fun getItemObservable(query: SupportSQLiteQuery): Observable<Array<PlayQueueItem>>
 
     @Insert
@@ -60,18 +47,12 @@ interface PlayQueueDao {
     @Query("SELECT position FROM play_queue WHERE id = :id")
     fun getPosition(id: Long): Int
 
-    @Query("SELECT shuffledPosition FROM play_queue WHERE id = :id")
-    fun getShuffledPosition(id: Long): Int
-
     @Query("SELECT * FROM play_queue WHERE id = :id")
     fun getItem(id: Long): PlayQueueEntity
 
     @Query("SELECT position FROM play_queue WHERE id = :id")
     fun getPositionObservable(id: Long): Observable<Int>
 
-    @Query("SELECT shuffledPosition FROM play_queue WHERE id = :id")
-    fun getShuffledPositionObservable(id: Long): Observable<Int>
-
     @Query("""
         WITH item AS (SELECT position FROM play_queue WHERE id = :id) 
             SELECT CASE WHEN item.position IS NULL   
@@ -84,50 +65,28 @@ interface PlayQueueDao {
     """)
     fun getIndexPositionObservable(id: Long): Observable<Int>
 
-    @Query("""
-        WITH item AS (SELECT shuffledPosition FROM play_queue WHERE id = :id) 
-            SELECT CASE WHEN item.shuffledPosition IS NULL   
-                THEN -1   
-                ELSE (SELECT count() FROM play_queue WHERE shuffledPosition < item.shuffledPosition)
-            END 
-        AS result 
-        FROM play_queue, item 
-        LIMIT 1
-    """)
-    fun getShuffledIndexPositionObservable(id: Long): Observable<Int>
-
     @Query("UPDATE play_queue SET shuffledPosition = :shuffledPosition WHERE id = :id")
     fun updateShuffledPosition(id: Long, shuffledPosition: Int)
 
     @Query("UPDATE play_queue SET position = :position WHERE id = :itemId")
     fun updateItemPosition(itemId: Long, position: Int)
 
-    @Query("UPDATE play_queue SET position = position + :increaseBy WHERE position = :position")
-    fun increasePosition(increaseBy: Int, position: Int)
+    @Query("SELECT IFNULL(MAX(id), 0) FROM play_queue")
+    fun getLastItemId(): Long
 
     @Query("""
-        UPDATE play_queue 
-        SET shuffledPosition = shuffledPosition + :increaseBy 
-        WHERE shuffledPosition = :position
+        SELECT audioId 
+        FROM play_queue INNER JOIN compositions ON compositions.id = play_queue.audioId 
+        WHERE corruptionType IS NOT NULL
     """)
-    fun increaseShuffledPosition(increaseBy: Int, position: Int)
+    fun getCorruptedCompositionIds(): List<Long>
 
     @Query("SELECT MAX(position) FROM play_queue")
     fun getLastPosition(): Int
 
-    @Query("SELECT MAX(shuffledPosition) FROM play_queue")
-    fun getLastShuffledPosition(): Int
-
     @Query("SELECT id FROM play_queue WHERE position = (SELECT MAX(position) FROM play_queue)")
     fun getLastItem(): Long
 
-    @Query("""
-        SELECT id 
-        FROM play_queue 
-        WHERE shuffledPosition = (SELECT MAX(shuffledPosition) FROM play_queue)
-    """)
-    fun getLastShuffledItem(): Long
-
     @Query("""
         SELECT id 
         FROM play_queue 
@@ -135,13 +94,6 @@ interface PlayQueueDao {
     """)
     fun getFirstItem(): Long
 
-    @Query("""
-        SELECT id 
-        FROM play_queue 
-        WHERE shuffledPosition = (SELECT MIN(shuffledPosition) FROM play_queue)
-    """)
-    fun getFirstShuffledItem(): Long
-
     @Update
     fun update(list: List<PlayQueueEntity>)
 
@@ -156,19 +108,6 @@ interface PlayQueueDao {
     """)
     fun getNextQueueItemId(currentItemId: Long): Long?
 
-    @Query("""
-        SELECT id 
-        FROM play_queue 
-        WHERE shuffledPosition = (
-            SELECT MIN(shuffledPosition)    
-            FROM play_queue    
-            WHERE shuffledPosition > (
-                SELECT shuffledPosition FROM play_queue WHERE id = :currentItemId
-            )
-        )
-    """)
-    fun getNextShuffledQueueItemId(currentItemId: Long): Long?
-
     @Query("""
         SELECT id 
         FROM play_queue 
@@ -180,17 +119,6 @@ interface PlayQueueDao {
     """)
     fun getPreviousQueueItemId(currentItemId: Long): Long?
 
-    @Query("""
-        SELECT id 
-        FROM play_queue 
-        WHERE shuffledPosition = (
-            SELECT MAX(shuffledPosition)    
-            FROM play_queue   
-            WHERE shuffledPosition < (SELECT shuffledPosition FROM play_queue WHERE id = :currentItemId)      
-                AND (SELECT corruptionType FROM compositions WHERE id = audioId) IS NULL)
-    """)
-    fun getPreviousShuffledQueueItemId(currentItemId: Long): Long?
-
     @Query("SELECT count() FROM play_queue")
     fun getPlayQueueSize(): Int
 
@@ -220,6 +148,12 @@ interface PlayQueueDao {
     @Query("SELECT IFNULL(trackPosition, 0) FROM track_positions WHERE queueItemId = :itemId")
     fun getTrackPosition(itemId: Long): Long
 
+    @Query("INSERT OR REPLACE INTO play_queue_state (id, shuffleSeed) VALUES (0, :shuffleSeed)")
+    fun setShuffleSeed(shuffleSeed: Long)
+
+    @Query("SELECT shuffleSeed FROM play_queue_state WHERE id = 0")
+    fun getShuffleSeed(): Long?
+
     companion object {
         fun getCompositionQuery(useFileName: Boolean): String {
             return """
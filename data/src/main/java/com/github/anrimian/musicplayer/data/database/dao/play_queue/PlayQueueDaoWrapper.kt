@@ -1,258 +1,95 @@
 package com.github.anrimian.musicplayer.data.database.dao.play_queue
 
-import android.database.sqlite.SQLiteCantOpenDatabaseException
 import androidx.sqlite.db.SimpleSQLiteQuery
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns
 import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity
-import com.github.anrimian.musicplayer.data.repositories.state.UiStateRepositoryImpl
+import com.github.anrimian.musicplayer.data.database.profiler.TracedQuery
+import com.github.anrimian.musicplayer.data.repositories.play_queue.ShufflePermutation
 import com.github.anrimian.musicplayer.domain.Constants
-import com.github.anrimian.musicplayer.domain.models.composition.Composition
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
 import com.github.anrimian.musicplayer.domain.utils.functions.Optional
 import io.reactivex.rxjava3.core.Observable
-import java.util.Random
 
 /**
  * Created on 02.07.2018.
  */
 class PlayQueueDaoWrapper(
     private val libraryDatabase: LibraryDatabase,
-    private val playQueueDao: PlayQueueDao
+    private val playQueueDao: PlayQueueDao,
+    private val compositionChangesBus: CompositionChangesBus,
 ) {
 
-    private var deletedItem: PlayQueueEntity? = null
-
-    fun getPlayQueueObservable(
-        isRandom: Boolean,
-        useFileName: Boolean
-    ): Observable<List<PlayQueueItem>> {
-        var query = PlayQueueDao.getCompositionQuery(useFileName)
-        query += if (isRandom) "ORDER BY shuffledPosition" else "ORDER BY position"
-        val sqlQuery = SimpleSQLiteQuery(query)
-        return playQueueDao.getPlayQueueObservable(sqlQuery)
-    }
-
-    fun reshuffleQueue(currentItemId: Long) {
-        libraryDatabase.runInTransaction {
-            val list = playQueueDao.getPlayQueue()
-            if (list.isEmpty()) {
-                return@runInTransaction
-            }
-
-            list.shuffle()
-
-            val firstItemId = list[0].id
-            var currentItemPosition = -1
-            for (i in list.indices) {
-                val entity = list[i]
-
-                if (entity.id == currentItemId) {
-                    currentItemPosition = i
-                }
-                entity.shuffledPosition = i
-            }
-            if (currentItemPosition != -1 && firstItemId != currentItemId) {
-                list[currentItemPosition].shuffledPosition = 0
-                list[0].shuffledPosition = currentItemPosition
-            }
-
-            playQueueDao.deletePlayQueue()
-            playQueueDao.insertItems(list)
-        }
-    }
-
-    fun insertNewPlayQueue(
-        compositionIds: List<Long>,
-        randomPlayingEnabled: Boolean,
-        startPosition: Int
-    ): Long {
-        return libraryDatabase.runInTransaction<Long> {
-            val shuffledList = ArrayList(compositionIds)
-            val randomSeed = System.nanoTime()
-            shuffledList.shuffle(Random(randomSeed))
-
-            val shuffledPositionList = ArrayList<Int>(compositionIds.size)
-            for (i in compositionIds.indices) {
-                shuffledPositionList.add(i)
-            }
-            shuffledPositionList.shuffle(Random(randomSeed))
-
-            val entities = ArrayList<PlayQueueEntity>(compositionIds.size)
-            var shuffledStartPosition = 0
-            for (i in compositionIds.indices) {
-                val id = compositionIds[i]
-                val playQueueEntity = PlayQueueEntity()
-                playQueueEntity.audioId = id
-                playQueueEntity.position = i
-                val shuffledPosition = shuffledPositionList[i]
-                playQueueEntity.shuffledPosition = shuffledPosition
-
-                if (startPosition != Constants.NO_POSITION && i == startPosition) {
-                    shuffledStartPosition = shuffledPosition
-                }
-
-                entities.add(playQueueEntity)
-            }
-
-            playQueueDao.deletePlayQueue()
-            playQueueDao.insertItems(entities)
-            return@runInTransaction if (randomPlayingEnabled) {
-                playQueueDao.getItemIdAtShuffledPosition(shuffledStartPosition)!!
-            } else {
-                playQueueDao.getItemIdAtPosition(if (startPosition == Constants.NO_POSITION) 0 else startPosition)!!
-            }
+    /**
+     * @return items with given ids in any order, absent items are skipped
+     */
+    fun getItems(itemIds: LongArray, useFileName: Boolean): List<PlayQueueItem> {
+        val result = ArrayList<PlayQueueItem>(itemIds.size)
+        //ids are inlined into query, so they are read in chunks to keep query short
+        for (start in itemIds.indices step ITEMS_QUERY_CHUNK_SIZE) {
+            val end = minOf(start + ITEMS_QUERY_CHUNK_SIZE, itemIds.size)
+            var query = PlayQueueDao.getCompositionQuery(useFileName)
+            val ids = (start until end).joinToString(",") { i -> itemIds[i].toString() }
+            query += "WHERE play_queue.id IN ($ids)"
+            result.addAll(playQueueDao.getPlayQueueItems(SimpleSQLiteQuery(query)))
         }
+        return result
     }
 
     fun getItemObservable(id: Long, useFileName: Boolean): Observable<Optional<PlayQueueItem>> {
         var query = PlayQueueDao.getCompositionQuery(useFileName)
         query += "WHERE itemId = ? LIMIT 1"
-        val sqlQuery = SimpleSQLiteQuery(query, arrayOf<Any>(id))
-        return playQueueDao.getItemObservable(sqlQuery)
+        val sqlQuery = TracedQuery(SimpleSQLiteQuery(query, arrayOf<Any>(id)))
+        return getCompositionChangesObservable()
+            .switchMap { playQueueDao.getItemObservable(sqlQuery) }
             .map { itemArray -> Optional(itemArray.firstOrNull()) }
     }
 
-    fun deleteItem(itemId: Long) {
-        deletedItem = playQueueDao.getItem(itemId)
-        playQueueDao.deleteItem(itemId)
-    }
-
-    fun restoreDeletedItem(): Long? {
-        if (deletedItem != null) {
-            return playQueueDao.insertItem(deletedItem!!)
-        }
-        return null
-    }
-
-    fun swapItems(firstItem: PlayQueueItem, secondItem: PlayQueueItem, shuffleMode: Boolean) {
+    /**
+     * Applies changes made by in-memory play queue in the order they were made
+     */
+    fun applyWrites(writes: List<PlayQueueWrite>) {
         libraryDatabase.runInTransaction {
-            val firstId = firstItem.itemId
-            val secondId = secondItem.itemId
-            if (shuffleMode) {
-                val firstPosition = playQueueDao.getShuffledPosition(firstId)
-                val secondPosition = playQueueDao.getShuffledPosition(secondId)
-
-                playQueueDao.updateShuffledPosition(secondId, Int.MIN_VALUE)
-                playQueueDao.updateShuffledPosition(firstId, secondPosition)
-                playQueueDao.updateShuffledPosition(secondId, firstPosition)
-            } else {
-                val firstPosition = playQueueDao.getPosition(firstId)
-                val secondPosition = playQueueDao.getPosition(secondId)
-
-                playQueueDao.updateItemPosition(secondId, Int.MIN_VALUE)
-                playQueueDao.updateItemPosition(firstId, secondPosition)
-                playQueueDao.updateItemPosition(secondId, firstPosition)
-            }
-        }
-    }
-
-    fun addCompositionsToEndQueue(compositions: List<Composition>): Long {
-        return libraryDatabase.runInTransaction<Long> {
-            val positionToInsert = playQueueDao.getLastPosition() + 1
-            val shuffledPositionToInsert = playQueueDao.getLastShuffledPosition() + 1
-            val entities = toEntityList(compositions, positionToInsert, shuffledPositionToInsert)
-            val ids = playQueueDao.insertItems(entities)
-            return@runInTransaction ids[0]
-        }
-    }
-
-    fun addCompositionsToQueue(compositions: List<Composition>, currentItemId: Long): Long {
-        return libraryDatabase.runInTransaction<Long> {
-            var positionToInsert = 0
-            var shuffledPositionToInsert = 0
-            if (currentItemId != UiStateRepositoryImpl.NO_ITEM) {
-                val currentPosition = playQueueDao.getPosition(currentItemId)
-                val currentShuffledPosition = playQueueDao.getShuffledPosition(currentItemId)
-
-                val increaseBy = compositions.size
-                val lastPosition = playQueueDao.getLastPosition()
-                for (pos in lastPosition downTo currentPosition + 1) {
-                    playQueueDao.increasePosition(increaseBy, pos)
+            for (write in writes) {
+                when (write) {
+                    is PlayQueueWrite.InsertQueuePart -> playQueueDao.insertItems(write.getEntities())
+                    is PlayQueueWrite.InsertItems -> playQueueDao.insertItems(write.entities)
+                    is PlayQueueWrite.UpdatePosition -> {
+                        playQueueDao.updateItemPosition(write.itemId, write.position)
+                    }
+                    is PlayQueueWrite.UpdateShuffledPosition -> {
+                        playQueueDao.updateShuffledPosition(write.itemId, write.position)
+                    }
+                    is PlayQueueWrite.DeleteItem -> playQueueDao.deleteItem(write.itemId)
+                    PlayQueueWrite.DeleteQueue -> playQueueDao.deletePlayQueue()
+                    is PlayQueueWrite.UpdateShuffleSeed -> playQueueDao.setShuffleSeed(write.seed)
                 }
-                val lastShuffledPosition = playQueueDao.getLastShuffledPosition()
-                for (pos in lastShuffledPosition downTo currentShuffledPosition + 1) {
-                    playQueueDao.increaseShuffledPosition(increaseBy, pos)
-                }
-
-                positionToInsert = currentPosition + 1
-                shuffledPositionToInsert = currentShuffledPosition + 1
             }
-
-            val entities = toEntityList(compositions, positionToInsert, shuffledPositionToInsert)
-            val ids = playQueueDao.insertItems(entities)
-            return@runInTransaction ids[0]
-        }
-    }
-
-    fun getPosition(id: Long, isShuffle: Boolean): Int {
-        return if (isShuffle) {
-            playQueueDao.getShuffledPosition(id)
-        } else {
-            playQueueDao.getPosition(id)
-        }
-    }
-
-    fun getLastPosition(isShuffled: Boolean): Int {
-        return if (isShuffled) {
-            playQueueDao.getLastShuffledPosition()
-        } else {
-            playQueueDao.getLastPosition()
-        }
-    }
-
-    fun getPositionObservable(id: Long, isShuffle: Boolean): Observable<Int> {
-        val observable = if (isShuffle) {
-            playQueueDao.getShuffledPositionObservable(id)
-        } else {
-            playQueueDao.getPositionObservable(id)
-        }
-        return observable
-            .retry(
-                DB_OBSERVABLE_RETRY_COUNT.toLong(),
-                { t -> t is SQLiteCantOpenDatabaseException }
-            )
-            .distinctUntilChanged()
-    }
-
-    fun getIndexPositionObservable(id: Long, isShuffle: Boolean): Observable<Int> {
-        val observable = if (isShuffle) {
-            playQueueDao.getShuffledIndexPositionObservable(id)
-        } else {
-            playQueueDao.getIndexPositionObservable(id)
-        }
-        return observable.filter { pos -> pos >= 0 }
-            .distinctUntilChanged()
-    }
-
-    fun getNextQueueItemId(currentItemId: Long, isShuffled: Boolean): Long {
-        return if (isShuffled) {
-            playQueueDao.getNextShuffledQueueItemId(currentItemId) ?: playQueueDao.getFirstShuffledItem()
-        } else {
-            playQueueDao.getNextQueueItemId(currentItemId) ?: playQueueDao.getFirstItem()
         }
     }
 
-    fun getPreviousQueueItemId(currentItemId: Long, isShuffled: Boolean): Long {
-        return if (isShuffled) {
-            playQueueDao.getPreviousShuffledQueueItemId(currentItemId) ?: playQueueDao.getLastShuffledItem()
-        } else {
-            playQueueDao.getPreviousQueueItemId(currentItemId) ?: playQueueDao.getLastItem()
+    /**
+     * @return items ordered by id, they are read by pages, so only a page of entities is kept
+     * in memory while sequence is iterated. Pages are not read in one transaction, changes
+     * made during iteration can be partially visible
+     */
+    fun getPlayQueue(): Sequence<PlayQueueEntity> {
+        return sequence {
+            var lastId = 0L
+            do {
+                val page = playQueueDao.getPlayQueuePage(lastId, PLAY_QUEUE_PAGE_SIZE)
+                yieldAll(page)
+                lastId = page.lastOrNull()?.id ?: lastId
+            } while (page.size == PLAY_QUEUE_PAGE_SIZE)
         }
     }
 
-    fun getItemAtPosition(position: Int, isShuffled: Boolean): Long? {
-        return if (isShuffled) {
-            playQueueDao.getItemIdAtShuffledPosition(position)
-        } else {
-            playQueueDao.getItemIdAtPosition(position)
-        }
-    }
+    fun getCorruptedCompositionIds() = playQueueDao.getCorruptedCompositionIds()
 
-    fun deletePlayQueue() {
-        playQueueDao.deletePlayQueue()
-    }
+    fun getLastItemId() = playQueueDao.getLastItemId()
 
-    fun getPlayQueueSize() = playQueueDao.getPlayQueueSize()
+    fun getShuffleSeed() = playQueueDao.getShuffleSeed() ?: ShufflePermutation.IDENTITY_SEED
 
     fun getPlayQueueSizeObservable() = playQueueDao.getPlayQueueSizeObservable()
 
@@ -271,27 +108,13 @@ class PlayQueueDaoWrapper(
         return playQueueDao.getTrackPosition(itemId)
     }
 
-    private fun toEntityList(
-        compositions: List<Composition>,
-        position: Int,
-        shuffledPosition: Int
-    ): List<PlayQueueEntity> {
-        var currentPosition = position
-        var currentShuffledPosition = shuffledPosition
-        val entityList = ArrayList<PlayQueueEntity>(compositions.size)
-
-        for (composition in compositions) {
-            val playQueueEntity = PlayQueueEntity()
-            playQueueEntity.audioId = composition.id
-            playQueueEntity.position = currentPosition++
-            playQueueEntity.shuffledPosition = currentShuffledPosition++
-
-            entityList.add(playQueueEntity)
-        }
-        return entityList
+    private fun getCompositionChangesObservable(): Observable<Any> {
+        return compositionChangesBus.getChangesObservable(CompositionColumns.LIST_COLUMNS)
+            .startWithItem(Constants.TRIGGER)
     }
 
-    companion object {
-        private const val DB_OBSERVABLE_RETRY_COUNT = 5
+    private companion object {
+        const val ITEMS_QUERY_CHUNK_SIZE = 1000
+        const val PLAY_QUEUE_PAGE_SIZE = 5000
     }
 }
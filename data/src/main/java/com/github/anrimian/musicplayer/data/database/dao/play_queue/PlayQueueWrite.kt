@@ -0,0 +1,47 @@
+package com.github.anrimian.musicplayer.data.database.dao.play_queue
+
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity
+
+/**
+ * Change of play_queue table made by in-memory play queue.
+ * Writes must be applied in the order they were made, positions are unique.
+ */
+sealed class PlayQueueWrite {
+
+    class InsertItems(val entities: List<PlayQueueEntity>) : PlayQueueWrite()
+
+    class UpdatePosition(val itemId: Long, val position: Int) : PlayQueueWrite()
+
+    class UpdateShuffledPosition(val itemId: Long, val position: Int) : PlayQueueWrite()
+
+    class DeleteItem(val itemId: Long) : PlayQueueWrite()
+
+    object DeleteQueue : PlayQueueWrite()
+
+    /**
+     * Part of items of new queue, parts share arrays of the whole queue and entities are
+     * created only when part is written
+     */
+    class InsertQueuePart(
+        private val itemIds: LongArray,
+        private val compositionIds: LongArray,
+        private val positions: IntArray,
+        private val shuffledPositions: IntArray,
+        private val start: Int,
+        private val end: Int,
+    ) : PlayQueueWrite() {
+
+        fun getEntities(): List<PlayQueueEntity> {
+            return List(end - start) { i ->
+                val entity = PlayQueueEntity()
+                entity.id = itemIds[start + i]
+                entity.audioId = compositionIds[start + i]
+                entity.position = positions[start + i]
+                entity.shuffledPosition = shuffledPositions[start + i]
+                entity
+            }
+        }
+    }
+
+    class UpdateShuffleSeed(val seed: Long) : PlayQueueWrite()
+}
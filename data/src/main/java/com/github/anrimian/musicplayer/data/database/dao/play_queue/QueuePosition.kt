@@ -0,0 +1,6 @@
+package com.github.anrimian.musicplayer.data.database.dao.play_queue
+
+class QueuePosition(
+    val id: Long,
+    val position: Int,
+)
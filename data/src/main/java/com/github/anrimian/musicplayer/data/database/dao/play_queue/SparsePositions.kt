@@ -0,0 +1,159 @@
+package com.github.anrimian.musicplayer.data.database.dao.play_queue
+
+/**
+ * Allocates sparse order keys of play queue items.
+ *
+ * Items are created with [POSITION_STEP] between keys, so items inserted between two others
+ * take free keys from the gap and existing rows are not shifted. When the gap is exhausted, only
+ * the rows of the smallest neighbourhood which has enough free keys are spread again.
+ * Keys are never negative. Moved rows keep their order, each row is moved between its current
+ * neighbours, so no temporary keys are used.
+ */
+class SparsePositions(private val store: Store) {
+
+    /**
+     * Positions of one order column of play queue
+     */
+    interface Store {
+
+        /**
+         * @return min position which is greater than given one
+         */
+        fun getNextPosition(position: Int): Int?
+
+        /**
+         * @return items with position less or equal to given one, in descending order
+         */
+        fun getPositionsBefore(position: Int, limit: Int): List<QueuePosition>
+
+        /**
+         * @return items with position greater or equal to given one, in ascending order
+         */
+        fun getPositionsAfter(position: Int, limit: Int): List<QueuePosition>
+
+        /**
+         * Called with position between positions of current neighbours of the item
+         */
+        fun updatePosition(id: Long, position: Int)
+    }
+
+    /**
+     * Must be called inside transaction.
+     *
+     * @param position position of item after which new items are inserted,
+     * null to insert before the first item
+     * @return ascending positions for [count] new items
+     */
+    fun allocateAfter(position: Int?, count: Int): IntArray {
+        val lowBound = position?.toLong() ?: NO_POSITION
+        val nextPosition = store.getNextPosition(lowBound.toInt())
+        if (nextPosition == null) {
+            val start = if (lowBound == NO_POSITION) 0L else lowBound + POSITION_STEP
+            if (start + (count - 1).toLong() * POSITION_STEP <= MAX_POSITION) {
+                return IntArray(count) { i -> (start + i.toLong() * POSITION_STEP).toInt() }
+            }
+        } else if (nextPosition - lowBound - 1 >= count) {
+            return spread(lowBound, nextPosition.toLong(), count)
+        }
+        return rebalance(lowBound, nextPosition?.toLong() ?: (MAX_POSITION + 1), count)
+    }
+
+    /**
+     * Spreads the nearest rows around the gap to get free keys for new items.
+     * The window grows twice on each step until it has at least [MIN_REBALANCE_STEP] keys
+     * per item or contains the whole queue.
+     */
+    private fun rebalance(lowBound: Long, highBound: Long, count: Int): IntArray {
+        var windowSize = INITIAL_REBALANCE_WINDOW
+        while (true) {
+            //one extra row on each side is the bound of window
+            val before = if (lowBound == NO_POSITION) {
+                emptyList()
+            } else {
+                store.getPositionsBefore(lowBound.toInt(), windowSize + 1)
+            }
+            val after = if (highBound > MAX_POSITION) {
+                emptyList()
+            } else {
+                store.getPositionsAfter(highBound.toInt(), windowSize + 1)
+            }
+            val isStartReached = before.size <= windowSize
+            val isEndReached = after.size <= windowSize
+            val beforeRows = if (isStartReached) before else before.subList(0, windowSize)
+            val afterRows = if (isEndReached) after else after.subList(0, windowSize)
+
+            val itemsCount = beforeRows.size + count + afterRows.size
+            val windowLow = if (isStartReached) NO_POSITION else before[windowSize].position.toLong()
+            val windowHigh = if (isEndReached) {
+                minOf(MAX_POSITION + 1, windowLow + (itemsCount + 1).toLong() * POSITION_STEP)
+            } else {
+                after[windowSize].position.toLong()
+            }
+            val hasEnoughKeys = windowHigh - windowLow >= (itemsCount + 1).toLong() * MIN_REBALANCE_STEP
+            if (hasEnoughKeys || (isStartReached && isEndReached)) {
+                if (windowHigh - windowLow - 1 < itemsCount) {
+                    throw IllegalStateException("play queue positions are exhausted")
+                }
+                return moveRows(beforeRows, afterRows, windowLow, windowHigh, count)
+            }
+            windowSize *= 2
+        }
+    }
+
+    private fun moveRows(
+        beforeRows: List<QueuePosition>,
+        afterRows: List<QueuePosition>,
+        windowLow: Long,
+        windowHigh: Long,
+        count: Int,
+    ): IntArray {
+        val positions = spread(windowLow, windowHigh, beforeRows.size + count + afterRows.size)
+        val rows = ArrayList<QueuePosition>(beforeRows.size + afterRows.size)
+        rows.addAll(beforeRows.asReversed())
+        rows.addAll(afterRows)
+        val rowPositions = IntArray(rows.size) { i ->
+            if (i < beforeRows.size) positions[i] else positions[i + count]
+        }
+
+        //order of rows is kept, so rows moved down are moved first from the lowest one
+        //and rows moved up - from the highest one, then each new key is free
+        for (i in rows.indices) {
+            if (rowPositions[i] < rows[i].position) {
+                store.updatePosition(rows[i].id, rowPositions[i])
+            }
+        }
+        for (i in rows.indices.reversed()) {
+            if (rowPositions[i] > rows[i].position) {
+                store.updatePosition(rows[i].id, rowPositions[i])
+            }
+        }
+        return positions.copyOfRange(beforeRows.size, beforeRows.size + count)
+    }
+
+    companion object {
+        const val POSITION_STEP = 1024
+
+        private const val MAX_POSITION = Int.MAX_VALUE.toLong()
+        private const val NO_POSITION = -1L
+        private const val MIN_REBALANCE_STEP = 32
+        private const val INITIAL_REBALANCE_WINDOW = 16
+
+        /**
+         * @return position of item at [index] in new list of [count] items,
+         * there is a gap before the first item too
+         */
+        @JvmStatic
+        fun getInitialPosition(index: Int, count: Int): Int {
+            val step = minOf(POSITION_STEP.toLong(), MAX_POSITION / (count + 1))
+            return ((index + 1) * step).toInt()
+        }
+
+        /**
+         * @return [count] positions spread evenly between exclusive bounds
+         */
+        private fun spread(lowBound: Long, highBound: Long, count: Int): IntArray {
+            val range = highBound - lowBound
+            return IntArray(count) { i -> (lowBound + range * (i + 1) / (count + 1)).toInt() }
+        }
+    }
+}
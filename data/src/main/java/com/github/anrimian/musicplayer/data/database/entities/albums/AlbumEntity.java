@@ -1,5 +1,6 @@
 package com.github.anrimian.musicplayer.data.database.entities.albums;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
 import androidx.room.Index;
@@ -30,6 +31,16 @@ public class AlbumEntity {
 
     private String name;
 
+    //compositions stats, maintained by triggers
+    @ColumnInfo(defaultValue = "0")
+    private long compositionsCount;
+
+    @ColumnInfo(defaultValue = "0")
+    private long totalDuration;
+
+    @ColumnInfo(defaultValue = "0")
+    private long totalSize;
+
     public AlbumEntity(@Nullable Long artistId, String name) {
         this.artistId = artistId;
         this.name = name;
@@ -59,4 +70,28 @@ public class AlbumEntity {
     public void setName(String name) {
         this.name = name;
     }
+
+    public long getCompositionsCount() {
+        return compositionsCount;
+    }
+
+    public void setCompositionsCount(long compositionsCount) {
+        this.compositionsCount = compositionsCount;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
 }
@@ -1,5 +1,6 @@
 package com.github.anrimian.musicplayer.data.database.entities.artist;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
@@ -18,6 +19,19 @@ public class ArtistEntity {
     @Nonnull
     private String name;
 
+    //compositions stats, maintained by triggers
+    @ColumnInfo(defaultValue = "0")
+    private long compositionsCount;
+
+    @ColumnInfo(defaultValue = "0")
+    private long totalDuration;
+
+    @ColumnInfo(defaultValue = "0")
+    private long totalSize;
+
+    @ColumnInfo(defaultValue = "0")
+    private long albumsCount;
+
     public ArtistEntity(@Nonnull String name) {
         this.name = name;
     }
@@ -39,4 +53,36 @@ public class ArtistEntity {
         this.name = name;
     }
 
+    public long getCompositionsCount() {
+        return compositionsCount;
+    }
+
+    public void setCompositionsCount(long compositionsCount) {
+        this.compositionsCount = compositionsCount;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public long getAlbumsCount() {
+        return albumsCount;
+    }
+
+    public void setAlbumsCount(long albumsCount) {
+        this.albumsCount = albumsCount;
+    }
+
 }
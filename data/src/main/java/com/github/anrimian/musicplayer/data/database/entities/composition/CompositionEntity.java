@@ -1,6 +1,7 @@
 package com.github.anrimian.musicplayer.data.database.entities.composition;
 
 import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
 import androidx.room.Index;
@@ -33,7 +34,10 @@ import javax.annotation.Nullable;
         indices = {
                 @Index("artistId"),
                 @Index("albumId"),
-                @Index("folderId")
+                @Index("folderId"),
+                @Index("sortTitle"),
+                @Index("storageId"),
+                @Index({"fileName", "folderId"})
         }
 )
 public class CompositionEntity {
@@ -89,6 +93,19 @@ public class CompositionEntity {
     @androidx.annotation.NonNull
     private final InitialSource initialSource;
 
+    //display-ready projection, maintained by triggers, see CompositionProjectionTriggers
+    @Nullable
+    private String artistName;
+    @Nullable
+    private String albumName;
+    @Nullable
+    private String albumArtistName;
+    @Nullable
+    private String genreNames;
+    @Nullable
+    @ColumnInfo(collate = ColumnInfo.NOCASE)
+    private String sortTitle;
+
     public CompositionEntity(@Nullable Long artistId,
                              @Nullable Long albumId,
                              @Nullable Long folderId,
@@ -224,4 +241,49 @@ public class CompositionEntity {
     public InitialSource getInitialSource() {
         return initialSource;
     }
+
+    @Nullable
+    public String getArtistName() {
+        return artistName;
+    }
+
+    public void setArtistName(@Nullable String artistName) {
+        this.artistName = artistName;
+    }
+
+    @Nullable
+    public String getAlbumName() {
+        return albumName;
+    }
+
+    public void setAlbumName(@Nullable String albumName) {
+        this.albumName = albumName;
+    }
+
+    @Nullable
+    public String getAlbumArtistName() {
+        return albumArtistName;
+    }
+
+    public void setAlbumArtistName(@Nullable String albumArtistName) {
+        this.albumArtistName = albumArtistName;
+    }
+
+    @Nullable
+    public String getGenreNames() {
+        return genreNames;
+    }
+
+    public void setGenreNames(@Nullable String genreNames) {
+        this.genreNames = genreNames;
+    }
+
+    @Nullable
+    public String getSortTitle() {
+        return sortTitle;
+    }
+
+    public void setSortTitle(@Nullable String sortTitle) {
+        this.sortTitle = sortTitle;
+    }
 }
@@ -1,5 +1,6 @@
 package com.github.anrimian.musicplayer.data.database.entities.folder;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
 import androidx.room.Index;
@@ -16,7 +17,8 @@ import javax.annotation.Nullable;
                         onDelete = ForeignKey.CASCADE)
         },
         indices = {
-                @Index("parentId")
+                @Index("parentId"),
+                @Index("path")
         }
 )
 public class FolderEntity {
@@ -30,6 +32,21 @@ public class FolderEntity {
     @Nonnull
     private String name;
 
+    //full relative path, maintained by triggers
+    @androidx.annotation.NonNull
+    @ColumnInfo(defaultValue = "''")
+    private String path = "";
+
+    //stats of compositions in folder and its subfolders, maintained by triggers
+    @ColumnInfo(defaultValue = "0")
+    private long compositionsCount;
+
+    @ColumnInfo(defaultValue = "0")
+    private long totalDuration;
+
+    @ColumnInfo(defaultValue = "0")
+    private long totalSize;
+
     public FolderEntity(@Nullable Long parentId, @Nonnull String name) {
         this.parentId = parentId;
         this.name = name;
@@ -52,4 +69,37 @@ public class FolderEntity {
     public String getName() {
         return name;
     }
+
+    public void setPath(@Nonnull String path) {
+        this.path = path;
+    }
+
+    @Nonnull
+    public String getPath() {
+        return path;
+    }
+
+    public long getCompositionsCount() {
+        return compositionsCount;
+    }
+
+    public void setCompositionsCount(long compositionsCount) {
+        this.compositionsCount = compositionsCount;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
 }
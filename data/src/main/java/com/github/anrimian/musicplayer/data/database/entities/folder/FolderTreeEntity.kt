@@ -0,0 +1,33 @@
+package com.github.anrimian.musicplayer.data.database.entities.folder
+
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.Index
+
+/**
+ * Closure table of folders: row for each pair of folder and its ancestor, including folder itself
+ * with zero depth. Maintained by triggers on folders table, see FolderTreeTriggers.
+ */
+@Entity(
+    tableName = "folder_tree",
+    primaryKeys = [ "ancestorId", "descendantId" ],
+    foreignKeys = [
+        ForeignKey(
+            entity = FolderEntity::class,
+            parentColumns = [ "id" ],
+            childColumns = [ "ancestorId" ],
+            onDelete = ForeignKey.CASCADE
+        ), ForeignKey(
+            entity = FolderEntity::class,
+            parentColumns = [ "id" ],
+            childColumns = [ "descendantId" ],
+            onDelete = ForeignKey.CASCADE
+        )
+    ],
+    indices = [ Index(value = [ "descendantId" ]) ]
+)
+class FolderTreeEntity(
+    val ancestorId: Long,
+    val descendantId: Long,
+    val depth: Int
+)
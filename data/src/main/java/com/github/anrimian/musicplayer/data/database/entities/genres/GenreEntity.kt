@@ -1,5 +1,6 @@
 package com.github.anrimian.musicplayer.data.database.entities.genres
 
+import androidx.room.ColumnInfo
 import androidx.room.Entity
 import androidx.room.Index
 import androidx.room.PrimaryKey
@@ -11,5 +12,12 @@ import androidx.room.PrimaryKey
 class GenreEntity(
     @PrimaryKey(autoGenerate = true)
     val id: Long,
-    val name: String
+    val name: String,
+    //compositions stats, maintained by triggers
+    @ColumnInfo(defaultValue = "0")
+    val compositionsCount: Long = 0,
+    @ColumnInfo(defaultValue = "0")
+    val totalDuration: Long = 0,
+    @ColumnInfo(defaultValue = "0")
+    val totalSize: Long = 0,
 )
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.github.anrimian.musicplayer.data.database.entities.orphans
+
+import androidx.room.Entity
+
+/**
+ * Artist, album, genre or folder which lost composition, album or subfolder and can become
+ * empty. Rows are added by triggers, see OrphanCandidateTriggers, and removed after cleanup.
+ */
+@Entity(
+    tableName = "orphan_candidates",
+    primaryKeys = [ "type", "id" ]
+)
+class OrphanCandidateEntity(
+    val type: Int,
+    val id: Long
+) {
+    companion object {
+        const val ARTIST = 1
+        const val ALBUM = 2
+        const val GENRE = 3
+        const val FOLDER = 4
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.anrimian.musicplayer.data.database.entities.play_queue
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Single row with state of play queue which is changed together with its items
+ */
+@Entity(tableName = "play_queue_state")
+class PlayQueueStateEntity(
+    @PrimaryKey
+    val id: Int,
+    val shuffleSeed: Long
+)
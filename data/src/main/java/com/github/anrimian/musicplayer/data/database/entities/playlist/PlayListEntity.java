@@ -1,5 +1,6 @@
 package com.github.anrimian.musicplayer.data.database.entities.playlist;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
@@ -10,7 +11,10 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 @Entity(tableName = "play_lists",
-        indices = @Index(value = "name", unique = true)
+        indices = {
+                @Index(value = "name", unique = true),
+                @Index("storageId")
+        }
 )
 public class PlayListEntity {
 
@@ -29,6 +33,16 @@ public class PlayListEntity {
     @Nonnull
     private Date dateModified;
 
+    //compositions stats, maintained by triggers
+    @ColumnInfo(defaultValue = "0")
+    private long compositionsCount;
+
+    @ColumnInfo(defaultValue = "0")
+    private long totalDuration;
+
+    @ColumnInfo(defaultValue = "0")
+    private long totalSize;
+
     public PlayListEntity(@Nullable Long storageId,
                           @Nonnull String name,
                           @Nonnull Date dateAdded,
@@ -66,4 +80,28 @@ public class PlayListEntity {
     public Date getDateModified() {
         return dateModified;
     }
+
+    public long getCompositionsCount() {
+        return compositionsCount;
+    }
+
+    public void setCompositionsCount(long compositionsCount) {
+        this.compositionsCount = compositionsCount;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
 }
@@ -0,0 +1,25 @@
+package com.github.anrimian.musicplayer.data.database.entities.search
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+import androidx.room.PrimaryKey
+
+/**
+ * Full text search index of compositions, rowid is composition id.
+ * Maintained by triggers, see SearchIndexTriggers.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "compositions_search")
+class CompositionSearchEntity(
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    val rowId: Long,
+    val title: String?,
+    val fileName: String?,
+    val artist: String?,
+    val album: String?,
+    val albumArtist: String?,
+    val genres: String?
+)
@@ -0,0 +1,94 @@
+package com.github.anrimian.musicplayer.data.database.profiler
+
+import android.database.Cursor
+import android.os.CancellationSignal
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.SupportSQLiteQuery
+
+/**
+ * Wraps open helper of room database to report each executed query to [QueryProfiler].
+ *
+ * Query is measured until its first window is filled (cursor count is requested right after
+ * execution, generated dao code does the same on the first cursor access), returned cursor is not
+ * wrapped, so room still sees the original cursor type.
+ * Caller of query is resolved by [QueryCallers] or taken from [TracedQuery].
+ */
+class ProfilingOpenHelperFactory(
+    private val delegate: SupportSQLiteOpenHelper.Factory,
+    private val profiler: QueryProfiler,
+) : SupportSQLiteOpenHelper.Factory {
+
+    override fun create(configuration: SupportSQLiteOpenHelper.Configuration): SupportSQLiteOpenHelper {
+        return ProfilingOpenHelper(delegate.create(configuration), profiler)
+    }
+
+    private class ProfilingOpenHelper(
+        private val delegate: SupportSQLiteOpenHelper,
+        private val profiler: QueryProfiler,
+    ) : SupportSQLiteOpenHelper by delegate {
+
+        @Volatile
+        private var database: ProfilingDatabase? = null
+
+        override val writableDatabase: SupportSQLiteDatabase
+            get() = wrap(delegate.writableDatabase)
+
+        override val readableDatabase: SupportSQLiteDatabase
+            get() = wrap(delegate.readableDatabase)
+
+        private fun wrap(database: SupportSQLiteDatabase): SupportSQLiteDatabase {
+            val current = this.database
+            if (current != null && current.delegate === database) {
+                return current
+            }
+            return ProfilingDatabase(database, profiler).also { this.database = it }
+        }
+    }
+
+    private class ProfilingDatabase(
+        val delegate: SupportSQLiteDatabase,
+        private val profiler: QueryProfiler,
+    ) : SupportSQLiteDatabase by delegate {
+
+        override fun query(query: String): Cursor {
+            return profile(query, 0) { delegate.query(query) }
+        }
+
+        override fun query(query: String, bindArgs: Array<out Any?>): Cursor {
+            return profile(query, bindArgs.size) { delegate.query(query, bindArgs) }
+        }
+
+        override fun query(query: SupportSQLiteQuery): Cursor {
+            return profile(query.sql, query.argCount, getCaller(query)) { delegate.query(query) }
+        }
+
+        override fun query(query: SupportSQLiteQuery, cancellationSignal: CancellationSignal?): Cursor {
+            return profile(query.sql, query.argCount, getCaller(query)) {
+                delegate.query(query, cancellationSignal)
+            }
+        }
+
+        private fun getCaller(query: SupportSQLiteQuery) = (query as? TracedQuery)?.caller
+
+        private inline fun profile(
+            sql: String,
+            argsCount: Int,
+            tracedCaller: String? = null,
+            executor: () -> Cursor,
+        ): Cursor {
+            val startTime = System.nanoTime()
+            val cursor = executor()
+            val rowsCount = try {
+                cursor.count
+            } catch (e: Exception) {
+                cursor.close()
+                throw e
+            }
+            profiler.onQueryExecuted(sql, argsCount, System.nanoTime() - startTime, rowsCount) {
+                tracedCaller ?: QueryCallers.findCaller()
+            }
+            return cursor
+        }
+    }
+}
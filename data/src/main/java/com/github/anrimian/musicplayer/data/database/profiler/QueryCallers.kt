@@ -0,0 +1,58 @@
+package com.github.anrimian.musicplayer.data.database.profiler
+
+/**
+ * Finds app method which requested a query: the first frame of current stack outside of
+ * libraries, profiler and generated dao code, like CompositionsDaoWrapper.getFullComposition.
+ */
+object QueryCallers {
+
+    private const val APP_PACKAGE = "com.github.anrimian.musicplayer."
+    private const val DAO_IMPL_SUFFIX = "Dao_Impl"
+
+    private val PROFILER_CLASSES = arrayOf(
+        QueryCallers::class.java.name,
+        TracedQuery::class.java.name,
+        ProfilingOpenHelperFactory::class.java.name
+    )
+
+    /**
+     * @return app method or, if there is no app method in the stack (observable dao query
+     * executed by room), generated dao method like CompositionsDao_Impl$5.call
+     */
+    @JvmStatic
+    fun findCaller(): String? {
+        var daoCaller: String? = null
+        for (element in Thread.currentThread().stackTrace) {
+            val className = element.className
+            if (!className.startsWith(APP_PACKAGE) || isProfilerClass(className)) {
+                continue
+            }
+            if (className.contains(DAO_IMPL_SUFFIX)) {
+                if (daoCaller == null) {
+                    daoCaller = className.substringAfterLast('.') + "." + element.methodName
+                }
+                continue
+            }
+            //desugared lambda classes, their method is the next frame
+            if (className.contains("$$")) {
+                continue
+            }
+            return formatAppMethod(className, element.methodName)
+        }
+        return daoCaller
+    }
+
+    private fun isProfilerClass(className: String): Boolean {
+        return PROFILER_CLASSES.any { name -> className.startsWith(name) }
+    }
+
+    //lambdas are reported as their enclosing method: lambda$getAll$1, getAll$lambda$1, Dao$getAll$1
+    private fun formatAppMethod(className: String, methodName: String): String {
+        val names = className.substringAfterLast('.').split('$')
+        val enclosingMethod = names.getOrNull(1)
+        if (enclosingMethod != null && enclosingMethod.firstOrNull()?.isLowerCase() == true) {
+            return names[0] + "." + enclosingMethod
+        }
+        return names.joinToString(".") + "." + methodName.removePrefix("lambda$").substringBefore('$')
+    }
+}
@@ -0,0 +1,239 @@
+package com.github.anrimian.musicplayer.data.database.profiler
+
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import kotlin.math.ceil
+
+/**
+ * Collects latency of executed queries grouped by query shape (see [QueryShapes])
+ * and keeps last [maxSlowQueries] queries which took more than [slowQueryThresholdMillis].
+ *
+ * Bound arguments are never stored, only their count, so collected data can be exported to logs.
+ * Count of tracked shapes is limited by [maxShapes], queries of new shapes over this limit are
+ * counted together under [OTHER_SHAPE].
+ */
+class QueryProfiler @JvmOverloads constructor(
+    private val slowQueryThresholdMillis: Long = SLOW_QUERY_THRESHOLD_MILLIS,
+    private val maxSlowQueries: Int = MAX_SLOW_QUERIES,
+    private val maxShapes: Int = MAX_SHAPES,
+) {
+
+    private val shapesCache = object : LinkedHashMap<String, String>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, String>?): Boolean {
+            return size > MAX_CACHED_SHAPES
+        }
+    }
+    private val shapeStats = HashMap<String, ShapeStats>()
+    private val slowQueries = ArrayDeque<SlowQuery>()
+
+    /**
+     * @param callerProvider called only when caller is required: for the first query of a shape
+     * and for slow queries, so the stack is not walked for each query
+     */
+    fun onQueryExecuted(
+        sql: String,
+        argsCount: Int,
+        durationNanos: Long,
+        rowsCount: Int,
+        callerProvider: () -> String?,
+    ) {
+        val durationMillis = durationNanos / NANOS_IN_MILLI
+        val isSlow = durationMillis >= slowQueryThresholdMillis
+        synchronized(this) {
+            val shape = getShape(sql)
+            var stats = shapeStats[shape]
+            if (stats == null) {
+                val key = if (shapeStats.size >= maxShapes) OTHER_SHAPE else shape
+                stats = shapeStats.getOrPut(key) { ShapeStats(key, callerProvider()) }
+            }
+            stats.add(durationNanos, rowsCount)
+
+            if (isSlow) {
+                val caller = callerProvider() ?: stats.caller
+                slowQueries.addLast(
+                    SlowQuery(System.currentTimeMillis(), shape, argsCount, durationMillis, rowsCount, caller)
+                )
+                if (slowQueries.size > maxSlowQueries) {
+                    slowQueries.removeFirst()
+                }
+            }
+        }
+    }
+
+    /**
+     * @return stats of query shapes, sorted by total execution time
+     */
+    @Synchronized
+    fun getStats(): List<QueryStats> {
+        val result = ArrayList<QueryStats>(shapeStats.size)
+        for (stats in shapeStats.values) {
+            result.add(stats.toQueryStats())
+        }
+        result.sortByDescending(QueryStats::totalMillis)
+        return result
+    }
+
+    @Synchronized
+    fun getStats(sql: String): QueryStats? = shapeStats[QueryShapes.getShape(sql)]?.toQueryStats()
+
+    /**
+     * @return slow queries, oldest first
+     */
+    @Synchronized
+    fun getSlowQueries(): List<SlowQuery> = ArrayList(slowQueries)
+
+    fun getReport(): String {
+        val stats = getStats()
+        val slowQueries = getSlowQueries()
+        val dateFormat = SimpleDateFormat("dd.MM.yyyy HH:mm:ss", Locale.US)
+
+        val sb = StringBuilder()
+        sb.append("Database queries, shapes: ")
+        sb.append(stats.size)
+        for (queryStats in stats) {
+            sb.append("\n")
+            sb.append(queryStats.count)
+            sb.append(" x avg ")
+            sb.append(String.format(Locale.US, "%.2f", queryStats.averageMillis))
+            sb.append(" ms, max ")
+            sb.append(queryStats.maxMillis)
+            sb.append(" ms, p95 <= ")
+            sb.append(queryStats.getPercentileMillis(0.95f))
+            sb.append(" ms, rows ")
+            sb.append(queryStats.rowsCount)
+            sb.append(", ")
+            sb.append(queryStats.caller)
+            sb.append("\n    ")
+            sb.append(queryStats.shape)
+        }
+        sb.append("\nSlow queries (>= ")
+        sb.append(slowQueryThresholdMillis)
+        sb.append(" ms): ")
+        sb.append(slowQueries.size)
+        for (slowQuery in slowQueries) {
+            sb.append("\n")
+            sb.append(dateFormat.format(Date(slowQuery.timeMillis)))
+            sb.append(" ")
+            sb.append(slowQuery.durationMillis)
+            sb.append(" ms, rows ")
+            sb.append(slowQuery.rowsCount)
+            sb.append(", args ")
+            sb.append(slowQuery.argsCount)
+            sb.append(", ")
+            sb.append(slowQuery.caller)
+            sb.append("\n    ")
+            sb.append(slowQuery.shape)
+        }
+        return sb.toString()
+    }
+
+    @Synchronized
+    fun reset() {
+        shapeStats.clear()
+        slowQueries.clear()
+    }
+
+    private fun getShape(sql: String): String {
+        var shape = shapesCache[sql]
+        if (shape == null) {
+            shape = QueryShapes.getShape(sql)
+            shapesCache[sql] = shape
+        }
+        return shape
+    }
+
+    private class ShapeStats(val shape: String, val caller: String?) {
+
+        private val histogram = LongArray(HISTOGRAM_BOUNDS_MILLIS.size + 1)
+        private var count = 0L
+        private var totalNanos = 0L
+        private var maxNanos = 0L
+        private var rowsCount = 0L
+
+        fun add(durationNanos: Long, rowsCount: Int) {
+            count++
+            totalNanos += durationNanos
+            if (durationNanos > maxNanos) {
+                maxNanos = durationNanos
+            }
+            this.rowsCount += rowsCount
+            histogram[getBucketIndex(durationNanos / NANOS_IN_MILLI)]++
+        }
+
+        fun toQueryStats() = QueryStats(
+            shape,
+            caller,
+            count,
+            totalNanos / NANOS_IN_MILLI,
+            totalNanos.toFloat() / NANOS_IN_MILLI / count,
+            maxNanos / NANOS_IN_MILLI,
+            rowsCount,
+            histogram.copyOf()
+        )
+
+        private fun getBucketIndex(durationMillis: Long): Int {
+            for (i in HISTOGRAM_BOUNDS_MILLIS.indices) {
+                if (durationMillis < HISTOGRAM_BOUNDS_MILLIS[i]) {
+                    return i
+                }
+            }
+            return HISTOGRAM_BOUNDS_MILLIS.size
+        }
+    }
+
+    /**
+     * @param caller dao method which executed the first query of this shape
+     * @param histogram counts of queries by duration, bucket i contains queries which took less
+     * than HISTOGRAM_BOUNDS_MILLIS[i], last bucket contains queries longer than all bounds
+     */
+    class QueryStats(
+        val shape: String,
+        val caller: String?,
+        val count: Long,
+        val totalMillis: Long,
+        val averageMillis: Float,
+        val maxMillis: Long,
+        val rowsCount: Long,
+        val histogram: LongArray,
+    ) {
+
+        /**
+         * @return upper bound of histogram bucket which contains given percentile,
+         * or max duration for the last bucket
+         */
+        fun getPercentileMillis(percentile: Float): Long {
+            val targetCount = ceil(count * percentile.toDouble()).toLong()
+            var accumulatedCount = 0L
+            for (i in HISTOGRAM_BOUNDS_MILLIS.indices) {
+                accumulatedCount += histogram[i]
+                if (accumulatedCount >= targetCount) {
+                    return HISTOGRAM_BOUNDS_MILLIS[i]
+                }
+            }
+            return maxMillis
+        }
+    }
+
+    data class SlowQuery(
+        val timeMillis: Long,
+        val shape: String,
+        val argsCount: Int,
+        val durationMillis: Long,
+        val rowsCount: Int,
+        val caller: String?,
+    )
+
+    companion object {
+        const val OTHER_SHAPE = "<other>"
+
+        @JvmField
+        val HISTOGRAM_BOUNDS_MILLIS = longArrayOf(1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024)
+
+        private const val SLOW_QUERY_THRESHOLD_MILLIS = 100L
+        private const val MAX_SLOW_QUERIES = 50
+        private const val MAX_SHAPES = 200
+        private const val MAX_CACHED_SHAPES = 500
+        private const val NANOS_IN_MILLI = 1_000_000L
+    }
+}
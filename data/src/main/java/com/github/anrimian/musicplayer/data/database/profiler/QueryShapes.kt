@@ -0,0 +1,22 @@
+package com.github.anrimian.musicplayer.data.database.profiler
+
+/**
+ * Reduces sql text to its shape: literals are replaced with '?' and argument lists are collapsed,
+ * so queries which differ only in values are counted together and no values are kept in logs.
+ */
+object QueryShapes {
+
+    private val STRING_LITERAL = Regex("'(?:[^']|'')*'")
+    private val NUMBER_LITERAL = Regex("(?<![\\w.])\\d+(?:\\.\\d+)?(?![\\w.])")
+    private val ARGS_LIST = Regex("\\?(?:\\s*,\\s*\\?)+")
+    private val WHITESPACE = Regex("\\s+")
+
+    @JvmStatic
+    fun getShape(sql: String): String {
+        var shape = sql.replace(STRING_LITERAL, "?")
+        shape = shape.replace(NUMBER_LITERAL, "?")
+        shape = shape.replace(WHITESPACE, " ")
+        shape = shape.replace(ARGS_LIST, "?...")
+        return shape.trim()
+    }
+}
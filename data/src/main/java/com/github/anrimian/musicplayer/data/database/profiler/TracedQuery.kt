@@ -0,0 +1,13 @@
+package com.github.anrimian.musicplayer.data.database.profiler
+
+import androidx.sqlite.db.SupportSQLiteQuery
+
+/**
+ * Raw query which keeps app method that built it. Observable queries are executed later by room
+ * executor, where this method is not in the stack, so [ProfilingOpenHelperFactory] reports it
+ * instead of the generated dao class.
+ */
+class TracedQuery(delegate: SupportSQLiteQuery) : SupportSQLiteQuery by delegate {
+
+    val caller: String? = QueryCallers.findCaller()
+}
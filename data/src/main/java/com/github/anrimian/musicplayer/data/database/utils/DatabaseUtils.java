@@ -2,6 +2,8 @@ package com.github.anrimian.musicplayer.data.database.utils;
 
 import static com.github.anrimian.musicplayer.domain.utils.TextUtils.isEmpty;
 
+import javax.annotation.Nullable;
+
 public class DatabaseUtils {
 
     public static String getSearchArg(String arg) {
@@ -24,6 +26,56 @@ public class DatabaseUtils {
         return result;
     }
 
+    /**
+     * @return arguments for "(? IS NULL OR ... MATCH ?)" conditions, all of them are null when
+     * search text has no words
+     */
+    public static String[] getFtsSearchArgs(@Nullable String text, int count) {
+        String expression = getFtsMatchExpression(text);
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = expression;
+        }
+        return result;
+    }
+
+    /**
+     * Builds full text search expression where each word of text is matched as prefix of
+     * indexed word. Other characters are dropped, so user input can't form query syntax.
+     */
+    @Nullable
+    public static String getFtsMatchExpression(@Nullable String text) {
+        if (isEmpty(text)) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        int wordStart = -1;
+        for (int i = 0, length = text.length(); i <= length; i++) {
+            boolean isWordChar = i < length && isWordChar(text.charAt(i));
+            if (isWordChar && wordStart == -1) {
+                wordStart = i;
+            } else if (!isWordChar && wordStart != -1) {
+                if (sb.length() != 0) {
+                    sb.append(' ');
+                }
+                sb.append('"').append(text, wordStart, i).append("*\"");
+                wordStart = -1;
+            }
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    //combining marks are part of word for unicode61 tokenizer, they are removed with diacritics
+    private static boolean isWordChar(char c) {
+        if (Character.isLetterOrDigit(c)) {
+            return true;
+        }
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+
     public static Object[] toArgs(Object arg, int times) {
         Object[] result = new Object[times];
         for (int i = 0; i < times; i++) {
@@ -0,0 +1,68 @@
+package com.github.anrimian.musicplayer.data.database.utils;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over table rows page by page, each page is selected after key of the last row of
+ * previous page (WHERE key > ? ORDER BY key LIMIT ?), so page cost doesn't grow with offset.
+ * Only one page is kept in memory.
+ */
+public class KeysetPageIterator<T> implements Iterator<T> {
+
+    private final PageLoader<T> pageLoader;
+    private final KeySelector<T> keySelector;
+    private final int pageSize;
+
+    private List<T> page;
+    private int positionInPage;
+    private long lastKey;
+
+    public KeysetPageIterator(PageLoader<T> pageLoader,
+                              KeySelector<T> keySelector,
+                              int pageSize) {
+        this(pageLoader, keySelector, pageSize, Long.MIN_VALUE);
+    }
+
+    public KeysetPageIterator(PageLoader<T> pageLoader,
+                              KeySelector<T> keySelector,
+                              int pageSize,
+                              long startKey) {
+        this.pageLoader = pageLoader;
+        this.keySelector = keySelector;
+        this.pageSize = pageSize;
+        this.lastKey = startKey;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (page != null && positionInPage < page.size()) {
+            return true;
+        }
+        if (page != null && page.size() < pageSize) {
+            return false;
+        }
+        page = pageLoader.loadPage(lastKey, pageSize);
+        positionInPage = 0;
+        return !page.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T item = page.get(positionInPage++);
+        lastKey = keySelector.getKey(item);
+        return item;
+    }
+
+    public interface PageLoader<T> {
+        List<T> loadPage(long afterKey, int pageSize);
+    }
+
+    public interface KeySelector<T> {
+        long getKey(T item);
+    }
+}
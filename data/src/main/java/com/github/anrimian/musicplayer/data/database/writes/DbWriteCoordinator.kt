@@ -0,0 +1,227 @@
+package com.github.anrimian.musicplayer.data.database.writes
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase
+import io.reactivex.rxjava3.core.Completable
+import io.reactivex.rxjava3.core.Scheduler
+import io.reactivex.rxjava3.disposables.Disposable
+import io.reactivex.rxjava3.subjects.CompletableSubject
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+
+/**
+ * Collects small independent writes and commits them together in one transaction.
+ *
+ * Pending writes with the same merge key replace each other, only the last one is executed.
+ * Writes are committed when [maxBatchSize] of them are pending or [maxLatencyMillis] passed
+ * since the first of them. [flush] commits pending writes immediately, call it before reading
+ * data written through coordinator and before process can be stopped. Long writes should be
+ * split into [writeSeparately] parts, so other tasks of scheduler are executed between them.
+ *
+ * Commits are executed on [scheduler], which should be the single thread db scheduler.
+ * Write actions can be executed more than once when group transaction fails, so they should
+ * contain only database writes.
+ */
+class DbWriteCoordinator @JvmOverloads constructor(
+    private val libraryDatabase: LibraryDatabase,
+    private val scheduler: Scheduler,
+    private val maxBatchSize: Int = MAX_BATCH_SIZE,
+    private val maxLatencyMillis: Long = MAX_LATENCY_MILLIS,
+) {
+
+    private val pendingWrites = LinkedHashMap<Any, PendingWrite>()
+    private val metrics = DbWriteMetrics(scheduler.now(TimeUnit.MILLISECONDS))
+
+    private var commitTask: Disposable? = null
+
+    fun write(action: Runnable): Completable = write(null, action)
+
+    /**
+     * @param mergeKey key of redundant writes, for example item id of track position.
+     * Null key means that write is never merged.
+     * @return completes when write is committed
+     */
+    fun write(mergeKey: Any?, action: Runnable): Completable {
+        return Completable.defer {
+            val subject = CompletableSubject.create()
+            submit(mergeKey ?: Any(), action, subject, false)
+            subject
+        }
+    }
+
+    /**
+     * @return completes when write is committed, it is committed in its own transaction
+     * after writes which were submitted before it
+     */
+    fun writeSeparately(action: Runnable): Completable {
+        return Completable.defer {
+            val subject = CompletableSubject.create()
+            submit(Any(), action, subject, true)
+            subject
+        }
+    }
+
+    /**
+     * Each transaction is committed in a separate task of scheduler
+     */
+    fun flush(): Completable {
+        return Completable.fromAction { commitBatch() }
+            .subscribeOn(scheduler)
+            .repeatUntil(this::hasNoPendingWrites)
+    }
+
+    /**
+     * Same as [flush], but commits in the calling thread. Must be called on [scheduler].
+     */
+    fun flushNow() {
+        commitAll()
+    }
+
+    fun getMetrics() = metrics.getStats()
+
+    fun getReport(): String {
+        val stats = metrics.getStats()
+        return "Database writes, transactions: " + stats.transactionsCount +
+                " (" + String.format(Locale.US, "%.2f", stats.transactionsPerSecond) + "/s)" +
+                ", writes: " + stats.writesCount +
+                ", merged: " + stats.mergedWritesCount +
+                ", queue depth: " + stats.queueDepth +
+                ", max queue depth: " + stats.maxQueueDepth
+    }
+
+    private fun submit(
+        key: Any,
+        action: Runnable,
+        subject: CompletableSubject,
+        isSeparate: Boolean,
+    ) {
+        synchronized(pendingWrites) {
+            //merged write moves to the end, so it is not executed before writes it followed
+            val write = PendingWrite(action, isSeparate)
+            val replacedWrite = pendingWrites.remove(key)
+            if (replacedWrite != null) {
+                write.subjects.addAll(replacedWrite.subjects)
+                metrics.onWriteMerged()
+            }
+            write.subjects.add(subject)
+            pendingWrites[key] = write
+            metrics.onQueueDepthChanged(pendingWrites.size)
+
+            if (pendingWrites.size >= maxBatchSize || isSeparate) {
+                commitTask?.dispose()
+                commitTask = scheduler.scheduleDirect(this::commitPending)
+            } else if (commitTask == null) {
+                commitTask = scheduler.scheduleDirect(
+                    this::commitPending,
+                    maxLatencyMillis,
+                    TimeUnit.MILLISECONDS
+                )
+            }
+        }
+    }
+
+    private fun commitAll() {
+        do {
+            val hasMore = commitBatch()
+        } while (hasMore)
+    }
+
+    private fun commitPending() {
+        if (commitBatch()) {
+            synchronized(pendingWrites) {
+                commitTask?.dispose()
+                commitTask = scheduler.scheduleDirect(this::commitPending)
+            }
+        }
+    }
+
+    /**
+     * @return true when there are more pending writes
+     */
+    private fun commitBatch(): Boolean {
+        val writes = ArrayList<PendingWrite>()
+        val hasMore: Boolean
+        synchronized(pendingWrites) {
+            val iterator = pendingWrites.values.iterator()
+            while (iterator.hasNext() && writes.size < maxBatchSize) {
+                val write = iterator.next()
+                if (write.isSeparate && writes.isNotEmpty()) {
+                    break
+                }
+                writes.add(write)
+                iterator.remove()
+                if (write.isSeparate) {
+                    break
+                }
+            }
+            metrics.onQueueDepthChanged(pendingWrites.size)
+            hasMore = pendingWrites.isNotEmpty()
+            if (!hasMore) {
+                commitTask?.dispose()
+                commitTask = null
+            }
+        }
+        if (writes.isNotEmpty()) {
+            commit(writes)
+        }
+        return hasMore
+    }
+
+    private fun hasNoPendingWrites() = synchronized(pendingWrites) { pendingWrites.isEmpty() }
+
+    private fun commit(writes: List<PendingWrite>) {
+        try {
+            libraryDatabase.runInTransaction {
+                for (write in writes) {
+                    write.action.run()
+                }
+            }
+            metrics.onTransactionCommitted(writes.size, scheduler.now(TimeUnit.MILLISECONDS))
+        } catch (e: Exception) {
+            if (writes.size == 1) {
+                writes[0].onError(e)
+                return
+            }
+            //failed write should not fail others, commit them one by one
+            for (write in writes) {
+                commitSingle(write)
+            }
+            return
+        }
+        for (write in writes) {
+            write.onComplete()
+        }
+    }
+
+    private fun commitSingle(write: PendingWrite) {
+        try {
+            libraryDatabase.runInTransaction(write.action)
+            metrics.onTransactionCommitted(1, scheduler.now(TimeUnit.MILLISECONDS))
+        } catch (e: Exception) {
+            write.onError(e)
+            return
+        }
+        write.onComplete()
+    }
+
+    private class PendingWrite(val action: Runnable, val isSeparate: Boolean) {
+
+        val subjects = ArrayList<CompletableSubject>(1)
+
+        fun onComplete() {
+            for (subject in subjects) {
+                subject.onComplete()
+            }
+        }
+
+        fun onError(throwable: Throwable) {
+            for (subject in subjects) {
+                subject.onError(throwable)
+            }
+        }
+    }
+
+    private companion object {
+        const val MAX_BATCH_SIZE = 100
+        const val MAX_LATENCY_MILLIS = 200L
+    }
+}
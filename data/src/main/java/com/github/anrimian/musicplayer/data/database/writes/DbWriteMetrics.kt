@@ -0,0 +1,61 @@
+package com.github.anrimian.musicplayer.data.database.writes
+
+/**
+ * Collects counters of writes committed by [DbWriteCoordinator].
+ */
+class DbWriteMetrics(private val startTimeMillis: Long) {
+
+    private var transactionsCount = 0L
+    private var writesCount = 0L
+    private var mergedWritesCount = 0L
+    private var queueDepth = 0
+    private var maxQueueDepth = 0
+    private var lastTimeMillis = startTimeMillis
+
+    @Synchronized
+    fun onQueueDepthChanged(queueDepth: Int) {
+        this.queueDepth = queueDepth
+        if (queueDepth > maxQueueDepth) {
+            maxQueueDepth = queueDepth
+        }
+    }
+
+    @Synchronized
+    fun onWriteMerged() {
+        mergedWritesCount++
+    }
+
+    @Synchronized
+    fun onTransactionCommitted(writesCount: Int, timeMillis: Long) {
+        transactionsCount++
+        this.writesCount += writesCount
+        lastTimeMillis = timeMillis
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        val durationMillis = lastTimeMillis - startTimeMillis
+        val transactionsPerSecond = if (durationMillis > 0) {
+            transactionsCount * 1000f / durationMillis
+        } else {
+            0f
+        }
+        return Stats(
+            transactionsCount,
+            transactionsPerSecond,
+            writesCount,
+            mergedWritesCount,
+            queueDepth,
+            maxQueueDepth
+        )
+    }
+
+    data class Stats(
+        val transactionsCount: Long,
+        val transactionsPerSecond: Float,
+        val writesCount: Long,
+        val mergedWritesCount: Long,
+        val queueDepth: Int,
+        val maxQueueDepth: Int,
+    )
+}
@@ -6,6 +6,7 @@ import com.github.anrimian.musicplayer.data.database.dao.compositions.Compositio
 import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.genre.GenresDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.dao.ignoredfolders.IgnoredFoldersDao;
+import com.github.anrimian.musicplayer.data.repositories.scanner.folders.IgnoredFoldersIndex;
 import com.github.anrimian.musicplayer.data.storage.files.StorageFilesDataSource;
 import com.github.anrimian.musicplayer.domain.models.albums.Album;
 import com.github.anrimian.musicplayer.domain.models.albums.AlbumComposition;
@@ -52,6 +53,7 @@ public class LibraryRepositoryImpl implements LibraryRepository {
     private final GenresDaoWrapper genresDao;
     private final FoldersDaoWrapper foldersDao;
     private final IgnoredFoldersDao ignoredFoldersDao;
+    private final IgnoredFoldersIndex ignoredFoldersIndex;
     private final SettingsRepository settingsPreferences;
     private final MediaScannerRepository mediaScannerRepository;
     private final Scheduler scheduler;
@@ -63,6 +65,7 @@ public class LibraryRepositoryImpl implements LibraryRepository {
                                  GenresDaoWrapper genresDao,
                                  FoldersDaoWrapper foldersDao,
                                  IgnoredFoldersDao ignoredFoldersDao,
+                                 IgnoredFoldersIndex ignoredFoldersIndex,
                                  SettingsRepository settingsPreferences,
                                  MediaScannerRepository mediaScannerRepository,
                                  Scheduler scheduler) {
@@ -73,6 +76,7 @@ public class LibraryRepositoryImpl implements LibraryRepository {
         this.genresDao = genresDao;
         this.foldersDao = foldersDao;
         this.ignoredFoldersDao = ignoredFoldersDao;
+        this.ignoredFoldersIndex = ignoredFoldersIndex;
         this.settingsPreferences = settingsPreferences;
         this.mediaScannerRepository = mediaScannerRepository;
         this.scheduler = scheduler;
@@ -421,6 +425,7 @@ public class LibraryRepositoryImpl implements LibraryRepository {
             var folderPath = foldersDao.getFullFolderPath(folder.getId());
             var compositions = compositionsDao.getCompositionsInFolder(folder.getId());
             var ignoredFolder = ignoredFoldersDao.insertIgnoredFolder(folderPath);
+            ignoredFoldersIndex.onFolderIgnored(folderPath);
             mediaScannerRepository.rescanStorage();
             return new Pair<>(ignoredFolder, compositions);
         }).subscribeOn(scheduler);
@@ -431,6 +436,7 @@ public class LibraryRepositoryImpl implements LibraryRepository {
         return Single.fromCallable(() -> {
             var compositions = compositionsDao.getCompositionsInFolder(folder.getRelativePath());
             var ignoredFolder = ignoredFoldersDao.insert(folder.getRelativePath(), folder.getAddDate());
+            ignoredFoldersIndex.onFolderIgnored(folder.getRelativePath());
             mediaScannerRepository.rescanStorage();
             return compositions;
         }).subscribeOn(scheduler);
@@ -453,6 +459,7 @@ public class LibraryRepositoryImpl implements LibraryRepository {
     public void deleteIgnoredFolder(String folderRelativePath) {
         int deletedRows = ignoredFoldersDao.deleteIgnoredFolder(folderRelativePath);
         if (deletedRows > 0) {
+            ignoredFoldersIndex.onFolderRestored(folderRelativePath);
             mediaScannerRepository.rescanStorage();
         }
     }
@@ -0,0 +1,713 @@
+package com.github.anrimian.musicplayer.data.repositories.play_queue
+
+import com.github.anrimian.musicplayer.data.database.dao.play_queue.PlayQueueWrite
+import com.github.anrimian.musicplayer.data.database.dao.play_queue.QueuePosition
+import com.github.anrimian.musicplayer.data.database.dao.play_queue.SparsePositions
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity
+import com.github.anrimian.musicplayer.data.utils.collections.LongIntMap
+import com.github.anrimian.musicplayer.domain.Constants
+import com.github.anrimian.musicplayer.domain.Constants.TRIGGER
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.subjects.BehaviorSubject
+import io.reactivex.rxjava3.subjects.PublishSubject
+import java.util.Arrays
+import java.util.Random
+
+/**
+ * Authoritative in-memory copy of play queue.
+ *
+ * Both orders are kept as primitive arrays sorted by position, so next, previous and index of item
+ * are resolved without database queries. Reads give the same results as queries of PlayQueueDao,
+ * except that empty queue has no next and previous item instead of item with zero id.
+ *
+ * Mutations are applied here first. Changes of play_queue table which they made are collected
+ * as [PlayQueueWrite] list, see [drainWrites], the list must be persisted in the same order.
+ * Ids of new items are assigned here too, so persisted table repeats the state of this copy.
+ *
+ * Shuffled order is kept as positions after [ShufflePermutation] of stored shuffled positions,
+ * so new shuffle changes only the seed and the row of current item. Seed is persisted
+ * as a write too, so it is committed together with rows it belongs to.
+ *
+ * Structural changes of both orders are published as [QueueOrderChange], so list of queue can be
+ * patched instead of being read again.
+ */
+class PlayQueueIndex {
+
+    private val pendingWrites = ArrayList<PlayQueueWrite>()
+
+    private val order = QueueOrder { id, position ->
+        pendingWrites.add(PlayQueueWrite.UpdatePosition(id, position))
+    }
+    private val shuffledOrder = QueueOrder { id, position ->
+        pendingWrites.add(PlayQueueWrite.UpdateShuffledPosition(id, permutation.invert(position)))
+    }
+    private val positions = SparsePositions(order)
+    private val shuffledPositions = SparsePositions(shuffledOrder)
+
+    //corrupted compositions are skipped on moving to previous item
+    private val corruptedCompositionIds = HashSet<Long>()
+
+    private var permutation = ShufflePermutation(ShufflePermutation.IDENTITY_SEED)
+
+    private val changesSubject = BehaviorSubject.createDefault<Any>(TRIGGER)
+
+    private val orderChanges = ArrayList<QueueOrderChange>()
+    private val shuffledOrderChanges = ArrayList<QueueOrderChange>()
+    private val orderChangesSubject = PublishSubject.create<QueueOrderChange>()
+    private val shuffledOrderChangesSubject = PublishSubject.create<QueueOrderChange>()
+
+    private var nextItemId = 1L
+    private var deletedItem: PlayQueueEntity? = null
+
+    @Volatile
+    private var loaded = false
+    @Volatile
+    private var invalidationsCount = 0
+
+    /**
+     * @param entities play queue items in any order, they are iterated once and not kept
+     * @param lastItemId max id of persisted play queue items
+     * @param shuffleSeed seed of persisted shuffle, see [getShuffleSeed]
+     * @param loadVersion value of [getLoadVersion] before persisted state was read. Copy stays
+     * outdated when it was invalidated while state was read
+     */
+    fun load(
+        entities: Sequence<PlayQueueEntity>,
+        corruptedCompositionIds: Collection<Long>,
+        lastItemId: Long,
+        shuffleSeed: Long,
+        loadVersion: Int,
+    ) {
+        change {
+            val previousItemIds = order.getItemIds()
+            val previousShuffledItemIds = shuffledOrder.getItemIds()
+            permutation = ShufflePermutation(shuffleSeed)
+            order.clear()
+            shuffledOrder.clear()
+            for (entity in entities) {
+                order.add(entity.position, entity.id, entity.audioId)
+                shuffledOrder.add(
+                    permutation.apply(entity.shuffledPosition),
+                    entity.id,
+                    entity.audioId
+                )
+            }
+            order.sortByPositions()
+            shuffledOrder.sortByPositions()
+            //reload after invalidation usually gives the same orders
+            if (!order.getItemIds().contentEquals(previousItemIds)) {
+                orderChanges.add(QueueOrderChange.Reset)
+            }
+            if (!shuffledOrder.getItemIds().contentEquals(previousShuffledItemIds)) {
+                shuffledOrderChanges.add(QueueOrderChange.Reset)
+            }
+            this.corruptedCompositionIds.clear()
+            this.corruptedCompositionIds.addAll(corruptedCompositionIds)
+            nextItemId = maxOf(nextItemId, lastItemId + 1)
+            loaded = loadVersion == invalidationsCount
+        }
+    }
+
+    fun isLoaded() = loaded
+
+    fun getLoadVersion() = invalidationsCount
+
+    /**
+     * Marks copy as outdated, it must be loaded again from persisted table
+     */
+    fun invalidate() {
+        change {
+            invalidationsCount++
+            loaded = false
+        }
+    }
+
+    /**
+     * Emits trigger after each change of queue
+     */
+    fun getChangesObservable(): Observable<Any> = changesSubject
+
+    /**
+     * Emits structural changes of given order, changes of one mutation are emitted after it
+     * is completed
+     */
+    fun getOrderChangesObservable(isShuffled: Boolean): Observable<QueueOrderChange> {
+        return if (isShuffled) shuffledOrderChangesSubject else orderChangesSubject
+    }
+
+    /**
+     * @return seed of current shuffle, see [PlayQueueWrite.UpdateShuffleSeed]
+     */
+    fun getShuffleSeed() = permutation.seed
+
+    /**
+     * @return ids of items in given order
+     */
+    @Synchronized
+    fun getItemIds(isShuffled: Boolean) = getOrder(isShuffled).getItemIds()
+
+    /**
+     * @return writes made since previous call
+     */
+    @Synchronized
+    fun drainWrites(): List<PlayQueueWrite> {
+        val writes = ArrayList(pendingWrites)
+        pendingWrites.clear()
+        return writes
+    }
+
+    @Synchronized
+    fun getSize() = order.size
+
+    /**
+     * @return item after given one, first item when given item is last or absent,
+     * null when queue is empty
+     */
+    @Synchronized
+    fun getNextItemId(currentItemId: Long, isShuffled: Boolean): Long? {
+        val order = getOrder(isShuffled)
+        if (order.size == 0) {
+            return null
+        }
+        val index = order.indexOf(currentItemId)
+        if (index != -1 && index + 1 < order.size) {
+            return order.getItemId(index + 1)
+        }
+        return order.getItemId(0)
+    }
+
+    /**
+     * @return the nearest not corrupted item before given one, last item when there is no such
+     * item or given item is absent, null when queue is empty
+     */
+    @Synchronized
+    fun getPreviousItemId(currentItemId: Long, isShuffled: Boolean): Long? {
+        val order = getOrder(isShuffled)
+        if (order.size == 0) {
+            return null
+        }
+        var index = order.indexOf(currentItemId) - 1
+        while (index >= 0) {
+            if (!corruptedCompositionIds.contains(order.getCompositionId(index))) {
+                return order.getItemId(index)
+            }
+            index--
+        }
+        return order.getItemId(order.size - 1)
+    }
+
+    /**
+     * @return index of item in queue or -1 when item is absent
+     */
+    @Synchronized
+    fun getIndex(itemId: Long, isShuffled: Boolean) = getOrder(isShuffled).indexOf(itemId)
+
+    /**
+     * @return true when given item is the last item of queue or queue is empty
+     */
+    @Synchronized
+    fun isLastItem(itemId: Long, isShuffled: Boolean): Boolean {
+        val order = getOrder(isShuffled)
+        return order.size == 0 || order.getItemId(order.size - 1) == itemId
+    }
+
+    /**
+     * @return position of item in given order, shuffled position is permuted one
+     */
+    @Synchronized
+    fun getPosition(itemId: Long, isShuffled: Boolean) = getOrder(isShuffled).positionOf(itemId)
+
+    /**
+     * @return the first item with position greater or equal to given one
+     */
+    @Synchronized
+    fun getItemAtPosition(position: Int, isShuffled: Boolean): Long? {
+        val order = getOrder(isShuffled)
+        val index = order.lowerBound(position)
+        return if (index < order.size) order.getItemId(index) else null
+    }
+
+    /**
+     * @return items ordered by position, as they are stored
+     */
+    @Synchronized
+    fun getEntities(): List<PlayQueueEntity> {
+        return List(order.size) { i ->
+            val itemId = order.getItemId(i)
+            createEntity(
+                itemId,
+                order.getCompositionId(i),
+                order.getPosition(i),
+                permutation.invert(shuffledOrder.positionOf(itemId)!!)
+            )
+        }
+    }
+
+    /**
+     * Creates new queue, its shuffle is made by [Random] with given seed and shuffled positions
+     * are stored without permutation. Items are written in parts of [NEW_QUEUE_PART_SIZE]
+     *
+     * @return id of the item to start playing from
+     */
+    fun setQueue(
+        compositionIds: List<Long>,
+        startPosition: Int,
+        isShuffled: Boolean,
+        randomSeed: Long,
+    ): Long {
+        return change {
+            val count = compositionIds.size
+            val shuffledIndexes = shuffledIndexes(count, Random(randomSeed))
+            val itemIds = LongArray(count) { nextItemId++ }
+            val itemCompositionIds = compositionIds.toLongArray()
+            val positions = IntArray(count) { i -> SparsePositions.getInitialPosition(i, count) }
+            val shuffledPositions = IntArray(count) { i ->
+                SparsePositions.getInitialPosition(shuffledIndexes[i], count)
+            }
+
+            permutation = ShufflePermutation(ShufflePermutation.IDENTITY_SEED)
+            order.clear()
+            shuffledOrder.clear()
+            order.ensureCapacity(count)
+            shuffledOrder.ensureCapacity(count)
+            for (i in 0 until count) {
+                order.add(positions[i], itemIds[i], itemCompositionIds[i])
+                shuffledOrder.add(shuffledPositions[i], itemIds[i], itemCompositionIds[i])
+            }
+            order.sortByPositions()
+            shuffledOrder.sortByPositions()
+
+            pendingWrites.add(PlayQueueWrite.DeleteQueue)
+            pendingWrites.add(PlayQueueWrite.UpdateShuffleSeed(permutation.seed))
+            for (start in 0 until count step NEW_QUEUE_PART_SIZE) {
+                pendingWrites.add(PlayQueueWrite.InsertQueuePart(
+                    itemIds,
+                    itemCompositionIds,
+                    positions,
+                    shuffledPositions,
+                    start,
+                    minOf(start + NEW_QUEUE_PART_SIZE, count)
+                ))
+            }
+            orderChanges.add(QueueOrderChange.Reset)
+            shuffledOrderChanges.add(QueueOrderChange.Reset)
+
+            if (startPosition != Constants.NO_POSITION) {
+                itemIds[startPosition]
+            } else if (isShuffled) {
+                shuffledOrder.getItemId(0)
+            } else {
+                itemIds[0]
+            }
+        }
+    }
+
+    /**
+     * Shuffles queue again with permutation of given seed, stored shuffled positions are kept.
+     * Given item becomes the first item of shuffled order.
+     */
+    fun reshuffle(currentItemId: Long, shuffleSeed: Long) {
+        change {
+            val previousPermutation = permutation
+            val newPermutation = ShufflePermutation(shuffleSeed)
+            permutation = newPermutation
+            shuffledOrder.updatePositions { position ->
+                newPermutation.apply(previousPermutation.invert(position))
+            }
+            pendingWrites.add(PlayQueueWrite.UpdateShuffleSeed(shuffleSeed))
+
+            if (shuffledOrder.indexOf(currentItemId) > 0) {
+                val position = shuffledPositions.allocateAfter(null, 1)[0]
+                shuffledOrder.updatePosition(currentItemId, position)
+            }
+            shuffledOrderChanges.add(QueueOrderChange.Reset)
+        }
+    }
+
+    /**
+     * Inserts compositions after given item, at the start of queue when item is absent
+     *
+     * @return id of the first inserted item
+     */
+    fun addAfter(compositionIds: List<Long>, currentItemId: Long): Long {
+        return change {
+            val count = compositionIds.size
+            insertItems(
+                compositionIds,
+                positions.allocateAfter(order.positionOf(currentItemId), count),
+                shuffledPositions.allocateAfter(shuffledOrder.positionOf(currentItemId), count)
+            )
+        }
+    }
+
+    /**
+     * @return id of the first inserted item
+     */
+    fun addToEnd(compositionIds: List<Long>): Long {
+        return change {
+            val count = compositionIds.size
+            insertItems(
+                compositionIds,
+                positions.allocateAfter(order.getLastPosition(), count),
+                shuffledPositions.allocateAfter(shuffledOrder.getLastPosition(), count)
+            )
+        }
+    }
+
+    fun removeItem(itemId: Long) {
+        change {
+            val index = order.indexOf(itemId)
+            if (index == -1) {
+                return@change
+            }
+            deletedItem = createEntity(
+                itemId,
+                order.getCompositionId(index),
+                order.getPosition(index),
+                permutation.invert(shuffledOrder.positionOf(itemId)!!)
+            )
+            orderChanges.add(QueueOrderChange.Remove(index, 1))
+            shuffledOrderChanges.add(QueueOrderChange.Remove(shuffledOrder.indexOf(itemId), 1))
+            order.remove(itemId)
+            shuffledOrder.remove(itemId)
+            pendingWrites.add(PlayQueueWrite.DeleteItem(itemId))
+        }
+    }
+
+    /**
+     * Returns the last removed item to its place. When its position was taken, item is placed
+     * right after the item which took it.
+     *
+     * @return id of restored item or null when there is no removed item
+     */
+    fun restoreDeletedItem(): Long? {
+        return change {
+            val item = deletedItem ?: return@change null
+            deletedItem = null
+            if (order.contains(item.position)) {
+                item.position = positions.allocateAfter(item.position, 1)[0]
+            }
+            var shuffledPosition = permutation.apply(item.shuffledPosition)
+            if (shuffledOrder.contains(shuffledPosition)) {
+                shuffledPosition = shuffledPositions.allocateAfter(shuffledPosition, 1)[0]
+                item.shuffledPosition = permutation.invert(shuffledPosition)
+            }
+            order.insert(item.position, item.id, item.audioId)
+            shuffledOrder.insert(shuffledPosition, item.id, item.audioId)
+            pendingWrites.add(PlayQueueWrite.InsertItems(listOf(item)))
+            val itemIds = longArrayOf(item.id)
+            val shuffledIndex = shuffledOrder.indexOf(item.id)
+            orderChanges.add(QueueOrderChange.Insert(order.indexOf(item.id), itemIds))
+            shuffledOrderChanges.add(QueueOrderChange.Insert(shuffledIndex, itemIds))
+            item.id
+        }
+    }
+
+    fun swapItems(firstItemId: Long, secondItemId: Long, isShuffled: Boolean) {
+        change {
+            val order = getOrder(isShuffled)
+            val firstPosition = order.positionOf(firstItemId) ?: return@change
+            val secondPosition = order.positionOf(secondItemId) ?: return@change
+            if (firstItemId == secondItemId) {
+                return@change
+            }
+            val firstIndex = minOf(order.indexOf(firstItemId), order.indexOf(secondItemId))
+            val secondIndex = maxOf(order.indexOf(firstItemId), order.indexOf(secondItemId))
+
+            order.updatePosition(secondItemId, Int.MIN_VALUE)
+            order.updatePosition(firstItemId, secondPosition)
+            order.updatePosition(secondItemId, firstPosition)
+
+            //swap of items is a move of the first item and then a move of the second one back
+            val changes = if (isShuffled) shuffledOrderChanges else orderChanges
+            changes.add(QueueOrderChange.Move(firstIndex, secondIndex))
+            if (secondIndex - firstIndex > 1) {
+                changes.add(QueueOrderChange.Move(secondIndex - 1, firstIndex))
+            }
+        }
+    }
+
+    fun clear() {
+        change {
+            if (order.size > 0) {
+                orderChanges.add(QueueOrderChange.Remove(0, order.size))
+                shuffledOrderChanges.add(QueueOrderChange.Remove(0, shuffledOrder.size))
+            }
+            order.clear()
+            shuffledOrder.clear()
+            pendingWrites.add(PlayQueueWrite.DeleteQueue)
+        }
+    }
+
+    private fun insertItems(
+        compositionIds: List<Long>,
+        positions: IntArray,
+        shuffledPositions: IntArray,
+    ): Long {
+        val entities = ArrayList<PlayQueueEntity>(compositionIds.size)
+        for (i in compositionIds.indices) {
+            val entity = createEntity(
+                nextItemId++,
+                compositionIds[i],
+                positions[i],
+                permutation.invert(shuffledPositions[i])
+            )
+            order.insert(entity.position, entity.id, entity.audioId)
+            shuffledOrder.insert(shuffledPositions[i], entity.id, entity.audioId)
+            entities.add(entity)
+        }
+        pendingWrites.add(PlayQueueWrite.InsertItems(entities))
+
+        //new items have ascending ids and positions, so they follow each other in both orders
+        val firstId = entities[0].id
+        val itemIds = LongArray(entities.size) { i -> entities[i].id }
+        orderChanges.add(QueueOrderChange.Insert(order.indexOf(firstId), itemIds))
+        shuffledOrderChanges.add(QueueOrderChange.Insert(shuffledOrder.indexOf(firstId), itemIds))
+        return firstId
+    }
+
+    private fun getOrder(isShuffled: Boolean) = if (isShuffled) shuffledOrder else order
+
+    //the same swaps as Collections.shuffle() makes, without boxing of indexes
+    private fun shuffledIndexes(count: Int, random: Random): IntArray {
+        val indexes = IntArray(count) { i -> i }
+        for (i in count - 1 downTo 1) {
+            val j = random.nextInt(i + 1)
+            val index = indexes[i]
+            indexes[i] = indexes[j]
+            indexes[j] = index
+        }
+        return indexes
+    }
+
+    //observers are notified outside of lock
+    private inline fun <T> change(block: () -> T): T {
+        val changes: List<QueueOrderChange>
+        val shuffledChanges: List<QueueOrderChange>
+        val result = synchronized(this) {
+            val result = block()
+            changes = drainOrderChanges(orderChanges)
+            shuffledChanges = drainOrderChanges(shuffledOrderChanges)
+            result
+        }
+        changes.forEach(orderChangesSubject::onNext)
+        shuffledChanges.forEach(shuffledOrderChangesSubject::onNext)
+        changesSubject.onNext(TRIGGER)
+        return result
+    }
+
+    private fun drainOrderChanges(changes: ArrayList<QueueOrderChange>): List<QueueOrderChange> {
+        if (changes.isEmpty()) {
+            return emptyList()
+        }
+        val result = ArrayList(changes)
+        changes.clear()
+        return result
+    }
+
+    private fun createEntity(
+        id: Long,
+        compositionId: Long,
+        position: Int,
+        shuffledPosition: Int,
+    ): PlayQueueEntity {
+        val entity = PlayQueueEntity()
+        entity.id = id
+        entity.audioId = compositionId
+        entity.position = position
+        entity.shuffledPosition = shuffledPosition
+        return entity
+    }
+
+    /**
+     * Items of one order, sorted by position
+     */
+    private class QueueOrder(
+        private val onPositionUpdated: (Long, Int) -> Unit
+    ) : SparsePositions.Store {
+
+        var size = 0
+            private set
+
+        private var positions = IntArray(INITIAL_CAPACITY)
+        private var itemIds = LongArray(INITIAL_CAPACITY)
+        private var compositionIds = LongArray(INITIAL_CAPACITY)
+
+        private val itemPositions = LongIntMap()
+
+        /**
+         * Appends item without sorting, [sortByPositions] must be called after appended items
+         */
+        fun add(position: Int, itemId: Long, compositionId: Long) {
+            ensureCapacity(size + 1)
+            positions[size] = position
+            itemIds[size] = itemId
+            compositionIds[size] = compositionId
+            size++
+        }
+
+        /**
+         * Replaces position of each item with the result of given function
+         */
+        inline fun updatePositions(getNewPosition: (Int) -> Int) {
+            for (i in 0 until size) {
+                positions[i] = getNewPosition(positions[i])
+            }
+            sortByPositions()
+        }
+
+        fun ensureCapacity(capacity: Int) {
+            if (capacity <= positions.size) {
+                return
+            }
+            val newCapacity = maxOf(capacity, positions.size * 2)
+            positions = positions.copyOf(newCapacity)
+            itemIds = itemIds.copyOf(newCapacity)
+            compositionIds = compositionIds.copyOf(newCapacity)
+        }
+
+        fun clear() {
+            size = 0
+            itemPositions.clear()
+        }
+
+        fun insert(position: Int, itemId: Long, compositionId: Long) {
+            val index = -Arrays.binarySearch(positions, 0, size, position) - 1
+            check(index >= 0) { "position is taken: $position" }
+            ensureCapacity(size + 1)
+            System.arraycopy(positions, index, positions, index + 1, size - index)
+            System.arraycopy(itemIds, index, itemIds, index + 1, size - index)
+            System.arraycopy(compositionIds, index, compositionIds, index + 1, size - index)
+            positions[index] = position
+            itemIds[index] = itemId
+            compositionIds[index] = compositionId
+            itemPositions.put(itemId, position)
+            size++
+        }
+
+        fun remove(itemId: Long) {
+            val index = indexOf(itemId)
+            if (index == -1) {
+                return
+            }
+            val tailSize = size - index - 1
+            System.arraycopy(positions, index + 1, positions, index, tailSize)
+            System.arraycopy(itemIds, index + 1, itemIds, index, tailSize)
+            System.arraycopy(compositionIds, index + 1, compositionIds, index, tailSize)
+            itemPositions.remove(itemId)
+            size--
+        }
+
+        fun indexOf(itemId: Long): Int {
+            val index = itemPositions.indexOfKey(itemId)
+            if (index == -1) {
+                return -1
+            }
+            return Arrays.binarySearch(positions, 0, size, itemPositions.valueAt(index))
+        }
+
+        fun positionOf(itemId: Long): Int? {
+            val index = itemPositions.indexOfKey(itemId)
+            return if (index == -1) null else itemPositions.valueAt(index)
+        }
+
+        fun getItemIds(): LongArray = itemIds.copyOf(size)
+
+        fun contains(position: Int) = Arrays.binarySearch(positions, 0, size, position) >= 0
+
+        fun getLastPosition(): Int? = if (size == 0) null else positions[size - 1]
+
+        fun getPosition(index: Int) = positions[index]
+
+        fun getItemId(index: Int) = itemIds[index]
+
+        fun getCompositionId(index: Int) = compositionIds[index]
+
+        /**
+         * @return index of the first item with position greater or equal to given one
+         */
+        fun lowerBound(position: Int): Int {
+            val index = Arrays.binarySearch(positions, 0, size, position)
+            return if (index >= 0) index else -index - 1
+        }
+
+        override fun getNextPosition(position: Int): Int? {
+            val index = upperBound(position)
+            return if (index < size) positions[index] else null
+        }
+
+        override fun getPositionsBefore(position: Int, limit: Int): List<QueuePosition> {
+            val result = ArrayList<QueuePosition>(limit)
+            var index = upperBound(position) - 1
+            while (index >= 0 && result.size < limit) {
+                result.add(QueuePosition(itemIds[index], positions[index]))
+                index--
+            }
+            return result
+        }
+
+        override fun getPositionsAfter(position: Int, limit: Int): List<QueuePosition> {
+            val result = ArrayList<QueuePosition>(limit)
+            var index = lowerBound(position)
+            while (index < size && result.size < limit) {
+                result.add(QueuePosition(itemIds[index], positions[index]))
+                index++
+            }
+            return result
+        }
+
+        override fun updatePosition(id: Long, position: Int) {
+            val index = indexOf(id)
+            if ((index == 0 || positions[index - 1] < position)
+                && (index == size - 1 || positions[index + 1] > position)) {
+                //item keeps its index, so arrays are not shifted
+                positions[index] = position
+                itemPositions.put(id, position)
+            } else {
+                val compositionId = compositionIds[index]
+                remove(id)
+                insert(position, id, compositionId)
+            }
+            onPositionUpdated(id, position)
+        }
+
+        /**
+         * Sorts items which are stored in any order and indexes them by id
+         */
+        fun sortByPositions() {
+            //position in high bits and index of item in low bits, sorted without boxing
+            val keys = LongArray(size) { i -> (positions[i].toLong() shl 32) or i.toLong() }
+            keys.sort()
+
+            val unsortedItemIds = itemIds.copyOf(size)
+            val unsortedCompositionIds = compositionIds.copyOf(size)
+            itemPositions.clear()
+            itemPositions.ensureCapacity(size)
+            for (i in 0 until size) {
+                val key = keys[i]
+                val unsortedIndex = key.toInt()
+                positions[i] = (key shr 32).toInt()
+                itemIds[i] = unsortedItemIds[unsortedIndex]
+                compositionIds[i] = unsortedCompositionIds[unsortedIndex]
+                itemPositions.put(itemIds[i], positions[i])
+            }
+        }
+
+        /**
+         * @return index of the first item with position greater than given one
+         */
+        private fun upperBound(position: Int): Int {
+            val index = Arrays.binarySearch(positions, 0, size, position)
+            return if (index >= 0) index + 1 else -index - 1
+        }
+
+        private companion object {
+            const val INITIAL_CAPACITY = 16
+        }
+    }
+
+    private companion object {
+        //new queue is written in parts, so its insert doesn't hold db for the whole time
+        const val NEW_QUEUE_PART_SIZE = 5000
+    }
+}
@@ -1,12 +1,18 @@
 package com.github.anrimian.musicplayer.data.repositories.play_queue
 
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChange
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionChangesBus
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionColumns
 import com.github.anrimian.musicplayer.data.database.dao.play_queue.PlayQueueDaoWrapper
+import com.github.anrimian.musicplayer.data.database.dao.play_queue.PlayQueueWrite
+import com.github.anrimian.musicplayer.data.database.writes.DbWriteCoordinator
 import com.github.anrimian.musicplayer.data.models.exceptions.NoCompositionsToInsertException
 import com.github.anrimian.musicplayer.data.models.exceptions.TooManyPlayQueueItemsException
 import com.github.anrimian.musicplayer.data.repositories.state.UiStateRepositoryImpl
 import com.github.anrimian.musicplayer.data.utils.rx.retryWithDelay
 import com.github.anrimian.musicplayer.domain.Constants
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueChange
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueData
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueEvent
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
@@ -14,7 +20,6 @@ import com.github.anrimian.musicplayer.domain.repositories.PlayQueueRepository
 import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository
 import com.github.anrimian.musicplayer.domain.repositories.UiStateRepository
 import com.github.anrimian.musicplayer.domain.utils.functions.Optional
-import com.github.anrimian.musicplayer.domain.utils.rx.CacheFlowable
 import io.reactivex.rxjava3.core.BackpressureStrategy
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Flowable
@@ -22,28 +27,33 @@ import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.core.Scheduler
 import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.subjects.BehaviorSubject
+import java.util.Random
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 
 class PlayQueueRepositoryImpl(
     private val playQueueDao: PlayQueueDaoWrapper,
     private val settingsPreferences: SettingsRepository,
     private val uiStatePreferences: UiStateRepository,
+    private val writeCoordinator: DbWriteCoordinator,
+    private val compositionChangesBus: CompositionChangesBus,
     private val scheduler: Scheduler
 ) : PlayQueueRepository {
 
+    //navigation is resolved in memory, changes are persisted through write coordinator
+    private val playQueueIndex = PlayQueueIndex()
+
     private val playQueueCreateTimeSubject = BehaviorSubject.createDefault(0L)
 
-    private val playQueueObservable = CacheFlowable(
+    private val changesSequence = AtomicLong()
+
+    private val playQueueChanges = SharedPlayQueueChanges(
         settingsPreferences.randomPlayingObservable
-            .switchMap(
-                { isRandom ->
-                    settingsPreferences.displayFileNameObservable
-                        .switchMap { useFileName ->
-                            playQueueDao.getPlayQueueObservable(isRandom, useFileName)
-                        }
-                }
-            ).toFlowable(BackpressureStrategy.LATEST),
-        ArrayList()
+            .switchMap { isRandom ->
+                //items are read again when the way to show them is changed
+                settingsPreferences.displayFileNameObservable
+                    .switchMap { getPlayQueueChangesObservable(isRandom) }
+            }
     )
 
     private val currentItemObservable = uiStatePreferences.currentItemIdObservable
@@ -54,8 +64,15 @@ class PlayQueueRepositoryImpl(
 
     private var consumeDeletedItemEvent = false
 
+    init {
+        //deleted and corrupted compositions change play queue without its writes
+        compositionChangesBus.getChangesObservable()
+            .filter { changes -> changes.any(::isPlayQueueChange) }
+            .subscribe { playQueueIndex.invalidate() }
+    }
+
     override fun setPlayQueue(compositionIds: List<Long>, startPosition: Int): Completable {
-        return Completable.fromAction { insertNewQueue(compositionIds, startPosition) }
+        return Completable.defer { insertNewQueue(compositionIds, startPosition) }
             .subscribeOn(scheduler)
     }
 
@@ -63,8 +80,13 @@ class PlayQueueRepositoryImpl(
         return Observable.combineLatest(
             uiStatePreferences.currentItemIdObservable,
             settingsPreferences.randomPlayingObservable,
-            playQueueDao::getIndexPositionObservable
-        ).switchMap { observable -> observable }
+            playQueueIndex.getChangesObservable()
+        ) { itemId, isShuffled, _ -> Pair(itemId, isShuffled) }
+            .switchMapSingle { (itemId, isShuffled) ->
+                fromIndex { index -> index.getIndex(itemId, isShuffled) }
+            }
+            .filter { position -> position >= 0 }
+            .distinctUntilChanged()
             .toFlowable(BackpressureStrategy.LATEST)
     }
 
@@ -73,47 +95,59 @@ class PlayQueueRepositoryImpl(
     }
 
     override fun getNextQueueItemId(): Single<Long> {
-        return Single.fromCallable {
+        return fromIndex { index ->
             val currentItemId = uiStatePreferences.currentQueueItemId
             val isShuffled = settingsPreferences.isRandomPlayingEnabled
-            playQueueDao.getNextQueueItemId(currentItemId, isShuffled)
-        }.subscribeOn(scheduler)
+            index.getNextItemId(currentItemId, isShuffled) ?: UiStateRepositoryImpl.NO_ITEM
+        }
+    }
+
+    override fun getPlayQueueChangesObservable(): Observable<PlayQueueChange> {
+        return playQueueChanges.getObservable()
     }
 
-    override fun getPlayQueueObservable(): Flowable<List<PlayQueueItem>> {
-        return playQueueObservable.getFlowable()
+    override fun getPlayQueueItems(itemIds: LongArray): Single<List<PlayQueueItem>> {
+        //inserted items are read when their writes are committed
+        return writeCoordinator.flush()
+            .andThen(Single.fromCallable {
+                playQueueDao.getItems(itemIds, settingsPreferences.isDisplayFileNameEnabled)
+            })
+            .subscribeOn(scheduler)
     }
 
     override fun setRandomPlayingEnabled(enabled: Boolean) {
-        Completable.fromAction {
-            playQueueObservable.clearCache()
-            if (enabled) {
-                val itemId = uiStatePreferences.currentQueueItemId
-                playQueueDao.reshuffleQueue(itemId)
+        Completable.defer {
+            if (!enabled) {
+                return@defer Completable.complete()
             }
-            settingsPreferences.isRandomPlayingEnabled = enabled
-        }.subscribeOn(scheduler)
+            val index = getLoadedIndex()
+            index.reshuffle(
+                uiStatePreferences.currentQueueItemId,
+                ShufflePermutation.newSeed(Random())
+            )
+            //list in new order is shown when it is persisted
+            persistNow(index)
+        }.doOnComplete { settingsPreferences.isRandomPlayingEnabled = enabled }
+            .subscribeOn(scheduler)
             .subscribe()
     }
 
     override fun skipToNext(): Single<Int> {
-        return Single.fromCallable {
+        return fromIndex { index ->
             val currentItemId = uiStatePreferences.currentQueueItemId
             val isShuffled = settingsPreferences.isRandomPlayingEnabled
-            val nextQueueItemId = playQueueDao.getNextQueueItemId(currentItemId, isShuffled)
+            val nextQueueItemId = index.getNextItemId(currentItemId, isShuffled)
             setCurrentItem(nextQueueItemId)
-            playQueueDao.getPosition(nextQueueItemId, isShuffled)
-        }.subscribeOn(scheduler)
+            if (nextQueueItemId == null) 0 else index.getIndex(nextQueueItemId, isShuffled)
+        }
     }
 
     override fun skipToPrevious() {
-        Completable.fromAction {
+        fromIndex { index ->
             val currentItemId = uiStatePreferences.currentQueueItemId
             val isShuffled = settingsPreferences.isRandomPlayingEnabled
-            val nextQueueItemId = playQueueDao.getPreviousQueueItemId(currentItemId, isShuffled)
-            setCurrentItem(nextQueueItemId)
-        }.subscribeOn(scheduler)
-            .subscribe()
+            index.getPreviousItemId(currentItemId, isShuffled) ?: UiStateRepositoryImpl.NO_ITEM
+        }.subscribe(::setCurrentItem)
     }
 
     override fun skipToItem(itemId: Long) {
@@ -121,15 +155,17 @@ class PlayQueueRepositoryImpl(
     }
 
     override fun removeQueueItem(item: PlayQueueItem): Completable {
-        return Completable.fromAction { playQueueDao.deleteItem(item.itemId) }
-            .subscribeOn(scheduler)
+        return changeQueue { index -> index.removeItem(item.itemId) }
     }
 
     override fun restoreDeletedItem(): Completable {
-        return Completable.fromAction {
-            val restoredId = playQueueDao.restoreDeletedItem()
-            if (uiStatePreferences.currentQueueItemId == UiStateRepositoryImpl.NO_ITEM && restoredId != null) {
-                setCurrentItem(restoredId)
+        return Completable.defer {
+            val index = getLoadedIndex()
+            val restoredId = index.restoreDeletedItem()
+            persistNow(index).doOnComplete {
+                if (uiStatePreferences.currentQueueItemId == UiStateRepositoryImpl.NO_ITEM && restoredId != null) {
+                    setCurrentItem(restoredId)
+                }
             }
         }.subscribeOn(scheduler)
     }
@@ -138,47 +174,37 @@ class PlayQueueRepositoryImpl(
         first: PlayQueueItem,
         second: PlayQueueItem
     ): Completable {
-        return Completable.fromRunnable {
-            playQueueDao.swapItems(first, second, settingsPreferences.isRandomPlayingEnabled)
-        }.subscribeOn(scheduler)
+        //successive moves of drag are committed together
+        return changeQueue { index ->
+            index.swapItems(first.itemId, second.itemId, settingsPreferences.isRandomPlayingEnabled)
+        }
     }
 
     override fun addCompositionsToPlayNext(compositions: List<Composition>): Completable {
-        return Completable.fromRunnable {
-            checkPlayQueueItemsCount(compositions.size)
-            val id = uiStatePreferences.currentQueueItemId
-            val firstId = playQueueDao.addCompositionsToQueue(compositions, id)
-            if (id == UiStateRepositoryImpl.NO_ITEM) {
-                setCurrentItem(firstId)
-            }
-        }.subscribeOn(scheduler)
+        return addCompositions(compositions) { index, compositionIds ->
+            index.addAfter(compositionIds, uiStatePreferences.currentQueueItemId)
+        }
     }
 
     override fun addCompositionsToEnd(compositions: List<Composition>): Completable {
-        return Completable.fromRunnable {
-            checkPlayQueueItemsCount(compositions.size)
-            val id = uiStatePreferences.currentQueueItemId
-            val firstId = playQueueDao.addCompositionsToEndQueue(compositions)
-            if (id == UiStateRepositoryImpl.NO_ITEM) {
-                setCurrentItem(firstId)
-            }
-        }.subscribeOn(scheduler)
+        return addCompositions(compositions) { index, compositionIds ->
+            index.addToEnd(compositionIds)
+        }
     }
 
     override fun isCurrentCompositionAtEndOfQueue(): Single<Boolean> {
-        return Single.fromCallable {
+        return fromIndex { index ->
             val isShuffled = settingsPreferences.isRandomPlayingEnabled
-            val currentPosition = playQueueDao.getPosition(
-                uiStatePreferences.currentQueueItemId,
-                isShuffled
-            )
-            currentPosition == playQueueDao.getLastPosition(isShuffled)
-        }.subscribeOn(scheduler)
+            index.isLastItem(uiStatePreferences.currentQueueItemId, isShuffled)
+        }
     }
 
     override fun clearPlayQueue(): Completable {
-        return Completable.fromAction { playQueueDao.deletePlayQueue() }
-            .subscribeOn(scheduler)
+        return Completable.defer {
+            val index = getLoadedIndex()
+            index.clear()
+            persistNow(index)
+        }.subscribeOn(scheduler)
     }
 
     override fun getPlayQueueSizeObservable(): Observable<Int> {
@@ -194,35 +220,38 @@ class PlayQueueRepositoryImpl(
     }
 
     override fun setCurrentItemTrackPosition(trackPosition: Long): Completable {
-        return Completable.fromAction {
-            val itemId = uiStatePreferences.currentQueueItemId
-            playQueueDao.insertTrackPosition(itemId, trackPosition)
-        }.subscribeOn(scheduler)
+        return Completable.defer {
+            setItemTrackPosition(uiStatePreferences.currentQueueItemId, trackPosition)
+        }
     }
 
     override fun getCurrentItemTrackPosition(): Single<Long> {
-        return Single.fromCallable {
-            val itemId = uiStatePreferences.currentQueueItemId
-            playQueueDao.getTrackPosition(itemId)
-        }.subscribeOn(scheduler)
+        return writeCoordinator.flush()
+            .andThen(Single.fromCallable {
+                val itemId = uiStatePreferences.currentQueueItemId
+                playQueueDao.getTrackPosition(itemId)
+            })
+            .subscribeOn(scheduler)
     }
 
+    //only the last of successive position saves of item is written
     override fun setItemTrackPosition(itemId: Long, trackPosition: Long): Completable {
-        return Completable.fromAction {
+        return writeCoordinator.write(TrackPositionKey(itemId)) {
             playQueueDao.insertTrackPosition(itemId, trackPosition)
-        }.subscribeOn(scheduler)
+        }
     }
 
     override fun getItemTrackPosition(itemId: Long): Single<Long> {
-        return Single.fromCallable { playQueueDao.getTrackPosition(itemId) }
+        return writeCoordinator.flush()
+            .andThen(Single.fromCallable { playQueueDao.getTrackPosition(itemId) })
             .subscribeOn(scheduler)
     }
 
-    private fun checkPlayQueueItemsCount(itemsCountToInsert: Int) {
+    private fun checkPlayQueueItemsCount(index: PlayQueueIndex, itemsCountToInsert: Int) {
         if (itemsCountToInsert == 0) {
             throw NoCompositionsToInsertException()
         }
-        if (playQueueDao.getPlayQueueSize() + itemsCountToInsert > Constants.PLAY_QUEUE_MAX_ITEMS_COUNT) {
+        if (index.getSize() + itemsCountToInsert > Constants.PLAY_QUEUE_MAX_ITEMS_COUNT) {
             throw TooManyPlayQueueItemsException()
         }
     }
@@ -231,21 +260,193 @@ class PlayQueueRepositoryImpl(
         uiStatePreferences.currentQueueItemId = itemId ?: UiStateRepositoryImpl.NO_ITEM
     }
 
-    private fun insertNewQueue(compositionIds: List<Long>, startPosition: Int) {
+    private fun insertNewQueue(compositionIds: List<Long>, startPosition: Int): Completable {
         if (compositionIds.isEmpty()) {
-            return
+            return Completable.complete()
         }
         if (compositionIds.size > Constants.PLAY_QUEUE_MAX_ITEMS_COUNT) {
             throw TooManyPlayQueueItemsException()
         }
         consumeDeletedItemEvent = true
-        val itemId = playQueueDao.insertNewPlayQueue(
+        val index = getLoadedIndex()
+        val itemId = index.setQueue(
             compositionIds,
+            startPosition,
             settingsPreferences.isRandomPlayingEnabled,
-            startPosition
+            System.nanoTime()
         )
-        setCurrentItem(itemId)
-        consumeDeletedItemEvent = false
+        //current item must not refer to item which is not persisted yet
+        return persistNow(index)
+            .doOnComplete { setCurrentItem(itemId) }
+            .doFinally { consumeDeletedItemEvent = false }
+    }
+
+    private fun addCompositions(
+        compositions: List<Composition>,
+        insert: (PlayQueueIndex, List<Long>) -> Long
+    ): Completable {
+        return Completable.defer {
+            val index = getLoadedIndex()
+            checkPlayQueueItemsCount(index, compositions.size)
+            val id = uiStatePreferences.currentQueueItemId
+            val firstId = insert(index, compositions.map(Composition::id))
+            persistNow(index).doOnComplete {
+                if (id == UiStateRepositoryImpl.NO_ITEM) {
+                    setCurrentItem(firstId)
+                }
+            }
+        }.subscribeOn(scheduler)
+    }
+
+    /**
+     * Changes of queue which user doesn't wait for are committed together with other small writes
+     */
+    private fun changeQueue(change: (PlayQueueIndex) -> Unit): Completable {
+        return Completable.defer {
+            val index = getLoadedIndex()
+            change(index)
+            persist(index)
+        }.subscribeOn(scheduler)
+    }
+
+    private fun persistNow(index: PlayQueueIndex): Completable {
+        return persist(index).mergeWith(writeCoordinator.flush())
+    }
+
+    /**
+     * Parts of new queue after the first one are committed in separate transactions, so other
+     * db tasks are executed between them. Interrupted write of new queue leaves its beginning.
+     *
+     * @return completes when writes made by in-memory queue are committed
+     */
+    private fun persist(index: PlayQueueIndex): Completable {
+        val writes = index.drainWrites()
+        if (writes.isEmpty()) {
+            return Completable.complete()
+        }
+        val transactions = splitToTransactions(writes)
+        val commits = transactions.mapIndexed { i, transactionWrites ->
+            val action = Runnable { playQueueDao.applyWrites(transactionWrites) }
+            if (i == 0) {
+                writeCoordinator.write(action)
+            } else {
+                writeCoordinator.writeSeparately(action)
+            }
+        }
+        //in-memory queue can't be trusted after failed write, it is loaded again
+        return Completable.mergeDelayError(commits)
+            .doOnError { index.invalidate() }
+    }
+
+    private fun splitToTransactions(writes: List<PlayQueueWrite>): List<List<PlayQueueWrite>> {
+        val transactions = ArrayList<List<PlayQueueWrite>>()
+        var transaction = ArrayList<PlayQueueWrite>()
+        var hasQueuePart = false
+        for (write in writes) {
+            if (write is PlayQueueWrite.InsertQueuePart) {
+                if (hasQueuePart) {
+                    transactions.add(transaction)
+                    transaction = ArrayList()
+                }
+                hasQueuePart = true
+            }
+            transaction.add(write)
+        }
+        transactions.add(transaction)
+        return transactions
+    }
+
+    /**
+     * Reads which are called when queue is loaded are executed in calling thread
+     */
+    private fun <T : Any> fromIndex(read: (PlayQueueIndex) -> T): Single<T> {
+        return Single.defer {
+            if (playQueueIndex.isLoaded()) {
+                Single.just(read(playQueueIndex))
+            } else {
+                Single.fromCallable { read(getLoadedIndex()) }.subscribeOn(scheduler)
+            }
+        }
+    }
+
+    /**
+     * Must be called on db scheduler
+     */
+    private fun getLoadedIndex(): PlayQueueIndex {
+        if (!playQueueIndex.isLoaded()) {
+            //pending writes of previous state are part of loaded state
+            writeCoordinator.flushNow()
+            val loadVersion = playQueueIndex.getLoadVersion()
+            playQueueIndex.load(
+                playQueueDao.getPlayQueue(),
+                playQueueDao.getCorruptedCompositionIds(),
+                playQueueDao.getLastItemId(),
+                playQueueDao.getShuffleSeed(),
+                loadVersion
+            )
+        }
+        return playQueueIndex
+    }
+
+    /**
+     * Changes are built from structural changes of in-memory queue and contain only ids of items,
+     * items are read for the used part of queue. Changes which can't be resolved to patches
+     * start feed again.
+     */
+    private fun getPlayQueueChangesObservable(isRandom: Boolean): Observable<PlayQueueChange> {
+        return Observable.defer {
+            //feed is subscribed on db scheduler, so no change is missed after snapshot
+            val snapshot = PlayQueueChange.Snapshot(
+                changesSequence.incrementAndGet(),
+                getLoadedIndex().getItemIds(isRandom)
+            )
+            Observable.merge(
+                playQueueIndex.getOrderChangesObservable(isRandom).map(::toPlayQueueChange),
+                compositionChangesBus.getChangesObservable()
+                    .observeOn(scheduler)
+                    .concatMapIterable(::toPlayQueueChanges)
+            ).startWithItem(snapshot)
+        }.subscribeOn(scheduler)
+            .retry { throwable -> throwable is OutdatedChangesException }
+    }
+
+    private fun toPlayQueueChange(change: QueueOrderChange): PlayQueueChange {
+        val sequence = changesSequence.incrementAndGet()
+        return when (change) {
+            is QueueOrderChange.Reset -> throw OutdatedChangesException()
+            is QueueOrderChange.Insert -> {
+                PlayQueueChange.Insert(sequence, change.index, change.itemIds)
+            }
+            is QueueOrderChange.Remove -> {
+                PlayQueueChange.Remove(sequence, change.index, change.count)
+            }
+            is QueueOrderChange.Move -> PlayQueueChange.Move(sequence, change.from, change.to)
+        }
+    }
+
+    private fun toPlayQueueChanges(changes: List<CompositionChange>): List<PlayQueueChange> {
+        val listChanges = changes.filter { change ->
+            change.type != CompositionChange.Type.INSERT
+                    && change.affects(CompositionColumns.LIST_COLUMNS)
+        }
+        if (listChanges.isEmpty()) {
+            return emptyList()
+        }
+        //deleted compositions remove items without writes of in-memory queue
+        if (listChanges.any { change -> change.type == CompositionChange.Type.DELETE }) {
+            throw OutdatedChangesException()
+        }
+        val compositionIds = if (listChanges.any { change -> change.ids == null }) {
+            null
+        } else {
+            listChanges.flatMap { change -> change.ids!!.asList() }.toLongArray()
+        }
+        return listOf(PlayQueueChange.Update(changesSequence.incrementAndGet(), compositionIds))
+    }
+
+    private fun isPlayQueueChange(change: CompositionChange): Boolean {
+        return change.type != CompositionChange.Type.INSERT
+                && change.affects(PLAY_QUEUE_COLUMNS)
     }
 
     private fun getPlayQueueEvent(id: Long): Observable<PlayQueueEvent> {
@@ -269,19 +470,39 @@ class PlayQueueRepositoryImpl(
                 //handle deleted item
                 val isRandom = settingsPreferences.isRandomPlayingEnabled
                 val lastPosition = uiStatePreferences.currentItemLastPosition
-                var nextItemId = playQueueDao.getItemAtPosition(lastPosition, isRandom)
-                if (nextItemId == null) {
-                    nextItemId = playQueueDao.getItemAtPosition(0, isRandom)
-                }
-                setCurrentItem(nextItemId)
+                fromIndex { index ->
+                    index.getItemAtPosition(lastPosition, isRandom)
+                        ?: index.getItemAtPosition(0, isRandom)
+                        ?: UiStateRepositoryImpl.NO_ITEM
+                }.subscribe(::setCurrentItem)
                 return@create
             }
             emitter.onNext(item)
         }.flatMap { item ->
-            settingsPreferences.randomPlayingObservable
-                .switchMap { random -> playQueueDao.getPositionObservable(item.itemId, random) }
+            Observable.combineLatest(
+                settingsPreferences.randomPlayingObservable,
+                playQueueIndex.getChangesObservable()
+            ) { isShuffled, _ -> isShuffled }
+                .switchMapSingle { isShuffled ->
+                    fromIndex { index -> Optional(index.getPosition(item.itemId, isShuffled)) }
+                }
+                .filter { positionOpt -> positionOpt.value != null }
+                .map { positionOpt -> positionOpt.value!! }
+                .distinctUntilChanged()
                 .doOnNext { position -> uiStatePreferences.currentItemLastPosition = position }
                 .map { item }
         }
     }
+
+    /**
+     * Emitted list can't be patched, feed is started again from snapshot
+     */
+    private class OutdatedChangesException : RuntimeException()
+
+    private data class TrackPositionKey(val itemId: Long)
+
+    private companion object {
+        //columns of compositions which are used by in-memory queue
+        val PLAY_QUEUE_COLUMNS = setOf(CompositionColumns.CORRUPTION_TYPE)
+    }
 }
@@ -0,0 +1,22 @@
+package com.github.anrimian.musicplayer.data.repositories.play_queue
+
+/**
+ * Structural change of one order of [PlayQueueIndex].
+ * Indexes are indexes of items in order after previous change.
+ */
+sealed class QueueOrderChange {
+
+    /**
+     * Order is replaced, it must be read again
+     */
+    object Reset : QueueOrderChange()
+
+    /**
+     * Items are inserted together starting from given index, item ids are ascending
+     */
+    class Insert(val index: Int, val itemIds: LongArray) : QueueOrderChange()
+
+    class Remove(val index: Int, val count: Int) : QueueOrderChange()
+
+    class Move(val from: Int, val to: Int) : QueueOrderChange()
+}
@@ -0,0 +1,72 @@
+package com.github.anrimian.musicplayer.data.repositories.play_queue
+
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueChange
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueList
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.core.ObservableEmitter
+import io.reactivex.rxjava3.disposables.Disposable
+
+/**
+ * Shares play queue changes between observers and keeps ids of list which they were applied to.
+ * New observer receives snapshot of this list and then changes which follow it.
+ *
+ * Changes are delivered to observers under lock, observers should switch thread for their work.
+ */
+class SharedPlayQueueChanges(private val upstream: Observable<PlayQueueChange>) {
+
+    private val itemIds = PlayQueueList<PlayQueueItem> { item -> item }
+    private val emitters = ArrayList<ObservableEmitter<PlayQueueChange>>()
+
+    private var upstreamDisposable: Disposable? = null
+
+    fun getObservable(): Observable<PlayQueueChange> {
+        return Observable.create { emitter ->
+            synchronized(this) {
+                if (itemIds.isInitialized()) {
+                    emitter.onNext(
+                        PlayQueueChange.Snapshot(itemIds.getSequence(), itemIds.getItemIds())
+                    )
+                }
+                emitters.add(emitter)
+                if (upstreamDisposable == null) {
+                    upstreamDisposable = upstream.subscribe(::onChange, ::onError)
+                }
+            }
+            emitter.setCancellable { removeEmitter(emitter) }
+        }
+    }
+
+    private fun onChange(change: PlayQueueChange) {
+        synchronized(this) {
+            itemIds.apply(change)
+            for (emitter in emitters) {
+                emitter.onNext(change)
+            }
+        }
+    }
+
+    private fun onError(throwable: Throwable) {
+        val emitters = synchronized(this) {
+            val emitters = ArrayList(this.emitters)
+            this.emitters.clear()
+            upstreamDisposable = null
+            itemIds.clear()
+            emitters
+        }
+        for (emitter in emitters) {
+            emitter.tryOnError(throwable)
+        }
+    }
+
+    private fun removeEmitter(emitter: ObservableEmitter<PlayQueueChange>) {
+        synchronized(this) {
+            if (!emitters.remove(emitter) || emitters.isNotEmpty()) {
+                return
+            }
+            upstreamDisposable?.dispose()
+            upstreamDisposable = null
+            itemIds.clear()
+        }
+    }
+}
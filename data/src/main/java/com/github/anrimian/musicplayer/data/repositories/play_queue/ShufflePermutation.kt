@@ -0,0 +1,90 @@
+package com.github.anrimian.musicplayer.data.repositories.play_queue
+
+import java.util.Random
+
+/**
+ * Seeded invertible permutation of non-negative int values, negative values are not changed.
+ *
+ * Shuffled order of play queue is the order of stored shuffled positions after permutation,
+ * so new shuffle of queue is a new seed and stored positions are not rewritten.
+ * Zero seed is identity permutation, stored positions are used as they are.
+ *
+ * Balanced Feistel network on 32 bits, cycle walking keeps values in non-negative range.
+ */
+class ShufflePermutation(val seed: Long) {
+
+    fun apply(value: Int): Int {
+        if (value < 0 || seed == IDENTITY_SEED) {
+            return value
+        }
+        var result = value
+        do {
+            result = encrypt(result)
+        } while (result < 0)
+        return result
+    }
+
+    fun invert(value: Int): Int {
+        if (value < 0 || seed == IDENTITY_SEED) {
+            return value
+        }
+        var result = value
+        do {
+            result = decrypt(result)
+        } while (result < 0)
+        return result
+    }
+
+    private fun encrypt(value: Int): Int {
+        var left = value ushr 16
+        var right = value and HALF_MASK
+        for (round in 0 until ROUNDS_COUNT) {
+            val next = left xor roundFunction(right, round)
+            left = right
+            right = next
+        }
+        return (left shl 16) or right
+    }
+
+    private fun decrypt(value: Int): Int {
+        var left = value ushr 16
+        var right = value and HALF_MASK
+        for (round in ROUNDS_COUNT - 1 downTo 0) {
+            val previous = right xor roundFunction(left, round)
+            right = left
+            left = previous
+        }
+        return (left shl 16) or right
+    }
+
+    //splitmix64 finalizer
+    private fun roundFunction(half: Int, round: Int): Int {
+        var x = seed + (round + 1) * GOLDEN_GAMMA + half
+        x = (x xor (x ushr 30)) * MIX_MULTIPLIER_1
+        x = (x xor (x ushr 27)) * MIX_MULTIPLIER_2
+        x = x xor (x ushr 31)
+        return x.toInt() and HALF_MASK
+    }
+
+    companion object {
+        const val IDENTITY_SEED = 0L
+
+        private const val ROUNDS_COUNT = 4
+        private const val HALF_MASK = 0xFFFF
+        private const val GOLDEN_GAMMA = -0x61c8864680b583ebL
+        private const val MIX_MULTIPLIER_1 = -0x40a7b892e31b1a47L
+        private const val MIX_MULTIPLIER_2 = -0x6b2fb644ecceee15L
+
+        /**
+         * @return seed of new shuffle, never identity
+         */
+        @JvmStatic
+        fun newSeed(random: Random): Long {
+            var seed: Long
+            do {
+                seed = random.nextLong()
+            } while (seed == IDENTITY_SEED)
+            return seed
+        }
+    }
+}
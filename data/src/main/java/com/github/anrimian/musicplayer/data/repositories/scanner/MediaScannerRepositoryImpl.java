@@ -2,27 +2,30 @@ package com.github.anrimian.musicplayer.data.repositories.scanner;
 
 import android.database.sqlite.SQLiteCantOpenDatabaseException;
 import android.database.sqlite.SQLiteDiskIOException;
+import android.net.Uri;
 
 import androidx.annotation.NonNull;
-import androidx.collection.LongSparseArray;
 import androidx.core.util.Pair;
 
-import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.LibraryStatsChecker;
 import com.github.anrimian.musicplayer.data.repositories.scanner.files.FileScanner;
+import com.github.anrimian.musicplayer.data.repositories.scanner.storage.compositions.MediaStoreDeltaScanner;
 import com.github.anrimian.musicplayer.data.repositories.scanner.storage.playlists.StoragePlaylistsAnalyzer;
 import com.github.anrimian.musicplayer.data.storage.exceptions.ContentResolverQueryException;
-import com.github.anrimian.musicplayer.data.storage.providers.music.StorageFullComposition;
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageMusicProvider;
 import com.github.anrimian.musicplayer.data.storage.providers.playlists.StoragePlayList;
 import com.github.anrimian.musicplayer.data.storage.providers.playlists.StoragePlayListsProvider;
 import com.github.anrimian.musicplayer.domain.interactors.analytics.Analytics;
+import com.github.anrimian.musicplayer.domain.models.scanner.FileScanPriority;
 import com.github.anrimian.musicplayer.domain.models.scanner.FileScannerState;
 import com.github.anrimian.musicplayer.domain.repositories.LoggerRepository;
 import com.github.anrimian.musicplayer.domain.repositories.MediaScannerRepository;
 import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository;
 import com.github.anrimian.musicplayer.domain.repositories.StateRepository;
+import com.github.anrimian.musicplayer.domain.utils.rx.EventsCoalescer;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import io.reactivex.rxjava3.core.Completable;
@@ -30,46 +33,58 @@ import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Scheduler;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
 
+import static com.github.anrimian.musicplayer.domain.Constants.STORAGE_EVENTS_MAX_LATENCY_MILLIS;
+import static com.github.anrimian.musicplayer.domain.Constants.STORAGE_EVENTS_MIN_EMIT_WINDOW_MILLIS;
+
 public class MediaScannerRepositoryImpl implements MediaScannerRepository {
 
     private static final int RETRY_COUNT = 5;
 
     private final StorageMusicProvider musicProvider;
     private final StoragePlayListsProvider playListsProvider;
-    private final CompositionsDaoWrapper compositionsDao;
     private final StateRepository stateRepository;
     private final SettingsRepository settingsRepository;
-    private final StorageCompositionAnalyzer compositionAnalyzer;
+    private final MediaStoreDeltaScanner deltaScanner;
     private final StoragePlaylistsAnalyzer playlistAnalyzer;
     private final FileScanner fileScanner;
+    private final LibraryStatsChecker statsChecker;
     private final LoggerRepository loggerRepository;
     private final Analytics analytics;
     private final Scheduler scheduler;
 
     private final CompositeDisposable mediaStoreDisposable = new CompositeDisposable();
 
+    //copying of album can produce hundreds of events, merge them to run only one scan
+    private final EventsCoalescer<Uri> mediaStoreEventsCoalescer;
+
     public MediaScannerRepositoryImpl(StorageMusicProvider musicProvider,
                                       StoragePlayListsProvider playListsProvider,
-                                      CompositionsDaoWrapper compositionsDao,
                                       StateRepository stateRepository,
                                       SettingsRepository settingsRepository,
-                                      StorageCompositionAnalyzer compositionAnalyzer,
+                                      MediaStoreDeltaScanner deltaScanner,
                                       StoragePlaylistsAnalyzer playlistAnalyzer,
                                       FileScanner fileScanner,
+                                      LibraryStatsChecker statsChecker,
                                       LoggerRepository loggerRepository,
                                       Analytics analytics,
                                       Scheduler scheduler) {
         this.musicProvider = musicProvider;
         this.playListsProvider = playListsProvider;
-        this.compositionsDao = compositionsDao;
         this.stateRepository = stateRepository;
         this.settingsRepository = settingsRepository;
-        this.compositionAnalyzer = compositionAnalyzer;
+        this.deltaScanner = deltaScanner;
         this.playlistAnalyzer = playlistAnalyzer;
         this.fileScanner = fileScanner;
+        this.statsChecker = statsChecker;
         this.loggerRepository = loggerRepository;
         this.analytics = analytics;
         this.scheduler = scheduler;
+
+        mediaStoreEventsCoalescer = new EventsCoalescer<>(
+                STORAGE_EVENTS_MIN_EMIT_WINDOW_MILLIS,
+                STORAGE_EVENTS_MAX_LATENCY_MILLIS,
+                scheduler
+        );
     }
 
     @Override
@@ -82,14 +97,13 @@ public class MediaScannerRepositoryImpl implements MediaScannerRepository {
     @Override
     public void rescanStorage() {
         try {
-            LongSparseArray<StorageFullComposition> compositions = musicProvider.getCompositions(
+            boolean isScanned = deltaScanner.runFullScan(
                     settingsRepository.getAudioFileMinDurationMillis(),
                     settingsRepository.isShowAllAudioFilesEnabled()
             );
-            if (compositions == null) {
+            if (!isScanned) {
                 return;
             }
-            compositionAnalyzer.applyCompositionsData(compositions);
 
             Map<String, StoragePlayList> playlists;
             if (stateRepository.isStoragePlaylistsImported()) {
@@ -104,6 +118,12 @@ public class MediaScannerRepositoryImpl implements MediaScannerRepository {
             //it should always be called to trigger file cache analyze on app startup
             playlistAnalyzer.applyPlayListsData(playlists);
 
+            //full scan runs on app startup, stats missed by triggers are repaired here
+            int repairedStatsCount = statsChecker.checkAndRepair();
+            if (repairedStatsCount > 0) {
+                analytics.logMessage("library stats repaired, rows: " + repairedStatsCount);
+            }
+
             fileScanner.scheduleFileScanner();
         } catch (Exception e) {
             if (isStandardError(e)) {
@@ -138,7 +158,7 @@ public class MediaScannerRepositoryImpl implements MediaScannerRepository {
     @NonNull
     @Override
     public Completable runStorageAndFileScanner() {
-        return Completable.fromAction(compositionsDao::cleanLastFileScanTime)
+        return Completable.fromAction(fileScanner::startNewScanGeneration)
                 .subscribeOn(scheduler)
                 .andThen(runRescanStorage());
     }
@@ -149,11 +169,17 @@ public class MediaScannerRepositoryImpl implements MediaScannerRepository {
         return fileScanner.getStateObservable();
     }
 
+    @Override
+    public void setFileScanPriority(@NonNull FileScanPriority priority,
+                                    @NonNull List<Long> compositionIds) {
+        fileScanner.setPriorityIds(priority, compositionIds);
+    }
+
     private void subscribeOnMediaStoreChanges() {
-        mediaStoreDisposable.add(getCompositionsObservable()
+        mediaStoreDisposable.add(getMediaStoreChangesObservable()
                 .subscribeOn(scheduler)
                 .observeOn(scheduler)
-                .doOnNext(compositionAnalyzer::applyCompositionsData)
+                .doOnNext(settings -> deltaScanner.runScan(settings.first, settings.second))
                 .doOnNext(o -> fileScanner.scheduleFileScanner())
                 .retry(RETRY_COUNT, this::isStandardError)
                 .onErrorComplete(this::isStandardError)
@@ -161,15 +187,15 @@ public class MediaScannerRepositoryImpl implements MediaScannerRepository {
     }
 
     //update on change settings not working
-    private Observable<LongSparseArray<StorageFullComposition>> getCompositionsObservable() {
+    private Observable<Pair<Long, Boolean>> getMediaStoreChangesObservable() {
         return Observable.combineLatest(
                 settingsRepository.getAudioFileMinDurationMillisObservable(),
                 settingsRepository.getShowAllAudioFilesEnabledObservable(),
                 Pair::new
-        ).switchMap(settings -> musicProvider.getCompositionsObservable(
-                settings.first,
-                settings.second
-        ));
+        ).switchMap(settings -> musicProvider.getStorageChangeObservable()
+                .compose(mediaStoreEventsCoalescer)
+                .map(o -> settings)
+        );
     }
 
     private Completable runRescanStorage() {
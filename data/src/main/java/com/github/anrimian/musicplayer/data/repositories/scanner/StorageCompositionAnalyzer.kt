@@ -5,10 +5,10 @@ import android.os.Environment
 import androidx.collection.LongSparseArray
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper
 import com.github.anrimian.musicplayer.data.database.dao.compositions.StorageCompositionsInserter
-import com.github.anrimian.musicplayer.data.database.dao.ignoredfolders.IgnoredFoldersDao
 import com.github.anrimian.musicplayer.data.models.changes.Change
 import com.github.anrimian.musicplayer.data.repositories.scanner.folders.FolderNode
 import com.github.anrimian.musicplayer.data.repositories.scanner.folders.FolderTreeBuilder
+import com.github.anrimian.musicplayer.data.repositories.scanner.folders.IgnoredFoldersIndex
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageComposition
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageFullComposition
 import com.github.anrimian.musicplayer.data.utils.collections.AndroidCollectionUtils
@@ -16,40 +16,47 @@ import com.github.anrimian.musicplayer.domain.repositories.StateRepository
 import com.github.anrimian.musicplayer.domain.utils.TextUtils
 import com.github.anrimian.musicplayer.domain.utils.validation.DateUtils
 import java.io.File
-import java.util.LinkedList
 
 class StorageCompositionAnalyzer(
     private val compositionsDao: CompositionsDaoWrapper,
-    private val ignoredFoldersDao: IgnoredFoldersDao,
+    private val ignoredFoldersIndex: IgnoredFoldersIndex,
     private val stateRepository: StateRepository,
     private val compositionsInserter: StorageCompositionsInserter,
     private val maxCutDirPath: String = Environment.getExternalStorageDirectory().absolutePath,
 ) {
 
-    private val actualTreeBuilder = FolderTreeBuilder(
-        StorageFullComposition::getRelativePath,
-        StorageFullComposition::getStorageId
-    )
+    private val actualTreeBuilder = FolderTreeBuilder(StorageFullComposition::getRelativePath)
 
     @Synchronized
     fun applyCompositionsData(actualCompositions: LongSparseArray<StorageFullComposition>) {
-        val currentCompositions = compositionsDao.selectAllAsStorageCompositions()
-
-        actualTreeBuilder.createFileTree(actualCompositions)
-            .cutCommonRoots(actualCompositions)
-            .excludeCompositions(actualCompositions, ignoredFoldersDao.getIgnoredFolders())
+        cutCommonRoots(actualCompositions)
+        excludeCompositions(actualCompositions)
 
         val addedCompositions = ArrayList<StorageFullComposition>()
         val deletedCompositions = ArrayList<StorageComposition>()
         val changedCompositions = ArrayList<Change<StorageComposition, StorageFullComposition>>()
-        val hasChanges = AndroidCollectionUtils.processDiffChanges(
-            currentCompositions,
-            actualCompositions,
-            this::hasActualChanges,
-            deletedCompositions::add,
-            addedCompositions::add
-        ) { oldItem, newItem -> changedCompositions.add(Change(oldItem, newItem)) }
-        if (hasChanges) {
+        //current compositions are streamed page by page, only matched actual items are marked
+        val matchedActualItems = BooleanArray(actualCompositions.size())
+        val currentCompositions = compositionsDao.iterateStorageCompositions()
+        while (currentCompositions.hasNext()) {
+            val oldItem = currentCompositions.next()
+            val index = actualCompositions.indexOfKey(oldItem.storageId)
+            if (index < 0) {
+                deletedCompositions.add(oldItem)
+                continue
+            }
+            matchedActualItems[index] = true
+            val newItem = actualCompositions.valueAt(index)
+            if (hasActualChanges(oldItem, newItem)) {
+                changedCompositions.add(Change(oldItem, newItem))
+            }
+        }
+        for (i in matchedActualItems.indices) {
+            if (!matchedActualItems[i]) {
+                addedCompositions.add(actualCompositions.valueAt(i))
+            }
+        }
+        if (addedCompositions.isNotEmpty() || deletedCompositions.isNotEmpty() || changedCompositions.isNotEmpty()) {
             compositionsInserter.applyChanges(
                 addedCompositions,
                 deletedCompositions,
@@ -58,6 +65,83 @@ class StorageCompositionAnalyzer(
         }
     }
 
+    /**
+     * Applies only part of media store which was changed since last scan.
+     * Excluded compositions are removed from [changedCompositions].
+     *
+     * @return false if changes can not be applied partially and full scan is required
+     */
+    @Synchronized
+    fun applyCompositionsDelta(
+        changedCompositions: LongSparseArray<StorageFullComposition>,
+        deletedStorageIds: LongArray,
+    ): Boolean {
+        val rootPath = stateRepository.rootFolderPath
+        val excludedIds = ArrayList<Long>()
+        for (i in 0 until changedCompositions.size()) {
+            val composition = changedCompositions.valueAt(i)
+            if (!rootPath.isNullOrEmpty()) {
+                val relativePath = cutRootPath(composition.relativePath, rootPath)
+                    ?: return false//composition is outside of current root, root must be recalculated
+                composition.relativePath = relativePath
+            }
+            if (ignoredFoldersIndex.isExcluded(composition.relativePath)) {
+                excludedIds.add(composition.storageId)
+            }
+        }
+        for (id in excludedIds) {
+            changedCompositions.remove(id)
+        }
+
+        val requestedIds = LongArray(changedCompositions.size() + excludedIds.size + deletedStorageIds.size)
+        var index = 0
+        for (i in 0 until changedCompositions.size()) {
+            requestedIds[index++] = changedCompositions.keyAt(i)
+        }
+        for (id in excludedIds) {
+            requestedIds[index++] = id
+        }
+        deletedStorageIds.copyInto(requestedIds, index)
+        val currentCompositions = compositionsDao.selectAsStorageCompositions(requestedIds)
+
+        val addedCompositions = ArrayList<StorageFullComposition>()
+        val deletedCompositions = ArrayList<StorageComposition>()
+        val changedItems = ArrayList<Change<StorageComposition, StorageFullComposition>>()
+        AndroidCollectionUtils.forEach(changedCompositions) { newItem ->
+            val oldItem = currentCompositions.get(newItem.storageId)
+            if (oldItem == null) {
+                addedCompositions.add(newItem)
+            } else if (hasActualChanges(oldItem, newItem)) {
+                changedItems.add(Change(oldItem, newItem))
+            }
+        }
+        for (id in excludedIds) {
+            currentCompositions.get(id)?.let(deletedCompositions::add)
+        }
+        for (id in deletedStorageIds) {
+            currentCompositions.get(id)?.let(deletedCompositions::add)
+        }
+
+        if (addedCompositions.isNotEmpty() || deletedCompositions.isNotEmpty() || changedItems.isNotEmpty()) {
+            compositionsInserter.applyChanges(addedCompositions, deletedCompositions, changedItems)
+        }
+        return true
+    }
+
+    private fun cutRootPath(relativePath: String, rootPath: String): String? {
+        val path = relativePath.removePrefix("/")
+        if (!path.startsWith(rootPath)) {
+            return null
+        }
+        if (path.length == rootPath.length) {
+            return ""
+        }
+        if (path[rootPath.length] != '/') {
+            return null
+        }
+        return path.substring(rootPath.length + 1)
+    }
+
     private fun hasActualChanges(
         first: StorageComposition,
         second: StorageFullComposition,
@@ -88,45 +172,32 @@ class StorageCompositionAnalyzer(
                 || first.albumArtist != newAlbumArtist
     }
 
-    private fun FolderNode<Long>.excludeCompositions(
-        compositions: LongSparseArray<StorageFullComposition>,
-        excludedFolderPaths: Array<String>,
-    ) {
-        for (ignoredFolderPath in excludedFolderPaths) {
-            val ignoreNode = findFolder(ignoredFolderPath) ?: continue
-            ignoreNode.parentFolder?.removeFolder(ignoreNode.keyPath)
-            for (id in getAllCompositionsInNode(ignoreNode)) {
-                compositions.remove(id)
-            }
+    private fun excludeCompositions(compositions: LongSparseArray<StorageFullComposition>) {
+        if (!ignoredFoldersIndex.hasIgnoredFolders()) {
+            return
         }
-    }
-
-    private fun FolderNode<Long>.findFolder(path: String): FolderNode<Long>? {
-        var currentNode: FolderNode<Long> = this
-        for (partialPath in path.split("/")) {
-            currentNode = currentNode.getFolder(partialPath)
-                ?: return null//perhaps we can implement find(). Find up and down on tree.
+        val excludedIds = LongArray(compositions.size())
+        var excludedCount = 0
+        for (i in 0 until compositions.size()) {
+            if (ignoredFoldersIndex.isExcluded(compositions.valueAt(i).relativePath)) {
+                excludedIds[excludedCount++] = compositions.keyAt(i)
+            }
         }
-        return currentNode
-    }
-
-    private fun getAllCompositionsInNode(parentNode: FolderNode<Long>): List<Long> {
-        val result = LinkedList(parentNode.files)
-        for (node in parentNode.folders) {
-            result.addAll(getAllCompositionsInNode(node))
+        for (i in 0 until excludedCount) {
+            compositions.remove(excludedIds[i])
         }
-        return result
     }
 
-    private fun FolderNode<Long>.cutCommonRoots(
-        actualCompositions: LongSparseArray<StorageFullComposition>,
-    ): FolderNode<Long> {
+    /**
+     * Relative paths are known since Android R, folder tree is not built there
+     */
+    private fun cutCommonRoots(actualCompositions: LongSparseArray<StorageFullComposition>) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-            return this
+            return
         }
 
         val sbRootPath = StringBuilder()
-        val cutTree = cutUnnecessaryRootNodes(this, sbRootPath)
+        cutUnnecessaryRootNodes(actualTreeBuilder.createFileTree(actualCompositions), sbRootPath)
 
         val startIndex = sbRootPath.length
         if (startIndex > 0) {
@@ -141,13 +212,12 @@ class StorageCompositionAnalyzer(
         }
 
         stateRepository.rootFolderPath = TextUtils.toNullableString(sbRootPath)
-        return cutTree
     }
 
     private fun cutUnnecessaryRootNodes(
-        root: FolderNode<Long>,
+        root: FolderNode,
         sbRootPath: StringBuilder,
-    ): FolderNode<Long> {
+    ): FolderNode {
         var found = root
         //we don't exclude more that external storage directory path
         val dirPath = maxCutDirPath.split(File.separator)
@@ -169,8 +239,8 @@ class StorageCompositionAnalyzer(
         return found
     }
 
-    private fun isEmptyFolderNode(node: FolderNode<Long>): Boolean {
-        return node.folders.size == 1 && node.files.isEmpty()
+    private fun isEmptyFolderNode(node: FolderNode): Boolean {
+        return node.foldersCount == 1 && node.filesCount == 0
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.files
+
+/**
+ * Progress of file scanner inside one scan generation.
+ *
+ * Generation starts when all files must be read again(new scanner version or manual rescan),
+ * file is handled in generation if its last scan date is newer than generation start time.
+ * Cursor is the last regular composition id which was handled in current pass,
+ * failed reads contain attempts count of files which couldn't be read because of temporary errors.
+ */
+data class FileScanCheckpoint(
+    val scannerVersion: Int,
+    val generationStartTime: Long,
+    val cursor: Long,
+    val failedReads: Map<Long, Int>,
+)
@@ -0,0 +1,67 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.files
+
+import android.content.Context
+import com.github.anrimian.musicplayer.data.utils.preferences.SharedPreferencesHelper
+
+class FileScanCheckpointPreferences(context: Context) : FileScanCheckpointStore {
+
+    private val preferences = SharedPreferencesHelper(
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+    )
+
+    override fun load(): FileScanCheckpoint? {
+        val scannerVersion = preferences.getInt(SCANNER_VERSION, NO_VERSION)
+        if (scannerVersion == NO_VERSION) {
+            return null
+        }
+        return FileScanCheckpoint(
+            scannerVersion,
+            preferences.getLong(GENERATION_START_TIME),
+            preferences.getLong(CURSOR),
+            parseFailedReads(preferences.getString(FAILED_READS, ""))
+        )
+    }
+
+    override fun save(checkpoint: FileScanCheckpoint) {
+        preferences.edit()
+            .putInt(SCANNER_VERSION, checkpoint.scannerVersion)
+            .putLong(GENERATION_START_TIME, checkpoint.generationStartTime)
+            .putLong(CURSOR, checkpoint.cursor)
+            .putString(FAILED_READS, formatFailedReads(checkpoint.failedReads))
+            .apply()
+    }
+
+    //format: "id:attempts,id:attempts"
+    private fun parseFailedReads(rawData: String): Map<Long, Int> {
+        val result = HashMap<Long, Int>()
+        if (rawData.isEmpty()) {
+            return result
+        }
+        for (entry in rawData.split(ENTRIES_DIVIDER)) {
+            val values = entry.split(VALUES_DIVIDER)
+            val id = values[0].toLongOrNull() ?: continue
+            val attempts = values.getOrNull(1)?.toIntOrNull() ?: continue
+            result[id] = attempts
+        }
+        return result
+    }
+
+    private fun formatFailedReads(failedReads: Map<Long, Int>): String {
+        return failedReads.entries.joinToString(ENTRIES_DIVIDER) { (id, attempts) ->
+            "$id$VALUES_DIVIDER$attempts"
+        }
+    }
+
+    private companion object {
+        const val PREFERENCES_NAME = "file_scan_checkpoint"
+
+        const val SCANNER_VERSION = "scanner_version"
+        const val GENERATION_START_TIME = "generation_start_time"
+        const val CURSOR = "cursor"
+        const val FAILED_READS = "failed_reads"
+
+        const val NO_VERSION = -1
+        const val ENTRIES_DIVIDER = ","
+        const val VALUES_DIVIDER = ":"
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.files
+
+interface FileScanCheckpointStore {
+
+    fun load(): FileScanCheckpoint?
+
+    fun save(checkpoint: FileScanCheckpoint)
+}
@@ -0,0 +1,84 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.files
+
+/**
+ * Durable checkpoint of file scanner. Handled files are marked in database together with their tags,
+ * journal keeps only position of current pass and files which must be read once more,
+ * so after process death scan continues from the place where it stopped.
+ */
+class FileScanJournal(private val store: FileScanCheckpointStore) {
+
+    private var checkpoint: FileScanCheckpoint? = null
+    private var isLoaded = false
+
+    @Synchronized
+    fun getCheckpoint(): FileScanCheckpoint? {
+        if (!isLoaded) {
+            checkpoint = store.load()
+            isLoaded = true
+        }
+        return checkpoint
+    }
+
+    @Synchronized
+    fun startGeneration(scannerVersion: Int, startTime: Long) {
+        save(FileScanCheckpoint(scannerVersion, startTime, 0L, emptyMap()))
+    }
+
+    /**
+     * Cursor is ignored if new generation was started while batch was scanned
+     */
+    @Synchronized
+    fun setCursor(generationStartTime: Long, cursor: Long) {
+        val current = getCheckpoint() ?: return
+        if (current.generationStartTime != generationStartTime || current.cursor == cursor) {
+            return
+        }
+        save(current.copy(cursor = cursor))
+    }
+
+    @Synchronized
+    fun getFailedIds(): LongArray {
+        val failedReads = getCheckpoint()?.failedReads ?: return LongArray(0)
+        return failedReads.keys.toLongArray()
+    }
+
+    /**
+     * @return true if file should be read again later, false if retry budget is spent
+     */
+    @Synchronized
+    fun onFileReadFailed(id: Long): Boolean {
+        val current = getCheckpoint() ?: return false
+        val attempts = (current.failedReads[id] ?: 0) + 1
+        val isRetryAllowed = attempts < MAX_READ_ATTEMPTS
+                && (current.failedReads.containsKey(id) || current.failedReads.size < MAX_FAILED_FILES)
+        val failedReads = HashMap(current.failedReads)
+        if (isRetryAllowed) {
+            failedReads[id] = attempts
+        } else {
+            failedReads.remove(id)
+        }
+        save(current.copy(failedReads = failedReads))
+        return isRetryAllowed
+    }
+
+    @Synchronized
+    fun onFilesHandled(ids: Collection<Long>) {
+        val current = getCheckpoint() ?: return
+        if (ids.none(current.failedReads::containsKey)) {
+            return
+        }
+        save(current.copy(failedReads = current.failedReads - ids))
+    }
+
+    private fun save(checkpoint: FileScanCheckpoint) {
+        this.checkpoint = checkpoint
+        isLoaded = true
+        store.save(checkpoint)
+    }
+
+    private companion object {
+        const val MAX_READ_ATTEMPTS = 3
+        //ids of failed files are excluded from selection, keep query small
+        const val MAX_FAILED_FILES = 200
+    }
+}
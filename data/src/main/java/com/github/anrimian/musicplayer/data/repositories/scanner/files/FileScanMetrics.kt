@@ -0,0 +1,65 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.files
+
+/**
+ * Collects per-file read latencies of one file scanner run.
+ * Only last [MAX_SAMPLES] latencies are kept for percentiles.
+ */
+class FileScanMetrics {
+
+    private val latencies = LongArray(MAX_SAMPLES)
+    private var samplesCount = 0
+    private var filesCount = 0L
+    private var startTimeMillis = 0L
+    private var lastTimeMillis = 0L
+
+    @Synchronized
+    fun reset(timeMillis: Long) {
+        samplesCount = 0
+        filesCount = 0
+        startTimeMillis = timeMillis
+        lastTimeMillis = timeMillis
+    }
+
+    @Synchronized
+    fun onFileRead(latencyMillis: Long, timeMillis: Long) {
+        latencies[(filesCount % MAX_SAMPLES).toInt()] = latencyMillis
+        filesCount++
+        if (samplesCount < MAX_SAMPLES) {
+            samplesCount++
+        }
+        lastTimeMillis = timeMillis
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        val sorted = latencies.copyOf(samplesCount)
+        sorted.sort()
+        val durationMillis = lastTimeMillis - startTimeMillis
+        val filesPerSecond = if (durationMillis > 0) filesCount * 1000f / durationMillis else 0f
+        return Stats(
+            filesCount,
+            filesPerSecond,
+            percentile(sorted, 50),
+            percentile(sorted, 99)
+        )
+    }
+
+    private fun percentile(sorted: LongArray, percent: Int): Long {
+        if (sorted.isEmpty()) {
+            return 0
+        }
+        val index = ((sorted.size - 1) * percent + 50) / 100
+        return sorted[index]
+    }
+
+    data class Stats(
+        val filesCount: Long,
+        val filesPerSecond: Float,
+        val p50LatencyMillis: Long,
+        val p99LatencyMillis: Long,
+    )
+
+    private companion object {
+        const val MAX_SAMPLES = 2048
+    }
+}
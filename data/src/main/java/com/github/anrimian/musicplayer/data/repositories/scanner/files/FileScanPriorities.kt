@@ -0,0 +1,59 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.files
+
+import com.github.anrimian.musicplayer.domain.models.composition.FullComposition
+import com.github.anrimian.musicplayer.domain.models.scanner.FileScanPriority
+
+/**
+ * Composition ids which should be scanned before others, grouped by priority class.
+ * Each class is replaced entirely by ui, e.g. when visible page changes.
+ */
+class FileScanPriorities {
+
+    private val priorityIds = Array(FileScanPriority.values().size) { LongArray(0) }
+
+    @Synchronized
+    fun setIds(priority: FileScanPriority, ids: List<Long>) {
+        priorityIds[priority.ordinal] = LongArray(minOf(ids.size, MAX_IDS_PER_PRIORITY)) { i -> ids[i] }
+    }
+
+    @Synchronized
+    fun getIds(priority: FileScanPriority): LongArray = priorityIds[priority.ordinal]
+
+    /**
+     * Removes and returns composition with the highest priority, first in list among equal ones
+     */
+    @Synchronized
+    fun pollNext(pending: MutableList<FullComposition>): FullComposition? {
+        if (pending.isEmpty()) {
+            return null
+        }
+        var bestIndex = 0
+        var bestPriority = getPriorityIndex(pending[0].id)
+        for (i in 1 until pending.size) {
+            if (bestPriority == 0) {
+                break
+            }
+            val priority = getPriorityIndex(pending[i].id)
+            if (priority < bestPriority) {
+                bestIndex = i
+                bestPriority = priority
+            }
+        }
+        return pending.removeAt(bestIndex)
+    }
+
+    private fun getPriorityIndex(id: Long): Int {
+        for (i in priorityIds.indices) {
+            if (priorityIds[i].contains(id)) {
+                return i
+            }
+        }
+        return priorityIds.size
+    }
+
+    private companion object {
+        //ids are passed to batch selection query, together with failed ids of scan journal
+        //they must stay below sqlite limit of 999 variables
+        const val MAX_IDS_PER_PRIORITY = 200
+    }
+}
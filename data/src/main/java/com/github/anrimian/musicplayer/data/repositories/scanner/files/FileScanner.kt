@@ -1,37 +1,47 @@
 package com.github.anrimian.musicplayer.data.repositories.scanner.files
 
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper
+import com.github.anrimian.musicplayer.data.database.writes.DbWriteCoordinator
 import com.github.anrimian.musicplayer.data.storage.exceptions.TagReaderException
 import com.github.anrimian.musicplayer.data.storage.source.CompositionSourceEditor
-import com.github.anrimian.musicplayer.domain.Constants.TRIGGER
 import com.github.anrimian.musicplayer.domain.interactors.analytics.Analytics
 import com.github.anrimian.musicplayer.domain.models.composition.FullComposition
 import com.github.anrimian.musicplayer.domain.models.composition.content.CompositionContentSource
 import com.github.anrimian.musicplayer.domain.models.composition.tags.AudioFileInfo
+import com.github.anrimian.musicplayer.domain.models.scanner.FileScanPriority
 import com.github.anrimian.musicplayer.domain.models.scanner.FileScannerState
 import com.github.anrimian.musicplayer.domain.models.scanner.Idle
 import com.github.anrimian.musicplayer.domain.models.scanner.Running
 import com.github.anrimian.musicplayer.domain.repositories.StateRepository
 import com.github.anrimian.musicplayer.domain.repositories.StorageSourceRepository
+import io.reactivex.rxjava3.core.Completable
+import io.reactivex.rxjava3.core.Flowable
 import io.reactivex.rxjava3.core.Maybe
+import io.reactivex.rxjava3.core.Notification
 import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.core.Scheduler
-import io.reactivex.rxjava3.core.Single
+import io.reactivex.rxjava3.functions.BiConsumer
 import io.reactivex.rxjava3.subjects.BehaviorSubject
 import java.io.FileNotFoundException
-import java.util.*
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
 
 class FileScanner(
     private val compositionsDao: CompositionsDaoWrapper,
+    private val writeCoordinator: DbWriteCoordinator,
     private val compositionSourceEditor: CompositionSourceEditor,
     private val stateRepository: StateRepository,
     private val storageSourceRepository: StorageSourceRepository,
     private val analytics: Analytics,
-    private val scheduler: Scheduler
+    private val journal: FileScanJournal,
+    private val scheduler: Scheduler,
+    private val readScheduler: Scheduler,
+    private val readParallelism: Int,
 ) {
 
     private val stateSubject = BehaviorSubject.createDefault<FileScannerState>(Idle)
+    private val metrics = FileScanMetrics()
+    private val priorities = FileScanPriorities()
 
     @Synchronized
     fun scheduleFileScanner() {
@@ -41,51 +51,187 @@ class FileScanner(
         runFileScanner()
     }
 
+    //result is written like results of scan pass, tags and scan time in one transaction
     fun runScanCompositionFile(composition: FullComposition) {
-        scanCompositionFile(composition)
+        getCompositionSource(composition)
+            .flatMap(this::getAudioFileInfo)
+            .doOnError(this::processError)
+            .materialize()
             .subscribeOn(scheduler)
-            .subscribe()
+            .subscribe { result ->
+                //storage doesn't respond, file stays not scanned
+                if (result.error !is TimeoutException) {
+                    onFileHandled(composition, result.value)
+                }
+            }
+    }
+
+    /**
+     * All files will be read again, scan continues from the beginning of the table
+     */
+    fun startNewScanGeneration() {
+        journal.startGeneration(stateRepository.currentFileScannerVersion, System.currentTimeMillis())
     }
 
     fun getStateObservable(): Observable<FileScannerState> = stateSubject.distinctUntilChanged()
 
+    fun getMetrics() = metrics.getStats()
+
+    fun setPriorityIds(priority: FileScanPriority, compositionIds: List<Long>) {
+        priorities.setIds(priority, compositionIds)
+    }
+
     private fun runFileScanner() {
-        val lastCompleteScanTime = if (
-            stateRepository.lastFileScannerVersion == stateRepository.currentFileScannerVersion
-        ) 0L else stateRepository.lastCompleteScanTime
-        compositionsDao.selectNextCompositionsToScan(lastCompleteScanTime, FILES_TO_SCAN_COUNT)
+        metrics.reset(scheduler.now(TimeUnit.MILLISECONDS))
+        openScanGeneration()
+        runScanLoop()
+    }
+
+    private fun openScanGeneration() {
+        val scannerVersion = stateRepository.currentFileScannerVersion
+        val checkpoint = journal.getCheckpoint()
+        if (checkpoint == null) {
+            //no journal yet, keep progress of previous scanner runs
+            val startTime = if (
+                stateRepository.lastFileScannerVersion == scannerVersion
+            ) 0L else stateRepository.lastCompleteScanTime
+            journal.startGeneration(scannerVersion, startTime)
+        } else if (checkpoint.scannerVersion != scannerVersion) {
+            journal.startGeneration(scannerVersion, System.currentTimeMillis())
+        }
+    }
+
+    private fun runScanLoop() {
+        val checkpoint = checkNotNull(journal.getCheckpoint())
+        val playQueueIds = priorities.getIds(FileScanPriority.PLAY_QUEUE)
+        val visibleIds = priorities.getIds(FileScanPriority.VISIBLE_ITEMS)
+        compositionsDao.selectNextCompositionsToScan(
+            checkpoint.generationStartTime,
+            checkpoint.cursor,
+            FILES_TO_SCAN_COUNT,
+            playQueueIds,
+            visibleIds,
+            journal.getFailedIds()
+        )
             .retry(READ_RETRY_TIMES)
-            .flatMap(this::scanCompositionFiles)
+            .flatMap { compositions -> scanCompositionFiles(compositions).toSingleDefault(compositions) }
             .flatMapMaybe { compositions ->
-                if (compositions.size < FILES_TO_SCAN_COUNT) {
-                    onScanCompleted()
-                    return@flatMapMaybe Maybe.empty()
+                if (moveCursor(checkpoint, compositions, playQueueIds, visibleIds)) {
+                    return@flatMapMaybe Maybe.just(compositions)
                 }
-                return@flatMapMaybe Maybe.just(compositions)
+                return@flatMapMaybe retryFailedFiles(checkpoint)
+                    .doOnComplete(this::onScanCompleted)
+                    .toMaybe()
             }
             .doOnError(this::processError)
             .onErrorComplete()//represent db read error, in this case stop scan until next launch
-            .doOnSuccess { runFileScanner() }
+            .doOnSuccess { runScanLoop() }
             .doOnComplete { stateSubject.onNext(Idle) }
             .subscribeOn(scheduler)
             .subscribe()
     }
 
-    private fun scanCompositionFiles(compositions: List<FullComposition>): Single<List<FullComposition>> {
-        return Observable.fromIterable(compositions)
-            .flatMapMaybe { composition ->
-                getCompositionSource(composition)
-                    .doOnSuccess { stateSubject.onNext(Running(composition)) }
-                    .flatMap(this::getAudioFileInfo)
-                    .map { info -> Pair(composition, info) }
+    //next batch is selected only after previous is written, so reading can't outrun db writes
+    private fun scanCompositionFiles(compositions: List<FullComposition>): Completable {
+        return getPrioritizedFlowable(compositions)
+            .flatMapCompletable(this::scanFile, false, readParallelism)
+            .andThen(writeCoordinator.flush())
+            .observeOn(scheduler)
+            .onErrorResumeNext { throwable ->
+                if (throwable is TimeoutException) {
+                    //storage doesn't respond, stop the pass, files are read again on next scanner run
+                    return@onErrorResumeNext Completable.error(throwable)
+                }
+                processError(throwable)
+                Completable.complete()//represent db write error, not written files are selected on next pass
+            }
+    }
+
+    //files are pulled one by one when worker is free, so boosted ids preempt the rest of batch
+    private fun getPrioritizedFlowable(compositions: List<FullComposition>): Flowable<FullComposition> {
+        return Flowable.generate<FullComposition, MutableList<FullComposition>>(
+            { ArrayList(compositions) },
+            BiConsumer { pending, emitter ->
+                val next = priorities.pollNext(pending)
+                if (next == null) emitter.onComplete() else emitter.onNext(next)
             }
-            .collect(::ArrayList, ArrayList<Pair<FullComposition, AudioFileInfo>>::add)
-            .doOnSuccess { scannedCompositions ->
-                compositionsDao.updateCompositionsByFileInfo(scannedCompositions, compositions)
+        )
+    }
+
+    /**
+     * @return false when pass reached the end of table
+     */
+    private fun moveCursor(
+        checkpoint: FileScanCheckpoint,
+        compositions: List<FullComposition>,
+        playQueueIds: LongArray,
+        visibleIds: LongArray,
+    ): Boolean {
+        if (compositions.size == FILES_TO_SCAN_COUNT) {
+            //boosted files are selected out of id order, cursor follows only regular ones
+            val lastRegularId = compositions.asSequence()
+                .map(FullComposition::id)
+                .filter { id -> !playQueueIds.contains(id) && !visibleIds.contains(id) }
+                .maxOrNull()
+            if (lastRegularId != null) {
+                journal.setCursor(checkpoint.generationStartTime, lastRegularId)
             }
-            .map { compositions }
-            .doOnError(this::processError)
-            .onErrorReturnItem(compositions)//represent db write error, in this case run again
+            return true
+        }
+        if (checkpoint.cursor != 0L) {
+            //files behind cursor could be modified during the pass, check them once more
+            journal.setCursor(checkpoint.generationStartTime, 0L)
+            return true
+        }
+        return false
+    }
+
+    //each failed file gets one more attempt per scanner run until its budget is spent
+    private fun retryFailedFiles(checkpoint: FileScanCheckpoint): Completable {
+        val failedIds = journal.getFailedIds()
+        if (failedIds.isEmpty()) {
+            return Completable.complete()
+        }
+        return compositionsDao.selectCompositionsToScan(checkpoint.generationStartTime, failedIds)
+            .doOnSuccess { compositions ->
+                //removed or already scanned files
+                val selectedIds = compositions.map(FullComposition::id).toHashSet()
+                journal.onFilesHandled(failedIds.filter { id -> !selectedIds.contains(id) })
+            }
+            .flatMapCompletable(this::scanCompositionFiles)
+    }
+
+    private fun scanFile(composition: FullComposition): Completable {
+        return getCompositionSource(composition)
+            .doOnSuccess { stateSubject.onNext(Running(composition)) }
+            .flatMapSingle { source -> readAudioFileInfo(source).materialize() }
+            .doOnSuccess { result -> onFileRead(composition, result) }
+            .doOnComplete { onFileHandled(composition, null) }
+            .ignoreElement()
+    }
+
+    private fun onFileRead(composition: FullComposition, result: Notification<AudioFileInfo>) {
+        val error = result.error
+        if (error != null) {
+            if (error is TimeoutException) {
+                //read is not aborted by timeout, don't spend read attempts of files while storage is stuck
+                throw error
+            }
+            processError(error)
+            if (journal.onFileReadFailed(composition.id)) {
+                return
+            }
+        }
+        onFileHandled(composition, result.value)
+    }
+
+    //results of batch are committed together, file is marked as handled only after commit
+    private fun onFileHandled(composition: FullComposition, fileInfo: AudioFileInfo?) {
+        writeCoordinator.write { compositionsDao.applyFileScanResult(composition, fileInfo) }
+            .subscribe(
+                { journal.onFilesHandled(listOf(composition.id)) },
+                this::processError
+            )
     }
 
     private fun onScanCompleted() {
@@ -93,24 +239,30 @@ class FileScanner(
         stateRepository.lastCompleteScanTime = System.currentTimeMillis()
     }
 
-    private fun scanCompositionFile(composition: FullComposition): Single<*> {
-        return Single.just(composition)
-            .flatMapMaybe(this::getCompositionSource)
-            .flatMap(this::getAudioFileInfo)
-            .doOnSuccess { info -> compositionsDao.updateCompositionByFileInfo(composition, info) }
-            .doOnError(this::processError)
-            .map { TRIGGER }
-            .defaultIfEmpty(TRIGGER)
-            .onErrorReturnItem(TRIGGER)
-            .doOnSuccess { compositionsDao.setCompositionLastFileScanTime(composition, Date()) }
+    //read on worker pool, timeout fires on scanner scheduler, so stuck read doesn't stop the scanner itself
+    private fun readAudioFileInfo(source: CompositionContentSource): Maybe<AudioFileInfo> {
+        return Maybe.defer {
+            val startTime = scheduler.now(TimeUnit.MILLISECONDS)
+            getAudioFileInfo(source)
+                .doFinally {
+                    val endTime = scheduler.now(TimeUnit.MILLISECONDS)
+                    metrics.onFileRead(endTime - startTime, endTime)
+                }
+        }
     }
 
     private fun getAudioFileInfo(source: CompositionContentSource): Maybe<AudioFileInfo> {
         return compositionSourceEditor.getAudioFileInfo(source)
+            .subscribeOn(readScheduler)
+            .observeOn(scheduler)
             .timeout(READ_FILE_TIMEOUT_SECONDS, TimeUnit.SECONDS, scheduler)
-            .retry(READ_RETRY_TIMES)
-            .doOnError(this::processError)
-            .onErrorComplete()//if we can't read the file - ignore and set last scan time anyway
+            //timed out read still holds its worker, next attempt would wait for the same storage
+            .retry(READ_RETRY_TIMES) { throwable -> throwable !is TimeoutException }
+            .toMaybe()
+            .onErrorResumeNext { throwable ->
+                //file is missing or broken, there is no point to read it again - set last scan time anyway
+                if (isPermanentReadError(throwable)) Maybe.empty() else Maybe.error(throwable)
+            }
     }
 
     private fun getCompositionSource(composition: FullComposition): Maybe<CompositionContentSource> {
@@ -118,8 +270,12 @@ class FileScanner(
             .observeOn(scheduler)
     }
 
+    private fun isPermanentReadError(throwable: Throwable): Boolean {
+        return throwable is FileNotFoundException || throwable is TagReaderException
+    }
+
     private fun processError(throwable: Throwable) {
-        if (throwable is FileNotFoundException || throwable is TagReaderException) {
+        if (isPermanentReadError(throwable)) {
             return
         }
         analytics.processNonFatalError(throwable)
@@ -2,38 +2,54 @@ package com.github.anrimian.musicplayer.data.repositories.scanner.folders;
 
 import androidx.annotation.NonNull;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-public class FolderNode<V> {
+/**
+ * Folder of file tree with ids of files. Children are kept in array and searched by path
+ * segment without substring allocation, only wide folders get hash index.
+ */
+public class FolderNode {
 
-    private final LinkedHashMap<String, FolderNode<V>> folders = new LinkedHashMap<>();
+    private static final FolderNode[] NO_FOLDERS = new FolderNode[0];
+    private static final long[] NO_FILES = new long[0];
+    private static final int MIN_INDEXED_FOLDERS_COUNT = 16;
 
     @Nullable
     private final String key;
-    private final List<V> files = new LinkedList<>();
 
     @Nullable
-    private FolderNode<V> parent;
+    private FolderNode parent;
+
+    private FolderNode[] folders = NO_FOLDERS;
+    private int foldersCount;
+    @Nullable
+    private HashMap<String, FolderNode> foldersIndex;
+
+    private long[] files = NO_FILES;
+    private int filesCount;
 
     public FolderNode(@Nullable String key) {
         this.key = key;
     }
 
     @Nullable
-    public FolderNode<V> getParentFolder() {
+    public FolderNode getParentFolder() {
         return parent;
     }
 
     @Nonnull
-    public Collection<FolderNode<V>> getFolders() {
-        return folders.values();
+    public List<FolderNode> getFolders() {
+        return Arrays.asList(folders).subList(0, foldersCount);
+    }
+
+    public int getFoldersCount() {
+        return foldersCount;
     }
 
     @Nullable
@@ -41,74 +57,139 @@ public class FolderNode<V> {
         return key;
     }
 
-    public List<V> getFiles() {
-        return files;
-    }
-
-    public void addFile(V file) {
-        files.add(file);
+    public long[] getFiles() {
+        return Arrays.copyOf(files, filesCount);
     }
 
-    public void addFiles(List<V> files) {
-        this.files.addAll(files);
+    public int getFilesCount() {
+        return filesCount;
     }
 
-    public void addFolders(List<FolderNode<V>> newNodes) {
-        for (FolderNode<V> newNode : newNodes) {
-            newNode.parent = this;
-            folders.put(newNode.getKeyPath(), newNode);
+    public void addFile(long id) {
+        if (filesCount == files.length) {
+            files = Arrays.copyOf(files, Math.max(4, filesCount * 2));
         }
+        files[filesCount++] = id;
     }
 
-    public void addFolder(FolderNode<V> node) {
+    public void addFolder(FolderNode node) {
         node.parent = this;
-        folders.put(node.getKeyPath(), node);
-    }
-
-    public void removeFolders(List<String> keys) {
-        List<FolderNode<V>> removedNodes = new ArrayList<>();
-        for (String key: keys) {
-            FolderNode<V> removedNode = folders.remove(key);
-            if (removedNode != null) {
-                removedNodes.add(removedNode);
-            }
+        if (foldersCount == folders.length) {
+            folders = Arrays.copyOf(folders, Math.max(4, foldersCount * 2));
         }
-        if (!removedNodes.isEmpty()) {
-            clearEmptyNodeIfNeed(this);
+        folders[foldersCount++] = node;
+        if (foldersIndex != null) {
+            foldersIndex.put(node.key, node);
+        } else if (foldersCount >= MIN_INDEXED_FOLDERS_COUNT) {
+            foldersIndex = new HashMap<>();
+            for (int i = 0; i < foldersCount; i++) {
+                foldersIndex.put(folders[i].key, folders[i]);
+            }
         }
     }
 
     public void removeFolder(String key) {
-        FolderNode<V> removedNode = folders.remove(key);
-        if (removedNode != null) {
-            clearEmptyNodeIfNeed(this);
+        int index = indexOfFolder(key, 0, key.length());
+        if (index == -1) {
+            return;
+        }
+        System.arraycopy(folders, index + 1, folders, index, foldersCount - index - 1);
+        folders[--foldersCount] = null;
+        if (foldersIndex != null) {
+            foldersIndex.remove(key);
         }
+        clearEmptyNodeIfNeed(this);
     }
 
     @Nullable
-    public FolderNode<V> getFolder(String key) {
-        return folders.get(key);
+    public FolderNode getFolder(String key) {
+        return getFolder(key, 0, key.length());
     }
 
-    public FolderNode<V> getFirstFolder() {
-        return folders.entrySet().iterator().next().getValue();
+    /**
+     * Finds folder by relative path, one lookup per path segment
+     */
+    @Nullable
+    public FolderNode findFolder(String path) {
+        return findFolder(path, null);
     }
 
-    public void setParent(@Nullable FolderNode<V> parent) {
-        this.parent = parent;
+    public FolderNode getFirstFolder() {
+        return folders[0];
     }
 
-    private void updateChildKey(FolderNode<V> node, String newKey) {
-        folders.remove(node.getKeyPath());
-        folders.put(newKey, node);
+    /**
+     * @param segmentsPool if not null, missing folders are created with names from pool
+     */
+    @Nullable
+    FolderNode findFolder(String path, @Nullable Map<String, String> segmentsPool) {
+        //same segments as path.split("/"), trailing separators are ignored
+        int length = path.length();
+        while (length > 0 && path.charAt(length - 1) == '/') {
+            length--;
+        }
+        if (length == 0) {
+            return this;
+        }
+        FolderNode target = this;
+        int start = 0;
+        while (true) {
+            int end = path.indexOf('/', start);
+            if (end == -1 || end > length) {
+                end = length;
+            }
+            FolderNode child = target.getFolder(path, start, end);
+            if (child == null) {
+                if (segmentsPool == null) {
+                    return null;
+                }
+                child = new FolderNode(internSegment(segmentsPool, path.substring(start, end)));
+                target.addFolder(child);
+            }
+            target = child;
+            if (end == length) {
+                return target;
+            }
+            start = end + 1;
+        }
+    }
+
+    @Nullable
+    private FolderNode getFolder(String path, int start, int end) {
+        if (foldersIndex != null) {
+            return foldersIndex.get(path.substring(start, end));
+        }
+        int index = indexOfFolder(path, start, end);
+        return index == -1 ? null : folders[index];
+    }
+
+    private int indexOfFolder(String path, int start, int end) {
+        int length = end - start;
+        for (int i = 0; i < foldersCount; i++) {
+            String folderKey = folders[i].key;
+            if (folderKey != null
+                    && folderKey.length() == length
+                    && path.regionMatches(start, folderKey, 0, length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String internSegment(Map<String, String> segmentsPool, String segment) {
+        String existSegment = segmentsPool.get(segment);
+        if (existSegment != null) {
+            return existSegment;
+        }
+        segmentsPool.put(segment, segment);
+        return segment;
     }
 
-    private void clearEmptyNodeIfNeed(FolderNode<V> node) {
-        if (node.getFolders().isEmpty() && node.files.isEmpty()) {
-            FolderNode<V> parent = node.getParentFolder();
-            if (parent != null) {
-                parent.removeFolder(node.getKeyPath());
-                clearEmptyNodeIfNeed(parent);
+    private void clearEmptyNodeIfNeed(FolderNode node) {
+        if (node.foldersCount == 0 && node.filesCount == 0) {
+            FolderNode parent = node.getParentFolder();
+            if (parent != null && node.key != null) {
+                parent.removeFolder(node.key);
             }
         }
     }
@@ -118,8 +199,8 @@ public class FolderNode<V> {
     public String toString() {
         return "Node{" +
                 "key=" + key +
-                ", files=" + files +
-                ", nodesCount=" + folders.size() +
+                ", files=" + Arrays.toString(getFiles()) +
+                ", nodesCount=" + foldersCount +
                 '}';
     }
 
@@ -128,7 +209,7 @@ public class FolderNode<V> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        FolderNode<?> that = (FolderNode<?>) o;
+        FolderNode that = (FolderNode) o;
 
         return key != null ? key.equals(that.key) : that.key == null;
     }
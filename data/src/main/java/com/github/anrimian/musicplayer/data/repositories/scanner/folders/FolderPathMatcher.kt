@@ -0,0 +1,77 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.folders
+
+/**
+ * Prefix tree of folder paths. Path matches if it is equal to one of added paths or lies inside of it,
+ * check costs one lookup per path segment regardless of count of added paths.
+ */
+class FolderPathMatcher {
+
+    private val root = Node()
+
+    fun isEmpty() = root.children.isEmpty()
+
+    fun add(path: String) {
+        if (path.isEmpty()) {
+            return
+        }
+        var node = root
+        var start = 0
+        while (start <= path.length) {
+            val end = getSegmentEnd(path, start)
+            node = node.children.getOrPut(path.substring(start, end), ::Node)
+            start = end + 1
+        }
+        node.isTerminal = true
+    }
+
+    fun remove(path: String) {
+        if (path.isEmpty()) {
+            return
+        }
+        val nodes = ArrayList<Node>()
+        val segments = ArrayList<String>()
+        var node = root
+        var start = 0
+        while (start <= path.length) {
+            val end = getSegmentEnd(path, start)
+            val segment = path.substring(start, end)
+            nodes.add(node)
+            segments.add(segment)
+            node = node.children[segment] ?: return
+            start = end + 1
+        }
+        node.isTerminal = false
+        //remove branch which doesn't lead to other paths
+        for (i in nodes.indices.reversed()) {
+            if (node.isTerminal || node.children.isNotEmpty()) {
+                return
+            }
+            nodes[i].children.remove(segments[i])
+            node = nodes[i]
+        }
+    }
+
+    fun matches(path: String): Boolean {
+        var node = root
+        var start = 0
+        while (start <= path.length) {
+            val end = getSegmentEnd(path, start)
+            node = node.children[path.substring(start, end)] ?: return false
+            if (node.isTerminal) {
+                return true
+            }
+            start = end + 1
+        }
+        return false
+    }
+
+    private fun getSegmentEnd(path: String, start: Int): Int {
+        val end = path.indexOf('/', start)
+        return if (end == -1) path.length else end
+    }
+
+    private class Node {
+        val children = HashMap<String, Node>()
+        var isTerminal = false
+    }
+}
@@ -2,78 +2,47 @@ package com.github.anrimian.musicplayer.data.repositories.scanner.folders;
 
 import androidx.collection.LongSparseArray;
 
-import com.github.anrimian.musicplayer.domain.utils.ListUtils;
 import com.github.anrimian.musicplayer.domain.utils.TextUtils;
 import com.github.anrimian.musicplayer.domain.utils.functions.Mapper;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
-import io.reactivex.rxjava3.core.Observable;
-
-public class FolderTreeBuilder<F, N> {
+/**
+ * Builds file tree in one pass over files, keys of map are used as file ids.
+ * Equal folder names share one string instance across the tree.
+ */
+public class FolderTreeBuilder<F> {
 
     private final Mapper<F, String> pathFunc;
-    private final Mapper<F, N> valueFunc;
 
-    public FolderTreeBuilder(Mapper<F, String> pathFunc, Mapper<F, N> valueFunc) {
+    public FolderTreeBuilder(Mapper<F, String> pathFunc) {
         this.pathFunc = pathFunc;
-        this.valueFunc = valueFunc;
-    }
-
-    public FolderNode<N> createFileTree(LongSparseArray<F> map) {
-        return createFileTree(fromSparseArray(map));
-    }
-
-    public FolderNode<N> createFileTree(Observable<F> objectsObservable) {
-        FolderNode<N> rootFolder = new FolderNode<>(null);
-        objectsObservable.groupBy(pathFunc::map)
-                .doOnNext(group -> group.collect(ArrayList<F>::new, List::add)
-                        .map(this::toValueList)
-                        .doOnSuccess(list -> addValuesToFolder(rootFolder, group.getKey(), list))
-                        .subscribe())
-                .subscribe();
-        return rootFolder;
     }
 
-    private <T> Observable<T> fromSparseArray(LongSparseArray<T> sparseArray) {
-        return Observable.create(emitter -> {
-            for(int i = 0, size = sparseArray.size(); i < size; i++) {
-                T existValue = sparseArray.valueAt(i);
-                emitter.onNext(existValue);
+    public FolderNode createFileTree(LongSparseArray<F> map) {
+        FolderNode rootFolder = new FolderNode(null);
+        Map<String, String> segmentsPool = new HashMap<>();
+
+        //files of one folder usually go in a row, so repeated path lookups are skipped
+        String lastPath = null;
+        FolderNode lastFolder = rootFolder;
+        for (int i = 0, size = map.size(); i < size; i++) {
+            String path = pathFunc.map(map.valueAt(i));
+            if (lastPath == null || !lastPath.equals(path)) {
+                lastFolder = getNode(rootFolder, path, segmentsPool);
+                lastPath = path;
             }
-            emitter.onComplete();
-        });
-    }
-
-    private List<N> toValueList(List<F> list) {
-        return ListUtils.mapList(list, valueFunc::map);
-    }
-
-    private void addValuesToFolder(FolderNode<N> root,
-                                   String path,
-                                   List<N> values) {
-        FolderNode<N> parent = getNode(root, path);
-        parent.addFiles(values);
+            lastFolder.addFile(map.keyAt(i));
+        }
+        return rootFolder;
     }
 
-    private FolderNode<N> getNode(FolderNode<N> root, String path) {
+    private FolderNode getNode(FolderNode root, String path, Map<String, String> segmentsPool) {
         if (TextUtils.isEmpty(path)) {
             return root;
         }
-
-        FolderNode<N> target = root;
-
-        String[] partialPaths = path.split("/");
-        for (String partialPath : partialPaths) {
-            FolderNode<N> child = target.getFolder(partialPath);
-            if (child == null) {
-                child = new FolderNode<>(partialPath);
-                target.addFolder(child);
-            }
-            target = child;
-        }
-        return target;
+        return root.findFolder(path, segmentsPool);
     }
 
 }
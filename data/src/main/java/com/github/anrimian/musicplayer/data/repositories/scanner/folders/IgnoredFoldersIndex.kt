@@ -0,0 +1,43 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.folders
+
+import com.github.anrimian.musicplayer.data.database.dao.ignoredfolders.IgnoredFoldersDao
+
+/**
+ * Matcher of ignored folders, it is read from database once and then updated on each change,
+ * so scanner doesn't query ignored folders on each run
+ */
+class IgnoredFoldersIndex(private val ignoredFoldersDao: IgnoredFoldersDao) {
+
+    private var matcher: FolderPathMatcher? = null
+
+    /**
+     * @param relativePath path of composition folder relative to library root
+     */
+    @Synchronized
+    fun isExcluded(relativePath: String) = getMatcher().matches(relativePath)
+
+    @Synchronized
+    fun hasIgnoredFolders() = !getMatcher().isEmpty()
+
+    @Synchronized
+    fun onFolderIgnored(relativePath: String) {
+        matcher?.add(relativePath)
+    }
+
+    @Synchronized
+    fun onFolderRestored(relativePath: String) {
+        matcher?.remove(relativePath)
+    }
+
+    private fun getMatcher(): FolderPathMatcher {
+        var matcher = matcher
+        if (matcher == null) {
+            matcher = FolderPathMatcher()
+            for (path in ignoredFoldersDao.getIgnoredFolders()) {
+                matcher.add(path)
+            }
+            this.matcher = matcher
+        }
+        return matcher
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.storage.compositions
+
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper
+import com.github.anrimian.musicplayer.data.repositories.scanner.StorageCompositionAnalyzer
+import com.github.anrimian.musicplayer.data.storage.providers.music.StorageMusicProvider
+
+/**
+ * Reads from media store only compositions which were added, changed or removed since last scan.
+ * Changes are detected by volume versions (generation since android 11, modify date below)
+ * and by diff of media store ids with stored ids.
+ * Full scan runs as a fallback and periodically to reconcile anything delta could miss.
+ * Below android 11 modify date misses moved and renamed files and copies with preserved modify
+ * date, so full scan runs more often there.
+ */
+class MediaStoreDeltaScanner(
+    private val musicProvider: StorageMusicProvider,
+    private val compositionsDao: CompositionsDaoWrapper,
+    private val compositionAnalyzer: StorageCompositionAnalyzer,
+    private val scanState: MediaStoreScanState,
+) {
+
+    //media store ids which are present in storage, but skipped by analyzer(e.g. ignored folders)
+    //kept in memory only: full scan on app start and each full scan reset them
+    private val knownExcludedIds = HashSet<Long>()
+
+    /**
+     * @return false if media store is not available
+     */
+    @Synchronized
+    fun runFullScan(minAudioDurationMillis: Long, showAllAudioFiles: Boolean): Boolean {
+        val versions = musicProvider.getMediaStoreVersions()
+        val compositions = musicProvider.getCompositions(
+            minAudioDurationMillis,
+            showAllAudioFiles
+        ) ?: return false
+        compositionAnalyzer.applyCompositionsData(compositions)
+
+        knownExcludedIds.clear()
+        scanState.onFullScanCompleted(
+            versions,
+            getScanSettingsKey(minAudioDurationMillis, showAllAudioFiles),
+            System.currentTimeMillis()
+        )
+        return true
+    }
+
+    @Synchronized
+    fun runScan(minAudioDurationMillis: Long, showAllAudioFiles: Boolean) {
+        val lastVersions = scanState.getVolumeVersions()
+        val versions = musicProvider.getMediaStoreVersions()
+        val settingsKey = getScanSettingsKey(minAudioDurationMillis, showAllAudioFiles)
+        if (lastVersions == null || isFullScanRequired(lastVersions, versions, settingsKey)) {
+            runFullScan(minAudioDurationMillis, showAllAudioFiles)
+            return
+        }
+
+        val actualIds = musicProvider.getStorageIds(
+            minAudioDurationMillis,
+            showAllAudioFiles
+        ) ?: return
+        val changedCompositions = musicProvider.getCompositionsChangedSince(
+            minAudioDurationMillis,
+            showAllAudioFiles,
+            lastVersions
+        )
+        val currentIds = compositionsDao.selectStorageIds()
+
+        val addedIds = subtractSorted(actualIds, currentIds)
+            .filter { id -> changedCompositions.get(id) == null && !knownExcludedIds.contains(id) }
+            .toLongArray()
+        if (addedIds.size > MAX_DELTA_ADDED_COUNT) {
+            runFullScan(minAudioDurationMillis, showAllAudioFiles)
+            return
+        }
+        val deletedIds = subtractSorted(currentIds, actualIds)
+
+        if (addedIds.isNotEmpty()) {
+            changedCompositions.putAll(
+                musicProvider.getCompositions(minAudioDurationMillis, showAllAudioFiles, addedIds)
+            )
+        }
+        if (!compositionAnalyzer.applyCompositionsDelta(changedCompositions, deletedIds)) {
+            runFullScan(minAudioDurationMillis, showAllAudioFiles)
+            return
+        }
+        for (id in addedIds) {
+            if (changedCompositions.get(id) == null) {
+                knownExcludedIds.add(id)
+            }
+        }
+        scanState.setVolumeVersions(versions)
+    }
+
+    private fun isFullScanRequired(
+        lastVersions: Map<String, Long>,
+        versions: Map<String, Long>,
+        settingsKey: String,
+    ): Boolean {
+        if (settingsKey != scanState.getScanSettings()) {
+            return true
+        }
+        val fullScanInterval = if (musicProvider.isMediaStoreGenerationSupported()) {
+            FULL_SCAN_INTERVAL_MILLIS
+        } else {
+            LEGACY_FULL_SCAN_INTERVAL_MILLIS
+        }
+        val timeSinceFullScan = System.currentTimeMillis() - scanState.getLastFullScanTime()
+        if (timeSinceFullScan < 0 || timeSinceFullScan > fullScanInterval) {
+            return true
+        }
+        if (lastVersions.keys != versions.keys) {
+            return true
+        }
+        for ((volume, version) in versions) {
+            //media store was recreated
+            if (version < lastVersions.getValue(volume)) {
+                return true
+            }
+        }
+        return false
+    }
+
+    private fun getScanSettingsKey(minAudioDurationMillis: Long, showAllAudioFiles: Boolean) =
+        "$minAudioDurationMillis:$showAllAudioFiles"
+
+    companion object {
+        const val FULL_SCAN_INTERVAL_MILLIS = 24 * 60 * 60 * 1000L
+        const val LEGACY_FULL_SCAN_INTERVAL_MILLIS = 60 * 60 * 1000L
+        const val MAX_DELTA_ADDED_COUNT = 5000
+
+        /**
+         * @return items of sorted [from] array which are not present in sorted [what] array
+         */
+        fun subtractSorted(from: LongArray, what: LongArray): LongArray {
+            val result = LongArray(from.size)
+            var count = 0
+            var j = 0
+            for (value in from) {
+                while (j < what.size && what[j] < value) {
+                    j++
+                }
+                if (j >= what.size || what[j] != value) {
+                    result[count++] = value
+                }
+            }
+            return result.copyOf(count)
+        }
+    }
+}
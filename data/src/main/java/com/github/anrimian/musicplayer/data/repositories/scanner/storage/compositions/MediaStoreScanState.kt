@@ -0,0 +1,49 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.storage.compositions
+
+import android.content.Context
+import com.github.anrimian.musicplayer.data.utils.preferences.SharedPreferencesHelper
+import org.json.JSONObject
+
+/**
+ * Keeps media store volume versions which were observed on last successful scan
+ */
+class MediaStoreScanState(context: Context) {
+
+    private val preferences = SharedPreferencesHelper(
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+    )
+
+    fun getVolumeVersions(): Map<String, Long>? {
+        val rawData = preferences.getString(VOLUME_VERSIONS) ?: return null
+        val json = JSONObject(rawData)
+        val result = HashMap<String, Long>()
+        for (key in json.keys()) {
+            result[key] = json.getLong(key)
+        }
+        return result
+    }
+
+    fun setVolumeVersions(versions: Map<String, Long>) {
+        preferences.putString(VOLUME_VERSIONS, JSONObject(versions).toString())
+    }
+
+    fun getScanSettings(): String? = preferences.getString(SCAN_SETTINGS)
+
+    fun getLastFullScanTime() = preferences.getLong(LAST_FULL_SCAN_TIME)
+
+    fun onFullScanCompleted(versions: Map<String, Long>, scanSettings: String, time: Long) {
+        preferences.edit()
+            .putString(VOLUME_VERSIONS, JSONObject(versions).toString())
+            .putString(SCAN_SETTINGS, scanSettings)
+            .putLong(LAST_FULL_SCAN_TIME, time)
+            .apply()
+    }
+
+    private companion object {
+        const val PREFERENCES_NAME = "media_store_scan_state"
+
+        const val VOLUME_VERSIONS = "volume_versions"
+        const val SCAN_SETTINGS = "scan_settings"
+        const val LAST_FULL_SCAN_TIME = "last_full_scan_time"
+    }
+}
@@ -48,19 +48,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Observable;
-import io.reactivex.rxjava3.core.Single;
 
 public class StorageMusicProvider {
 
+    private static final String EXTERNAL_VOLUME_NAME = "external";
+    private static final int IDS_QUERY_CHUNK_SIZE = 500;
+
     private final ContentResolver contentResolver;
     private final Context context;
     private final StorageAlbumsProvider albumsProvider;
@@ -82,26 +86,23 @@ public class StorageMusicProvider {
         isContentObserverEnabled = enabled;
     }
 
-    public Observable<LongSparseArray<StorageFullComposition>> getCompositionsObservable(
-            long minAudioDurationMillis,
-            boolean showAllAudioFiles
-    ) {
-        Observable<Object> storageChangeObservable = RxContentObserver.getObservable(contentResolver, unsafeGetStorageUri());
+    /**
+     * Emits raw change events, callers are expected to coalesce them
+     */
+    public Observable<Uri> getStorageChangeObservable() {
+        Observable<Uri> storageChangeObservable = RxContentObserver.getUriObservable(contentResolver, unsafeGetStorageUri());
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             //on new composition content observer not called on android 10
             //but for some reason content observer is called for playlist items when new file added
             //so we create observer for non-existing playlist(!) and it works
 
-            Observable<Object> playListChangeObservable = RxContentObserver.getObservable(
+            Observable<Uri> playListChangeObservable = RxContentObserver.getUriObservable(
                     contentResolver,
                     MediaStore.Audio.Playlists.Members.getContentUri("external", 0)
             );
-            //maybe filter often events?
             storageChangeObservable = Observable.merge(storageChangeObservable, playListChangeObservable);
         }
-        return storageChangeObservable
-                .filter(o -> isContentObserverEnabled)
-                .flatMapSingle(o -> getCompositionsSingle(minAudioDurationMillis, showAllAudioFiles));
+        return storageChangeObservable.filter(o -> isContentObserverEnabled);
     }
 
     @Nullable
@@ -109,104 +110,134 @@ public class StorageMusicProvider {
             long minAudioDurationMillis,
             boolean showAllAudioFiles
     ) {
-        StringArrayBuilder queryBuilder = new StringArrayBuilder(new String[] {
-                Media.ARTIST,
-                Media.TITLE,
-                Media.DISPLAY_NAME,
-                Media.DURATION,
-                Media.SIZE,
-                Media._ID,
-                Media.ALBUM_ID,
-                Media.DATE_ADDED,
-                Media.DATE_MODIFIED
-        });
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-            queryBuilder.append(Media.RELATIVE_PATH);
-        } else {
-            queryBuilder.append(Media.DATA);
-        }
-        String[] query = queryBuilder.build();
-
-        //check how it works
-        List<Uri> uris = getStorageUris();
-        if (uris.isEmpty()) {
+        List<String> volumes = getStorageVolumes();
+        if (volumes.isEmpty()) {
             return null;
         }
+        String selection = getCompositionsSelection(showAllAudioFiles);
+        String[] args = getCompositionsSelectionArgs(minAudioDurationMillis, showAllAudioFiles);
 
-//        Uri uri;
-//        try {
-//            uri = getStorageUri();//try to select all uri's from all available volumes
-//        } catch (UnavailableMediaStoreException e) {
-//            return null;
-//        }
+        LongSparseArray<StorageFullComposition> compositions = new LongSparseArray<>();
+        LongSparseArray<StorageAlbum> albums = null;
+        for (String volume: volumes) {
+            albums = queryCompositions(getVolumeUri(volume), selection, args, albums, compositions);
+        }
+        return compositions;
+    }
 
-        StringBuilder selectionBuilder = new StringBuilder();
-        //also display unsupported or corrupted compositions
-        selectionBuilder.append("(" + Media.DURATION + " >= ? OR " + Media.DURATION + " IS NULL)");
-        if (!showAllAudioFiles) {
-            selectionBuilder.append(" AND ");
-            selectionBuilder.append(Media.IS_MUSIC);
-            selectionBuilder.append(" = ?");
+    /**
+     * Returns current version of each available media store volume.
+     * Since android 11 it is media store generation, below - current time in seconds
+     * which is compared with {@link Media#DATE_MODIFIED}
+     */
+    public Map<String, Long> getMediaStoreVersions() {
+        Map<String, Long> versions = new HashMap<>();
+        for (String volume: getStorageVolumes()) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                versions.put(volume, MediaStore.getGeneration(context, volume));
+            } else {
+                versions.put(volume, System.currentTimeMillis() / 1000L);
+            }
         }
+        return versions;
+    }
 
-        String selection = selectionBuilder.toString();
-        String[] projection;
-        if (showAllAudioFiles) {
-            projection = new String[] { String.valueOf(minAudioDurationMillis) };
-        } else {
-            projection = new String[] { String.valueOf(minAudioDurationMillis), String.valueOf(1) };
+    /**
+     * Below android 11 versions are modify dates, they don't change when file is moved or renamed
+     * or when copy keeps modify date of original file
+     */
+    public boolean isMediaStoreGenerationSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+    }
+
+    /**
+     * @return sorted ids of all compositions matching settings, without reading other columns
+     */
+    @Nullable
+    public long[] getStorageIds(long minAudioDurationMillis, boolean showAllAudioFiles) {
+        List<String> volumes = getStorageVolumes();
+        if (volumes.isEmpty()) {
+            return null;
         }
+        String[] query = { Media._ID };
+        String selection = getCompositionsSelection(showAllAudioFiles);
+        String[] args = getCompositionsSelectionArgs(minAudioDurationMillis, showAllAudioFiles);
 
-        LongSparseArray<StorageFullComposition> compositions = new LongSparseArray<>();
-        for (Uri uri: uris) {
-            try (Cursor cursor = query(uri, query, selection, projection, null)) {
+        long[] ids = new long[0];
+        int count = 0;
+        for (String volume: volumes) {
+            try (Cursor cursor = query(getVolumeUri(volume), query, selection, args, null)) {
                 if (cursor == null) {
                     continue;
                 }
+                int idIndex = getColumnIndex(cursor, Media._ID);
+                ids = Arrays.copyOf(ids, count + cursor.getCount());
+                while (MediaStoreUtils.moveToNext(cursor) && count < ids.length) {
+                    ids[count++] = cursor.getLong(idIndex);
+                }
+            }
+        }
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+        return ids;
+    }
 
-                LongSparseArray<StorageAlbum> albums = albumsProvider.getAlbums();
+    /**
+     * @param versions volume versions received from {@link #getMediaStoreVersions()}
+     * @return compositions which were modified after given versions
+     */
+    public LongSparseArray<StorageFullComposition> getCompositionsChangedSince(
+            long minAudioDurationMillis,
+            boolean showAllAudioFiles,
+            Map<String, Long> versions
+    ) {
+        String versionColumn;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            versionColumn = MediaStore.MediaColumns.GENERATION_MODIFIED + " > ?";
+        } else {
+            versionColumn = Media.DATE_MODIFIED + " >= ?";
+        }
+        String selection = getCompositionsSelection(showAllAudioFiles) + " AND " + versionColumn;
+        String[] baseArgs = getCompositionsSelectionArgs(minAudioDurationMillis, showAllAudioFiles);
 
-                CursorWrapper cursorWrapper = new CursorWrapper(cursor);
+        LongSparseArray<StorageFullComposition> compositions = new LongSparseArray<>();
+        LongSparseArray<StorageAlbum> albums = null;
+        for (String volume: getStorageVolumes()) {
+            Long version = versions.get(volume);
+            if (version == null) {
+                continue;
+            }
+            String[] args = Arrays.copyOf(baseArgs, baseArgs.length + 1);
+            args[baseArgs.length] = String.valueOf(version);
+            albums = queryCompositions(getVolumeUri(volume), selection, args, albums, compositions);
+        }
+        return compositions;
+    }
 
-                int artistIndex = getColumnIndex(cursor, Media.ARTIST);
-                int titleIndex = getColumnIndex(cursor, Media.TITLE);
-                int relativePathIndex = -1;
-                int filePathIndex = -1;
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-                    relativePathIndex = getColumnIndex(cursor, Media.RELATIVE_PATH);
-                } else {
-                    filePathIndex = getColumnIndex(cursor, Media.DATA);
-                }
-                int displayNameIndex = getColumnIndex(cursor, Media.DISPLAY_NAME);
-                int durationIndex = getColumnIndex(cursor, Media.DURATION);
-                int sizeIndex = getColumnIndex(cursor, Media.SIZE);
-                int idIndex = getColumnIndex(cursor, Media._ID);
-                int albumIdIndex = getColumnIndex(cursor, Media.ALBUM_ID);
-                int dateAddedIndex = getColumnIndex(cursor, Media.DATE_ADDED);
-                int dateModifiedIndex = getColumnIndex(cursor, Media.DATE_MODIFIED);
-
-                LongSparseArray<StorageFullComposition> volumeCompositions = new LongSparseArray<>(cursor.getCount());
-                while (MediaStoreUtils.moveToNext(cursor)) {
-                    StorageFullComposition composition = buildStorageComposition(
-                            artistIndex,
-                            titleIndex,
-                            relativePathIndex,
-                            filePathIndex,
-                            displayNameIndex,
-                            durationIndex,
-                            sizeIndex,
-                            idIndex,
-                            albumIdIndex,
-                            dateAddedIndex,
-                            dateModifiedIndex,
-                            cursorWrapper,
-                            albums
-                    );
-                    if (composition != null) {
-                        volumeCompositions.put(composition.getStorageId(), composition);
-                    }
-                }
-                compositions.putAll(volumeCompositions);
+    public LongSparseArray<StorageFullComposition> getCompositions(
+            long minAudioDurationMillis,
+            boolean showAllAudioFiles,
+            long[] storageIds
+    ) {
+        String baseSelection = getCompositionsSelection(showAllAudioFiles);
+        String[] baseArgs = getCompositionsSelectionArgs(minAudioDurationMillis, showAllAudioFiles);
+
+        LongSparseArray<StorageFullComposition> compositions = new LongSparseArray<>();
+        LongSparseArray<StorageAlbum> albums = null;
+        for (int start = 0; start < storageIds.length; start += IDS_QUERY_CHUNK_SIZE) {
+            int end = Math.min(start + IDS_QUERY_CHUNK_SIZE, storageIds.length);
+
+            StringBuilder selection = new StringBuilder(baseSelection);
+            selection.append(" AND " + Media._ID + " IN (");
+            String[] args = Arrays.copyOf(baseArgs, baseArgs.length + end - start);
+            for (int i = start; i < end; i++) {
+                selection.append(i == start? "?" : ",?");
+                args[baseArgs.length + i - start] = String.valueOf(storageIds[i]);
+            }
+            selection.append(")");
+
+            for (String volume: getStorageVolumes()) {
+                albums = queryCompositions(getVolumeUri(volume), selection.toString(), args, albums, compositions);
             }
         }
         return compositions;
@@ -636,19 +667,100 @@ public class StorageMusicProvider {
         return uri;
     }
 
-    private Single<LongSparseArray<StorageFullComposition>> getCompositionsSingle(
-            long minAudioDurationMillis,
-            boolean showAllAudioFiles
+    private LongSparseArray<StorageAlbum> queryCompositions(
+            Uri uri,
+            String selection,
+            String[] selectionArgs,
+            @Nullable LongSparseArray<StorageAlbum> albums,
+            LongSparseArray<StorageFullComposition> outCompositions
     ) {
-        return Single.create(emitter -> {
-            LongSparseArray<StorageFullComposition> compositions = getCompositions(
-                    minAudioDurationMillis,
-                    showAllAudioFiles
-            );
-            if (compositions != null) {
-                emitter.onSuccess(compositions);
-            }
+        StringArrayBuilder queryBuilder = new StringArrayBuilder(new String[] {
+                Media.ARTIST,
+                Media.TITLE,
+                Media.DISPLAY_NAME,
+                Media.DURATION,
+                Media.SIZE,
+                Media._ID,
+                Media.ALBUM_ID,
+                Media.DATE_ADDED,
+                Media.DATE_MODIFIED
         });
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            queryBuilder.append(Media.RELATIVE_PATH);
+        } else {
+            queryBuilder.append(Media.DATA);
+        }
+        String[] query = queryBuilder.build();
+
+        try (Cursor cursor = query(uri, query, selection, selectionArgs, null)) {
+            if (cursor == null) {
+                return albums;
+            }
+            if (albums == null) {
+                albums = albumsProvider.getAlbums();
+            }
+
+            CursorWrapper cursorWrapper = new CursorWrapper(cursor);
+
+            int artistIndex = getColumnIndex(cursor, Media.ARTIST);
+            int titleIndex = getColumnIndex(cursor, Media.TITLE);
+            int relativePathIndex = -1;
+            int filePathIndex = -1;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                relativePathIndex = getColumnIndex(cursor, Media.RELATIVE_PATH);
+            } else {
+                filePathIndex = getColumnIndex(cursor, Media.DATA);
+            }
+            int displayNameIndex = getColumnIndex(cursor, Media.DISPLAY_NAME);
+            int durationIndex = getColumnIndex(cursor, Media.DURATION);
+            int sizeIndex = getColumnIndex(cursor, Media.SIZE);
+            int idIndex = getColumnIndex(cursor, Media._ID);
+            int albumIdIndex = getColumnIndex(cursor, Media.ALBUM_ID);
+            int dateAddedIndex = getColumnIndex(cursor, Media.DATE_ADDED);
+            int dateModifiedIndex = getColumnIndex(cursor, Media.DATE_MODIFIED);
+
+            while (MediaStoreUtils.moveToNext(cursor)) {
+                StorageFullComposition composition = buildStorageComposition(
+                        artistIndex,
+                        titleIndex,
+                        relativePathIndex,
+                        filePathIndex,
+                        displayNameIndex,
+                        durationIndex,
+                        sizeIndex,
+                        idIndex,
+                        albumIdIndex,
+                        dateAddedIndex,
+                        dateModifiedIndex,
+                        cursorWrapper,
+                        albums
+                );
+                if (composition != null) {
+                    outCompositions.put(composition.getStorageId(), composition);
+                }
+            }
+        }
+        return albums;
+    }
+
+    private String getCompositionsSelection(boolean showAllAudioFiles) {
+        StringBuilder selectionBuilder = new StringBuilder();
+        //also display unsupported or corrupted compositions
+        selectionBuilder.append("(" + Media.DURATION + " >= ? OR " + Media.DURATION + " IS NULL)");
+        if (!showAllAudioFiles) {
+            selectionBuilder.append(" AND ");
+            selectionBuilder.append(Media.IS_MUSIC);
+            selectionBuilder.append(" = ?");
+        }
+        return selectionBuilder.toString();
+    }
+
+    private String[] getCompositionsSelectionArgs(long minAudioDurationMillis, boolean showAllAudioFiles) {
+        if (showAllAudioFiles) {
+            return new String[] { String.valueOf(minAudioDurationMillis) };
+        } else {
+            return new String[] { String.valueOf(minAudioDurationMillis), String.valueOf(1) };
+        }
     }
 
     private void updateComposition(long id, String key, String value) {
@@ -811,14 +923,19 @@ public class StorageMusicProvider {
         }
     }
 
-    private List<Uri> getStorageUris() {
+    private List<String> getStorageVolumes() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            Set<String> volumes = MediaStore.getExternalVolumeNames(context);
-            List<Uri> uris = new ArrayList<>();
-            volumes.forEach(volume -> uris.add(MediaStore.Audio.Media.getContentUri(volume)));
-            return uris;
+            return new ArrayList<>(MediaStore.getExternalVolumeNames(context));
         } else {
-            return asList(Media.EXTERNAL_CONTENT_URI);
+            return asList(EXTERNAL_VOLUME_NAME);
+        }
+    }
+
+    private Uri getVolumeUri(String volume) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return MediaStore.Audio.Media.getContentUri(volume);
+        } else {
+            return Media.EXTERNAL_CONTENT_URI;
         }
     }
 
@@ -8,6 +8,9 @@ import com.github.anrimian.musicplayer.data.storage.exceptions.GenreAlreadyPrese
 import com.github.anrimian.musicplayer.data.storage.exceptions.IllegalInputException;
 import com.github.anrimian.musicplayer.data.storage.exceptions.TagReaderException;
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageMusicProvider;
+import com.github.anrimian.musicplayer.data.storage.source.tags.FileTags;
+import com.github.anrimian.musicplayer.data.storage.source.tags.LightweightTagReader;
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagField;
 import com.github.anrimian.musicplayer.data.utils.image.BitmapUtils;
 import com.github.anrimian.musicplayer.domain.Constants;
 import com.github.anrimian.musicplayer.domain.models.composition.content.CompositionContentSource;
@@ -60,13 +63,16 @@ public class CompositionSourceEditor {
     private final StorageMusicProvider storageMusicProvider;
     private final FileSourceProvider fileSourceProvider;
     private final ContentSourceHelper contentSourceHelper;
+    private final LightweightTagReader lightweightTagReader;
 
     public CompositionSourceEditor(StorageMusicProvider storageMusicProvider,
                                    FileSourceProvider fileSourceProvider,
-                                   ContentSourceHelper contentSourceHelper) {
+                                   ContentSourceHelper contentSourceHelper,
+                                   LightweightTagReader lightweightTagReader) {
         this.storageMusicProvider = storageMusicProvider;
         this.fileSourceProvider = fileSourceProvider;
         this.contentSourceHelper = contentSourceHelper;
+        this.lightweightTagReader = lightweightTagReader;
     }
 
     public Completable setCompositionTitle(CompositionContentSource source, String title) {
@@ -321,20 +327,14 @@ public class CompositionSourceEditor {
         return Single.fromCallable(() -> {
             try {
                 File file = contentSourceHelper.getAsFile(source);
-                AudioFile audioFile = readFile(file);
-                Tag tag = audioFile.getTagOrCreateDefault();
                 long fileSize = file.length();
-                int durationSeconds = audioFile.getAudioHeader().getTrackLength();
-                CompositionSourceTags tags = new CompositionSourceTags(tag.getFirst(FieldKey.TITLE),
-                        tag.getFirst(FieldKey.ARTIST),
-                        tag.getFirst(FieldKey.ALBUM),
-                        tag.getFirst(FieldKey.ALBUM_ARTIST),
-                        durationSeconds,
-                        TextUtils.safeParseLong(tag.getFirst(FieldKey.TRACK), null),
-                        TextUtils.safeParseLong(tag.getFirst(FieldKey.DISC_NO), null),
-                        tag.getFirst(FieldKey.COMMENT),
-                        tag.getFirst(FieldKey.LYRICS),
-                        splitGenres(tag.getFirst(FieldKey.GENRE)));
+                FileTags fileTags = lightweightTagReader.readTags(file);
+                CompositionSourceTags tags;
+                if (fileTags == null) {
+                    tags = readSourceTags(file);
+                } else {
+                    tags = toSourceTags(fileTags);
+                }
                 return new AudioFileInfo(fileSize, tags);
             } catch (FileNotFoundException e) {
                 throw e;
@@ -346,7 +346,12 @@ public class CompositionSourceEditor {
 
     public Maybe<byte[]> getCompositionArtworkBinaryData(CompositionContentSource source) {
         return Maybe.fromCallable(() -> {
-            Tag tag = getFileTag(source);
+            File file = contentSourceHelper.getAsFile(source);
+            FileTags fileTags = lightweightTagReader.readArtwork(file);
+            if (fileTags != null) {
+                return fileTags.getArtwork();
+            }
+            Tag tag = getFileTag(file);
             if (tag == null) {
                 return null;
             }
@@ -386,6 +391,35 @@ public class CompositionSourceEditor {
         return getFileTag(source).getFirst(FieldKey.LYRICS);
     }
 
+    private CompositionSourceTags readSourceTags(File file) throws Exception {
+        AudioFile audioFile = readFile(file);
+        Tag tag = audioFile.getTagOrCreateDefault();
+        int durationSeconds = audioFile.getAudioHeader().getTrackLength();
+        return new CompositionSourceTags(tag.getFirst(FieldKey.TITLE),
+                tag.getFirst(FieldKey.ARTIST),
+                tag.getFirst(FieldKey.ALBUM),
+                tag.getFirst(FieldKey.ALBUM_ARTIST),
+                durationSeconds,
+                TextUtils.safeParseLong(tag.getFirst(FieldKey.TRACK), null),
+                TextUtils.safeParseLong(tag.getFirst(FieldKey.DISC_NO), null),
+                tag.getFirst(FieldKey.COMMENT),
+                tag.getFirst(FieldKey.LYRICS),
+                splitGenres(tag.getFirst(FieldKey.GENRE)));
+    }
+
+    private CompositionSourceTags toSourceTags(FileTags tags) {
+        return new CompositionSourceTags(tags.getFirst(TagField.TITLE),
+                tags.getFirst(TagField.ARTIST),
+                tags.getFirst(TagField.ALBUM),
+                tags.getFirst(TagField.ALBUM_ARTIST),
+                tags.getDurationSeconds(),
+                TextUtils.safeParseLong(tags.getFirst(TagField.TRACK), null),
+                TextUtils.safeParseLong(tags.getFirst(TagField.DISC_NO), null),
+                tags.getFirst(TagField.COMMENT),
+                tags.getFirst(TagField.LYRICS),
+                splitGenres(tags.getFirst(TagField.GENRE)));
+    }
+
     private String[] splitGenres(String genres) {
         return CompositionHelper.splitGenres(genres);
     }
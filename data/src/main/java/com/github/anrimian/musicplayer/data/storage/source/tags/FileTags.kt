@@ -0,0 +1,47 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import java.util.EnumMap
+
+/**
+ * Tag values read by [LightweightTagReader].
+ * Missing values are returned as empty strings, same as full tag library does.
+ */
+class FileTags(
+    private val values: Map<TagField, String>,
+    val durationSeconds: Int,
+    val artwork: ByteArray?,
+) {
+
+    fun getFirst(field: TagField): String = values[field] ?: ""
+
+    class Builder {
+
+        private val values = EnumMap<TagField, String>(TagField::class.java)
+        private var artwork: ByteArray? = null
+
+        var durationSeconds = 0
+
+        /**
+         * Keeps only first non-empty value of field
+         */
+        fun put(field: TagField, value: String?) {
+            if (value.isNullOrEmpty() || values.containsKey(field)) {
+                return
+            }
+            values[field] = when (field) {
+                TagField.TRACK, TagField.DISC_NO -> value.substringBefore('/').trim()
+                else -> value
+            }
+        }
+
+        fun hasArtwork() = artwork != null
+
+        fun setArtwork(data: ByteArray) {
+            if (artwork == null) {
+                artwork = data
+            }
+        }
+
+        fun build() = FileTags(values, durationSeconds, artwork)
+    }
+}
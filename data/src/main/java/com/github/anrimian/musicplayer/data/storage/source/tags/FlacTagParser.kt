@@ -0,0 +1,81 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.int24BE
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.matches
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.syncSafeInt
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.uInt32BE
+import kotlin.math.roundToInt
+
+/**
+ * Walks flac metadata blocks: stream info for duration, vorbis comments and pictures.
+ * Audio frames are never read.
+ */
+class FlacTagParser : TagParser {
+
+    override fun parse(reader: TagFileReader, readArtwork: Boolean): FileTags {
+        val builder = FileTags.Builder()
+        skipId3Tag(reader)
+        if (!matches(reader.readBytes(4), 0, "fLaC")) {
+            throw UnsupportedTagLayoutException("flac signature not found")
+        }
+        var hasStreamInfo = false
+        val blockHeader = ByteArray(BLOCK_HEADER_SIZE)
+        do {
+            reader.readFully(blockHeader, BLOCK_HEADER_SIZE)
+            val isLast = blockHeader[0].toInt() and 0x80 != 0
+            val type = blockHeader[0].toInt() and 0x7F
+            val length = int24BE(blockHeader, 1)
+            val blockEnd = reader.position + length
+            when {
+                type == STREAM_INFO_BLOCK -> {
+                    builder.durationSeconds = readDuration(reader.readBytes(length))
+                    hasStreamInfo = true
+                }
+                type == VORBIS_COMMENT_BLOCK -> {
+                    VorbisCommentsParser.parse(reader, builder, false)
+                }
+                type == PICTURE_BLOCK && readArtwork && !builder.hasArtwork() -> {
+                    VorbisCommentsParser.readPictureBlock(reader.readBytes(length))
+                        ?.let(builder::setArtwork)
+                }
+            }
+            reader.seek(blockEnd)
+        } while (!isLast)
+        if (!hasStreamInfo) {
+            throw UnsupportedTagLayoutException("flac stream info not found")
+        }
+        return builder.build()
+    }
+
+    private fun skipId3Tag(reader: TagFileReader) {
+        val header = reader.readBytes(ID3_HEADER_SIZE)
+        if (matches(header, 0, "ID3")) {
+            reader.seek(ID3_HEADER_SIZE + syncSafeInt(header, 6).toLong())
+        } else {
+            reader.seek(0)
+        }
+    }
+
+    private fun readDuration(streamInfo: ByteArray): Int {
+        if (streamInfo.size < STREAM_INFO_SIZE) {
+            throw UnsupportedTagLayoutException("flac stream info size")
+        }
+        //20 bits of sample rate, 3 bits of channels, 5 bits of sample size, 36 bits of samples count
+        val sampleRate = int24BE(streamInfo, 10) ushr 4
+        val samplesCount = (streamInfo[13].toLong() and 0x0F shl 32) or uInt32BE(streamInfo, 14)
+        if (sampleRate == 0) {
+            return 0
+        }
+        return (samplesCount.toDouble() / sampleRate).roundToInt()
+    }
+
+    private companion object {
+        const val ID3_HEADER_SIZE = 10
+        const val BLOCK_HEADER_SIZE = 4
+        const val STREAM_INFO_SIZE = 34
+
+        const val STREAM_INFO_BLOCK = 0
+        const val VORBIS_COMMENT_BLOCK = 4
+        const val PICTURE_BLOCK = 6
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import java.io.File
+import java.io.IOException
+import java.util.Locale
+
+/**
+ * Reads only tag headers and needed byte ranges of audio file instead of parsing whole file
+ * structure like full tag library does. Used for library scanning and artwork loading.
+ *
+ * Supports ID3v2.3/2.4 and ID3v1 in mp3, vorbis comments in flac, ogg vorbis and opus,
+ * metadata atoms in mp4 containers. Anything else returns null and must be read with full tag library.
+ */
+class LightweightTagReader {
+
+    private val mp3Parser = Mp3TagParser()
+    private val flacParser = FlacTagParser()
+    private val oggParser = OggTagParser()
+    private val mp4Parser = Mp4TagParser()
+
+    /**
+     * @return null if file format or tag layout is not supported
+     */
+    @Throws(IOException::class)
+    fun readTags(file: File): FileTags? = read(file, false)
+
+    /**
+     * @return null if file format or tag layout is not supported
+     */
+    @Throws(IOException::class)
+    fun readArtwork(file: File): FileTags? = read(file, true)
+
+    private fun read(file: File, readArtwork: Boolean): FileTags? {
+        val parser = getParser(file) ?: return null
+        //FileNotFoundException is passed to caller
+        TagFileReader(file).use { reader ->
+            try {
+                return parser.parse(reader, readArtwork)
+            } catch (e: UnsupportedTagLayoutException) {
+                return null
+            }
+        }
+    }
+
+    private fun getParser(file: File): TagParser? {
+        return when (file.extension.lowercase(Locale.ROOT)) {
+            "mp3" -> mp3Parser
+            "flac" -> flacParser
+            "ogg", "oga", "opus" -> oggParser
+            "m4a", "m4b", "mp4" -> mp4Parser
+            else -> null
+        }
+    }
+}
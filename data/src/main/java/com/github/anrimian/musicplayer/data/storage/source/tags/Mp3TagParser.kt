@@ -0,0 +1,416 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.int16BE
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.matches
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.syncSafeInt
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.uInt32BE
+import org.jaudiotagger.tag.id3.framebody.FrameBodyTCON
+import org.jaudiotagger.tag.reference.GenreTypes
+import java.nio.charset.Charset
+import kotlin.math.roundToInt
+
+/**
+ * Reads ID3v2.3/2.4 frames(or ID3v1 tag if there is no ID3v2 tag) and duration from first mpeg frame.
+ * Frame bodies are read only for used frames, artwork is skipped when it is not requested.
+ * Duration is calculated same way as full tag library does: by Xing/VBRI frames count or by CBR estimate.
+ */
+class Mp3TagParser : TagParser {
+
+    override fun parse(reader: TagFileReader, readArtwork: Boolean): FileTags {
+        val builder = FileTags.Builder()
+        val id3TagEnd = readId3v2Tag(reader, builder, readArtwork)
+        if (id3TagEnd == 0L) {
+            readId3v1Tag(reader, builder)
+        }
+        builder.durationSeconds = readDuration(reader, id3TagEnd)
+        return builder.build()
+    }
+
+    /**
+     * @return position of tag end or 0 if tag is not present
+     */
+    private fun readId3v2Tag(
+        reader: TagFileReader,
+        builder: FileTags.Builder,
+        readArtwork: Boolean
+    ): Long {
+        if (reader.length < ID3V2_HEADER_SIZE) {
+            return 0
+        }
+        val header = reader.readBytes(ID3V2_HEADER_SIZE)
+        if (!matches(header, 0, "ID3")) {
+            return 0
+        }
+        val version = header[3].toInt()
+        if (version != 3 && version != 4) {
+            throw UnsupportedTagLayoutException("id3v2.$version")
+        }
+        val flags = header[5].toInt()
+        val tagUnsync = flags and 0x80 != 0
+        if (tagUnsync && version == 3) {
+            throw UnsupportedTagLayoutException("id3v2.3 unsynchronisation")
+        }
+        val footerSize = if (version == 4 && flags and 0x10 != 0) ID3V2_HEADER_SIZE else 0
+        val tagEnd = ID3V2_HEADER_SIZE + syncSafeInt(header, 6).toLong()
+        if (tagEnd > reader.length) {
+            throw UnsupportedTagLayoutException("id3v2 tag size")
+        }
+
+        if (flags and 0x40 != 0) {
+            val extendedHeader = reader.readBytes(4)
+            if (version == 3) {
+                reader.skip(uInt32BE(extendedHeader, 0))
+            } else {
+                reader.skip(syncSafeInt(extendedHeader, 0) - 4L)
+            }
+        }
+
+        val frameHeader = ByteArray(ID3V2_FRAME_HEADER_SIZE)
+        while (reader.position + ID3V2_FRAME_HEADER_SIZE <= tagEnd) {
+            reader.readFully(frameHeader, ID3V2_FRAME_HEADER_SIZE)
+            if (frameHeader[0].toInt() == 0) {
+                break//padding
+            }
+            val frameId = String(frameHeader, 0, 4, Charsets.ISO_8859_1)
+            val frameSize = if (version == 3) {
+                uInt32BE(frameHeader, 4)
+            } else {
+                syncSafeInt(frameHeader, 4).toLong()
+            }
+            if (reader.position + frameSize > tagEnd) {
+                throw UnsupportedTagLayoutException("id3v2 frame size")
+            }
+            val field = FRAME_FIELDS[frameId]
+            val isArtworkFrame = frameId == ARTWORK_FRAME_ID && readArtwork && !builder.hasArtwork()
+            if (field == null && !isArtworkFrame) {
+                reader.skip(frameSize)
+                continue
+            }
+            var data = reader.readBytes(frameSize.toInt())
+            data = decodeFrameData(data, version, frameHeader[9].toInt(), tagUnsync)
+            if (isArtworkFrame) {
+                readPicture(data)?.let(builder::setArtwork)
+            } else {
+                builder.put(field!!, readFrameValue(frameId, data, version))
+            }
+        }
+        return tagEnd + footerSize
+    }
+
+    private fun decodeFrameData(data: ByteArray, version: Int, flags: Int, tagUnsync: Boolean): ByteArray {
+        var offset = 0
+        var unsync = false
+        if (version == 3) {
+            if (flags and 0xC0 != 0) {
+                throw UnsupportedTagLayoutException("compressed or encrypted frame")
+            }
+            if (flags and 0x20 != 0) {
+                offset++//group id
+            }
+        } else {
+            if (flags and 0x0C != 0) {
+                throw UnsupportedTagLayoutException("compressed or encrypted frame")
+            }
+            if (flags and 0x40 != 0) {
+                offset++//group id
+            }
+            if (flags and 0x01 != 0) {
+                offset += 4//data length indicator
+            }
+            unsync = tagUnsync || flags and 0x02 != 0
+        }
+        if (offset > data.size) {
+            throw UnsupportedTagLayoutException("frame flags")
+        }
+        if (!unsync) {
+            return if (offset == 0) data else data.copyOfRange(offset, data.size)
+        }
+        val result = ByteArray(data.size - offset)
+        var count = 0
+        var i = offset
+        while (i < data.size) {
+            result[count++] = data[i]
+            if (data[i] == 0xFF.toByte() && i + 1 < data.size && data[i + 1].toInt() == 0) {
+                i++
+            }
+            i++
+        }
+        return result.copyOf(count)
+    }
+
+    private fun readFrameValue(frameId: String, data: ByteArray, version: Int): String? {
+        if (data.isEmpty()) {
+            return null
+        }
+        val encoding = data[0].toInt()
+        return when (frameId) {
+            COMMENT_FRAME_ID, LYRICS_FRAME_ID -> {
+                //encoding, language, description, text
+                val descriptionEnd = findStringEnd(data, 4, encoding)
+                decodeString(data, descriptionEnd + terminatorSize(encoding), data.size, encoding)
+            }
+            GENRE_FRAME_ID -> {
+                //genres can be stored as id3v1 genre references
+                val value = decodeString(data, 1, findStringEnd(data, 1, encoding), encoding)
+                if (version == 3) {
+                    FrameBodyTCON.convertID3v23GenreToGeneric(value)
+                } else {
+                    FrameBodyTCON.convertID3v24GenreToGeneric(value)
+                }
+            }
+            else -> decodeString(data, 1, findStringEnd(data, 1, encoding), encoding)
+        }
+    }
+
+    private fun readPicture(data: ByteArray): ByteArray? {
+        if (data.isEmpty()) {
+            return null
+        }
+        val encoding = data[0].toInt()
+        val mimeTypeEnd = findStringEnd(data, 1, 0)
+        //mime type, picture type, description
+        val descriptionStart = mimeTypeEnd + 1 + 1
+        if (descriptionStart > data.size) {
+            return null
+        }
+        val dataStart = findStringEnd(data, descriptionStart, encoding) + terminatorSize(encoding)
+        if (dataStart >= data.size) {
+            return null
+        }
+        return data.copyOfRange(dataStart, data.size)
+    }
+
+    private fun readId3v1Tag(reader: TagFileReader, builder: FileTags.Builder) {
+        if (reader.length < ID3V1_TAG_SIZE) {
+            return
+        }
+        reader.seek(reader.length - ID3V1_TAG_SIZE)
+        val tag = reader.readBytes(ID3V1_TAG_SIZE)
+        if (!matches(tag, 0, "TAG")) {
+            return
+        }
+        builder.put(TagField.TITLE, readId3v1String(tag, 3, 30))
+        builder.put(TagField.ARTIST, readId3v1String(tag, 33, 30))
+        builder.put(TagField.ALBUM, readId3v1String(tag, 63, 30))
+        //id3v1.1: zero byte before track number in the end of comment
+        if (tag[125].toInt() == 0 && tag[126].toInt() != 0) {
+            builder.put(TagField.COMMENT, readId3v1String(tag, 97, 28))
+            builder.put(TagField.TRACK, (tag[126].toInt() and 0xFF).toString())
+        } else {
+            builder.put(TagField.COMMENT, readId3v1String(tag, 97, 30))
+        }
+        builder.put(TagField.GENRE, GenreTypes.getInstanceOf().getValueForId(tag[127].toInt() and 0xFF))
+    }
+
+    private fun readId3v1String(tag: ByteArray, offset: Int, length: Int): String {
+        var end = offset
+        while (end < offset + length && tag[end].toInt() != 0) {
+            end++
+        }
+        return String(tag, offset, end - offset, Charsets.ISO_8859_1).trim()
+    }
+
+    private fun readDuration(reader: TagFileReader, audioStart: Long): Int {
+        val frameStart = findFirstFrame(reader, audioStart)
+        reader.seek(frameStart)
+        val frame = reader.readBytes(minOf(reader.remaining, FIRST_FRAME_READ_SIZE.toLong()).toInt())
+        val header = FrameHeader.parse(frame, 0)!!
+
+        val framesCount = readXingFramesCount(frame, header)
+            ?: readVbriFramesCount(frame)
+            ?: ((reader.length - frameStart) / header.frameLength)
+        val seconds = framesCount.toDouble() * header.samplesPerFrame / header.sampleRate
+        return seconds.roundToInt()
+    }
+
+    private fun findFirstFrame(reader: TagFileReader, audioStart: Long): Long {
+        val buffer = ByteArray(SEARCH_BUFFER_SIZE)
+        var bufferStart = audioStart
+        while (bufferStart < audioStart + MAX_FRAME_SEARCH_SIZE) {
+            reader.seek(bufferStart)
+            val count = reader.readAvailable(buffer, SEARCH_BUFFER_SIZE)
+            if (count < 4) {
+                break
+            }
+            for (i in 0 until count - 3) {
+                if (buffer[i] != 0xFF.toByte()) {
+                    continue
+                }
+                val header = FrameHeader.parse(buffer, i) ?: continue
+                val position = bufferStart + i
+                if (isFrameHeaderAt(reader, position + header.frameLength)) {
+                    return position
+                }
+            }
+            bufferStart += count - 3
+        }
+        throw UnsupportedTagLayoutException("mpeg frame not found")
+    }
+
+    private fun isFrameHeaderAt(reader: TagFileReader, position: Long): Boolean {
+        if (position + 4 > reader.length) {
+            //single frame in the end of file
+            return position <= reader.length
+        }
+        reader.seek(position)
+        return FrameHeader.parse(reader.readBytes(4), 0) != null
+    }
+
+    private fun readXingFramesCount(frame: ByteArray, header: FrameHeader): Long? {
+        val offset = 4 + header.sideInfoSize
+        if (!matches(frame, offset, "Xing") && !matches(frame, offset, "Info")) {
+            return null
+        }
+        if (offset + 12 > frame.size || frame[offset + 7].toInt() and 0x01 == 0) {
+            return null
+        }
+        return uInt32BE(frame, offset + 8)
+    }
+
+    private fun readVbriFramesCount(frame: ByteArray): Long? {
+        val offset = 4 + 32
+        if (!matches(frame, offset, "VBRI") || offset + 18 > frame.size) {
+            return null
+        }
+        return uInt32BE(frame, offset + 14)
+    }
+
+    private fun findStringEnd(data: ByteArray, start: Int, encoding: Int): Int {
+        if (terminatorSize(encoding) == 1) {
+            var i = start
+            while (i < data.size && data[i].toInt() != 0) {
+                i++
+            }
+            return i
+        }
+        var i = start
+        while (i + 1 < data.size && (data[i].toInt() != 0 || data[i + 1].toInt() != 0)) {
+            i += 2
+        }
+        return minOf(i, data.size)
+    }
+
+    private fun decodeString(data: ByteArray, start: Int, end: Int, encoding: Int): String {
+        if (start >= end) {
+            return ""
+        }
+        return String(data, start, end - start, getCharset(encoding))
+    }
+
+    private fun terminatorSize(encoding: Int) = if (encoding == 1 || encoding == 2) 2 else 1
+
+    private fun getCharset(encoding: Int): Charset {
+        return when (encoding) {
+            0 -> Charsets.ISO_8859_1
+            1 -> Charsets.UTF_16
+            2 -> Charsets.UTF_16BE
+            3 -> Charsets.UTF_8
+            else -> throw UnsupportedTagLayoutException("text encoding: $encoding")
+        }
+    }
+
+    private class FrameHeader(
+        val sampleRate: Int,
+        val samplesPerFrame: Int,
+        val frameLength: Int,
+        val sideInfoSize: Int,
+    ) {
+
+        companion object {
+
+            private const val VERSION_2 = 2
+            private const val VERSION_1 = 3
+            private const val LAYER_3 = 1
+            private const val LAYER_2 = 2
+            private const val LAYER_1 = 3
+
+            private val BITRATES_V1 = arrayOf(
+                intArrayOf(32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448),
+                intArrayOf(32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384),
+                intArrayOf(32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320),
+            )
+            private val BITRATES_V2 = arrayOf(
+                intArrayOf(32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256),
+                intArrayOf(8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160),
+                intArrayOf(8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160),
+            )
+            private val SAMPLE_RATES_V1 = intArrayOf(44100, 48000, 32000)
+
+            /**
+             * @return null if there is no valid mpeg audio frame header at offset
+             */
+            fun parse(bytes: ByteArray, offset: Int): FrameHeader? {
+                if (offset + 4 > bytes.size) {
+                    return null
+                }
+                val header = int16BE(bytes, offset) shl 16 or int16BE(bytes, offset + 2)
+                if (header ushr 21 != 0x7FF) {
+                    return null
+                }
+                val version = header ushr 19 and 0x03
+                val layer = header ushr 17 and 0x03
+                val bitrateIndex = header ushr 12 and 0x0F
+                val sampleRateIndex = header ushr 10 and 0x03
+                if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 0x0F || sampleRateIndex == 3) {
+                    return null
+                }
+                val padding = header ushr 9 and 0x01
+                val isMono = header ushr 6 and 0x03 == 3
+
+                val layerIndex = LAYER_1 - layer
+                val bitrate = 1000 * if (version == VERSION_1) {
+                    BITRATES_V1[layerIndex][bitrateIndex - 1]
+                } else {
+                    BITRATES_V2[layerIndex][bitrateIndex - 1]
+                }
+                val sampleRate = when (version) {
+                    VERSION_1 -> SAMPLE_RATES_V1[sampleRateIndex]
+                    VERSION_2 -> SAMPLE_RATES_V1[sampleRateIndex] / 2
+                    else -> SAMPLE_RATES_V1[sampleRateIndex] / 4
+                }
+                val samplesPerFrame = when {
+                    layer == LAYER_1 -> 384
+                    layer == LAYER_2 || version == VERSION_1 -> 1152
+                    else -> 576
+                }
+                val frameLength = when {
+                    layer == LAYER_1 -> (12 * bitrate / sampleRate + padding) * 4
+                    layer == LAYER_3 && version != VERSION_1 -> 72 * bitrate / sampleRate + padding
+                    else -> 144 * bitrate / sampleRate + padding
+                }
+                val sideInfoSize = if (version == VERSION_1) {
+                    if (isMono) 17 else 32
+                } else {
+                    if (isMono) 9 else 17
+                }
+                return FrameHeader(sampleRate, samplesPerFrame, frameLength, sideInfoSize)
+            }
+        }
+    }
+
+    private companion object {
+        const val ID3V2_HEADER_SIZE = 10
+        const val ID3V2_FRAME_HEADER_SIZE = 10
+        const val ID3V1_TAG_SIZE = 128
+        const val SEARCH_BUFFER_SIZE = 4096
+        const val MAX_FRAME_SEARCH_SIZE = 128 * 1024
+        const val FIRST_FRAME_READ_SIZE = 64
+
+        const val COMMENT_FRAME_ID = "COMM"
+        const val LYRICS_FRAME_ID = "USLT"
+        const val GENRE_FRAME_ID = "TCON"
+        const val ARTWORK_FRAME_ID = "APIC"
+
+        val FRAME_FIELDS = mapOf(
+            "TIT2" to TagField.TITLE,
+            "TPE1" to TagField.ARTIST,
+            "TALB" to TagField.ALBUM,
+            "TPE2" to TagField.ALBUM_ARTIST,
+            GENRE_FRAME_ID to TagField.GENRE,
+            "TRCK" to TagField.TRACK,
+            "TPOS" to TagField.DISC_NO,
+            COMMENT_FRAME_ID to TagField.COMMENT,
+            LYRICS_FRAME_ID to TagField.LYRICS,
+        )
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.int16BE
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.int64BE
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.matches
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.uInt32BE
+import org.jaudiotagger.tag.reference.GenreTypes
+import kotlin.math.roundToInt
+
+/**
+ * Reads mp4 atoms: duration from movie header and metadata items list.
+ * Media data atom is skipped by seek, so moov atom can be placed in any part of file.
+ */
+class Mp4TagParser : TagParser {
+
+    override fun parse(reader: TagFileReader, readArtwork: Boolean): FileTags {
+        val builder = FileTags.Builder()
+        val moov = findAtom(reader, reader.length, "moov")
+            ?: throw UnsupportedTagLayoutException("moov atom not found")
+        var hasMovieHeader = false
+        forEachAtom(reader, moov.end) { atom ->
+            when (atom.type) {
+                "mvhd" -> {
+                    val header = reader.readBytes(minOf(atom.end - reader.position, 32L).toInt())
+                    builder.durationSeconds = readDuration(header)
+                    hasMovieHeader = true
+                }
+                "udta" -> {
+                    val meta = findAtom(reader, atom.end, "meta") ?: return@forEachAtom
+                    skipMetaVersion(reader)
+                    val itemsList = findAtom(reader, meta.end, "ilst") ?: return@forEachAtom
+                    readItems(reader, itemsList.end, builder, readArtwork)
+                }
+            }
+        }
+        if (!hasMovieHeader) {
+            throw UnsupportedTagLayoutException("mvhd atom not found")
+        }
+        return builder.build()
+    }
+
+    private fun readItems(
+        reader: TagFileReader,
+        end: Long,
+        builder: FileTags.Builder,
+        readArtwork: Boolean
+    ) {
+        forEachAtom(reader, end) { item ->
+            val field = ITEM_FIELDS[item.type]
+            val isArtwork = item.type == ARTWORK_ITEM && readArtwork && !builder.hasArtwork()
+            if (field == null && !isArtwork) {
+                return@forEachAtom
+            }
+            val data = findAtom(reader, item.end, "data") ?: return@forEachAtom
+            if (data.end - reader.position < DATA_HEADER_SIZE) {
+                return@forEachAtom
+            }
+            reader.skip(DATA_HEADER_SIZE.toLong())//type indicator and locale
+            val value = reader.readBytes((data.end - reader.position).toInt())
+            when {
+                isArtwork -> builder.setArtwork(value)
+                item.type == GENRE_ID_ITEM -> {
+                    //id3v1 genre id + 1
+                    if (value.size >= 2) {
+                        builder.put(TagField.GENRE, GenreTypes.getInstanceOf().getValueForId(int16BE(value, 0) - 1))
+                    }
+                }
+                field == TagField.TRACK || field == TagField.DISC_NO -> {
+                    //reserved, number, total count
+                    if (value.size >= 4) {
+                        builder.put(field, int16BE(value, 2).toString())
+                    }
+                }
+                else -> builder.put(field!!, String(value, Charsets.UTF_8))
+            }
+        }
+    }
+
+    private fun readDuration(header: ByteArray): Int {
+        if (header.size < 20 || header[0].toInt() == 1 && header.size < 32) {
+            throw UnsupportedTagLayoutException("mvhd atom size")
+        }
+        val timeScale: Long
+        val duration: Long
+        if (header[0].toInt() == 1) {
+            timeScale = uInt32BE(header, 20)
+            duration = int64BE(header, 24)
+        } else {
+            timeScale = uInt32BE(header, 12)
+            duration = uInt32BE(header, 16)
+        }
+        if (timeScale == 0L) {
+            return 0
+        }
+        return (duration.toDouble() / timeScale).roundToInt()
+    }
+
+    //apple meta atom has no version and flags
+    private fun skipMetaVersion(reader: TagFileReader) {
+        val head = reader.readBytes(8)
+        if (matches(head, 4, "hdlr")) {
+            reader.skip(-8)
+        } else {
+            reader.skip(-4)
+        }
+    }
+
+    /**
+     * Searches atom from current position till [end], leaves reader at start of atom data
+     */
+    private fun findAtom(reader: TagFileReader, end: Long, type: String): Atom? {
+        while (reader.position + ATOM_HEADER_SIZE <= end) {
+            val atom = readAtomHeader(reader, end)
+            if (atom.type == type) {
+                return atom
+            }
+            reader.seek(atom.end)
+        }
+        return null
+    }
+
+    private inline fun forEachAtom(reader: TagFileReader, end: Long, action: (Atom) -> Unit) {
+        while (reader.position + ATOM_HEADER_SIZE <= end) {
+            val atom = readAtomHeader(reader, end)
+            action(atom)
+            reader.seek(atom.end)
+        }
+    }
+
+    private fun readAtomHeader(reader: TagFileReader, parentEnd: Long): Atom {
+        val start = reader.position
+        val header = reader.readBytes(ATOM_HEADER_SIZE)
+        var size = uInt32BE(header, 0)
+        val type = String(header, 4, 4, Charsets.ISO_8859_1)
+        when (size) {
+            0L -> size = parentEnd - start
+            1L -> size = int64BE(reader.readBytes(8), 0)
+        }
+        val atomEnd = start + size
+        if (size < ATOM_HEADER_SIZE || atomEnd > parentEnd) {
+            throw UnsupportedTagLayoutException("atom size")
+        }
+        return Atom(type, atomEnd)
+    }
+
+    private class Atom(val type: String, val end: Long)
+
+    private companion object {
+        const val ATOM_HEADER_SIZE = 8
+        const val DATA_HEADER_SIZE = 8
+
+        const val ARTWORK_ITEM = "covr"
+        const val GENRE_ID_ITEM = "gnre"
+
+        val ITEM_FIELDS = mapOf(
+            "©nam" to TagField.TITLE,
+            "©ART" to TagField.ARTIST,
+            "©alb" to TagField.ALBUM,
+            "aART" to TagField.ALBUM_ARTIST,
+            "©gen" to TagField.GENRE,
+            GENRE_ID_ITEM to TagField.GENRE,
+            "trkn" to TagField.TRACK,
+            "disk" to TagField.DISC_NO,
+            "©cmt" to TagField.COMMENT,
+            "©lyr" to TagField.LYRICS,
+        )
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.int16LE
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.int64LE
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.matches
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.uInt32LE
+
+/**
+ * Reads vorbis and opus streams: identification packet from first page,
+ * comment packet from following pages and duration from granule position of last page.
+ */
+class OggTagParser : TagParser {
+
+    override fun parse(reader: TagFileReader, readArtwork: Boolean): FileTags {
+        val builder = FileTags.Builder()
+        val input = OggPayloadInput(reader)
+        val identification = input.readBytes(MIN_IDENTIFICATION_SIZE)
+        val commentSignature: String
+        val sampleRate: Long
+        val preSkip: Int
+        when {
+            matches(identification, 0, "\u0001vorbis") -> {
+                commentSignature = "\u0003vorbis"
+                sampleRate = uInt32LE(identification, 12)
+                preSkip = 0
+            }
+            matches(identification, 0, "OpusHead") -> {
+                commentSignature = "OpusTags"
+                sampleRate = OPUS_SAMPLE_RATE
+                preSkip = int16LE(identification, 10)
+            }
+            else -> throw UnsupportedTagLayoutException("unknown ogg codec")
+        }
+        //comment header always begins on new page
+        input.skipPage()
+        if (!matches(input.readBytes(commentSignature.length), 0, commentSignature)) {
+            throw UnsupportedTagLayoutException("ogg comment packet not found")
+        }
+        VorbisCommentsParser.parse(input, builder, readArtwork)
+
+        val samplesCount = readLastGranulePosition(reader) - preSkip
+        if (sampleRate > 0 && samplesCount > 0) {
+            builder.durationSeconds = (samplesCount / sampleRate).toInt()
+        }
+        return builder.build()
+    }
+
+    private fun readLastGranulePosition(reader: TagFileReader): Long {
+        val tailSize = minOf(reader.length, MAX_PAGE_SIZE.toLong()).toInt()
+        reader.seek(reader.length - tailSize)
+        val tail = reader.readBytes(tailSize)
+        var i = tailSize - PAGE_HEADER_SIZE
+        while (i >= 0) {
+            if (matches(tail, i, "OggS")) {
+                val granulePosition = int64LE(tail, i + 6)
+                if (granulePosition != -1L) {
+                    return granulePosition
+                }
+            }
+            i--
+        }
+        throw UnsupportedTagLayoutException("last ogg page not found")
+    }
+
+    /**
+     * Concatenated payload of ogg pages. Packet boundaries are not tracked,
+     * comments block contains sizes of all its parts.
+     */
+    private class OggPayloadInput(private val reader: TagFileReader) : TagInput {
+
+        private val pageHeader = ByteArray(PAGE_HEADER_SIZE)
+        private val segmentsTable = ByteArray(255)
+        private var pageRemaining = 0L
+
+        //payload is smaller than the rest of file because of page headers
+        override val remaining: Long
+            get() = reader.remaining
+
+        override fun readBytes(count: Int): ByteArray {
+            if (count < 0 || count > remaining) {
+                throw UnsupportedTagLayoutException("unexpected block size: $count")
+            }
+            val result = ByteArray(count)
+            var offset = 0
+            while (offset < count) {
+                ensurePageData()
+                val chunk = minOf(pageRemaining, (count - offset).toLong()).toInt()
+                val bytes = reader.readBytes(chunk)
+                System.arraycopy(bytes, 0, result, offset, chunk)
+                offset += chunk
+                pageRemaining -= chunk
+            }
+            return result
+        }
+
+        override fun skip(count: Long) {
+            var remaining = count
+            while (remaining > 0) {
+                ensurePageData()
+                val chunk = minOf(pageRemaining, remaining)
+                reader.skip(chunk)
+                remaining -= chunk
+                pageRemaining -= chunk
+            }
+        }
+
+        fun skipPage() {
+            reader.skip(pageRemaining)
+            pageRemaining = 0
+        }
+
+        private fun ensurePageData() {
+            while (pageRemaining == 0L) {
+                reader.readFully(pageHeader, PAGE_HEADER_SIZE)
+                if (!matches(pageHeader, 0, "OggS")) {
+                    throw UnsupportedTagLayoutException("ogg page not found")
+                }
+                val segmentsCount = pageHeader[PAGE_HEADER_SIZE - 1].toInt() and 0xFF
+                reader.readFully(segmentsTable, segmentsCount)
+                for (i in 0 until segmentsCount) {
+                    pageRemaining += segmentsTable[i].toInt() and 0xFF
+                }
+            }
+        }
+    }
+
+    private companion object {
+        const val PAGE_HEADER_SIZE = 27
+        const val MAX_PAGE_SIZE = PAGE_HEADER_SIZE + 255 + 255 * 255
+        const val MIN_IDENTIFICATION_SIZE = 19
+        const val OPUS_SAMPLE_RATE = 48000L
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+enum class TagField {
+    TITLE,
+    ARTIST,
+    ALBUM,
+    ALBUM_ARTIST,
+    GENRE,
+    TRACK,
+    DISC_NO,
+    COMMENT,
+    LYRICS,
+}
@@ -0,0 +1,71 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import java.io.Closeable
+import java.io.File
+import java.io.RandomAccessFile
+
+/**
+ * Random access reader of audio file which counts bytes actually read from storage.
+ * Out of range reads are treated as unsupported layout.
+ */
+class TagFileReader(file: File) : TagInput, Closeable {
+
+    private val randomAccessFile = RandomAccessFile(file, "r")
+
+    val length: Long = randomAccessFile.length()
+
+    var bytesRead = 0L
+        private set
+
+    val position: Long
+        get() = randomAccessFile.filePointer
+
+    override val remaining: Long
+        get() = length - position
+
+    fun seek(position: Long) {
+        if (position < 0 || position > length) {
+            throw UnsupportedTagLayoutException("position is out of file: $position")
+        }
+        randomAccessFile.seek(position)
+    }
+
+    override fun skip(count: Long) {
+        seek(position + count)
+    }
+
+    override fun readBytes(count: Int): ByteArray {
+        checkBlockSize(count)
+        val bytes = ByteArray(count)
+        readFully(bytes, count)
+        return bytes
+    }
+
+    /**
+     * @return count of bytes read, can be less than requested at the end of file
+     */
+    fun readAvailable(buffer: ByteArray, count: Int): Int {
+        val readCount = minOf(count.toLong(), remaining).toInt()
+        readFully(buffer, readCount)
+        return readCount
+    }
+
+    fun readFully(buffer: ByteArray, count: Int) {
+        checkBlockSize(count)
+        if (count > buffer.size) {
+            throw UnsupportedTagLayoutException("unexpected block size: $count")
+        }
+        randomAccessFile.readFully(buffer, 0, count)
+        bytesRead += count
+    }
+
+    private fun checkBlockSize(count: Int) {
+        if (count < 0 || count > remaining) {
+            throw UnsupportedTagLayoutException("unexpected block size: $count")
+        }
+    }
+
+    override fun close() {
+        randomAccessFile.close()
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+/**
+ * Sequential source of tag bytes: plain file region or payload of ogg pages
+ */
+interface TagInput {
+
+    /**
+     * Max count of bytes which can be read, sizes read from file are checked against it
+     * before buffers are allocated
+     */
+    val remaining: Long
+
+    fun readBytes(count: Int): ByteArray
+
+    fun skip(count: Long)
+
+    companion object {
+
+        fun int16BE(bytes: ByteArray, offset: Int): Int {
+            return (bytes[offset].toInt() and 0xFF shl 8) or
+                    (bytes[offset + 1].toInt() and 0xFF)
+        }
+
+        fun int16LE(bytes: ByteArray, offset: Int): Int {
+            return (bytes[offset].toInt() and 0xFF) or
+                    (bytes[offset + 1].toInt() and 0xFF shl 8)
+        }
+
+        fun int24BE(bytes: ByteArray, offset: Int): Int {
+            return (bytes[offset].toInt() and 0xFF shl 16) or
+                    (bytes[offset + 1].toInt() and 0xFF shl 8) or
+                    (bytes[offset + 2].toInt() and 0xFF)
+        }
+
+        fun uInt32BE(bytes: ByteArray, offset: Int): Long {
+            return (bytes[offset].toLong() and 0xFF shl 24) or
+                    (bytes[offset + 1].toLong() and 0xFF shl 16) or
+                    (bytes[offset + 2].toLong() and 0xFF shl 8) or
+                    (bytes[offset + 3].toLong() and 0xFF)
+        }
+
+        fun uInt32LE(bytes: ByteArray, offset: Int): Long {
+            return (bytes[offset].toLong() and 0xFF) or
+                    (bytes[offset + 1].toLong() and 0xFF shl 8) or
+                    (bytes[offset + 2].toLong() and 0xFF shl 16) or
+                    (bytes[offset + 3].toLong() and 0xFF shl 24)
+        }
+
+        fun int64BE(bytes: ByteArray, offset: Int): Long {
+            return (uInt32BE(bytes, offset) shl 32) or uInt32BE(bytes, offset + 4)
+        }
+
+        fun int64LE(bytes: ByteArray, offset: Int): Long {
+            return uInt32LE(bytes, offset) or (uInt32LE(bytes, offset + 4) shl 32)
+        }
+
+        fun syncSafeInt(bytes: ByteArray, offset: Int): Int {
+            return (bytes[offset].toInt() and 0x7F shl 21) or
+                    (bytes[offset + 1].toInt() and 0x7F shl 14) or
+                    (bytes[offset + 2].toInt() and 0x7F shl 7) or
+                    (bytes[offset + 3].toInt() and 0x7F)
+        }
+
+        fun matches(bytes: ByteArray, offset: Int, signature: String): Boolean {
+            if (offset < 0 || offset + signature.length > bytes.size) {
+                return false
+            }
+            for (i in signature.indices) {
+                if (bytes[offset + i] != signature[i].code.toByte()) {
+                    return false
+                }
+            }
+            return true
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+interface TagParser {
+
+    /**
+     * @throws UnsupportedTagLayoutException if file must be read with full tag library
+     */
+    fun parse(reader: TagFileReader, readArtwork: Boolean): FileTags
+}
@@ -0,0 +1,7 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+/**
+ * Thrown when file contains structure which lightweight reader doesn't handle,
+ * file must be read with full tag library then
+ */
+class UnsupportedTagLayoutException(message: String) : Exception(message)
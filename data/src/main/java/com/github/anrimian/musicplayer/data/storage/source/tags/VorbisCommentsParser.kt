@@ -0,0 +1,104 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.uInt32BE
+import com.github.anrimian.musicplayer.data.storage.source.tags.TagInput.Companion.uInt32LE
+import org.jaudiotagger.tag.vorbiscomment.util.Base64Coder
+
+/**
+ * Reads vorbis comments block shared by flac and ogg containers.
+ * Comments which don't map to used fields are skipped without reading.
+ */
+object VorbisCommentsParser {
+
+    private const val PICTURE_COMMENT_KEY = "METADATA_BLOCK_PICTURE"
+    private const val MAX_KEY_LENGTH = PICTURE_COMMENT_KEY.length + 1
+
+    private val COMMENT_FIELDS = mapOf(
+        "TITLE" to TagField.TITLE,
+        "ARTIST" to TagField.ARTIST,
+        "ALBUM" to TagField.ALBUM,
+        "ALBUMARTIST" to TagField.ALBUM_ARTIST,
+        "GENRE" to TagField.GENRE,
+        "TRACKNUMBER" to TagField.TRACK,
+        "DISCNUMBER" to TagField.DISC_NO,
+        "COMMENT" to TagField.COMMENT,
+        "LYRICS" to TagField.LYRICS,
+    )
+
+    /**
+     * @param readPictureComments read artwork from base64 encoded picture comment,
+     * used by ogg files which have no picture blocks
+     */
+    fun parse(
+        input: TagInput,
+        builder: FileTags.Builder,
+        readPictureComments: Boolean
+    ) {
+        val vendorLength = uInt32LE(input.readBytes(4), 0)
+        input.skip(vendorLength)
+        val count = uInt32LE(input.readBytes(4), 0)
+        for (i in 0 until count) {
+            val length = uInt32LE(input.readBytes(4), 0)
+            //length is not trusted, comment can't be longer than the rest of file
+            if (length > input.remaining) {
+                throw UnsupportedTagLayoutException("comment length: $length")
+            }
+            //read key only first, values can be large
+            val head = input.readBytes(minOf(length, MAX_KEY_LENGTH.toLong()).toInt())
+            val separatorIndex = head.indexOf('='.code.toByte())
+            if (separatorIndex <= 0) {
+                input.skip(length - head.size)
+                continue
+            }
+            val key = String(head, 0, separatorIndex, Charsets.US_ASCII).uppercase()
+            val field = COMMENT_FIELDS[key]
+            val isPicture = key == PICTURE_COMMENT_KEY && readPictureComments && !builder.hasArtwork()
+            if (field == null && !isPicture) {
+                input.skip(length - head.size)
+                continue
+            }
+            val tail = input.readBytes((length - head.size).toInt())
+            val valueStart = separatorIndex + 1
+            if (isPicture) {
+                val value = String(head, valueStart, head.size - valueStart, Charsets.US_ASCII) +
+                        String(tail, Charsets.US_ASCII)
+                readPictureBlock(Base64Coder.decode(value))?.let(builder::setArtwork)
+            } else {
+                val value = ByteArray(head.size - valueStart + tail.size)
+                System.arraycopy(head, valueStart, value, 0, head.size - valueStart)
+                System.arraycopy(tail, 0, value, head.size - valueStart, tail.size)
+                builder.put(field!!, String(value, Charsets.UTF_8))
+            }
+        }
+    }
+
+    /**
+     * Flac picture block structure, also used by base64 picture comment.
+     * @return image data
+     */
+    fun readPictureBlock(block: ByteArray): ByteArray? {
+        var offset = 4//picture type
+        val mimeTypeLength = readLength(block, offset)
+        offset += 4 + mimeTypeLength
+        val descriptionLength = readLength(block, offset)
+        offset += 4 + descriptionLength
+        offset += 16//width, height, color depth, colors count
+        val dataLength = readLength(block, offset)
+        offset += 4
+        if (dataLength == 0 || offset + dataLength > block.size) {
+            return null
+        }
+        return block.copyOfRange(offset, offset + dataLength)
+    }
+
+    private fun readLength(block: ByteArray, offset: Int): Int {
+        if (offset + 4 > block.size) {
+            throw UnsupportedTagLayoutException("picture block")
+        }
+        val length = uInt32BE(block, offset)
+        if (length > block.size) {
+            throw UnsupportedTagLayoutException("picture block")
+        }
+        return length.toInt()
+    }
+}
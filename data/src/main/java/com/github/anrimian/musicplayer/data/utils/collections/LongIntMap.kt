@@ -0,0 +1,171 @@
+package com.github.anrimian.musicplayer.data.utils.collections
+
+/**
+ * Hash map of primitive long keys to int values with open addressing.
+ * Entries are kept in two arrays without boxing, so it takes about 16 bytes per entry.
+ *
+ * Index of entry is valid until the next change of map.
+ */
+class LongIntMap(expectedSize: Int = DEFAULT_EXPECTED_SIZE) {
+
+    private var keys = LongArray(0)
+    private var values = IntArray(0)
+    private var mask = 0
+    private var maxSize = 0
+
+    //empty slots are marked with zero key, so zero key is kept in the extra last slot
+    private var hasZeroKey = false
+
+    var size = 0
+        private set
+
+    init {
+        allocate(getCapacity(expectedSize))
+    }
+
+    /**
+     * @return index of entry with given key or -1 when there is no such key
+     */
+    fun indexOfKey(key: Long): Int {
+        if (key == EMPTY_KEY) {
+            return if (hasZeroKey) mask + 1 else -1
+        }
+        var index = slotOf(key)
+        while (true) {
+            val slotKey = keys[index]
+            if (slotKey == key) {
+                return index
+            }
+            if (slotKey == EMPTY_KEY) {
+                return -1
+            }
+            index = (index + 1) and mask
+        }
+    }
+
+    fun valueAt(index: Int) = values[index]
+
+    fun get(key: Long, defaultValue: Int): Int {
+        val index = indexOfKey(key)
+        return if (index == -1) defaultValue else values[index]
+    }
+
+    fun put(key: Long, value: Int) {
+        if (key == EMPTY_KEY) {
+            if (!hasZeroKey) {
+                hasZeroKey = true
+                size++
+            }
+            values[mask + 1] = value
+            return
+        }
+        var index = slotOf(key)
+        while (true) {
+            val slotKey = keys[index]
+            if (slotKey == key) {
+                values[index] = value
+                return
+            }
+            if (slotKey == EMPTY_KEY) {
+                keys[index] = key
+                values[index] = value
+                size++
+                if (size > maxSize) {
+                    rehash((mask + 1) * 2)
+                }
+                return
+            }
+            index = (index + 1) and mask
+        }
+    }
+
+    fun remove(key: Long) {
+        if (key == EMPTY_KEY) {
+            if (hasZeroKey) {
+                hasZeroKey = false
+                size--
+            }
+            return
+        }
+        var hole = indexOfKey(key)
+        if (hole == -1) {
+            return
+        }
+        size--
+        //entries of the same probe chain are shifted back to the hole, so no tombstones are left
+        var index = (hole + 1) and mask
+        while (true) {
+            val slotKey = keys[index]
+            if (slotKey == EMPTY_KEY) {
+                break
+            }
+            val slot = slotOf(slotKey)
+            if (((index - slot) and mask) >= ((index - hole) and mask)) {
+                keys[hole] = slotKey
+                values[hole] = values[index]
+                hole = index
+            }
+            index = (index + 1) and mask
+        }
+        keys[hole] = EMPTY_KEY
+    }
+
+    fun ensureCapacity(expectedSize: Int) {
+        val capacity = getCapacity(expectedSize)
+        if (capacity > mask + 1) {
+            rehash(capacity)
+        }
+    }
+
+    fun clear() {
+        keys.fill(EMPTY_KEY)
+        hasZeroKey = false
+        size = 0
+    }
+
+    private fun slotOf(key: Long): Int {
+        val hash = key * HASH_MULTIPLIER
+        return (hash xor (hash ushr 32)).toInt() and mask
+    }
+
+    private fun rehash(capacity: Int) {
+        val oldKeys = keys
+        val oldValues = values
+        val oldCapacity = mask + 1
+        allocate(capacity)
+        if (hasZeroKey) {
+            values[capacity] = oldValues[oldCapacity]
+        }
+        for (i in 0 until oldCapacity) {
+            val key = oldKeys[i]
+            if (key == EMPTY_KEY) {
+                continue
+            }
+            var index = slotOf(key)
+            while (keys[index] != EMPTY_KEY) {
+                index = (index + 1) and mask
+            }
+            keys[index] = key
+            values[index] = oldValues[i]
+        }
+    }
+
+    private fun allocate(capacity: Int) {
+        keys = LongArray(capacity + 1)
+        values = IntArray(capacity + 1)
+        mask = capacity - 1
+        maxSize = capacity / 4 * 3
+    }
+
+    private companion object {
+        const val DEFAULT_EXPECTED_SIZE = 16
+        const val EMPTY_KEY = 0L
+        const val HASH_MULTIPLIER = -7046029254386353131L //2^64 divided by golden ratio
+
+        //power of two which keeps given size under load factor
+        fun getCapacity(expectedSize: Int): Int {
+            val minCapacity = maxOf(2, (expectedSize.toLong() * 4 / 3 + 1).toInt())
+            return Integer.highestOneBit(minCapacity - 1) shl 1
+        }
+    }
+}
@@ -5,6 +5,7 @@ import android.database.ContentObserver;
 import android.net.Uri;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.Timer;
 import java.util.TimerTask;
@@ -39,6 +40,45 @@ public class RxContentObserver {
         });
     }
 
+    /**
+     * Emits every change event with changed uri(or observed uri if it is unknown), without throttling
+     */
+    public static Observable<Uri> getUriObservable(ContentResolver contentResolver,
+                                                   @NonNull Uri uri) {
+        return Observable.create(emitter -> {
+            ContentObserver contentObserver = new UriEmitterContentObserver(uri, emitter);
+            contentResolver.registerContentObserver(uri, false, contentObserver);
+            emitter.setDisposable(new ContentObserverDisposable(contentObserver, contentResolver));
+        });
+    }
+
+    private static class UriEmitterContentObserver extends ContentObserver {
+
+        private final Uri observedUri;
+        private final Emitter<Uri> changeEmitter;
+
+        UriEmitterContentObserver(Uri observedUri, Emitter<Uri> changeEmitter) {
+            super(null);
+            this.observedUri = observedUri;
+            this.changeEmitter = changeEmitter;
+        }
+
+        @Override
+        public boolean deliverSelfNotifications() {
+            return false;
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, @Nullable Uri uri) {
+            changeEmitter.onNext(uri == null ? observedUri : uri);
+        }
+    }
+
     private static class EmitterContentObserver extends ContentObserver {
 
         private final long minEmitWindowMillis;
@@ -0,0 +1,290 @@
+package com.github.anrimian.musicplayer.data.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects sql of library database daos: values of @Query annotations from dao sources
+ * (annotations are not retained in runtime) and queries of static query builders.
+ * Queries which can not be resolved without running the code are reported, not skipped.
+ */
+class DaoQueriesReader {
+
+    private static final String SOURCES_DIR = "src/main/java";
+
+    private static final Pattern JAVA_METHOD_NAME = Pattern.compile("(\\w+)\\s*\\(");
+    private static final Pattern KOTLIN_METHOD_NAME = Pattern.compile("fun\\s+(\\w+)\\s*\\(");
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][\\w.]*");
+    private static final Pattern KOTLIN_TEMPLATE = Pattern.compile("\\$\\{([^}]*)}|\\$([A-Za-z_]\\w*)");
+
+    /**
+     * @param unresolvedQueries receives keys of queries which sql can not be read
+     * @return map of "DaoName#methodName" to sql, overloaded methods get "#index" suffix
+     */
+    static Map<String, String> readQueries(List<String> unresolvedQueries) throws Exception {
+        Map<String, String> queries = new LinkedHashMap<>();
+        for (Class<?> daoClass: getDaoClasses()) {
+            readAnnotatedQueries(daoClass, queries, unresolvedQueries);
+            readBuilderQueries(daoClass, queries, unresolvedQueries);
+        }
+        return queries;
+    }
+
+    private static List<Class<?>> getDaoClasses() {
+        List<Class<?>> result = new ArrayList<>();
+        for (Method method: LibraryDatabase.class.getDeclaredMethods()) {
+            if (Modifier.isAbstract(method.getModifiers()) && method.getParameterCount() == 0) {
+                result.add(method.getReturnType());
+            }
+        }
+        return result;
+    }
+
+    private static void readAnnotatedQueries(Class<?> daoClass,
+                                             Map<String, String> queries,
+                                             List<String> unresolvedQueries) throws Exception {
+        String basePath = SOURCES_DIR + "/" + daoClass.getName().replace('.', '/');
+        File javaFile = new File(basePath + ".java");
+        boolean isKotlin = !javaFile.exists();
+        File file = isKotlin? new File(basePath + ".kt") : javaFile;
+        String source = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+
+        int index = 0;
+        while ((index = source.indexOf("@Query(", index)) != -1) {
+            int start = index + "@Query(".length();
+            int end = findClosingBracket(source, start);
+            String expression = source.substring(start, end);
+            index = end;
+
+            Matcher nameMatcher = (isKotlin? KOTLIN_METHOD_NAME : JAVA_METHOD_NAME).matcher(source);
+            if (!nameMatcher.find(end + 1)) {
+                unresolvedQueries.add(daoClass.getSimpleName() + ": method not found for @Query at " + start);
+                continue;
+            }
+            String key = daoClass.getSimpleName() + "#" + nameMatcher.group(1);
+            String uniqueKey = key;
+            for (int i = 1; queries.containsKey(uniqueKey); i++) {
+                uniqueKey = key + "#" + i;
+            }
+            String query = isKotlin?
+                    evaluateKotlinExpression(expression, daoClass, source) :
+                    evaluateJavaExpression(expression, daoClass, source);
+            if (query == null) {
+                unresolvedQueries.add(uniqueKey + ": " + expression.trim());
+            } else {
+                queries.put(uniqueKey, query);
+            }
+        }
+    }
+
+    private static void readBuilderQueries(Class<?> daoClass,
+                                           Map<String, String> queries,
+                                           List<String> unresolvedQueries) throws Exception {
+        Object receiver = null;
+        Class<?> builderClass = daoClass;
+        try {
+            //kotlin interfaces keep builders in companion object
+            Field companion = daoClass.getField("Companion");
+            receiver = companion.get(null);
+            builderClass = companion.getType();
+        } catch (NoSuchFieldException ignored) {}
+
+        for (Method method: builderClass.getDeclaredMethods()) {
+            if (receiver == null && !Modifier.isStatic(method.getModifiers())
+                    || !Modifier.isPublic(method.getModifiers())
+                    || !CharSequence.class.isAssignableFrom(method.getReturnType())) {
+                continue;
+            }
+            Class<?>[] types = method.getParameterTypes();
+            int variants = 1;
+            for (Class<?> type: types) {
+                if (type == boolean.class) {
+                    variants *= 2;
+                } else if (type != int.class && type != long.class && type != Long.class
+                        && type != String.class) {
+                    variants = 0;
+                    break;
+                }
+            }
+            if (variants == 0) {
+                unresolvedQueries.add(daoClass.getSimpleName() + "#" + method.getName()
+                        + ": unsupported builder arguments");
+            }
+            //every combination of flags, other arguments are used as ids and counts
+            for (int variant = 0; variant < variants; variant++) {
+                Object[] args = new Object[types.length];
+                int flags = variant;
+                for (int i = 0; i < types.length; i++) {
+                    if (types[i] == boolean.class) {
+                        args[i] = (flags & 1) == 1;
+                        flags >>= 1;
+                    } else if (types[i] == int.class) {
+                        args[i] = 1;
+                    } else if (types[i] == String.class) {
+                        args[i] = "1";
+                    } else {
+                        args[i] = 1L;
+                    }
+                }
+                String query = method.invoke(receiver, args).toString();
+                if (isStatement(query)) {
+                    queries.put(daoClass.getSimpleName() + "#" + method.getName() + "#" + variant, query);
+                }
+            }
+        }
+    }
+
+    private static boolean isStatement(String query) {
+        String start = query.trim().toUpperCase();
+        return start.startsWith("SELECT")
+                || start.startsWith("WITH")
+                || start.startsWith("UPDATE")
+                || start.startsWith("DELETE")
+                || start.startsWith("INSERT");
+    }
+
+    private static String evaluateJavaExpression(String expression, Class<?> daoClass, String source)
+            throws Exception {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (c == '"') {
+                int end = findStringEnd(expression, i + 1);
+                sb.append(unescape(expression.substring(i + 1, end)));
+                i = end + 1;
+            } else if (Character.isWhitespace(c) || c == '+') {
+                i++;
+            } else {
+                Matcher matcher = IDENTIFIER.matcher(expression);
+                if (!matcher.find(i) || matcher.start() != i) {
+                    return null;
+                }
+                String value = resolveConstant(matcher.group(), daoClass, source);
+                if (value == null) {
+                    return null;
+                }
+                sb.append(value);
+                i = matcher.end();
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String evaluateKotlinExpression(String expression, Class<?> daoClass, String source)
+            throws Exception {
+        String value = expression.trim();
+        String text;
+        if (value.startsWith("\"\"\"") && value.endsWith("\"\"\"")) {
+            text = value.substring(3, value.length() - 3);
+        } else if (value.startsWith("\"") && value.endsWith("\"") && findStringEnd(value, 1) == value.length() - 1) {
+            text = unescape(value.substring(1, value.length() - 1));
+        } else {
+            return null;
+        }
+        StringBuffer sb = new StringBuffer();
+        Matcher matcher = KOTLIN_TEMPLATE.matcher(text);
+        while (matcher.find()) {
+            String name = matcher.group(1) != null? matcher.group(1) : matcher.group(2);
+            String constant = IDENTIFIER.matcher(name).matches()?
+                    resolveConstant(name, daoClass, source) : null;
+            if (constant == null) {
+                return null;
+            }
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(constant));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static String resolveConstant(String name, Class<?> daoClass, String source)
+            throws Exception {
+        int dotIndex = name.lastIndexOf('.');
+        Class<?> owner = daoClass;
+        if (dotIndex != -1) {
+            String className = name.substring(0, dotIndex);
+            Matcher importMatcher = Pattern.compile("import\\s+([\\w.]+\\." + Pattern.quote(className) + ")\\s*;?\\s*\n")
+                    .matcher(source);
+            String fullName = importMatcher.find()?
+                    importMatcher.group(1) : daoClass.getPackage().getName() + "." + className;
+            try {
+                owner = Class.forName(fullName);
+            } catch (ClassNotFoundException e) {
+                return null;
+            }
+        }
+        try {
+            Field field = owner.getField(name.substring(dotIndex + 1));
+            Object value = field.get(null);
+            return value == null? null : value.toString();
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+    private static int findClosingBracket(String source, int start) throws IOException {
+        int depth = 0;
+        for (int i = start; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (source.startsWith("\"\"\"", i)) {
+                i = source.indexOf("\"\"\"", i + 3) + 2;
+            } else if (c == '"') {
+                i = findStringEnd(source, i + 1);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        throw new IOException("unclosed annotation at " + start);
+    }
+
+    private static int findStringEnd(String source, int start) {
+        for (int i = start; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return source.length();
+    }
+
+    private static String unescape(String literal) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c != '\\' || i == literal.length() - 1) {
+                sb.append(c);
+                continue;
+            }
+            char next = literal.charAt(++i);
+            switch (next) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'u': {
+                    sb.append((char) Integer.parseInt(literal.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                }
+                default: sb.append(next);
+            }
+        }
+        return sb.toString();
+    }
+}
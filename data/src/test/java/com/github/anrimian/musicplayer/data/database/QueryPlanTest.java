@@ -0,0 +1,179 @@
+package com.github.anrimian.musicplayer.data.database;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs EXPLAIN QUERY PLAN for dao queries on schema exported by room
+ */
+public class QueryPlanTest {
+
+    //annotated queries of daos when check was added, builder queries go above it
+    private static final int MIN_QUERIES_COUNT = 167;
+
+    private static final String SCHEMAS_DIR = "schemas/" + LibraryDatabase.class.getName();
+
+    //single item lookups of scanner, editor and detail screens, they must not read whole table
+    private static final String[] HOT_QUERIES = {
+            "CompositionsDao#update",
+            "CompositionsDao#updateStorageComposition",
+            "CompositionsDao#selectIdByStorageId",
+            "CompositionsDao#selectAsStorageCompositions",
+            "CompositionsDao#selectStorageCompositionsPage",
+            "CompositionsDao#selectNextCompositionsToScan",
+            "CompositionsDao#selectCompositionsToScan",
+            "CompositionsDao#setCompositionLastFileScanTime",
+            "CompositionsDao#findCompositionsByFileName",
+            "CompositionsDao#findCompositionByFileName",
+            "CompositionsDao#deleteCompositionsWithoutStorageId",
+            "CompositionsDao#getDeletedCompositionQuery#0",
+            "FoldersDao#getFolderObservable",
+            "FoldersDao#getFolderIdByPath",
+            "FoldersDao#getFolderByName",
+            "PlayListDao#isPlayListExistsByStorageId",
+            "PlayListDao#getPlayListObservable",
+            "ArtistsDao#getArtistObservable",
+            "AlbumsDao#getAlbumObservable",
+            "GenreDao#getGenreObservable",
+    };
+
+    private static final Pattern SCHEMA_SQL = Pattern.compile(
+            "\"(tableName|viewName|createSql)\"\\s*:\\s*\"((?:\\\\.|[^\"\\\\])*)\"");
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (?:TABLE )?(\\w+)(?: AS \\w+)?$");
+
+    private static Connection connection;
+    private static Map<String, String> queries;
+    private static final List<String> unresolvedQueries = new ArrayList<>();
+    private static final Set<String> tables = new HashSet<>();
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        createSchema(getLatestSchemaFile());
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name FROM sqlite_master WHERE type = 'table'")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        queries = DaoQueriesReader.readQueries(unresolvedQueries);
+    }
+
+    @AfterAll
+    public static void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    public void allQueriesAreReadTest() {
+        if (!unresolvedQueries.isEmpty()) {
+            fail("queries not resolved:\n" + String.join("\n", unresolvedQueries));
+        }
+        assertTrue(queries.size() >= MIN_QUERIES_COUNT,
+                "only " + queries.size() + " queries read, expected at least " + MIN_QUERIES_COUNT);
+    }
+
+    @Test
+    public void allQueriesArePlannedTest() {
+        List<String> errors = new ArrayList<>();
+        for (Map.Entry<String, String> entry: queries.entrySet()) {
+            try {
+                explain(entry.getValue());
+            } catch (SQLException e) {
+                errors.add(entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            fail(String.join("\n", errors));
+        }
+    }
+
+    @Test
+    public void hotQueriesUseIndicesTest() throws Exception {
+        for (String key: HOT_QUERIES) {
+            String query = queries.get(key);
+            assertNotNull(query, "query not found: " + key);
+
+            List<String> plan = explain(query);
+            List<String> scannedTables = new ArrayList<>();
+            for (String detail: plan) {
+                Matcher matcher = FULL_SCAN.matcher(detail);
+                if (matcher.matches() && tables.contains(matcher.group(1))) {
+                    scannedTables.add(matcher.group(1));
+                }
+            }
+            assertTrue(scannedTables.isEmpty(),
+                    key + " scans " + scannedTables + ", plan: " + plan + ", query: " + query);
+        }
+    }
+
+    private static List<String> explain(String query) throws SQLException {
+        List<String> result = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + query)) {
+            int paramsCount = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= paramsCount; i++) {
+                statement.setObject(i, null);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    result.add(rs.getString("detail"));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void createSchema(File schemaFile) throws Exception {
+        String json = new String(Files.readAllBytes(schemaFile.toPath()), StandardCharsets.UTF_8);
+        Matcher matcher = SCHEMA_SQL.matcher(json);
+        String name = null;
+        try (Statement statement = connection.createStatement()) {
+            while (matcher.find()) {
+                String value = matcher.group(2).replace("\\\"", "\"").replace("\\\\", "\\");
+                if (matcher.group(1).equals("createSql")) {
+                    statement.execute(value.replace("${TABLE_NAME}", name)
+                            .replace("${VIEW_NAME}", name));
+                } else {
+                    name = value;
+                }
+            }
+        }
+    }
+
+    private static File getLatestSchemaFile() {
+        File[] files = new File(SCHEMAS_DIR).listFiles((dir, fileName) -> fileName.endsWith(".json"));
+        assertNotNull(files, "schemas not found in " + SCHEMAS_DIR);
+        File latest = null;
+        int latestVersion = 0;
+        for (File file: files) {
+            int version = Integer.parseInt(file.getName().replace(".json", ""));
+            if (version > latestVersion) {
+                latestVersion = version;
+                latest = file;
+            }
+        }
+        return latest;
+    }
+}
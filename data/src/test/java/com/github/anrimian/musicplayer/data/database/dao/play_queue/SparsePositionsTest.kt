@@ -0,0 +1,158 @@
+package com.github.anrimian.musicplayer.data.database.dao.play_queue
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.TreeMap
+
+class SparsePositionsTest {
+
+    private val store = TestStore()
+    private val sparsePositions = SparsePositions(store)
+
+    private var nextId = 1L
+
+    @Test
+    fun `insert into gap does not move rows`() {
+        insertQueue(1000)
+        val currentId = store.getIdAt(500)
+
+        insertAfter(currentId, 3)
+
+        assertEquals(0, store.updatesCount)
+        assertOrder()
+        assertEquals(1003, store.size())
+    }
+
+    @Test
+    fun `insert at the end and at the start`() {
+        insertQueue(10)
+
+        val endPositions = sparsePositions.allocateAfter(store.lastPosition(), 2)
+        val startPositions = sparsePositions.allocateAfter(null, 2)
+
+        assertTrue(endPositions[0] > store.lastPosition())
+        assertTrue(startPositions[1] < store.firstPosition())
+        assertEquals(0, store.updatesCount)
+    }
+
+    @Test
+    fun `repeated insertions at the same place touch only neighbour rows`() {
+        insertQueue(30_000)
+        val currentId = store.getIdAt(15_000)
+
+        for (i in 0 until 1000) {
+            insertAfter(currentId, 1)
+        }
+
+        assertOrder()
+        assertEquals(31_000, store.size())
+        //rows are moved only by local rebalancing
+        assertTrue(store.updatesCount < 100_000, "updates: ${store.updatesCount}")
+    }
+
+    @Test
+    fun `dense positions are spread on first insertion`() {
+        for (i in 0 until 1000) {
+            store.insert(nextId++, i)
+        }
+        val currentId = store.getIdAt(10)
+
+        insertAfter(currentId, 5)
+        insertAfter(currentId, 5)
+
+        assertOrder()
+        assertEquals(1010, store.size())
+    }
+
+    @Test
+    fun `initial positions fit int range`() {
+        val count = 10_000_000
+        assertTrue(SparsePositions.getInitialPosition(0, count) > 0)
+        assertTrue(SparsePositions.getInitialPosition(count - 1, count) > 0)
+        assertEquals(2048, SparsePositions.getInitialPosition(1, 1000))
+    }
+
+    private fun insertQueue(count: Int) {
+        for (i in 0 until count) {
+            store.insert(nextId++, SparsePositions.getInitialPosition(i, count))
+        }
+    }
+
+    private fun insertAfter(itemId: Long, count: Int) {
+        val expectedOrder = store.getOrder()
+        val index = expectedOrder.indexOf(itemId)
+        val newIds = ArrayList<Long>()
+
+        val positions = sparsePositions.allocateAfter(store.getPosition(itemId), count)
+        for (position in positions) {
+            val id = nextId++
+            store.insert(id, position)
+            newIds.add(id)
+        }
+
+        expectedOrder.addAll(index + 1, newIds)
+        assertEquals(expectedOrder, store.getOrder())
+    }
+
+    private fun assertOrder() {
+        val positions = store.positions.keys.toList()
+        for (i in 1 until positions.size) {
+            assertTrue(positions[i - 1] < positions[i])
+        }
+        assertTrue(positions.first() >= 0)
+    }
+
+    private class TestStore : SparsePositions.Store {
+
+        val positions = TreeMap<Int, Long>()
+        private val idsPositions = HashMap<Long, Int>()
+
+        var updatesCount = 0
+
+        fun insert(id: Long, position: Int) {
+            check(positions.put(position, id) == null) { "position is taken: $position" }
+            idsPositions[id] = position
+        }
+
+        fun size() = positions.size
+
+        fun getIdAt(index: Int) = positions.values.elementAt(index)
+
+        fun getPosition(id: Long) = idsPositions[id]!!
+
+        fun firstPosition() = positions.firstKey()
+
+        fun lastPosition() = positions.lastKey()
+
+        fun getOrder() = ArrayList(positions.values)
+
+        override fun getNextPosition(position: Int) = positions.higherKey(position)
+
+        override fun getPositionsBefore(position: Int, limit: Int): List<QueuePosition> {
+            return positions.headMap(position, true)
+                .descendingMap()
+                .entries
+                .take(limit)
+                .map { QueuePosition(it.value, it.key) }
+        }
+
+        override fun getPositionsAfter(position: Int, limit: Int): List<QueuePosition> {
+            return positions.tailMap(position, true)
+                .entries
+                .take(limit)
+                .map { QueuePosition(it.value, it.key) }
+        }
+
+        override fun updatePosition(id: Long, position: Int) {
+            val oldPosition = idsPositions[id]!!
+            val lowerPosition = positions.lowerKey(oldPosition)
+            val higherPosition = positions.higherKey(oldPosition)
+            check(lowerPosition == null || lowerPosition < position) { "row is moved over $lowerPosition" }
+            check(higherPosition == null || higherPosition > position) { "row is moved over $higherPosition" }
+            positions.remove(oldPosition)
+            insert(id, position)
+            updatesCount++
+        }
+    }
+}
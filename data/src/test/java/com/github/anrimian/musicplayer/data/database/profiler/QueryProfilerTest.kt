@@ -0,0 +1,98 @@
+package com.github.anrimian.musicplayer.data.database.profiler
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class QueryProfilerTest {
+
+    private val queryProfiler = QueryProfiler(100, 2, 3)
+
+    @Test
+    fun `literals and argument lists are reduced to shape`() {
+        assertEquals(
+            "SELECT id FROM compositions WHERE artistId IN (?...) AND title = ? AND x > ? LIMIT ?",
+            QueryShapes.getShape(
+                "SELECT id FROM compositions\n    WHERE artistId IN (1, 2,3) AND title = 'it''s' AND x > 1.5 LIMIT ?"
+            )
+        )
+        assertEquals("SELECT * FROM table1", QueryShapes.getShape("SELECT * FROM table1"))
+    }
+
+    @Test
+    fun `queries with different values are counted in one shape`() {
+        execute("SELECT * FROM compositions WHERE id = 1", millis(3), 1)
+        execute("SELECT * FROM compositions WHERE id = 2", millis(20), 0)
+
+        val stats = queryProfiler.getStats("SELECT * FROM compositions WHERE id = 3")!!
+        assertEquals(2, stats.count)
+        assertEquals(1, stats.rowsCount)
+        assertEquals(20, stats.maxMillis)
+        assertEquals(23, stats.totalMillis)
+        assertEquals("CompositionsDao_Impl.getComposition", stats.caller)
+        assertEquals(1, stats.histogram[2])//2..4 ms
+        assertEquals(1, stats.histogram[5])//16..32 ms
+        assertEquals(4, stats.getPercentileMillis(0.5f))
+        assertEquals(32, stats.getPercentileMillis(0.95f))
+    }
+
+    @Test
+    fun `caller is requested only for new shapes`() {
+        var callerRequests = 0
+        repeat(10) {
+            queryProfiler.onQueryExecuted("SELECT * FROM albums", 0, millis(1), 1) {
+                callerRequests++
+                "AlbumsDao_Impl.getAll"
+            }
+        }
+        assertEquals(1, callerRequests)
+    }
+
+    @Test
+    fun `slow query log is bounded and keeps no argument values`() {
+        execute("SELECT * FROM compositions WHERE title = 'first secret'", millis(150), 1)
+        execute("SELECT * FROM compositions WHERE title = 'second secret'", millis(200), 1)
+        execute("SELECT * FROM compositions WHERE title = 'third secret'", millis(300), 1)
+        execute("SELECT * FROM compositions WHERE title = 'fast secret'", millis(10), 1)
+
+        val slowQueries = queryProfiler.getSlowQueries()
+        assertEquals(2, slowQueries.size)
+        assertEquals(200, slowQueries[0].durationMillis)
+        assertEquals(300, slowQueries[1].durationMillis)
+        assertEquals("SELECT * FROM compositions WHERE title = ?", slowQueries[1].shape)
+
+        val report = queryProfiler.getReport()
+        assertFalse(report.contains("secret"))
+        assertTrue(report.contains("SELECT * FROM compositions WHERE title = ?"))
+    }
+
+    @Test
+    fun `count of shapes is bounded`() {
+        for (i in 1..5) {
+            execute("SELECT * FROM table$i", millis(1), 1)
+        }
+
+        val stats = queryProfiler.getStats()
+        assertEquals(4, stats.size)
+        assertEquals(2, stats.first { it.shape == QueryProfiler.OTHER_SHAPE }.count)
+    }
+
+    @Test
+    fun `reset clears collected data`() {
+        execute("SELECT * FROM compositions", millis(500), 1)
+
+        queryProfiler.reset()
+
+        assertTrue(queryProfiler.getStats().isEmpty())
+        assertTrue(queryProfiler.getSlowQueries().isEmpty())
+    }
+
+    private fun execute(sql: String, durationNanos: Long, rowsCount: Int) {
+        queryProfiler.onQueryExecuted(sql, 0, durationNanos, rowsCount) {
+            "CompositionsDao_Impl.getComposition"
+        }
+    }
+
+    private fun millis(millis: Long) = millis * 1_000_000
+}
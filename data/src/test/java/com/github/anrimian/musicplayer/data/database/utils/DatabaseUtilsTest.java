@@ -0,0 +1,32 @@
+package com.github.anrimian.musicplayer.data.database.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+public class DatabaseUtilsTest {
+
+    @Test
+    public void matchExpressionOfWordsTest() {
+        assertEquals("\"queen*\" \"live*\"", DatabaseUtils.getFtsMatchExpression("queen live"));
+        assertEquals("\"beyoncé*\"", DatabaseUtils.getFtsMatchExpression("beyoncé"));
+        assertEquals("\"R*\" \"B*\"", DatabaseUtils.getFtsMatchExpression(" R&B "));
+    }
+
+    @Test
+    public void matchExpressionDropsQuerySyntaxTest() {
+        assertEquals("\"a*\" \"NOT*\" \"b*\"", DatabaseUtils.getFtsMatchExpression("a* NOT \"b"));
+        assertNull(DatabaseUtils.getFtsMatchExpression("\"*-"));
+        assertNull(DatabaseUtils.getFtsMatchExpression(""));
+        assertNull(DatabaseUtils.getFtsMatchExpression(null));
+    }
+
+    @Test
+    public void ftsSearchArgsTest() {
+        assertArrayEquals(new String[] { "\"song*\"", "\"song*\"" },
+                DatabaseUtils.getFtsSearchArgs("song", 2));
+        assertArrayEquals(new String[] { null, null }, DatabaseUtils.getFtsSearchArgs(" ", 2));
+    }
+}
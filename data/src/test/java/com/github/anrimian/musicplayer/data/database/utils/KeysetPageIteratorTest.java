@@ -0,0 +1,79 @@
+package com.github.anrimian.musicplayer.data.database.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class KeysetPageIteratorTest {
+
+    private final List<Long> requestedKeys = new ArrayList<>();
+
+    @Test
+    public void iterateOverAllPagesTest() {
+        Iterator<Long> iterator = new KeysetPageIterator<>(this::loadPage, item -> item, 3);
+
+        List<Long> result = new ArrayList<>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+
+        assertEquals(listOf(2, 4, 6, 8, 10, 12, 14), result);
+        assertEquals(listOf(Long.MIN_VALUE, 6, 12), requestedKeys);
+    }
+
+    @Test
+    public void fullLastPageTest() {
+        Iterator<Long> iterator = new KeysetPageIterator<>(this::loadPage, item -> item, 7, 0);
+
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+
+        assertEquals(7, count);
+        assertEquals(listOf(0, 14), requestedKeys);
+        assertFalse(iterator.hasNext());
+        assertEquals(2, requestedKeys.size());
+    }
+
+    @Test
+    public void emptyTableTest() {
+        Iterator<Long> iterator = new KeysetPageIterator<>((afterKey, pageSize) -> {
+            requestedKeys.add(afterKey);
+            return new ArrayList<>();
+        }, item -> item, 3);
+
+        assertFalse(iterator.hasNext());
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+        assertEquals(1, requestedKeys.size());
+    }
+
+    //table of even keys from 2 to 14
+    private List<Long> loadPage(long afterKey, int pageSize) {
+        requestedKeys.add(afterKey);
+        List<Long> page = new ArrayList<>();
+        for (long key = 2; key <= 14 && page.size() < pageSize; key += 2) {
+            if (key > afterKey) {
+                page.add(key);
+            }
+        }
+        return page;
+    }
+
+    private static List<Long> listOf(long... values) {
+        List<Long> list = new ArrayList<>();
+        for (long value: values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
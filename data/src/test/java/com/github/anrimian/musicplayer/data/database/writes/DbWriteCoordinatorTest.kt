@@ -0,0 +1,120 @@
+package com.github.anrimian.musicplayer.data.database.writes
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase
+import io.reactivex.rxjava3.schedulers.TestScheduler
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+import java.util.concurrent.TimeUnit
+
+class DbWriteCoordinatorTest {
+
+    private val libraryDatabase: LibraryDatabase = mock()
+    private val scheduler = TestScheduler()
+
+    private val writeCoordinator = DbWriteCoordinator(libraryDatabase, scheduler, 3, 100)
+
+    private val executedWrites = ArrayList<String>()
+
+    @BeforeEach
+    fun setUp() {
+        doAnswer { invocation -> invocation.getArgument<Runnable>(0).run() }
+            .whenever(libraryDatabase).runInTransaction(any<Runnable>())
+    }
+
+    @Test
+    fun `commit writes together after max latency`() {
+        val firstObserver = writeCoordinator.write(write("first")).test()
+        val secondObserver = writeCoordinator.write(write("second")).test()
+
+        scheduler.advanceTimeBy(99, TimeUnit.MILLISECONDS)
+        firstObserver.assertNotComplete()
+        assertEquals(emptyList<String>(), executedWrites)
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+        firstObserver.assertComplete()
+        secondObserver.assertComplete()
+        assertEquals(listOf("first", "second"), executedWrites)
+        verify(libraryDatabase, times(1)).runInTransaction(any<Runnable>())
+    }
+
+    @Test
+    fun `merge writes with the same key`() {
+        val firstObserver = writeCoordinator.write(1L, write("first position")).test()
+        writeCoordinator.write(write("other")).test()
+        val secondObserver = writeCoordinator.write(1L, write("second position")).test()
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS)
+
+        firstObserver.assertComplete()
+        secondObserver.assertComplete()
+        assertEquals(listOf("other", "second position"), executedWrites)
+        assertEquals(1, writeCoordinator.getMetrics().mergedWritesCount)
+        assertTrue(writeCoordinator.getReport().contains("merged: 1"))
+    }
+
+    @Test
+    fun `commit full batch without waiting`() {
+        for (i in 1..4) {
+            writeCoordinator.write(write("write $i")).test()
+        }
+        scheduler.triggerActions()
+
+        assertEquals(listOf("write 1", "write 2", "write 3", "write 4"), executedWrites)
+        verify(libraryDatabase, times(2)).runInTransaction(any<Runnable>())
+        assertEquals(4, writeCoordinator.getMetrics().maxQueueDepth)
+        assertEquals(0, writeCoordinator.getMetrics().queueDepth)
+    }
+
+    @Test
+    fun `failed write does not fail others`() {
+        val exception = RuntimeException()
+        val firstObserver = writeCoordinator.write(write("first")).test()
+        val failedObserver = writeCoordinator.write { throw exception }.test()
+        val secondObserver = writeCoordinator.write(write("second")).test()
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS)
+
+        firstObserver.assertComplete()
+        secondObserver.assertComplete()
+        failedObserver.assertError(exception)
+    }
+
+    @Test
+    fun `separate write is committed in its own transaction`() {
+        writeCoordinator.write(write("first")).test()
+        val separateObserver = writeCoordinator.writeSeparately(write("separate")).test()
+        writeCoordinator.write(write("second")).test()
+
+        writeCoordinator.flush().test()
+        scheduler.triggerActions()
+
+        separateObserver.assertComplete()
+        assertEquals(listOf("first", "separate", "second"), executedWrites)
+        verify(libraryDatabase, times(3)).runInTransaction(any<Runnable>())
+    }
+
+    @Test
+    fun `flush commits pending writes`() {
+        val observer = writeCoordinator.write(write("first")).test()
+
+        writeCoordinator.flush().test()
+        scheduler.triggerActions()
+
+        observer.assertComplete()
+        assertEquals(listOf("first"), executedWrites)
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+        verify(libraryDatabase, times(1)).runInTransaction(any<Runnable>())
+        assertEquals(1, writeCoordinator.getMetrics().transactionsCount)
+    }
+
+    private fun write(name: String) = Runnable { executedWrites.add(name) }
+}
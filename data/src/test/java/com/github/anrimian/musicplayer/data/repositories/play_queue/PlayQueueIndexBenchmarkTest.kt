@@ -0,0 +1,80 @@
+package com.github.anrimian.musicplayer.data.repositories.play_queue
+
+import com.github.anrimian.musicplayer.domain.Constants
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Assumptions.assumeTrue
+import org.junit.jupiter.api.Tag
+import org.junit.jupiter.api.Test
+import java.lang.management.ManagementFactory
+
+/**
+ * Creates in-memory queue of max size and prints time of its creation, heap retained by it,
+ * time and allocations of navigation and insertions.
+ * Heap is measured by used memory after gc, so value is approximate. Allocated bytes are taken
+ * from thread allocation counter of hotspot jvm.
+ * Excluded from default test run, use -Pbenchmarks to run it.
+ */
+@Tag("benchmark")
+class PlayQueueIndexBenchmarkTest {
+
+    @Test
+    fun `queue of max size is navigated and changed without copies of queue`() {
+        val threadBean = ManagementFactory.getThreadMXBean()
+        assumeTrue(threadBean is com.sun.management.ThreadMXBean)
+        threadBean as com.sun.management.ThreadMXBean
+
+        val size = Constants.PLAY_QUEUE_MAX_ITEMS_COUNT
+        val compositionIds = List(size) { i -> i + 1L }
+        val usedMemory = getUsedMemoryAfterGc()
+        val index = PlayQueueIndex()
+        index.load(emptySequence(), emptyList(), 0, 0, index.getLoadVersion())
+        var time = System.nanoTime()
+        var currentItemId = index.setQueue(compositionIds, Constants.NO_POSITION, true, 0)
+        val setQueueMillis = (System.nanoTime() - time) / 1_000_000
+        val newQueueWritesCount = index.drainWrites().size
+        //both orders with their maps of positions, arrays of pending writes are released
+        val retainedBytes = getUsedMemoryAfterGc() - usedMemory
+
+        val threadId = Thread.currentThread().id
+        val bytes = threadBean.getThreadAllocatedBytes(threadId)
+        time = System.nanoTime()
+        for (i in 0 until NAVIGATIONS_COUNT) {
+            val isShuffled = i % 2 == 0
+            currentItemId = index.getNextItemId(currentItemId, isShuffled)!!
+            index.getPosition(currentItemId, isShuffled)
+        }
+        val navigationNanos = (System.nanoTime() - time) / NAVIGATIONS_COUNT
+        val navigationBytes = (threadBean.getThreadAllocatedBytes(threadId) - bytes) / NAVIGATIONS_COUNT
+
+        time = System.nanoTime()
+        for (i in 0 until INSERTIONS_COUNT) {
+            index.addAfter(listOf(i.toLong()), currentItemId)
+        }
+        val insertionNanos = (System.nanoTime() - time) / INSERTIONS_COUNT
+        val writesCount = index.drainWrites().size
+
+        println("set queue: $setQueueMillis ms, writes: $newQueueWritesCount, " +
+                "retained heap: ${retainedBytes / 1024} KB, navigation: $navigationNanos ns, " +
+                "$navigationBytes bytes, insertion: $insertionNanos ns, writes: $writesCount")
+        assertEquals(size + INSERTIONS_COUNT, index.getSize())
+        //full copy of item ids takes 8 bytes per item
+        assertTrue(navigationBytes * 1000 < size * 8L)
+        //only rows around insertion place are moved
+        assertTrue(writesCount < INSERTIONS_COUNT * 50)
+    }
+
+    private fun getUsedMemoryAfterGc(): Long {
+        val runtime = Runtime.getRuntime()
+        repeat(3) {
+            System.gc()
+            Thread.sleep(100)
+        }
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+
+    private companion object {
+        const val NAVIGATIONS_COUNT = 1000
+        const val INSERTIONS_COUNT = 1000
+    }
+}
@@ -0,0 +1,429 @@
+package com.github.anrimian.musicplayer.data.repositories.play_queue
+
+import com.github.anrimian.musicplayer.data.database.dao.play_queue.PlayQueueWrite
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity
+import com.github.anrimian.musicplayer.domain.Constants
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.Random
+
+/**
+ * Applies random operations to in-memory queue and compares it with table which is built
+ * from its writes and answers the same way as queries of PlayQueueDao
+ */
+class PlayQueueIndexTest {
+
+    private val corruptedCompositionIds = setOf(3L, 7L, 8L, 15L)
+
+    private lateinit var orderMirrors: List<OrderMirror>
+
+    private var index = createIndex()
+    private val table = PlayQueueTable()
+
+    @Test
+    fun `random operations match play queue table queries`() {
+        for (seed in 1L..20L) {
+            index = createIndex()
+            index.load(emptySequence(), corruptedCompositionIds, 0, 0, index.getLoadVersion())
+            table.clear()
+            val random = Random(seed)
+
+            repeat(OPERATIONS_COUNT) {
+                applyRandomOperation(random)
+                persistWrites()
+                assertSameState(index, random)
+            }
+        }
+    }
+
+    @Test
+    fun `loaded copy restores persisted state`() {
+        for (seed in 1L..20L) {
+            index = createIndex()
+            index.load(emptySequence(), corruptedCompositionIds, 0, 0, index.getLoadVersion())
+            table.clear()
+            val random = Random(seed)
+            repeat(OPERATIONS_COUNT / 2) {
+                applyRandomOperation(random)
+                persistWrites()
+            }
+
+            //process is restarted, only persisted state is left
+            index = createIndex()
+            index.load(
+                table.getRows().shuffled(random).asSequence(),
+                corruptedCompositionIds,
+                table.getLastItemId(),
+                table.shuffleSeed,
+                0
+            )
+            assertSameState(index, random)
+
+            //ids of new items don't repeat ids of persisted ones
+            repeat(OPERATIONS_COUNT / 2) {
+                applyRandomOperation(random)
+                persistWrites()
+                assertSameState(index, random)
+            }
+        }
+    }
+
+    @Test
+    fun `rows moved by rebalancing are persisted in the same order`() {
+        index.load(emptySequence(), corruptedCompositionIds, 0, 0, index.getLoadVersion())
+        val random = Random(0)
+        index.setQueue(randomCompositionIds(random, 50), 10, true, 0)
+        persistWrites()
+        val currentItemId = index.getEntities()[10].id
+
+        var movedRowsCount = 0
+        repeat(100) {
+            index.addAfter(randomCompositionIds(random, 1), currentItemId)
+            val writes = index.drainWrites()
+            movedRowsCount += writes.count { write -> write is PlayQueueWrite.UpdatePosition }
+            table.apply(writes)
+            assertSameState(index, random)
+        }
+        assertTrue(movedRowsCount > 0)
+    }
+
+    @Test
+    fun `previous item skips corrupted compositions`() {
+        index.load(emptySequence(), corruptedCompositionIds, 0, 0, index.getLoadVersion())
+        index.setQueue(listOf(1L, 3L, 7L, 4L), Constants.NO_POSITION, false, 0)
+        val itemIds = index.getEntities().map(PlayQueueEntity::getId)
+
+        assertEquals(itemIds[0], index.getPreviousItemId(itemIds[3], false))
+        assertEquals(itemIds[3], index.getPreviousItemId(itemIds[0], false))
+        assertEquals(itemIds[1], index.getNextItemId(itemIds[0], false))
+    }
+
+    @Test
+    fun `copy invalidated during load stays outdated`() {
+        val loadVersion = index.getLoadVersion()
+        index.invalidate()
+
+        index.load(emptySequence(), emptyList(), 0, 0, loadVersion)
+        assertFalse(index.isLoaded())
+
+        index.load(emptySequence(), emptyList(), 0, 0, index.getLoadVersion())
+        assertTrue(index.isLoaded())
+    }
+
+    @Test
+    fun `new queue is stored as shuffle of random with the same seed`() {
+        index.load(emptySequence(), corruptedCompositionIds, 0, 0, index.getLoadVersion())
+        val compositionIds = randomCompositionIds(Random(0), 40)
+        index.setQueue(compositionIds, Constants.NO_POSITION, true, 42)
+
+        val shuffledIndexes = (0 until 40).toMutableList()
+        shuffledIndexes.shuffle(Random(42))
+        val entities = index.getEntities()
+        for (i in entities.indices) {
+            assertEquals((i + 1) * 1024, entities[i].position)
+            assertEquals((shuffledIndexes[i] + 1) * 1024, entities[i].shuffledPosition)
+        }
+        assertEquals(ShufflePermutation.IDENTITY_SEED, index.getShuffleSeed())
+    }
+
+    @Test
+    fun `reshuffle writes only current item and repeats order of the same seed`() {
+        index.load(emptySequence(), corruptedCompositionIds, 0, 0, index.getLoadVersion())
+        val random = Random(0)
+        index.setQueue(randomCompositionIds(random, 300), Constants.NO_POSITION, true, 0)
+        persistWrites()
+        val itemIds = index.getEntities().map(PlayQueueEntity::getId)
+        val currentItemId = itemIds[150]
+
+        val seed = ShufflePermutation.newSeed(random)
+        index.reshuffle(currentItemId, seed)
+        val writes = index.drainWrites()
+        assertTrue(writes.count { write -> write !is PlayQueueWrite.UpdateShuffleSeed } <= 1)
+        table.apply(writes)
+        assertEquals(seed, table.shuffleSeed)
+        assertSameState(index, random)
+        assertEquals(0, index.getIndex(currentItemId, true))
+        val shuffledIds = itemIds.sortedBy { id -> index.getIndex(id, true) }
+
+        //the same seed gives the same order after restart
+        index = createIndex()
+        index.load(
+            table.getRows().asSequence(),
+            corruptedCompositionIds,
+            table.getLastItemId(),
+            seed,
+            0
+        )
+        assertEquals(shuffledIds, itemIds.sortedBy { id -> index.getIndex(id, true) })
+        assertEquals(shuffledIds, index.getItemIds(true).toList())
+    }
+
+    @Test
+    fun `new queue is written in parts`() {
+        index.load(emptySequence(), corruptedCompositionIds, 0, 0, index.getLoadVersion())
+        val random = Random(0)
+        index.setQueue(randomCompositionIds(random, 30), Constants.NO_POSITION, false, 0)
+        persistWrites()
+
+        index.setQueue(randomCompositionIds(random, 12_000), Constants.NO_POSITION, false, 0)
+        val writes = index.drainWrites()
+        assertEquals(3, writes.count { write -> write is PlayQueueWrite.InsertQueuePart })
+        table.apply(writes)
+        assertEquals(12_000, table.getRows().size)
+        assertEquals(index.getEntities().map(::toList), table.getRows().map(::toList))
+    }
+
+    private fun createIndex(): PlayQueueIndex {
+        val index = PlayQueueIndex()
+        orderMirrors = listOf(OrderMirror(index, false), OrderMirror(index, true))
+        return index
+    }
+
+    private fun persistWrites() {
+        table.apply(index.drainWrites())
+    }
+
+    private fun applyRandomOperation(random: Random) {
+        val itemIds = table.getRows().map(PlayQueueEntity::getId).sorted()
+        when (random.nextInt(10)) {
+            0 -> {
+                val compositionIds = randomCompositionIds(random, 1 + random.nextInt(30))
+                val startPosition = if (random.nextBoolean()) {
+                    Constants.NO_POSITION
+                } else {
+                    random.nextInt(compositionIds.size)
+                }
+                index.setQueue(compositionIds, startPosition, random.nextBoolean(), random.nextLong())
+            }
+            1, 2, 3 -> index.addAfter(
+                randomCompositionIds(random, 1 + random.nextInt(3)),
+                randomItemId(random, itemIds)
+            )
+            4 -> index.addToEnd(randomCompositionIds(random, 1 + random.nextInt(3)))
+            5 -> index.removeItem(randomItemId(random, itemIds))
+            6 -> index.restoreDeletedItem()
+            7 -> index.swapItems(
+                randomItemId(random, itemIds),
+                randomItemId(random, itemIds),
+                random.nextBoolean()
+            )
+            8 -> index.reshuffle(randomItemId(random, itemIds), ShufflePermutation.newSeed(random))
+            else -> if (random.nextInt(10) == 0 || itemIds.size > MAX_QUEUE_SIZE) {
+                index.clear()
+            }
+        }
+    }
+
+    private fun assertSameState(index: PlayQueueIndex, random: Random) {
+        val rows = table.getRows()
+        assertEquals(rows.size, index.getSize())
+        assertEquals(
+            rows.sortedBy(PlayQueueEntity::getPosition).map(::toList),
+            index.getEntities().map(::toList)
+        )
+
+        for (mirror in orderMirrors) {
+            assertEquals(index.getItemIds(mirror.isShuffled).toList(), mirror.itemIds)
+        }
+
+        val checkedIds = rows.map(PlayQueueEntity::getId) + MISSING_ITEM_ID
+        for (isShuffled in listOf(false, true)) {
+            for (itemId in checkedIds) {
+                assertEquals(
+                    table.getNextItemId(itemId, isShuffled),
+                    index.getNextItemId(itemId, isShuffled)
+                )
+                assertEquals(
+                    table.getPreviousItemId(itemId, isShuffled, corruptedCompositionIds),
+                    index.getPreviousItemId(itemId, isShuffled)
+                )
+                assertEquals(
+                    table.getIndex(itemId, isShuffled),
+                    index.getIndex(itemId, isShuffled)
+                )
+                assertEquals(
+                    table.isLastItem(itemId, isShuffled),
+                    index.isLastItem(itemId, isShuffled)
+                )
+            }
+            //keys of shuffled order are spread over all non-negative values by permutation
+            val positionsBound = if (isShuffled && table.shuffleSeed != 0L) {
+                Int.MAX_VALUE
+            } else {
+                rows.size * 2048 + 2
+            }
+            repeat(10) {
+                val position = random.nextInt(positionsBound)
+                assertEquals(
+                    table.getItemAtPosition(position, isShuffled),
+                    index.getItemAtPosition(position, isShuffled)
+                )
+            }
+        }
+    }
+
+    //insertions around the same items exhaust gaps between positions
+    private fun randomItemId(random: Random, itemIds: List<Long>): Long {
+        if (itemIds.isEmpty() || random.nextInt(20) == 0) {
+            return MISSING_ITEM_ID
+        }
+        if (random.nextInt(10) < 7) {
+            return itemIds[random.nextInt(minOf(3, itemIds.size))]
+        }
+        return itemIds[random.nextInt(itemIds.size)]
+    }
+
+    private fun randomCompositionIds(random: Random, count: Int): List<Long> {
+        return List(count) { 1L + random.nextInt(20) }
+    }
+
+    private fun toList(entity: PlayQueueEntity): List<Long> {
+        return listOf(
+            entity.id,
+            entity.audioId,
+            entity.position.toLong(),
+            entity.shuffledPosition.toLong()
+        )
+    }
+
+    /**
+     * List of item ids which is patched by published changes of queue order
+     */
+    private class OrderMirror(private val index: PlayQueueIndex, val isShuffled: Boolean) {
+
+        val itemIds = ArrayList<Long>()
+
+        init {
+            index.getOrderChangesObservable(isShuffled).subscribe(::apply)
+        }
+
+        private fun apply(change: QueueOrderChange) {
+            when (change) {
+                QueueOrderChange.Reset -> {
+                    itemIds.clear()
+                    itemIds.addAll(index.getItemIds(isShuffled).toList())
+                }
+                is QueueOrderChange.Insert -> itemIds.addAll(change.index, change.itemIds.toList())
+                is QueueOrderChange.Remove -> {
+                    itemIds.subList(change.index, change.index + change.count).clear()
+                }
+                is QueueOrderChange.Move -> itemIds.add(change.to, itemIds.removeAt(change.from))
+            }
+        }
+    }
+
+    /**
+     * Play queue table with its unique indexes and stored shuffle seed. Queries repeat queries
+     * of PlayQueueDao, shuffled order is order of permuted shuffled positions
+     */
+    private class PlayQueueTable {
+
+        private val rows = LinkedHashMap<Long, PlayQueueEntity>()
+
+        var shuffleSeed = 0L
+            private set
+
+        fun clear() {
+            rows.clear()
+            shuffleSeed = 0L
+        }
+
+        fun getRows() = rows.values.toList()
+
+        fun getLastItemId() = rows.keys.maxOrNull() ?: 0L
+
+        fun apply(writes: List<PlayQueueWrite>) {
+            for (write in writes) {
+                when (write) {
+                    is PlayQueueWrite.InsertQueuePart -> write.getEntities().forEach(::insert)
+                    is PlayQueueWrite.InsertItems -> write.entities.forEach(::insert)
+                    is PlayQueueWrite.UpdatePosition -> {
+                        rows[write.itemId]?.position = write.position
+                    }
+                    is PlayQueueWrite.UpdateShuffledPosition -> {
+                        rows[write.itemId]?.shuffledPosition = write.position
+                    }
+                    is PlayQueueWrite.DeleteItem -> rows.remove(write.itemId)
+                    PlayQueueWrite.DeleteQueue -> rows.clear()
+                    is PlayQueueWrite.UpdateShuffleSeed -> shuffleSeed = write.seed
+                }
+                checkUniqueIndexes()
+            }
+        }
+
+        fun getNextItemId(currentItemId: Long, isShuffled: Boolean): Long? {
+            val sortedRows = getSortedRows(isShuffled)
+            val currentPosition = rows[currentItemId]?.let { getPosition(it, isShuffled) }
+            val next = sortedRows.firstOrNull { row ->
+                currentPosition != null && getPosition(row, isShuffled) > currentPosition
+            }
+            return (next ?: sortedRows.firstOrNull())?.id
+        }
+
+        fun getPreviousItemId(
+            currentItemId: Long,
+            isShuffled: Boolean,
+            corruptedCompositionIds: Set<Long>,
+        ): Long? {
+            val sortedRows = getSortedRows(isShuffled)
+            val currentPosition = rows[currentItemId]?.let { getPosition(it, isShuffled) }
+            val previous = sortedRows.lastOrNull { row ->
+                currentPosition != null
+                        && getPosition(row, isShuffled) < currentPosition
+                        && !corruptedCompositionIds.contains(row.audioId)
+            }
+            return (previous ?: sortedRows.lastOrNull())?.id
+        }
+
+        fun getIndex(itemId: Long, isShuffled: Boolean): Int {
+            val position = rows[itemId]?.let { getPosition(it, isShuffled) } ?: return -1
+            return rows.values.count { row -> getPosition(row, isShuffled) < position }
+        }
+
+        fun isLastItem(itemId: Long, isShuffled: Boolean): Boolean {
+            val lastRow = getSortedRows(isShuffled).lastOrNull() ?: return true
+            return lastRow.id == itemId
+        }
+
+        fun getItemAtPosition(position: Int, isShuffled: Boolean): Long? {
+            return getSortedRows(isShuffled)
+                .firstOrNull { row -> getPosition(row, isShuffled) >= position }
+                ?.id
+        }
+
+        private fun insert(entity: PlayQueueEntity) {
+            check(!rows.containsKey(entity.id)) { "id is taken: ${entity.id}" }
+            val row = PlayQueueEntity()
+            row.id = entity.id
+            row.audioId = entity.audioId
+            row.position = entity.position
+            row.shuffledPosition = entity.shuffledPosition
+            rows[row.id] = row
+        }
+
+        private fun checkUniqueIndexes() {
+            check(rows.values.map(PlayQueueEntity::getPosition).toSet().size == rows.size)
+            check(rows.values.map(PlayQueueEntity::getShuffledPosition).toSet().size == rows.size)
+        }
+
+        private fun getSortedRows(isShuffled: Boolean): List<PlayQueueEntity> {
+            return rows.values.sortedBy { row -> getPosition(row, isShuffled) }
+        }
+
+        private fun getPosition(row: PlayQueueEntity, isShuffled: Boolean): Int {
+            return if (isShuffled) {
+                ShufflePermutation(shuffleSeed).apply(row.shuffledPosition)
+            } else {
+                row.position
+            }
+        }
+    }
+
+    private companion object {
+        const val OPERATIONS_COUNT = 300
+        const val MAX_QUEUE_SIZE = 200
+        const val MISSING_ITEM_ID = -1L
+    }
+}
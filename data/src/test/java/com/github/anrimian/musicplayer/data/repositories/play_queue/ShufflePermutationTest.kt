@@ -0,0 +1,57 @@
+package com.github.anrimian.musicplayer.data.repositories.play_queue
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.Random
+
+class ShufflePermutationTest {
+
+    private val random = Random(0)
+
+    @Test
+    fun `inverted permutation returns original value`() {
+        repeat(20) {
+            val permutation = ShufflePermutation(ShufflePermutation.newSeed(random))
+            repeat(1000) {
+                val value = random.nextInt(Int.MAX_VALUE)
+                val permuted = permutation.apply(value)
+                assertTrue(permuted >= 0)
+                assertEquals(value, permutation.invert(permuted))
+            }
+        }
+    }
+
+    @Test
+    fun `permutation keeps values unique`() {
+        val permutation = ShufflePermutation(ShufflePermutation.newSeed(random))
+        val values = (0 until 100_000).map { i -> i * 1024 }
+
+        assertEquals(values.size, values.map(permutation::apply).toSet().size)
+        assertNotEquals(values, values.sortedBy(permutation::apply))
+    }
+
+    @Test
+    fun `identity seed and negative values are not changed`() {
+        val identity = ShufflePermutation(ShufflePermutation.IDENTITY_SEED)
+        val permutation = ShufflePermutation(ShufflePermutation.newSeed(random))
+        for (value in listOf(0, 1024, Int.MAX_VALUE)) {
+            assertEquals(value, identity.apply(value))
+            assertEquals(value, identity.invert(value))
+        }
+        for (value in listOf(-1, -1024, Int.MIN_VALUE)) {
+            assertEquals(value, permutation.apply(value))
+            assertEquals(value, permutation.invert(value))
+        }
+    }
+
+    @Test
+    fun `the same seed gives the same permutation`() {
+        val seed = ShufflePermutation.newSeed(random)
+        repeat(1000) {
+            val value = random.nextInt(Int.MAX_VALUE)
+            assertEquals(ShufflePermutation(seed).apply(value), ShufflePermutation(seed).apply(value))
+        }
+    }
+}
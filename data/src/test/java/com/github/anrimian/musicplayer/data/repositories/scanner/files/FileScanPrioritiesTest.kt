@@ -0,0 +1,55 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.files
+
+import com.github.anrimian.musicplayer.domain.models.composition.FullComposition
+import com.github.anrimian.musicplayer.domain.models.scanner.FileScanPriority
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+
+class FileScanPrioritiesTest {
+
+    private val priorities = FileScanPriorities()
+
+    @Test
+    fun `poll compositions in list order without priorities`() {
+        val pending = compositions(1, 2, 3)
+
+        assertEquals(listOf(1L, 2L, 3L), pollAll(pending))
+    }
+
+    @Test
+    fun `poll compositions by priority classes`() {
+        val pending = compositions(1, 2, 3, 4, 5)
+        priorities.setIds(FileScanPriority.VISIBLE_ITEMS, listOf(2, 5))
+        priorities.setIds(FileScanPriority.PLAY_QUEUE, listOf(4))
+
+        assertEquals(listOf(4L, 2L, 5L, 1L, 3L), pollAll(pending))
+    }
+
+    @Test
+    fun `boost preempts pending compositions`() {
+        val pending = compositions(1, 2, 3)
+
+        assertEquals(1L, priorities.pollNext(pending)!!.id)
+        priorities.setIds(FileScanPriority.VISIBLE_ITEMS, listOf(3))
+        assertEquals(3L, priorities.pollNext(pending)!!.id)
+        assertEquals(2L, priorities.pollNext(pending)!!.id)
+        assertNull(priorities.pollNext(pending))
+    }
+
+    private fun pollAll(pending: MutableList<FullComposition>): List<Long> {
+        val result = ArrayList<Long>()
+        while (true) {
+            val next = priorities.pollNext(pending) ?: return result
+            result.add(next.id)
+        }
+    }
+
+    private fun compositions(vararg ids: Long): MutableList<FullComposition> {
+        return ids.mapTo(ArrayList()) { compositionId ->
+            mock { on { id } doReturn compositionId }
+        }
+    }
+}
@@ -1,40 +1,45 @@
 package com.github.anrimian.musicplayer.data.repositories.scanner.files
 
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper
+import com.github.anrimian.musicplayer.data.database.writes.DbWriteCoordinator
 import com.github.anrimian.musicplayer.data.storage.source.CompositionSourceEditor
 import com.github.anrimian.musicplayer.domain.interactors.analytics.Analytics
 import com.github.anrimian.musicplayer.domain.models.composition.FullComposition
+import com.github.anrimian.musicplayer.domain.models.composition.content.CompositionContentSource
 import com.github.anrimian.musicplayer.domain.models.composition.tags.AudioFileInfo
+import com.github.anrimian.musicplayer.domain.models.scanner.FileScanPriority
 import com.github.anrimian.musicplayer.domain.models.scanner.Idle
 import com.github.anrimian.musicplayer.domain.models.scanner.Running
 import com.github.anrimian.musicplayer.domain.repositories.StateRepository
 import com.github.anrimian.musicplayer.domain.repositories.StorageSourceRepository
 import io.reactivex.rxjava3.core.Maybe
+import io.reactivex.rxjava3.core.Scheduler
 import io.reactivex.rxjava3.core.Single
+import io.reactivex.rxjava3.schedulers.Schedulers
 import io.reactivex.rxjava3.schedulers.TestScheduler
+import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.ValueSource
 import org.mockito.Mockito
 import org.mockito.kotlin.*
+import java.io.IOException
 import java.util.concurrent.TimeUnit
 
 class FileScannerTest {
 
+    private val libraryDatabase: LibraryDatabase = mock()
     private val compositionsDao: CompositionsDaoWrapper = mock()
     private val compositionSourceEditor: CompositionSourceEditor = mock()
     private val stateRepository: StateRepository = mock()
     private val storageSourceRepository: StorageSourceRepository = mock()
     private val analytics: Analytics = mock()
     private val scheduler = TestScheduler()
+    private val checkpointStore = TestCheckpointStore()
 
-    private val fileScanner = FileScanner(
-        compositionsDao,
-        compositionSourceEditor,
-        stateRepository,
-        storageSourceRepository,
-        analytics,
-        scheduler
-    )
+    private val fileScanner = createFileScanner(scheduler)
 
     private val testStateObserver = fileScanner.getStateObservable().test()
 
@@ -44,8 +49,12 @@ class FileScannerTest {
 
     private val fileInfo: AudioFileInfo = mock()
 
+    private val brokenSource: CompositionContentSource = mock()
+
     @BeforeEach
     fun setUp() {
+        doAnswer { invocation -> invocation.getArgument<Runnable>(0).run() }
+            .whenever(libraryDatabase).runInTransaction(any<Runnable>())
         whenever(stateRepository.currentFileScannerVersion).thenReturn(1)
         whenever(stateRepository.lastFileScannerVersion).thenReturn(1)
 
@@ -60,14 +69,14 @@ class FileScannerTest {
     fun `run successful scan`() {
         val composition: FullComposition = mock()
 
-        whenever(compositionsDao.selectNextCompositionsToScan(eq(0), any()))
+        whenever(compositionsDao.selectNextCompositionsToScan(eq(0), eq(0), any(), any(), any(), any()))
             .thenReturn(Single.just(listOf(composition)))
             .thenReturn(Single.just(emptyList()))
 
         fileScanner.scheduleFileScanner()
         scheduler.triggerActions()
 
-        verify(compositionsDao).updateCompositionsByFileInfo(any(), any())
+        verify(compositionsDao).applyFileScanResult(any(), eq(fileInfo))
         verify(stateRepository).lastFileScannerVersion = eq(1)
         verify(stateRepository).lastCompleteScanTime = any()
 
@@ -81,14 +90,14 @@ class FileScannerTest {
     @Test
     fun `error with getting composition from db - do not run next loop`() {
         val exception: Exception = mock()
-        whenever(compositionsDao.selectNextCompositionsToScan(eq(0), any()))
+        whenever(compositionsDao.selectNextCompositionsToScan(eq(0), eq(0), any(), any(), any(), any()))
             .thenReturn(Single.error(exception))
             .thenReturn(Single.just(listOf(mock())))
 
         fileScanner.scheduleFileScanner()
         scheduler.triggerActions()
 
-        verify(compositionsDao, never()).updateCompositionsByFileInfo(any(), any())
+        verify(compositionsDao, never()).applyFileScanResult(any(), anyOrNull())
         verify(stateRepository, never()).lastFileScannerVersion = any()
         verify(stateRepository, never()).lastCompleteScanTime = any()
         verify(analytics).processNonFatalError(exception)
@@ -99,23 +108,21 @@ class FileScannerTest {
     }
 
     @Test
-    fun `error with scan - run update and run next loop`() {
-        whenever(compositionsDao.selectNextCompositionsToScan(any(), any()))
+    fun `error with scan result write - complete scan, file stays not scanned`() {
+        whenever(compositionsDao.selectNextCompositionsToScan(any(), any(), any(), any(), any(), any()))
             .thenReturn(Single.just(listOf(composition1)))
             .thenReturn(Single.just(emptyList()))
 
         val exception = RuntimeException()
         Mockito.doThrow(exception)
-            .doThrow(exception)
-            .doThrow(exception)
-            .doNothing()
-            .whenever(compositionsDao).updateCompositionsByFileInfo(any(), any())
+            .whenever(compositionsDao).applyFileScanResult(any(), anyOrNull())
 
         fileScanner.scheduleFileScanner()
         scheduler.triggerActions()
 
-        verify(compositionsDao).updateCompositionsByFileInfo(any(), any())
+        verify(compositionsDao).applyFileScanResult(eq(composition1), eq(fileInfo))
         verify(analytics).processNonFatalError(eq(exception))
+        assertEquals(emptyMap<Long, Int>(), checkpointStore.checkpoint!!.failedReads)
         verify(stateRepository).lastFileScannerVersion = eq(1)
         verify(stateRepository).lastCompleteScanTime = any()
 
@@ -134,15 +141,15 @@ class FileScannerTest {
 
         val composition: FullComposition = mock()
 
-        whenever(compositionsDao.selectNextCompositionsToScan(any(), any()))
+        whenever(compositionsDao.selectNextCompositionsToScan(any(), any(), any(), any(), any(), any()))
             .thenReturn(Single.just(listOf(composition)))
             .thenReturn(Single.just(emptyList()))
 
         fileScanner.scheduleFileScanner()
         scheduler.triggerActions()
 
-        verify(compositionsDao).selectNextCompositionsToScan(eq(lastScanTime), any())
-        verify(compositionsDao).updateCompositionsByFileInfo(any(), any())
+        verify(compositionsDao).selectNextCompositionsToScan(eq(lastScanTime), eq(0), any(), any(), any(), any())
+        verify(compositionsDao).applyFileScanResult(any(), eq(fileInfo))
         verify(stateRepository).lastFileScannerVersion = eq(2)
         verify(stateRepository).lastCompleteScanTime = any()
 
@@ -154,34 +161,264 @@ class FileScannerTest {
     }
 
     @Test
-    fun `test file read timeout`() {
+    fun `test file read timeout - stop scan, read file again on next run`() {
         val testStateObserver = fileScanner.getStateObservable().test()
 
         val composition: FullComposition = mock()
         val fileInfo: AudioFileInfo = mock()
 
-        whenever(compositionsDao.selectNextCompositionsToScan(any(), any()))
+        whenever(compositionsDao.selectNextCompositionsToScan(any(), any(), any(), any(), any(), any()))
+            .thenReturn(Single.just(listOf(composition)))
             .thenReturn(Single.just(listOf(composition)))
             .thenReturn(Single.just(emptyList()))
         whenever(compositionSourceEditor.getAudioFileInfo(any()))
-            .thenReturn(Single.just(fileInfo).delay(7, TimeUnit.SECONDS, scheduler))
             .thenReturn(Single.just(fileInfo).delay(7, TimeUnit.SECONDS, scheduler))
             .thenReturn(Single.just(fileInfo))
 
         fileScanner.scheduleFileScanner()
-        scheduler.advanceTimeBy(20, TimeUnit.SECONDS)
+        scheduler.advanceTimeBy(30, TimeUnit.SECONDS)
 
-        verify(storageSourceRepository).getStorageSource(any())
         verify(compositionSourceEditor).getAudioFileInfo(any())
-        verify(compositionsDao).updateCompositionsByFileInfo(any(), any())
+        verify(compositionsDao, never()).applyFileScanResult(any(), anyOrNull())
+        verify(stateRepository, never()).lastCompleteScanTime = any()
+        assertEquals(emptyMap<Long, Int>(), checkpointStore.checkpoint!!.failedReads)
+
+        fileScanner.scheduleFileScanner()
+        scheduler.advanceTimeBy(30, TimeUnit.SECONDS)
+
+        verify(compositionSourceEditor, times(2)).getAudioFileInfo(any())
+        verify(compositionsDao).applyFileScanResult(any(), eq(fileInfo))
         verify(stateRepository).lastFileScannerVersion = eq(1)
         verify(stateRepository).lastCompleteScanTime = any()
 
         testStateObserver.assertValues(
+            Idle,
+            Running(composition),
             Idle,
             Running(composition),
             Idle
         )
+    }
+
+    @Test
+    fun `stuck file read stops scan without spending read attempts`() {
+        val composition2: FullComposition = mock {
+            on { id } doReturn 2
+        }
+        whenever(compositionsDao.selectNextCompositionsToScan(any(), any(), any(), any(), any(), any()))
+            .thenReturn(Single.just(listOf(composition1, composition2)))
+            .thenReturn(Single.just(emptyList()))
+        val source1: CompositionContentSource = mock()
+        val source2: CompositionContentSource = mock()
+        whenever(storageSourceRepository.getStorageSource(1)).thenReturn(Maybe.just(source1))
+        whenever(storageSourceRepository.getStorageSource(2)).thenReturn(Maybe.just(source2))
+        whenever(compositionSourceEditor.getAudioFileInfo(source1)).thenReturn(Single.never())
+        whenever(compositionSourceEditor.getAudioFileInfo(source2)).thenReturn(Single.just(fileInfo))
+
+        fileScanner.scheduleFileScanner()
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+
+        verify(compositionSourceEditor, times(2)).getAudioFileInfo(any())
+        verify(compositionsDao).applyFileScanResult(eq(composition2), eq(fileInfo))
+
+        scheduler.advanceTimeBy(40, TimeUnit.SECONDS)
+
+        verify(compositionSourceEditor, times(2)).getAudioFileInfo(any())
+        verify(compositionsDao, never()).applyFileScanResult(eq(composition1), anyOrNull())
+        assertEquals(emptyMap<Long, Int>(), checkpointStore.checkpoint!!.failedReads)
+        verify(stateRepository, never()).lastCompleteScanTime = any()
+        assertEquals(Idle, testStateObserver.values().last())
+    }
+
+    @Test
+    fun `scan single file - write tags and scan time in one transaction`() {
+        fileScanner.runScanCompositionFile(composition1)
+        scheduler.triggerActions()
+
+        verify(libraryDatabase).runInTransaction(any<Runnable>())
+        verify(compositionsDao).applyFileScanResult(eq(composition1), eq(fileInfo))
+        verify(compositionsDao, never()).updateCompositionByFileInfo(any(), any())
+    }
+
+    @Test
+    fun `collect file read metrics`() {
+        whenever(compositionsDao.selectNextCompositionsToScan(any(), any(), any(), any(), any(), any()))
+            .thenReturn(Single.just(listOf(composition1)))
+            .thenReturn(Single.just(emptyList()))
+        whenever(compositionSourceEditor.getAudioFileInfo(any()))
+            .thenReturn(Single.just(fileInfo).delay(2, TimeUnit.SECONDS, scheduler))
+
+        fileScanner.scheduleFileScanner()
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS)
+
+        val stats = fileScanner.getMetrics()
+        assertEquals(1, stats.filesCount)
+        assertEquals(2000, stats.p50LatencyMillis)
+        assertEquals(2000, stats.p99LatencyMillis)
+        assertEquals(0.5f, stats.filesPerSecond)
+    }
+
+    @Test
+    fun `start new generation after scanner update`() {
+        whenever(stateRepository.currentFileScannerVersion).thenReturn(2)
+        checkpointStore.checkpoint = FileScanCheckpoint(1, 500L, 77L, mapOf(5L to 1))
+        whenever(compositionsDao.selectNextCompositionsToScan(any(), any(), any(), any(), any(), any()))
+            .thenReturn(Single.just(emptyList()))
+
+        fileScanner.scheduleFileScanner()
+        scheduler.triggerActions()
+
+        verify(compositionsDao).selectNextCompositionsToScan(
+            argThat { time -> time > 500L },
+            eq(0),
+            any(),
+            any(),
+            any(),
+            eq(LongArray(0))
+        )
+        assertEquals(2, checkpointStore.checkpoint!!.scannerVersion)
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = [0, 1, 2, 74, 75, 76, 150, 199, 200, 201])
+    fun `resume scan after process death`(killTimeSeconds: Long) {
+        val library = TestLibrary(400)
+        library.setUp()
+
+        val firstScheduler = TestScheduler()
+        library.readScheduler = firstScheduler
+        val firstScanner = createFileScanner(firstScheduler)
+        firstScanner.setPriorityIds(FileScanPriority.PLAY_QUEUE, listOf(390L, 391L))
+        firstScanner.scheduleFileScanner()
+        firstScheduler.advanceTimeBy(killTimeSeconds, TimeUnit.SECONDS)
+        //process is killed, first scanner never continues
+
+        val secondScheduler = TestScheduler()
+        library.readScheduler = secondScheduler
+        createFileScanner(secondScheduler).scheduleFileScanner()
+        secondScheduler.advanceTimeBy(1, TimeUnit.HOURS)
+
+        assertEquals(library.compositionIds(), library.handledIds)
+        for (id in library.compositionIds()) {
+            assertEquals(1, library.readsCount[id], "composition $id")
+        }
+    }
+
+    @Test
+    fun `give up file after read attempts are spent`() {
+        val library = TestLibrary(3)
+        library.setUp()
+        library.readScheduler = scheduler
+        val exception = IOException()
+        whenever(storageSourceRepository.getStorageSource(2)).thenReturn(Maybe.just(brokenSource))
+        whenever(compositionSourceEditor.getAudioFileInfo(brokenSource)).thenReturn(Single.error(exception))
+
+        fileScanner.scheduleFileScanner()
+        scheduler.advanceTimeBy(1, TimeUnit.MINUTES)
+
+        assertEquals(setOf(1L, 3L), library.handledIds)
+        assertEquals(mapOf(2L to 2), checkpointStore.checkpoint!!.failedReads)
+
+        fileScanner.scheduleFileScanner()
+        scheduler.advanceTimeBy(1, TimeUnit.MINUTES)
+
+        verify(compositionsDao).selectNextCompositionsToScan(
+            any(),
+            any(),
+            any(),
+            any(),
+            any(),
+            eq(longArrayOf(2))
+        )
+        assertEquals(setOf(1L, 2L, 3L), library.handledIds)
+        assertEquals(emptyMap<Long, Int>(), checkpointStore.checkpoint!!.failedReads)
+        verify(analytics, times(3)).processNonFatalError(exception)
+    }
+
+    private fun createFileScanner(scheduler: Scheduler) = FileScanner(
+        compositionsDao,
+        //commit results right after read, so process death never falls between read and commit
+        DbWriteCoordinator(libraryDatabase, scheduler, maxLatencyMillis = 0),
+        compositionSourceEditor,
+        stateRepository,
+        storageSourceRepository,
+        analytics,
+        FileScanJournal(checkpointStore),
+        scheduler,
+        scheduler,
+        2
+    )
+
+    private class TestCheckpointStore : FileScanCheckpointStore {
+
+        var checkpoint: FileScanCheckpoint? = null
+
+        override fun load() = checkpoint
+
+        override fun save(checkpoint: FileScanCheckpoint) {
+            this.checkpoint = checkpoint
+        }
+    }
 
+    //emulates scan queries over compositions table, each file read takes one second
+    private inner class TestLibrary(count: Int) {
+
+        private val compositions = (1..count).map { compositionId ->
+            mock<FullComposition> { on { id } doReturn compositionId.toLong() }
+        }
+        private val sources = compositions.associate { composition ->
+            composition.id to mock<CompositionContentSource>()
+        }
+
+        var readScheduler: Scheduler = Schedulers.trampoline()
+        val handledIds = HashSet<Long>()
+        val readsCount = HashMap<Long, Int>()
+
+        fun compositionIds() = compositions.map(FullComposition::id).toSet()
+
+        fun setUp() {
+            whenever(compositionsDao.selectNextCompositionsToScan(any(), any(), any(), any(), any(), any()))
+                .thenAnswer { invocation ->
+                    val cursor = invocation.getArgument<Long>(1)
+                    val filesCount = invocation.getArgument<Int>(2)
+                    val playQueueIds = invocation.getArgument<LongArray>(3)
+                    val visibleIds = invocation.getArgument<LongArray>(4)
+                    val excludedIds = invocation.getArgument<LongArray>(5)
+                    Single.fromCallable {
+                        compositions.filter { c ->
+                            !handledIds.contains(c.id)
+                                    && (c.id > cursor || playQueueIds.contains(c.id) || visibleIds.contains(c.id))
+                                    && !excludedIds.contains(c.id)
+                        }
+                            .sortedWith(compareBy(
+                                { c -> !playQueueIds.contains(c.id) },
+                                { c -> !visibleIds.contains(c.id) },
+                                FullComposition::id
+                            ))
+                            .take(filesCount)
+                    }
+                }
+            whenever(compositionsDao.selectCompositionsToScan(any(), any())).thenAnswer { invocation ->
+                val ids = invocation.getArgument<LongArray>(1)
+                Single.fromCallable {
+                    compositions.filter { c -> ids.contains(c.id) && !handledIds.contains(c.id) }
+                }
+            }
+            whenever(compositionsDao.applyFileScanResult(any(), anyOrNull())).thenAnswer { invocation ->
+                handledIds.add(invocation.getArgument<FullComposition>(0).id)
+            }
+            whenever(storageSourceRepository.getStorageSource(any())).thenAnswer { invocation ->
+                Maybe.just(sources.getValue(invocation.getArgument(0)))
+            }
+            for ((id, source) in sources) {
+                whenever(compositionSourceEditor.getAudioFileInfo(source)).thenAnswer {
+                    Single.timer(1, TimeUnit.SECONDS, readScheduler)
+                        .map {
+                            readsCount.merge(id, 1, Int::plus)
+                            fileInfo
+                        }
+                }
+            }
+        }
     }
 }
\ No newline at end of file
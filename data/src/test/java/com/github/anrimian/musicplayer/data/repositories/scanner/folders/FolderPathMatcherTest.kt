@@ -0,0 +1,47 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.folders
+
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class FolderPathMatcherTest {
+
+    private val matcher = FolderPathMatcher()
+
+    @Test
+    fun `match folder and its subfolders`() {
+        matcher.add("Music/Podcasts")
+
+        assertTrue(matcher.matches("Music/Podcasts"))
+        assertTrue(matcher.matches("Music/Podcasts/2020/January"))
+        assertFalse(matcher.matches("Music"))
+        assertFalse(matcher.matches("Music/Podcasts old"))
+        assertFalse(matcher.matches("Music/Rock"))
+        assertFalse(matcher.matches(""))
+    }
+
+    @Test
+    fun `match nested ignored folders`() {
+        matcher.add("Music/Podcasts/2020")
+        matcher.add("Music")
+
+        assertTrue(matcher.matches("Music/Rock"))
+        assertFalse(matcher.matches("Downloads"))
+    }
+
+    @Test
+    fun `remove ignored folder`() {
+        matcher.add("Music/Podcasts")
+        matcher.add("Music/Podcasts/2020")
+        matcher.add("Music/Rock")
+
+        matcher.remove("Music/Podcasts")
+        assertFalse(matcher.matches("Music/Podcasts/2021"))
+        assertTrue(matcher.matches("Music/Podcasts/2020/January"))
+
+        matcher.remove("Music/Podcasts/2020")
+        matcher.remove("Music/Rock")
+        assertFalse(matcher.matches("Music/Podcasts/2020/January"))
+        assertTrue(matcher.isEmpty())
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.folders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import androidx.collection.LongSparseArray;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Builds tree from 100k synthetic paths and prints build time and heap retained by tree.
+ * Heap is measured by used memory after gc, so value is approximate.
+ * Excluded from default test run, use -Pbenchmarks to run it.
+ */
+@Tag("benchmark")
+public class FolderTreeBuilderBenchmarkTest {
+
+    private static final int FILES_COUNT = 100_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 10;
+
+    private final FolderTreeBuilder<String> folderTreeBuilder = new FolderTreeBuilder<>(s -> s);
+
+    @Test
+    public void buildTreeBenchmark() {
+        LongSparseArray<String> paths = createPaths();
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            folderTreeBuilder.createFileTree(paths);
+        }
+        long[] times = new long[MEASURE_ROUNDS];
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            long startTime = System.nanoTime();
+            folderTreeBuilder.createFileTree(paths);
+            times[i] = System.nanoTime() - startTime;
+        }
+        Arrays.sort(times);
+
+        long usedMemoryBefore = getUsedMemory();
+        FolderNode root = folderTreeBuilder.createFileTree(paths);
+        long retainedBytes = getUsedMemory() - usedMemoryBefore;
+
+        System.out.println("folder tree of " + FILES_COUNT + " files: "
+                + "median build time " + times[MEASURE_ROUNDS / 2] / 1000 + " us, "
+                + "retained heap " + retainedBytes / 1024 + " kb");
+
+        assertEquals(1, root.getFoldersCount());
+    }
+
+    //artist/album/disc folders, files of one album go mostly in a row like in media store
+    private LongSparseArray<String> createPaths() {
+        Random random = new Random(0);
+        LongSparseArray<String> result = new LongSparseArray<>(FILES_COUNT);
+        int id = 0;
+        while (id < FILES_COUNT) {
+            String albumPath = "Music/Artist " + random.nextInt(2000)
+                    + "/Album " + random.nextInt(5)
+                    + "/CD" + (1 + random.nextInt(2));
+            for (int i = 0, count = 1 + random.nextInt(15); i < count && id < FILES_COUNT; i++) {
+                result.put(id++, albumPath);
+            }
+        }
+        return result;
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
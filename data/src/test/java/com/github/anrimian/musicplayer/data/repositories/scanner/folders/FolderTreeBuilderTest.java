@@ -1,35 +1,78 @@
 package com.github.anrimian.musicplayer.data.repositories.scanner.folders;
 
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
-import org.junit.jupiter.api.Test;
+import androidx.collection.LongSparseArray;
 
-import io.reactivex.rxjava3.core.Observable;
+import org.junit.jupiter.api.Test;
 
 
 public class FolderTreeBuilderTest {
 
-    private final FolderTreeBuilder<String, String> folderTreeBuilder = new FolderTreeBuilder<>(
-            s -> s,
-            s -> s
-    );
+    private final FolderTreeBuilder<String> folderTreeBuilder = new FolderTreeBuilder<>(s -> s);
 
     @Test
     public void createFileTreeTest() {
-        FolderNode<String> root = folderTreeBuilder.createFileTree(Observable.fromArray(
+        FolderNode root = folderTreeBuilder.createFileTree(createPaths(
                 "music",
                 "music/new",
-                ""
+                "",
+                "music/"
         ));
-        assert root.getFiles().contains("");
+        assertArrayEquals(new long[] { 2 }, root.getFiles());
 
-        FolderNode<String> musicFolder = root.getFolder("music");
+        FolderNode musicFolder = root.getFolder("music");
         assertNotNull(musicFolder);
-        assert musicFolder.getFiles().contains("music");
+        assertArrayEquals(new long[] { 0, 3 }, musicFolder.getFiles());
 
-        FolderNode<String> newFolder = musicFolder.getFolder("new");
+        FolderNode newFolder = musicFolder.getFolder("new");
         assertNotNull(newFolder);
-        assert newFolder.getFiles().contains("music/new");
+        assertArrayEquals(new long[] { 1 }, newFolder.getFiles());
+        assertSame(newFolder, root.findFolder("music/new"));
+        assertNull(root.findFolder("music/old"));
+    }
+
+    @Test
+    public void internFolderNamesTest() {
+        FolderNode root = folderTreeBuilder.createFileTree(createPaths(
+                new String("artist1/cd1"),
+                new String("artist2/cd1")
+        ));
+        FolderNode first = root.findFolder("artist1/cd1");
+        FolderNode second = root.findFolder("artist2/cd1");
+        assertNotNull(first);
+        assertNotNull(second);
+        assertSame(first.getKeyPath(), second.getKeyPath());
+    }
+
+    @Test
+    public void findFolderInWideFolderTest() {
+        String[] paths = new String[100];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "music/folder" + i;
+        }
+        FolderNode root = folderTreeBuilder.createFileTree(createPaths(paths));
+
+        FolderNode musicFolder = root.getFolder("music");
+        assertNotNull(musicFolder);
+        assertEquals(100, musicFolder.getFoldersCount());
+        for (int i = 0; i < paths.length; i++) {
+            FolderNode folder = root.findFolder(paths[i]);
+            assertNotNull(folder);
+            assertArrayEquals(new long[] { i }, folder.getFiles());
+        }
+    }
+
+    private LongSparseArray<String> createPaths(String... paths) {
+        LongSparseArray<String> result = new LongSparseArray<>();
+        for (int i = 0; i < paths.length; i++) {
+            result.put(i, paths[i]);
+        }
+        return result;
     }
-}
\ No newline at end of file
+}
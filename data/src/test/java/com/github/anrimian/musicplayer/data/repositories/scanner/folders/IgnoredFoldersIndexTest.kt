@@ -0,0 +1,30 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.folders
+
+import com.github.anrimian.musicplayer.data.database.dao.ignoredfolders.IgnoredFoldersDao
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.verify
+
+class IgnoredFoldersIndexTest {
+
+    private val ignoredFoldersDao: IgnoredFoldersDao = mock {
+        on { getIgnoredFolders() } doReturn arrayOf("Music/Podcasts")
+    }
+
+    private val index = IgnoredFoldersIndex(ignoredFoldersDao)
+
+    @Test
+    fun `read ignored folders once and apply changes`() {
+        assertTrue(index.isExcluded("Music/Podcasts/2020"))
+
+        index.onFolderIgnored("Downloads")
+        index.onFolderRestored("Music/Podcasts")
+
+        assertTrue(index.isExcluded("Downloads/Telegram"))
+        assertFalse(index.isExcluded("Music/Podcasts/2020"))
+        verify(ignoredFoldersDao).getIgnoredFolders()
+    }
+}
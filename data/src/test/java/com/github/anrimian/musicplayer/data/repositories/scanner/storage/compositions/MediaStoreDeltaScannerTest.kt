@@ -0,0 +1,144 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.storage.compositions
+
+import androidx.collection.LongSparseArray
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper
+import com.github.anrimian.musicplayer.data.repositories.scanner.StorageCompositionAnalyzer
+import com.github.anrimian.musicplayer.data.storage.providers.music.StorageFullComposition
+import com.github.anrimian.musicplayer.data.storage.providers.music.StorageMusicProvider
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.argThat
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+
+class MediaStoreDeltaScannerTest {
+
+    private val musicProvider: StorageMusicProvider = mock()
+    private val compositionsDao: CompositionsDaoWrapper = mock()
+    private val compositionAnalyzer: StorageCompositionAnalyzer = mock()
+    private val scanState: MediaStoreScanState = mock()
+
+    private val deltaScanner = MediaStoreDeltaScanner(
+        musicProvider,
+        compositionsDao,
+        compositionAnalyzer,
+        scanState
+    )
+
+    private val versions = mapOf("external" to 10L)
+
+    @BeforeEach
+    fun setUp() {
+        whenever(musicProvider.getMediaStoreVersions()).doReturn(versions)
+        whenever(musicProvider.getCompositions(any(), any())).doReturn(LongSparseArray())
+        whenever(musicProvider.getCompositionsChangedSince(any(), any(), any()))
+            .doReturn(LongSparseArray())
+        whenever(musicProvider.getCompositions(any(), any(), any())).doReturn(LongSparseArray())
+        whenever(scanState.getScanSettings()).doReturn("0:false")
+        whenever(scanState.getLastFullScanTime()).doReturn(System.currentTimeMillis())
+        whenever(compositionAnalyzer.applyCompositionsDelta(any(), any())).doReturn(true)
+    }
+
+    @Test
+    fun `run full scan when there is no saved state`() {
+        whenever(scanState.getVolumeVersions()).doReturn(null)
+
+        deltaScanner.runScan(0, false)
+
+        verify(compositionAnalyzer).applyCompositionsData(any())
+        verify(scanState).onFullScanCompleted(eq(versions), eq("0:false"), any())
+        verify(musicProvider, never()).getStorageIds(any(), any())
+    }
+
+    @Test
+    fun `run full scan when scan settings changed`() {
+        whenever(scanState.getVolumeVersions()).doReturn(mapOf("external" to 5L))
+
+        deltaScanner.runScan(1000, false)
+
+        verify(compositionAnalyzer).applyCompositionsData(any())
+        verify(compositionAnalyzer, never()).applyCompositionsDelta(any(), any())
+    }
+
+    @Test
+    fun `run full scan when volume was recreated`() {
+        whenever(scanState.getVolumeVersions()).doReturn(mapOf("external" to 50L))
+
+        deltaScanner.runScan(0, false)
+
+        verify(compositionAnalyzer).applyCompositionsData(any())
+    }
+
+    @Test
+    fun `run full scan more often without media store generation`() {
+        whenever(scanState.getVolumeVersions()).doReturn(mapOf("external" to 5L))
+        val lastFullScanTime = System.currentTimeMillis() -
+                MediaStoreDeltaScanner.LEGACY_FULL_SCAN_INTERVAL_MILLIS - 1000
+        whenever(scanState.getLastFullScanTime()).doReturn(lastFullScanTime)
+
+        whenever(musicProvider.isMediaStoreGenerationSupported()).doReturn(true)
+        deltaScanner.runScan(0, false)
+        verify(compositionAnalyzer, never()).applyCompositionsData(any())
+
+        whenever(musicProvider.isMediaStoreGenerationSupported()).doReturn(false)
+        deltaScanner.runScan(0, false)
+        verify(compositionAnalyzer).applyCompositionsData(any())
+    }
+
+    @Test
+    fun `apply only changed, added and deleted compositions`() {
+        val lastVersions = mapOf("external" to 5L)
+        whenever(scanState.getVolumeVersions()).doReturn(lastVersions)
+        whenever(musicProvider.getStorageIds(any(), any())).doReturn(longArrayOf(1, 2, 4, 5))
+        whenever(compositionsDao.selectStorageIds()).doReturn(longArrayOf(1, 2, 3))
+        val changed = LongSparseArray<StorageFullComposition>()
+        changed.put(5, mock())
+        whenever(musicProvider.getCompositionsChangedSince(0, false, lastVersions))
+            .doReturn(changed)
+        val added = LongSparseArray<StorageFullComposition>()
+        added.put(4, mock())
+        whenever(musicProvider.getCompositions(eq(0L), eq(false), anyOrNull())).doReturn(added)
+
+        deltaScanner.runScan(0, false)
+
+        verify(musicProvider).getCompositions(eq(0L), eq(false), argThat { contentEquals(longArrayOf(4)) })
+        verify(compositionAnalyzer).applyCompositionsDelta(
+            argThat { size() == 2 && get(4) != null && get(5) != null },
+            argThat { contentEquals(longArrayOf(3)) }
+        )
+        verify(compositionAnalyzer, never()).applyCompositionsData(any())
+        verify(scanState).setVolumeVersions(versions)
+    }
+
+    @Test
+    fun `run full scan when delta can not be applied`() {
+        whenever(scanState.getVolumeVersions()).doReturn(mapOf("external" to 5L))
+        whenever(musicProvider.getStorageIds(any(), any())).doReturn(longArrayOf(1))
+        whenever(compositionsDao.selectStorageIds()).doReturn(longArrayOf(1))
+        whenever(compositionAnalyzer.applyCompositionsDelta(any(), any())).doReturn(false)
+
+        deltaScanner.runScan(0, false)
+
+        verify(compositionAnalyzer).applyCompositionsData(any())
+        verify(scanState, never()).setVolumeVersions(any())
+    }
+
+    @Test
+    fun `subtract sorted arrays test`() {
+        assertArrayEquals(
+            longArrayOf(1, 4, 7),
+            MediaStoreDeltaScanner.subtractSorted(longArrayOf(1, 2, 4, 5, 7), longArrayOf(0, 2, 3, 5, 6))
+        )
+        assertArrayEquals(
+            longArrayOf(),
+            MediaStoreDeltaScanner.subtractSorted(longArrayOf(1, 2), longArrayOf(1, 2, 3))
+        )
+    }
+}
@@ -2,6 +2,7 @@ package com.github.anrimian.musicplayer.data.storage.source
 
 import com.github.anrimian.musicplayer.data.storage.exceptions.GenreAlreadyPresentException
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageMusicProvider
+import com.github.anrimian.musicplayer.data.storage.source.tags.LightweightTagReader
 import com.github.anrimian.musicplayer.data.utils.files.TestFileUtils
 import com.github.anrimian.musicplayer.domain.models.composition.content.CompositionContentSource
 import org.junit.jupiter.api.Assertions.assertEquals
@@ -28,7 +29,8 @@ class CompositionSourceEditorTest {
     private val sourceEditor = CompositionSourceEditor(
         musicProvider,
         fileSourceProvider,
-        contentSourceHelper
+        contentSourceHelper,
+        LightweightTagReader()
     )
     private val source = mock<CompositionContentSource>()
 
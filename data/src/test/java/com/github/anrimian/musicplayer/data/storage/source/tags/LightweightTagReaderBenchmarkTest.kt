@@ -0,0 +1,112 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import com.github.anrimian.musicplayer.data.utils.files.TestFileUtils
+import org.jaudiotagger.audio.AudioFileIO
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Tag
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+/**
+ * Compares lightweight tag reader with full jaudiotagger read on small corpus of mp3 and flac files.
+ * Bytes read are taken from /proc/self/io, so they are available only on linux.
+ * Excluded from default test run, use -Pbenchmarks to run it.
+ */
+@Tag("benchmark")
+class LightweightTagReaderBenchmarkTest {
+
+    @TempDir
+    lateinit var dir: File
+
+    @Test
+    fun `compare readers`() {
+        val corpus = createCorpus()
+        val corpusSize = corpus.sumOf(File::length)
+
+        val lightweightReader = LightweightTagReader()
+        repeat(WARMUP_ROUNDS) {
+            corpus.forEach(lightweightReader::readTags)
+            corpus.forEach(AudioFileIO::read)
+        }
+
+        val lightweightResult = measure(corpus) { file ->
+            lightweightReader.readTags(file)!!.durationSeconds
+        }
+        val fullResult = measure(corpus) { file ->
+            AudioFileIO.read(file).audioHeader.trackLength
+        }
+        println("corpus: ${corpus.size} files, $corpusSize bytes")
+        println("lightweight reader: $lightweightResult")
+        println("jaudiotagger: $fullResult")
+
+        assertEquals(fullResult.durationsSum, lightweightResult.durationsSum)
+    }
+
+    private fun createCorpus(): List<File> {
+        val sources = listOf(
+            "src/test/resources/Кот Леопольд - Неприятность эту мы переживем.mp3",
+            "src/test/resources/VersuS - Warriors (Instrumental Kizomba).mp3"
+        )
+        val corpus = ArrayList<File>()
+        for (i in 0 until COPIES_COUNT) {
+            val copyDir = File(dir, i.toString())
+            copyDir.mkdir()
+            for (source in sources) {
+                corpus.add(TestFileUtils.createTempCopy(copyDir, source))
+            }
+            corpus.add(TestTagFiles.createFlacFile(
+                File(copyDir, "test.flac"),
+                100 + i,
+                TestTagFiles.COMMENTS,
+                TestTagFiles.ARTWORK
+            ))
+        }
+        return corpus
+    }
+
+    private fun measure(corpus: List<File>, readFunction: (File) -> Int): Result {
+        val startBytes = getProcessBytesRead()
+        val startTime = System.nanoTime()
+        var durationsSum = 0L
+        repeat(MEASURE_ROUNDS) {
+            for (file in corpus) {
+                durationsSum += readFunction(file)
+            }
+        }
+        val timeNanos = System.nanoTime() - startTime
+        val filesCount = corpus.size * MEASURE_ROUNDS
+        val bytesPerFile = if (startBytes < 0) -1 else (getProcessBytesRead() - startBytes) / filesCount
+        return Result(
+            filesCount * 1_000_000_000L / maxOf(timeNanos, 1),
+            bytesPerFile,
+            durationsSum / MEASURE_ROUNDS
+        )
+    }
+
+    //"rchar" counts bytes passed to read syscalls, page cache doesn't affect it
+    private fun getProcessBytesRead(): Long {
+        val io = File("/proc/self/io")
+        if (!io.exists()) {
+            return -1
+        }
+        return io.readLines()
+            .firstOrNull { line -> line.startsWith("rchar:") }
+            ?.substringAfter(':')
+            ?.trim()
+            ?.toLong()
+            ?: -1
+    }
+
+    private data class Result(
+        val filesPerSecond: Long,
+        val bytesPerFile: Long,
+        val durationsSum: Long,
+    )
+
+    private companion object {
+        const val COPIES_COUNT = 20
+        const val WARMUP_ROUNDS = 2
+        const val MEASURE_ROUNDS = 3
+    }
+}
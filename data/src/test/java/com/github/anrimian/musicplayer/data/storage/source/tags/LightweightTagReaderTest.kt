@@ -0,0 +1,212 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import com.github.anrimian.musicplayer.data.utils.files.TestFileUtils
+import org.jaudiotagger.audio.AudioFileIO
+import org.jaudiotagger.tag.id3.ID3v24Tag
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.ValueSource
+import java.io.File
+
+class LightweightTagReaderTest {
+
+    private val tagReader = LightweightTagReader()
+
+    @TempDir
+    lateinit var dir: File
+
+    @ParameterizedTest
+    @ValueSource(strings = [
+        "src/test/resources/Кот Леопольд - Неприятность эту мы переживем.mp3",
+        "src/test/resources/VersuS - Warriors (Instrumental Kizomba).mp3"
+    ])
+    fun `read mp3 same as jaudiotagger`(path: String) {
+        val file = TestFileUtils.createTempCopy(dir, path)
+        val audioFile = AudioFileIO.read(file)
+
+        val tags = tagReader.readTags(file)
+
+        assertNotNull(tags)
+        TestTagFiles.assertTagsMatch(
+            audioFile.tagOrCreateDefault,
+            audioFile.audioHeader.trackLength,
+            tags!!
+        )
+    }
+
+    @Test
+    fun `read id3v24 mp3 same as jaudiotagger`() {
+        val file = TestFileUtils.createTempCopy(dir, "src/test/resources/VersuS - Warriors (Instrumental Kizomba).mp3")
+        val audioFileToEdit = AudioFileIO.read(file)
+        audioFileToEdit.tag = ID3v24Tag()
+        TestTagFiles.fillTag(audioFileToEdit.tag)
+        AudioFileIO.write(audioFileToEdit)
+        val audioFile = AudioFileIO.read(file)
+
+        val tags = tagReader.readTags(file)
+
+        assertNotNull(tags)
+        TestTagFiles.assertTagsMatch(
+            audioFile.tagOrCreateDefault,
+            audioFile.audioHeader.trackLength,
+            tags!!
+        )
+    }
+
+    @Test
+    fun `read unsynchronised id3v24 artwork`() {
+        val file = TestTagFiles.createId3v24Mp3File(
+            File(dir, "test.mp3"),
+            File("src/test/resources/VersuS - Warriors (Instrumental Kizomba).mp3"),
+            "Title ✓",
+            TestTagFiles.ARTWORK
+        )
+        val audioFile = AudioFileIO.read(file)
+
+        val tags = tagReader.readArtwork(file)
+
+        assertNotNull(tags)
+        assertEquals("Title ✓", tags!!.getFirst(TagField.TITLE))
+        assertEquals(audioFile.audioHeader.trackLength, tags.durationSeconds)
+        assertArrayEquals(TestTagFiles.ARTWORK, tags.artwork)
+    }
+
+    @Test
+    fun `read flac same as jaudiotagger`() {
+        val file = TestTagFiles.createFlacFile(
+            File(dir, "test.flac"),
+            185,
+            TestTagFiles.COMMENTS,
+            TestTagFiles.ARTWORK
+        )
+        val audioFile = AudioFileIO.read(file)
+
+        val tags = tagReader.readArtwork(file)
+
+        assertNotNull(tags)
+        TestTagFiles.assertTagsMatch(
+            audioFile.tagOrCreateDefault,
+            audioFile.audioHeader.trackLength,
+            tags!!
+        )
+        assertEquals(185, tags.durationSeconds)
+        assertArrayEquals(TestTagFiles.ARTWORK, tags.artwork)
+    }
+
+    @Test
+    fun `skip artwork data when only tags are requested`() {
+        val file = TestTagFiles.createFlacFile(
+            File(dir, "test.flac"),
+            185,
+            TestTagFiles.COMMENTS,
+            TestTagFiles.ARTWORK
+        )
+
+        val tags = tagReader.readTags(file)
+
+        assertNotNull(tags)
+        assertNull(tags!!.artwork)
+        assertEquals("Title ✓", tags.getFirst(TagField.TITLE))
+        TagFileReader(file).use { reader ->
+            FlacTagParser().parse(reader, false)
+            assertTrue(reader.bytesRead < TestTagFiles.ARTWORK.size)
+        }
+    }
+
+    @Test
+    fun `read opus comments split across pages`() {
+        val file = File(dir, "test.opus")
+        val artwork = ByteArray(30000) { i -> i.toByte() }
+        TestTagFiles.createOpusFile(
+            file,
+            listOf("title=Opus title", "ARTIST=Opus artist", "TRACKNUMBER=4/10", "GENRE=Jazz"),
+            artwork,
+            240,
+            312
+        )
+
+        val tags = tagReader.readArtwork(file)
+
+        assertNotNull(tags)
+        assertEquals("Opus title", tags!!.getFirst(TagField.TITLE))
+        assertEquals("Opus artist", tags.getFirst(TagField.ARTIST))
+        assertEquals("4", tags.getFirst(TagField.TRACK))
+        assertEquals("Jazz", tags.getFirst(TagField.GENRE))
+        assertEquals("", tags.getFirst(TagField.ALBUM))
+        assertEquals(240, tags.durationSeconds)
+        assertArrayEquals(artwork, tags.artwork)
+    }
+
+    @Test
+    fun `read mp4 items after media data`() {
+        val file = File(dir, "test.m4a")
+        val artwork = ByteArray(2000) { i -> (i * 7).toByte() }
+        TestTagFiles.createMp4File(file, 200, linkedMapOf(
+            "©nam" to "Mp4 title".toByteArray(),
+            "aART" to "Mp4 album artist".toByteArray(),
+            "gnre" to byteArrayOf(0, 18),
+            "trkn" to TestTagFiles.mp4Number(7, 12),
+            "disk" to TestTagFiles.mp4Number(1, 2),
+            "covr" to artwork
+        ))
+
+        val tags = tagReader.readArtwork(file)
+
+        assertNotNull(tags)
+        assertEquals("Mp4 title", tags!!.getFirst(TagField.TITLE))
+        assertEquals("Mp4 album artist", tags.getFirst(TagField.ALBUM_ARTIST))
+        assertEquals("Rock", tags.getFirst(TagField.GENRE))
+        assertEquals("7", tags.getFirst(TagField.TRACK))
+        assertEquals("1", tags.getFirst(TagField.DISC_NO))
+        assertEquals(200, tags.durationSeconds)
+        assertArrayEquals(artwork, tags.artwork)
+    }
+
+    @Test
+    fun `return null for unsupported format`() {
+        val file = File(dir, "test.wav")
+        file.writeBytes(ByteArray(100))
+
+        assertNull(tagReader.readTags(file))
+    }
+
+    @Test
+    fun `return null for broken file`() {
+        val file = File(dir, "test.flac")
+        file.writeBytes("fLaC".toByteArray() + ByteArray(10))
+
+        assertNull(tagReader.readTags(file))
+    }
+
+    @Test
+    fun `return null for opus comment longer than file`() {
+        val file = File(dir, "test.opus")
+        TestTagFiles.createOpusFile(file, listOf("TITLE=Opus title"), null, 240, 312)
+        val bytes = file.readBytes()
+        val commentOffset = bytes.indexOfSequence("TITLE=".toByteArray())
+        //length fits into int, but buffer of this size can't be allocated
+        byteArrayOf(0xF0.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0x7F)
+            .copyInto(bytes, commentOffset - 4)
+        file.writeBytes(bytes)
+
+        assertNull(tagReader.readTags(file))
+        TagFileReader(file).use { reader ->
+            assertThrows(UnsupportedTagLayoutException::class.java) {
+                reader.readBytes(Int.MAX_VALUE - 8)
+            }
+        }
+    }
+
+    private fun ByteArray.indexOfSequence(sequence: ByteArray): Int {
+        return (0..size - sequence.size).first { i ->
+            sequence.indices.all { j -> this[i + j] == sequence[j] }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import org.jaudiotagger.tag.FieldKey
+import org.jaudiotagger.tag.Tag
+import org.junit.jupiter.api.Assertions.assertEquals
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.util.Base64
+
+/**
+ * Builds small audio files with known tags for tag reader tests
+ */
+object TestTagFiles {
+
+    const val SAMPLE_RATE = 44100
+
+    //contains byte sequences which require unsynchronisation in id3 tags
+    val ARTWORK = ByteArray(3000) { i ->
+        when (i % 4) {
+            0 -> 0xFF
+            1 -> if (i % 8 == 1) 0x00 else 0xE5
+            else -> i * 31
+        }.toByte()
+    }
+
+    val COMMENTS = listOf(
+        "TITLE=Title ✓",
+        "ARTIST=Artist",
+        "ALBUM=Album",
+        "ALBUMARTIST=Album artist",
+        "GENRE=Rock",
+        "TRACKNUMBER=3",
+        "DISCNUMBER=2",
+        "DATE=2001",
+        "COMMENT=Comment",
+        "LYRICS=Lyrics\nsecond line",
+    )
+
+    fun fillTag(tag: Tag) {
+        tag.setField(FieldKey.TITLE, "Title ✓")
+        tag.setField(FieldKey.ARTIST, "Artist")
+        tag.setField(FieldKey.ALBUM, "Album")
+        tag.setField(FieldKey.ALBUM_ARTIST, "Album artist")
+        tag.setField(FieldKey.GENRE, "Rock")
+        tag.setField(FieldKey.TRACK, "3")
+        tag.setField(FieldKey.DISC_NO, "2")
+        tag.setField(FieldKey.COMMENT, "Comment")
+        tag.setField(FieldKey.LYRICS, "Lyrics\nsecond line")
+    }
+
+    fun assertTagsMatch(expected: Tag, expectedDuration: Int, actual: FileTags) {
+        assertEquals(expected.getFirst(FieldKey.TITLE), actual.getFirst(TagField.TITLE))
+        assertEquals(expected.getFirst(FieldKey.ARTIST), actual.getFirst(TagField.ARTIST))
+        assertEquals(expected.getFirst(FieldKey.ALBUM), actual.getFirst(TagField.ALBUM))
+        assertEquals(expected.getFirst(FieldKey.ALBUM_ARTIST), actual.getFirst(TagField.ALBUM_ARTIST))
+        assertEquals(expected.getFirst(FieldKey.GENRE), actual.getFirst(TagField.GENRE))
+        assertEquals(expected.getFirst(FieldKey.TRACK), actual.getFirst(TagField.TRACK))
+        assertEquals(expected.getFirst(FieldKey.DISC_NO), actual.getFirst(TagField.DISC_NO))
+        assertEquals(expected.getFirst(FieldKey.COMMENT), actual.getFirst(TagField.COMMENT))
+        assertEquals(expected.getFirst(FieldKey.LYRICS), actual.getFirst(TagField.LYRICS))
+        assertEquals(expectedDuration, actual.durationSeconds)
+    }
+
+    /**
+     * Flac file with stream info, comments, picture and padding blocks and few fake audio bytes
+     */
+    fun createFlacFile(
+        file: File,
+        durationSeconds: Int,
+        comments: List<String>,
+        pictureData: ByteArray?
+    ): File {
+        val streamInfo = ByteArrayOutputStream()
+        val data = DataOutputStream(streamInfo)
+        data.writeShort(4096)
+        data.writeShort(4096)
+        data.write(int24(0))
+        data.write(int24(0))
+        val samplesCount = durationSeconds.toLong() * SAMPLE_RATE
+        //sample rate(20), channels - 1(3), bits per sample - 1(5), samples count(36)
+        val packed = (SAMPLE_RATE.toLong() shl 44) or (1L shl 41) or (15L shl 36) or samplesCount
+        data.writeLong(packed)
+        data.write(ByteArray(16))//md5
+
+        val vorbisComments = ByteArrayOutputStream()
+        writeVorbisComments(vorbisComments, comments, null)
+
+        val out = ByteArrayOutputStream()
+        out.write("fLaC".toByteArray())
+        out.write(flacBlock(0, streamInfo.toByteArray(), false))
+        out.write(flacBlock(4, vorbisComments.toByteArray(), false))
+        if (pictureData != null) {
+            out.write(flacBlock(6, pictureBlock(pictureData), false))
+        }
+        out.write(flacBlock(1, ByteArray(1000), true))
+        out.write(ByteArray(1024) { 0x55 })
+        file.writeBytes(out.toByteArray())
+        return file
+    }
+
+    /**
+     * Replaces tag of mp3 file with id3v2.4 tag, picture frame is unsynchronised
+     */
+    fun createId3v24Mp3File(file: File, source: File, title: String, pictureData: ByteArray): File {
+        val sourceBytes = source.readBytes()
+        val audioStart = if (String(sourceBytes, 0, 3, Charsets.ISO_8859_1) == "ID3") {
+            10 + syncSafe(sourceBytes, 6)
+        } else {
+            0
+        }
+
+        val titleFrame = byteArrayOf(3) + title.toByteArray()
+        val picture = byteArrayOf(0) + "image/jpeg".toByteArray() + byteArrayOf(0, 3, 0) + pictureData
+        val unsyncPicture = ByteArrayOutputStream()
+        for (i in picture.indices) {
+            unsyncPicture.write(picture[i].toInt())
+            val next = if (i + 1 < picture.size) picture[i + 1].toInt() and 0xFF else 0
+            if (picture[i] == 0xFF.toByte() && (next == 0 || next >= 0xE0)) {
+                unsyncPicture.write(0)
+            }
+        }
+        val frames = id3Frame("TIT2", 0, titleFrame) +
+                id3Frame("APIC", 0x03, syncSafeBytes(picture.size) + unsyncPicture.toByteArray())
+
+        val out = ByteArrayOutputStream()
+        out.write("ID3".toByteArray())
+        out.write(byteArrayOf(4, 0, 0))
+        out.write(syncSafeBytes(frames.size + 100))
+        out.write(frames)
+        out.write(ByteArray(100))//padding
+        out.write(sourceBytes, audioStart, sourceBytes.size - audioStart)
+        file.writeBytes(out.toByteArray())
+        return file
+    }
+
+    /**
+     * Opus file with comment packet split across pages
+     */
+    fun createOpusFile(
+        file: File,
+        comments: List<String>,
+        pictureData: ByteArray?,
+        durationSeconds: Int,
+        preSkip: Int
+    ) {
+        val identification = ByteArrayOutputStream()
+        identification.write("OpusHead".toByteArray())
+        identification.write(1)//version
+        identification.write(2)//channels
+        identification.write(int16LE(preSkip))
+        identification.write(int32LE(SAMPLE_RATE.toLong()))
+        identification.write(int16LE(0))//gain
+        identification.write(0)//mapping family
+
+        val commentsPacket = ByteArrayOutputStream()
+        commentsPacket.write("OpusTags".toByteArray())
+        writeVorbisComments(commentsPacket, comments, pictureData)
+
+        val out = ByteArrayOutputStream()
+        writeOggPage(out, 0x02, 0, 0, listOf(identification.toByteArray()))
+        val sequence = writeOggPackets(out, 1, commentsPacket.toByteArray())
+        val granulePosition = durationSeconds * 48000L + preSkip
+        writeOggPage(out, 0x04, granulePosition, sequence, listOf(ByteArray(500) { 0x11 }))
+        file.writeBytes(out.toByteArray())
+    }
+
+    /**
+     * Mp4 file with media data placed before moov atom
+     */
+    fun createMp4File(file: File, durationSeconds: Int, items: Map<String, ByteArray>) {
+        val ilst = ByteArrayOutputStream()
+        for ((type, value) in items) {
+            val dataType = when (type) {
+                "covr" -> 13
+                "trkn", "disk", "gnre" -> 0
+                else -> 1
+            }
+            ilst.write(atom(type, atom("data", int32BE(dataType.toLong()) + int32BE(0) + value)))
+        }
+        val hdlr = int32BE(0) + int32BE(0) + "mdir".toByteArray() + "appl".toByteArray() +
+                ByteArray(9)
+        val meta = atom("meta", int32BE(0) + atom("hdlr", hdlr) + atom("ilst", ilst.toByteArray()))
+        val mvhd = int32BE(0) + int32BE(0) + int32BE(0) + int32BE(1000) +
+                int32BE(durationSeconds * 1000L) + ByteArray(80)
+
+        val out = ByteArrayOutputStream()
+        out.write(atom("ftyp", "M4A ".toByteArray() + int32BE(0) + "isom".toByteArray()))
+        out.write(atom("mdat", ByteArray(4000) { 0x22 }))
+        out.write(atom("moov", atom("mvhd", mvhd) + atom("udta", meta)))
+        file.writeBytes(out.toByteArray())
+    }
+
+    fun mp4Number(number: Int, total: Int): ByteArray {
+        return byteArrayOf(0, 0, (number shr 8).toByte(), number.toByte(), (total shr 8).toByte(), total.toByte(), 0, 0)
+    }
+
+    private fun pictureBlock(data: ByteArray): ByteArray {
+        val out = ByteArrayOutputStream()
+        val mimeType = "image/png".toByteArray()
+        out.write(int32BE(3))
+        out.write(int32BE(mimeType.size.toLong()))
+        out.write(mimeType)
+        out.write(int32BE(0))//description
+        out.write(ByteArray(16))
+        out.write(int32BE(data.size.toLong()))
+        out.write(data)
+        return out.toByteArray()
+    }
+
+    private fun writeVorbisComments(
+        out: ByteArrayOutputStream,
+        comments: List<String>,
+        pictureData: ByteArray?
+    ) {
+        val vendor = "test vendor".toByteArray()
+        out.write(int32LE(vendor.size.toLong()))
+        out.write(vendor)
+        val allComments = ArrayList(comments)
+        if (pictureData != null) {
+            val encoded = Base64.getEncoder().encodeToString(pictureBlock(pictureData))
+            allComments.add(0, "METADATA_BLOCK_PICTURE=$encoded")
+        }
+        out.write(int32LE(allComments.size.toLong()))
+        for (comment in allComments) {
+            val bytes = comment.toByteArray()
+            out.write(int32LE(bytes.size.toLong()))
+            out.write(bytes)
+        }
+    }
+
+    /**
+     * @return next page sequence number
+     */
+    private fun writeOggPackets(out: ByteArrayOutputStream, firstSequence: Int, packet: ByteArray): Int {
+        var sequence = firstSequence
+        var offset = 0
+        var headerType = 0
+        //255 segments of 255 bytes per page at most, use smaller pages to have more page breaks
+        val pageSize = 255 * 40
+        while (true) {
+            val end = minOf(offset + pageSize, packet.size)
+            val isLast = end == packet.size
+            val page = packet.copyOfRange(offset, end)
+            writeOggPage(out, headerType, 0, sequence++, listOf(page), isLast)
+            if (isLast) {
+                return sequence
+            }
+            offset = end
+            headerType = 0x01
+        }
+    }
+
+    private fun writeOggPage(
+        out: ByteArrayOutputStream,
+        headerType: Int,
+        granulePosition: Long,
+        sequence: Int,
+        packets: List<ByteArray>,
+        isPacketEnd: Boolean = true
+    ) {
+        val segments = ArrayList<Int>()
+        for (packet in packets) {
+            var remaining = packet.size
+            while (remaining >= 255) {
+                segments.add(255)
+                remaining -= 255
+            }
+            if (isPacketEnd) {
+                segments.add(remaining)
+            }
+        }
+        out.write("OggS".toByteArray())
+        out.write(0)
+        out.write(headerType)
+        out.write(int32LE(granulePosition and 0xFFFFFFFFL))
+        out.write(int32LE(granulePosition ushr 32))
+        out.write(int32LE(1))//serial number
+        out.write(int32LE(sequence.toLong()))
+        out.write(int32LE(0))//crc is not checked by reader
+        out.write(segments.size)
+        for (segment in segments) {
+            out.write(segment)
+        }
+        for (packet in packets) {
+            out.write(packet)
+        }
+    }
+
+    private fun flacBlock(type: Int, data: ByteArray, isLast: Boolean): ByteArray {
+        val header = if (isLast) type or 0x80 else type
+        return byteArrayOf(header.toByte()) + int24(data.size) + data
+    }
+
+    private fun id3Frame(id: String, formatFlags: Int, data: ByteArray): ByteArray {
+        return id.toByteArray() + syncSafeBytes(data.size) + byteArrayOf(0, formatFlags.toByte()) + data
+    }
+
+    private fun syncSafe(bytes: ByteArray, offset: Int): Int {
+        var value = 0
+        for (i in 0 until 4) {
+            value = value shl 7 or (bytes[offset + i].toInt() and 0x7F)
+        }
+        return value
+    }
+
+    private fun syncSafeBytes(value: Int): ByteArray {
+        return byteArrayOf(
+            (value shr 21 and 0x7F).toByte(),
+            (value shr 14 and 0x7F).toByte(),
+            (value shr 7 and 0x7F).toByte(),
+            (value and 0x7F).toByte()
+        )
+    }
+
+    private fun atom(type: String, data: ByteArray): ByteArray {
+        return int32BE(data.size + 8L) + type.toByteArray(Charsets.ISO_8859_1) + data
+    }
+
+    private fun int24(value: Int) = byteArrayOf((value shr 16).toByte(), (value shr 8).toByte(), value.toByte())
+
+    private fun int16LE(value: Int) = byteArrayOf(value.toByte(), (value shr 8).toByte())
+
+    private fun int32BE(value: Long): ByteArray {
+        return byteArrayOf((value shr 24).toByte(), (value shr 16).toByte(), (value shr 8).toByte(), value.toByte())
+    }
+
+    private fun int32LE(value: Long): ByteArray {
+        return byteArrayOf(value.toByte(), (value shr 8).toByte(), (value shr 16).toByte(), (value shr 24).toByte())
+    }
+}
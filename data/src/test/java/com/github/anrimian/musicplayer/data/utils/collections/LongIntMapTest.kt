@@ -0,0 +1,71 @@
+package com.github.anrimian.musicplayer.data.utils.collections
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.util.Random
+
+class LongIntMapTest {
+
+    private val map = LongIntMap()
+
+    @Test
+    fun `random operations match hash map`() {
+        for (seed in 1L..10L) {
+            val random = Random(seed)
+            val expected = HashMap<Long, Int>()
+            map.clear()
+            repeat(20000) { i ->
+                //small key range to get collisions, long chains and zero key
+                val key = random.nextInt(2000).toLong() - 1000L shl (random.nextInt(3) * 20)
+                when (random.nextInt(3)) {
+                    0 -> {
+                        map.remove(key)
+                        expected.remove(key)
+                    }
+                    else -> {
+                        map.put(key, i)
+                        expected[key] = i
+                    }
+                }
+                assertEquals(expected[key] ?: -1, map.get(key, -1), "seed: $seed, step: $i")
+            }
+            assertEquals(expected.size, map.size)
+            for ((key, value) in expected) {
+                assertEquals(value, map.valueAt(map.indexOfKey(key)))
+            }
+        }
+    }
+
+    @Test
+    fun `zero key is kept apart from empty slots`() {
+        assertEquals(-1, map.indexOfKey(0))
+
+        map.put(0, 5)
+        map.put(1, 6)
+        assertEquals(5, map.get(0, -1))
+        assertEquals(2, map.size)
+
+        map.ensureCapacity(1000)
+        assertEquals(5, map.get(0, -1))
+
+        map.remove(0)
+        assertEquals(-1, map.get(0, -1))
+        assertEquals(6, map.get(1, -1))
+        assertEquals(1, map.size)
+    }
+
+    @Test
+    fun `removal keeps entries of the same probe chain`() {
+        val keys = LongArray(1000) { i -> (i + 1L) * 1024 }
+        keys.forEachIndexed { i, key -> map.put(key, i) }
+
+        for (i in keys.indices step 2) {
+            map.remove(keys[i])
+        }
+
+        keys.forEachIndexed { i, key ->
+            assertEquals(if (i % 2 == 0) -1 else i, map.get(key, -1))
+        }
+        assertEquals(500, map.size)
+    }
+}
@@ -16,16 +16,19 @@ import com.github.anrimian.musicplayer.domain.models.composition.content.RemoteS
 import com.github.anrimian.musicplayer.domain.models.composition.content.TooLargeSourceException
 import com.github.anrimian.musicplayer.domain.models.composition.content.UnsupportedSourceException
 import com.github.anrimian.musicplayer.domain.models.composition.source.LibraryCompositionSource
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueChange
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueEvent
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
 import com.github.anrimian.musicplayer.domain.models.player.PlayerState
 import com.github.anrimian.musicplayer.domain.models.player.events.PlayerEvent
 import com.github.anrimian.musicplayer.domain.models.player.modes.RepeatMode
+import com.github.anrimian.musicplayer.domain.models.scanner.FileScanPriority
 import com.github.anrimian.musicplayer.domain.models.sync.FileKey
 import com.github.anrimian.musicplayer.domain.models.utils.PlayQueueItemHelper
 import com.github.anrimian.musicplayer.domain.models.utils.toFileKey
 import com.github.anrimian.musicplayer.domain.models.utils.toFileKeys
 import com.github.anrimian.musicplayer.domain.repositories.LibraryRepository
+import com.github.anrimian.musicplayer.domain.repositories.MediaScannerRepository
 import com.github.anrimian.musicplayer.domain.repositories.PlayQueueRepository
 import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository
 import com.github.anrimian.musicplayer.domain.repositories.UiStateRepository
@@ -46,6 +49,7 @@ class LibraryPlayerInteractor(
     private val playQueueRepository: PlayQueueRepository,
     private val libraryRepository: LibraryRepository,
     private val uiStateRepository: UiStateRepository,
+    private val mediaScannerRepository: MediaScannerRepository,
     private val systemServiceController: SystemServiceController,
     private val analytics: Analytics,
 ) {
@@ -180,6 +184,10 @@ class LibraryPlayerInteractor(
 
     fun getRandomPlayingObservable(): Observable<Boolean> = settingsRepository.randomPlayingObservable
 
+    fun setVisibleItemsScanPriority(compositionIds: List<Long>) {
+        mediaScannerRepository.setFileScanPriority(FileScanPriority.VISIBLE_ITEMS, compositionIds)
+    }
+
     fun onSeekStarted() {
         playerCoordinatorInteractor.onSeekStarted(PlayerType.LIBRARY)
     }
@@ -255,8 +263,12 @@ class LibraryPlayerInteractor(
         return playQueueRepository.getCurrentItemPositionObservable()
     }
 
-    fun getPlayQueueObservable(): Flowable<List<PlayQueueItem>> {
-        return playQueueRepository.getPlayQueueObservable()
+    fun getPlayQueueChangesObservable(): Observable<PlayQueueChange> {
+        return playQueueRepository.getPlayQueueChangesObservable()
+    }
+
+    fun getPlayQueueItems(itemIds: LongArray): Single<List<PlayQueueItem>> {
+        return playQueueRepository.getPlayQueueItems(itemIds)
     }
 
     fun deleteComposition(composition: Composition): Single<DeletedComposition> {
@@ -6,6 +6,7 @@ import com.github.anrimian.musicplayer.domain.controllers.SystemMusicController;
 import com.github.anrimian.musicplayer.domain.interactors.sleep_timer.SleepTimerInteractor;
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueData;
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem;
+import com.github.anrimian.musicplayer.domain.models.scanner.FileScanPriority;
 import com.github.anrimian.musicplayer.domain.models.scanner.FileScannerState;
 import com.github.anrimian.musicplayer.domain.models.volume.VolumeState;
 import com.github.anrimian.musicplayer.domain.repositories.MediaScannerRepository;
@@ -13,6 +14,8 @@ import com.github.anrimian.musicplayer.domain.repositories.PlayQueueRepository;
 import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository;
 import com.github.anrimian.musicplayer.domain.repositories.UiStateRepository;
 
+import java.util.List;
+
 import io.reactivex.rxjava3.core.Observable;
 
 public class PlayerScreenInteractor {
@@ -104,6 +107,10 @@ public class PlayerScreenInteractor {
         return mediaScannerRepository.getFileScannerStateObservable();
     }
 
+    public void setPlayQueueScanPriority(List<Long> compositionIds) {
+        mediaScannerRepository.setFileScanPriority(FileScanPriority.PLAY_QUEUE, compositionIds);
+    }
+
     public Observable<FileSyncState> getCurrentCompositionFileSyncState() {
         return libraryPlayerInteractor.getCurrentQueueItemObservable()
                 .switchMap(queueItem -> {
@@ -0,0 +1,32 @@
+package com.github.anrimian.musicplayer.domain.models.play_queue
+
+/**
+ * Patch of play queue list. Stream of changes starts with [Snapshot], each next change has
+ * sequence greater by one than previous change. Positions are positions in list after
+ * previous change.
+ *
+ * Changes contain only ids of queue items, items are read for the shown part of queue,
+ * see [PlayQueueList].
+ */
+sealed class PlayQueueChange(val sequence: Long) {
+
+    /**
+     * Whole list, replaces list built from previous changes
+     */
+    class Snapshot(sequence: Long, val itemIds: LongArray) : PlayQueueChange(sequence)
+
+    class Insert(
+        sequence: Long,
+        val position: Int,
+        val itemIds: LongArray,
+    ) : PlayQueueChange(sequence)
+
+    class Remove(sequence: Long, val position: Int, val count: Int) : PlayQueueChange(sequence)
+
+    class Move(sequence: Long, val from: Int, val to: Int) : PlayQueueChange(sequence)
+
+    /**
+     * Items of given compositions must be read again, null ids mean all items
+     */
+    class Update(sequence: Long, val compositionIds: LongArray?) : PlayQueueChange(sequence)
+}
@@ -0,0 +1,192 @@
+package com.github.anrimian.musicplayer.domain.models.play_queue
+
+/**
+ * Play queue list which is built from [PlayQueueChange] patches.
+ *
+ * Ids are kept for the whole queue, items - only for the used part of it. Items of positions
+ * from [getMissingItemIds] are read and put with [setItems], items out of used part are dropped
+ * with [retainItems]. Items are mapped once, when they are put.
+ */
+class PlayQueueList<T>(private val mapper: (PlayQueueItem) -> T) {
+
+    private var itemIds = LongArray(0)
+    private var size = 0
+
+    private val items = HashMap<Long, LoadedItem<T>>()
+
+    //moves which are shown before their changes are received
+    private val localMoves = ArrayDeque<Pair<Int, Int>>()
+
+    private var sequence = NO_SEQUENCE
+    private var itemsVersion = 0
+
+    fun getSize() = size
+
+    fun getItemId(position: Int): Long {
+        if (position < 0 || position >= size) {
+            throw IndexOutOfBoundsException("position: $position, size: $size")
+        }
+        return itemIds[position]
+    }
+
+    fun getItemIds(): LongArray = itemIds.copyOf(size)
+
+    /**
+     * @return item at given position or null when it is not read yet
+     */
+    fun getItem(position: Int): T? = items[getItemId(position)]?.value
+
+    fun isInitialized() = sequence != NO_SEQUENCE
+
+    fun getSequence() = sequence
+
+    /**
+     * @return version of items, items which were read for previous version are outdated
+     */
+    fun getItemsVersion() = itemsVersion
+
+    /**
+     * @return ids of items in given range of positions which must be read
+     */
+    fun getMissingItemIds(from: Int, to: Int): LongArray {
+        val start = from.coerceIn(0, size)
+        val end = to.coerceIn(start, size)
+        val result = LongArray(end - start)
+        var count = 0
+        for (i in start until end) {
+            val itemId = itemIds[i]
+            if (!items.containsKey(itemId)) {
+                result[count++] = itemId
+            }
+        }
+        return result.copyOf(count)
+    }
+
+    /**
+     * @param version value of [getItemsVersion] before items were read
+     * @return false when items are outdated and were not put
+     */
+    fun setItems(items: List<PlayQueueItem>, version: Int): Boolean {
+        if (version != itemsVersion) {
+            return false
+        }
+        for (item in items) {
+            this.items[item.itemId] = LoadedItem(item.id, mapper(item))
+        }
+        return true
+    }
+
+    /**
+     * Drops items out of given range of positions
+     */
+    fun retainItems(from: Int, to: Int) {
+        if (items.isEmpty()) {
+            return
+        }
+        val start = from.coerceIn(0, size)
+        val end = to.coerceIn(start, size)
+        val retainedItems = HashMap<Long, LoadedItem<T>>()
+        for (i in start until end) {
+            val item = items[itemIds[i]] ?: continue
+            retainedItems[itemIds[i]] = item
+        }
+        items.clear()
+        items.putAll(retainedItems)
+    }
+
+    /**
+     * Moves item before change of this move is received, then the change is skipped
+     */
+    fun moveLocally(from: Int, to: Int) {
+        move(from, to)
+        localMoves.addLast(Pair(from, to))
+    }
+
+    /**
+     * @return false when change only confirmed local move and list was not changed
+     * @throws IllegalStateException when change doesn't follow previous applied change or
+     * list was changed before local moves were confirmed
+     */
+    fun apply(change: PlayQueueChange): Boolean {
+        if (change !is PlayQueueChange.Snapshot) {
+            check(sequence != NO_SEQUENCE && change.sequence == sequence + 1) {
+                "play queue change ${change.sequence} doesn't follow change $sequence"
+            }
+        }
+        sequence = change.sequence
+        if (change is PlayQueueChange.Snapshot) {
+            localMoves.clear()
+        }
+        if (localMoves.isNotEmpty() && change !is PlayQueueChange.Update) {
+            val (from, to) = localMoves.removeFirst()
+            check(change is PlayQueueChange.Move && change.from == from && change.to == to) {
+                "play queue is changed before local moves are confirmed"
+            }
+            return false
+        }
+        when (change) {
+            is PlayQueueChange.Snapshot -> {
+                itemIds = change.itemIds.copyOf()
+                size = itemIds.size
+                items.clear()
+                itemsVersion++
+            }
+            is PlayQueueChange.Insert -> insert(change.position, change.itemIds)
+            is PlayQueueChange.Remove -> remove(change.position, change.count)
+            is PlayQueueChange.Move -> move(change.from, change.to)
+            is PlayQueueChange.Update -> {
+                val compositionIds = change.compositionIds?.toHashSet()
+                if (compositionIds == null) {
+                    items.clear()
+                } else {
+                    items.values.removeAll { item -> compositionIds.contains(item.compositionId) }
+                }
+                itemsVersion++
+            }
+        }
+        return true
+    }
+
+    fun clear() {
+        itemIds = LongArray(0)
+        size = 0
+        items.clear()
+        localMoves.clear()
+        sequence = NO_SEQUENCE
+        itemsVersion++
+    }
+
+    private fun insert(position: Int, insertedIds: LongArray) {
+        val count = insertedIds.size
+        if (size + count > itemIds.size) {
+            itemIds = itemIds.copyOf(maxOf(size + count, size + size / 2))
+        }
+        System.arraycopy(itemIds, position, itemIds, position + count, size - position)
+        System.arraycopy(insertedIds, 0, itemIds, position, count)
+        size += count
+    }
+
+    private fun remove(position: Int, count: Int) {
+        for (i in position until position + count) {
+            items.remove(itemIds[i])
+        }
+        System.arraycopy(itemIds, position + count, itemIds, position, size - position - count)
+        size -= count
+    }
+
+    private fun move(from: Int, to: Int) {
+        val itemId = itemIds[from]
+        if (from < to) {
+            System.arraycopy(itemIds, from + 1, itemIds, from, to - from)
+        } else {
+            System.arraycopy(itemIds, to, itemIds, to + 1, from - to)
+        }
+        itemIds[to] = itemId
+    }
+
+    private class LoadedItem<T>(val compositionId: Long, val value: T)
+
+    private companion object {
+        const val NO_SEQUENCE = -1L
+    }
+}
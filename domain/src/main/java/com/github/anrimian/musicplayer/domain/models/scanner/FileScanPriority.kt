@@ -0,0 +1,10 @@
+package com.github.anrimian.musicplayer.domain.models.scanner
+
+/**
+ * Priority classes of file scanner, from highest to lowest.
+ * Compositions without priority are scanned after all prioritized.
+ */
+enum class FileScanPriority {
+    PLAY_QUEUE,
+    VISIBLE_ITEMS
+}
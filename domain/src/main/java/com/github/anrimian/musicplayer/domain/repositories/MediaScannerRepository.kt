@@ -1,5 +1,6 @@
 package com.github.anrimian.musicplayer.domain.repositories
 
+import com.github.anrimian.musicplayer.domain.models.scanner.FileScanPriority
 import com.github.anrimian.musicplayer.domain.models.scanner.FileScannerState
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Observable
@@ -20,4 +21,9 @@ interface MediaScannerRepository {
 
     fun getFileScannerStateObservable(): Observable<FileScannerState>
 
+    /**
+     * Scan files of these compositions before others, replaces previous ids of the same priority
+     */
+    fun setFileScanPriority(priority: FileScanPriority, compositionIds: List<Long>)
+
 }
\ No newline at end of file
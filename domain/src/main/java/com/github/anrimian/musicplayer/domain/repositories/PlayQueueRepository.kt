@@ -1,6 +1,7 @@
 package com.github.anrimian.musicplayer.domain.repositories
 
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
+import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueChange
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueData
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueEvent
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
@@ -22,7 +23,15 @@ interface PlayQueueRepository {
 
     fun getNextQueueItemId(): Single<Long>
 
-    fun getPlayQueueObservable(): Flowable<List<PlayQueueItem>>
+    /**
+     * Emits snapshot of play queue and then changes of it
+     */
+    fun getPlayQueueChangesObservable(): Observable<PlayQueueChange>
+
+    /**
+     * @return items with given ids in any order, removed items are skipped
+     */
+    fun getPlayQueueItems(itemIds: LongArray): Single<List<PlayQueueItem>>
 
     fun setRandomPlayingEnabled(enabled: Boolean)
 
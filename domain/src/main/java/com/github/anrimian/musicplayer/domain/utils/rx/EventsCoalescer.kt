@@ -0,0 +1,78 @@
+package com.github.anrimian.musicplayer.domain.utils.rx
+
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.core.ObservableEmitter
+import io.reactivex.rxjava3.core.ObservableSource
+import io.reactivex.rxjava3.core.ObservableTransformer
+import io.reactivex.rxjava3.core.Scheduler
+import io.reactivex.rxjava3.disposables.CompositeDisposable
+import io.reactivex.rxjava3.disposables.Disposable
+import java.util.concurrent.TimeUnit
+
+/**
+ * Merges bursts of events into single change sets.
+ * Change set is emitted after [quietWindowMillis] without new events,
+ * but not later than [maxLatencyMillis] after the first event of the set.
+ */
+class EventsCoalescer<T : Any>(
+    private val quietWindowMillis: Long,
+    private val maxLatencyMillis: Long,
+    private val scheduler: Scheduler,
+) : ObservableTransformer<T, Set<T>> {
+
+    override fun apply(upstream: Observable<T>): ObservableSource<Set<T>> {
+        return Observable.create { emitter ->
+            val worker = scheduler.createWorker()
+            val state = CoalescingState(emitter.serialize(), worker)
+            val disposable = upstream.subscribe(state::onEvent, state::onError, state::onComplete)
+            emitter.setDisposable(CompositeDisposable(disposable, worker))
+        }
+    }
+
+    private inner class CoalescingState(
+        private val emitter: ObservableEmitter<Set<T>>,
+        private val worker: Scheduler.Worker,
+    ) {
+
+        private var pendingEvents = LinkedHashSet<T>()
+        private var quietTask: Disposable? = null
+        private var latencyTask: Disposable? = null
+
+        fun onEvent(event: T) {
+            synchronized(this) {
+                pendingEvents.add(event)
+                quietTask?.dispose()
+                quietTask = worker.schedule(::flush, quietWindowMillis, TimeUnit.MILLISECONDS)
+                if (latencyTask == null) {
+                    latencyTask = worker.schedule(::flush, maxLatencyMillis, TimeUnit.MILLISECONDS)
+                }
+            }
+        }
+
+        fun onError(throwable: Throwable) {
+            emitter.onError(throwable)
+        }
+
+        fun onComplete() {
+            flush()
+            emitter.onComplete()
+        }
+
+        private fun flush() {
+            val changeSet = synchronized(this) {
+                quietTask?.dispose()
+                quietTask = null
+                latencyTask?.dispose()
+                latencyTask = null
+                if (pendingEvents.isEmpty()) {
+                    return
+                }
+                val changeSet = pendingEvents
+                pendingEvents = LinkedHashSet()
+                changeSet
+            }
+            //emit outside of lock to not block new events while change set is processed
+            emitter.onNext(changeSet)
+        }
+    }
+}
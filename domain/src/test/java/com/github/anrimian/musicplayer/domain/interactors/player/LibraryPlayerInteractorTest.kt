@@ -13,6 +13,7 @@ import com.github.anrimian.musicplayer.domain.models.player.events.PlayerEvent
 import com.github.anrimian.musicplayer.domain.models.player.modes.RepeatMode
 import com.github.anrimian.musicplayer.domain.models.sync.FileKey
 import com.github.anrimian.musicplayer.domain.repositories.LibraryRepository
+import com.github.anrimian.musicplayer.domain.repositories.MediaScannerRepository
 import com.github.anrimian.musicplayer.domain.repositories.PlayQueueRepository
 import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository
 import com.github.anrimian.musicplayer.domain.repositories.UiStateRepository
@@ -43,6 +44,7 @@ class LibraryPlayerInteractorTest {
     private val playQueueRepository: PlayQueueRepository = mock()
     private val musicProviderRepository: LibraryRepository = mock()
     private val uiStateRepository: UiStateRepository = mock()
+    private val mediaScannerRepository: MediaScannerRepository = mock()
     private val systemServiceController: SystemServiceController = mock()
     private val analytics: Analytics = mock()
     
@@ -111,6 +113,7 @@ class LibraryPlayerInteractorTest {
             playQueueRepository,
             musicProviderRepository,
             uiStateRepository,
+            mediaScannerRepository,
             systemServiceController,
             analytics
         )
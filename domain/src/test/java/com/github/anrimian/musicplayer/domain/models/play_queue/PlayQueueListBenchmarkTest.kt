@@ -0,0 +1,59 @@
+package com.github.anrimian.musicplayer.domain.models.play_queue
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Assumptions.assumeTrue
+import org.junit.jupiter.api.Tag
+import org.junit.jupiter.api.Test
+import java.lang.management.ManagementFactory
+
+/**
+ * Applies changes to list of 1m items and prints bytes allocated per change and per copy of list.
+ * Allocated bytes are taken from thread allocation counter of hotspot jvm.
+ * Excluded from default test run, use -Pbenchmarks to run it.
+ */
+@Tag("benchmark")
+class PlayQueueListBenchmarkTest {
+
+    private val list = PlayQueueList<Long> { item -> item.itemId }
+
+    @Test
+    fun `change allocates less than copy of full list`() {
+        val threadBean = ManagementFactory.getThreadMXBean()
+        assumeTrue(threadBean is com.sun.management.ThreadMXBean)
+        threadBean as com.sun.management.ThreadMXBean
+
+        list.apply(PlayQueueChange.Snapshot(0, LongArray(SIZE) { i -> i.toLong() }))
+        val changes = ArrayList<PlayQueueChange>(CHANGES_COUNT)
+        for (i in 1..CHANGES_COUNT) {
+            val position = i * 7 % (SIZE - 10)
+            changes.add(
+                when (i % 4) {
+                    0 -> PlayQueueChange.Insert(i.toLong(), position, longArrayOf(SIZE.toLong() + i))
+                    1 -> PlayQueueChange.Remove(i.toLong(), position, 1)
+                    2 -> PlayQueueChange.Move(i.toLong(), position, position + 5)
+                    else -> PlayQueueChange.Update(i.toLong(), longArrayOf(i.toLong()))
+                }
+            )
+        }
+
+        val threadId = Thread.currentThread().id
+        var bytes = threadBean.getThreadAllocatedBytes(threadId)
+        changes.forEach(list::apply)
+        val changesBytes = threadBean.getThreadAllocatedBytes(threadId) - bytes
+
+        bytes = threadBean.getThreadAllocatedBytes(threadId)
+        val copy = list.getItemIds()
+        val copyBytes = threadBean.getThreadAllocatedBytes(threadId) - bytes
+
+        val bytesPerChange = changesBytes / CHANGES_COUNT
+        println("bytes per change: $bytesPerChange, bytes per list copy: $copyBytes")
+        assertEquals(SIZE, copy.size)
+        assertTrue(bytesPerChange * 10 < copyBytes)
+    }
+
+    private companion object {
+        const val SIZE = 1_000_000
+        const val CHANGES_COUNT = 1000
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.anrimian.musicplayer.domain.models.play_queue
+
+import com.github.anrimian.musicplayer.domain.models.composition.InitialSource
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.util.Date
+
+class PlayQueueListTest {
+
+    private var mappedItemsCount = 0
+
+    private val list = PlayQueueList { item ->
+        mappedItemsCount++
+        item.itemId
+    }
+
+    @Test
+    fun `apply changes in order of their sequence`() {
+        list.apply(PlayQueueChange.Snapshot(10, longArrayOf(1, 2, 3)))
+        list.apply(PlayQueueChange.Insert(11, 1, longArrayOf(4, 5)))
+        assertEquals(listOf(1L, 4L, 5L, 2L, 3L), list.getItemIds().toList())
+
+        list.apply(PlayQueueChange.Move(12, 0, 3))
+        assertEquals(listOf(4L, 5L, 2L, 1L, 3L), list.getItemIds().toList())
+
+        list.apply(PlayQueueChange.Remove(13, 1, 2))
+        assertEquals(listOf(4L, 1L, 3L), list.getItemIds().toList())
+
+        list.apply(PlayQueueChange.Update(14, null))
+        assertEquals(listOf(4L, 1L, 3L), list.getItemIds().toList())
+        assertEquals(14, list.getSequence())
+    }
+
+    @Test
+    fun `items are read only for requested positions`() {
+        list.apply(PlayQueueChange.Snapshot(1, LongArray(10) { i -> i + 1L }))
+        assertNull(list.getItem(0))
+
+        val itemIds = list.getMissingItemIds(2, 5)
+        assertEquals(listOf(3L, 4L, 5L), itemIds.toList())
+        assertTrue(list.setItems(items(*itemIds), list.getItemsVersion()))
+        assertEquals(3L, list.getItem(2))
+        assertNull(list.getItem(5))
+        assertEquals(0, list.getMissingItemIds(2, 5).size)
+
+        list.retainItems(3, 10)
+        assertNull(list.getItem(2))
+        assertEquals(4L, list.getItem(3))
+        assertEquals(3, mappedItemsCount)
+    }
+
+    @Test
+    fun `items follow their ids after changes`() {
+        list.apply(PlayQueueChange.Snapshot(1, longArrayOf(1, 2, 3)))
+        list.setItems(items(1, 2, 3), list.getItemsVersion())
+
+        list.apply(PlayQueueChange.Move(2, 2, 0))
+        list.apply(PlayQueueChange.Insert(3, 1, longArrayOf(4)))
+        list.apply(PlayQueueChange.Remove(4, 3, 1))
+
+        assertEquals(3L, list.getItem(0))
+        assertNull(list.getItem(1))
+        assertEquals(1L, list.getItem(2))
+        assertEquals(3, mappedItemsCount)
+    }
+
+    @Test
+    fun `updated items are dropped and outdated items are not put`() {
+        list.apply(PlayQueueChange.Snapshot(1, longArrayOf(1, 2, 3)))
+        list.setItems(items(1, 2, 3), list.getItemsVersion())
+        val version = list.getItemsVersion()
+
+        list.apply(PlayQueueChange.Update(2, longArrayOf(2)))
+        assertEquals(1L, list.getItem(0))
+        assertNull(list.getItem(1))
+
+        assertFalse(list.setItems(items(2), version))
+        assertNull(list.getItem(1))
+        assertTrue(list.setItems(items(2), list.getItemsVersion()))
+        assertEquals(2L, list.getItem(1))
+    }
+
+    @Test
+    fun `local move is confirmed by the same change`() {
+        list.apply(PlayQueueChange.Snapshot(1, longArrayOf(1, 2, 3)))
+        list.moveLocally(0, 1)
+        assertEquals(listOf(2L, 1L, 3L), list.getItemIds().toList())
+
+        list.apply(PlayQueueChange.Update(2, null))
+        assertFalse(list.apply(PlayQueueChange.Move(3, 0, 1)))
+        assertEquals(listOf(2L, 1L, 3L), list.getItemIds().toList())
+        assertEquals(3, list.getSequence())
+    }
+
+    @Test
+    fun `change before confirmation of local move is rejected`() {
+        list.apply(PlayQueueChange.Snapshot(1, longArrayOf(1, 2, 3)))
+        list.moveLocally(0, 1)
+
+        assertThrows<IllegalStateException> {
+            list.apply(PlayQueueChange.Remove(2, 0, 1))
+        }
+        list.apply(PlayQueueChange.Snapshot(3, longArrayOf(1, 2)))
+        assertTrue(list.apply(PlayQueueChange.Move(4, 0, 1)))
+        assertEquals(listOf(2L, 1L), list.getItemIds().toList())
+    }
+
+    @Test
+    fun `snapshot replaces list after any sequence`() {
+        list.apply(PlayQueueChange.Snapshot(5, longArrayOf(1, 2)))
+        list.apply(PlayQueueChange.Snapshot(3, longArrayOf(3)))
+
+        assertEquals(listOf(3L), list.getItemIds().toList())
+        assertEquals(3, list.getSequence())
+    }
+
+    @Test
+    fun `change which doesn't follow previous change is rejected`() {
+        assertThrows<IllegalStateException> {
+            list.apply(PlayQueueChange.Remove(1, 0, 1))
+        }
+
+        list.apply(PlayQueueChange.Snapshot(1, longArrayOf(1, 2)))
+        assertThrows<IllegalStateException> {
+            list.apply(PlayQueueChange.Remove(3, 0, 1))
+        }
+        assertEquals(listOf(1L, 2L), list.getItemIds().toList())
+    }
+
+    @Test
+    fun `clear resets sequence`() {
+        list.apply(PlayQueueChange.Snapshot(1, longArrayOf(1)))
+        assertTrue(list.isInitialized())
+
+        list.clear()
+        assertFalse(list.isInitialized())
+        assertEquals(0, list.getSize())
+    }
+
+    @Test
+    fun `changes of large list give the same list as changes of array list`() {
+        val size = 10_000
+        val changesCount = 1000
+        val expected = MutableList(size) { i -> i.toLong() }
+        list.apply(PlayQueueChange.Snapshot(0, expected.toLongArray()))
+        for (i in 1..changesCount) {
+            val position = i * 7 % (size - 10)
+            val sequence = i.toLong()
+            when (i % 4) {
+                0 -> {
+                    list.apply(PlayQueueChange.Insert(sequence, position, longArrayOf(size.toLong() + i)))
+                    expected.add(position, size.toLong() + i)
+                }
+                1 -> {
+                    list.apply(PlayQueueChange.Remove(sequence, position, 1))
+                    expected.removeAt(position)
+                }
+                2 -> {
+                    list.apply(PlayQueueChange.Move(sequence, position, position + 5))
+                    expected.add(position + 5, expected.removeAt(position))
+                }
+                else -> list.apply(PlayQueueChange.Update(sequence, longArrayOf(sequence)))
+            }
+        }
+        assertEquals(expected, list.getItemIds().toList())
+    }
+
+    private fun items(vararg itemIds: Long) = itemIds.map(::item)
+
+    private fun item(itemId: Long) = PlayQueueItem(
+        itemId,
+        itemId,
+        "title",
+        null,
+        null,
+        0,
+        0,
+        null,
+        null,
+        Date(),
+        Date(),
+        Date(),
+        null,
+        true,
+        InitialSource.LOCAL
+    )
+}
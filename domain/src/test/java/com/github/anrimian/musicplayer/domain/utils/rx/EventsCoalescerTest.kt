@@ -0,0 +1,73 @@
+package com.github.anrimian.musicplayer.domain.utils.rx
+
+import io.reactivex.rxjava3.schedulers.TestScheduler
+import io.reactivex.rxjava3.subjects.PublishSubject
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.util.concurrent.TimeUnit
+
+class EventsCoalescerTest {
+
+    private val scheduler = TestScheduler()
+    private val subject = PublishSubject.create<String>()
+
+    private val coalescer = EventsCoalescer<String>(1000, 5000, scheduler)
+
+    private val testObserver = subject.compose(coalescer).test()
+
+    @Test
+    fun `emit merged change set after quiet window`() {
+        subject.onNext("a")
+        subject.onNext("b")
+        subject.onNext("a")
+        scheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS)
+        testObserver.assertNoValues()
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+        testObserver.assertValues(setOf("a", "b"))
+    }
+
+    @Test
+    fun `quiet window restarts on each event`() {
+        subject.onNext("a")
+        scheduler.advanceTimeBy(800, TimeUnit.MILLISECONDS)
+        subject.onNext("b")
+        scheduler.advanceTimeBy(800, TimeUnit.MILLISECONDS)
+        testObserver.assertNoValues()
+
+        scheduler.advanceTimeBy(200, TimeUnit.MILLISECONDS)
+        testObserver.assertValues(setOf("a", "b"))
+    }
+
+    @Test
+    fun `emit change set after max latency during event storm`() {
+        repeat(10) { i ->
+            subject.onNext(i.toString())
+            scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS)
+        }
+        testObserver.assertValueCount(1)
+        assertEquals(10, testObserver.values()[0].size)
+
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
+        testObserver.assertValueCount(1)
+    }
+
+    @Test
+    fun `separate bursts produce separate change sets`() {
+        subject.onNext("a")
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS)
+        subject.onNext("b")
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS)
+
+        testObserver.assertValues(setOf("a"), setOf("b"))
+    }
+
+    @Test
+    fun `flush pending events on complete`() {
+        subject.onNext("a")
+        subject.onComplete()
+
+        testObserver.assertValues(setOf("a"))
+        testObserver.assertComplete()
+    }
+}